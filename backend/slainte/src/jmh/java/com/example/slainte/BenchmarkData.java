@@ -0,0 +1,72 @@
+package com.example.slainte;
+
+import com.example.slainte.model.RetrievalResult;
+
+import java.util.*;
+
+/**
+ * Deterministic inputs shaped like real retrievals: HSE chunks of about 1000 characters
+ */
+public final class BenchmarkData {
+
+    public static final int HITS = 20;
+
+    private static final String[] SENTENCES = {
+        "A GP visit card lets you visit a family doctor for free. ",
+        "You may qualify if your weekly income is below the income limit for your household. ",
+        "Apply online at mygovid or send the completed form to the National Medical Card Unit. ",
+        "Children under 8 and adults over 70 qualify without a means test. ",
+        "Your pharmacist can give you the flu vaccine during the autumn and winter season. ",
+        "If you have a long-term illness you may also be entitled to a drugs payment scheme card. ",
+        "Bring photo ID and proof of address when you register with a new doctor. "
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * The text of one chunk, varied by its index so no two chunks are identical
+     */
+    public static String document(int index) {
+        StringBuilder document = new StringBuilder(1_100);
+        int sentence = index;
+        while (document.length() < 1_000) {
+            document.append(SENTENCES[sentence++ % SENTENCES.length]);
+            if (sentence % 3 == 0) {
+                document.append("\n\n");
+            }
+        }
+        return document.toString().trim();
+    }
+
+    public static Map<String, Object> metadata(int index) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("source", "hse-guide-" + (index % 4) + ".pdf");
+        metadata.put("page", index + 1);
+        metadata.put("chunk_index", index);
+        return metadata;
+    }
+
+    public static RetrievalResult retrievalResult(int hits) {
+        List<String> ids = new ArrayList<>(hits);
+        List<String> documents = new ArrayList<>(hits);
+        List<Map<String, Object>> metadatas = new ArrayList<>(hits);
+        List<Double> distances = new ArrayList<>(hits);
+        for (int i = 0; i < hits; i++) {
+            ids.add("chunk-" + i);
+            documents.add(document(i));
+            metadatas.add(metadata(i));
+            distances.add(0.25 + i * 0.015);
+        }
+        return new RetrievalResult(ids, documents, metadatas, distances);
+    }
+
+    public static float[] embeddingValues(int dimension) {
+        Random random = new Random(42);
+        float[] values = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.slainte;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the JMH benchmarks through Surefire in the benchmarks profile:
+ * {@code mvn -P benchmarks test [-Djmh.include=<regex>]}.
+ * <p>
+ * The GC profiler is always on, so gc.alloc.rate.norm (bytes allocated per operation) is
+ * reported next to the time of each benchmark. Results are written to target/jmh-result.json.
+ */
+public class JmhBenchmarks {
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        String include = System.getProperty("jmh.include", "com\\.example\\.slainte\\..*Benchmark");
+        Options options = new OptionsBuilder()
+            .include(include)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .warmupIterations(3)
+            .warmupTime(TimeValue.seconds(1))
+            .measurementIterations(5)
+            .measurementTime(TimeValue.seconds(1))
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/jmh-result.json")
+            .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        assertFalse(results.isEmpty(), "No benchmark matches " + include);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt assembly with 20 documents of context, run once per chat request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PromptBenchmark {
+
+    private final String query = "Do I qualify for a GP visit card?";
+    private String context;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkData.retrievalResult(BenchmarkData.HITS).toContextString();
+    }
+
+    @Benchmark
+    public String formatPromptWithContext() {
+        return DeepseekController.formatPromptWithContext(context, query, "GP Visit Card");
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.slainte.model;
+
+import com.example.slainte.BenchmarkData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON round trip of a 768-dimension embedding, as sent to and read back from Ollama and ChromaDB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmbeddingBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Embedding embedding;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        embedding = Embedding.of(BenchmarkData.embeddingValues(Embedding.DIMENSION));
+        json = objectMapper.writeValueAsString(embedding);
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(embedding);
+    }
+
+    @Benchmark
+    public Embedding deserialize() throws JsonProcessingException {
+        return objectMapper.readValue(json, Embedding.class);
+    }
+}
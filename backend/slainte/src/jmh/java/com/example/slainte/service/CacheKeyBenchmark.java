@@ -0,0 +1,42 @@
+package com.example.slainte.service;
+
+import com.example.slainte.BenchmarkData;
+import com.example.slainte.model.Embedding;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The keys the embedding and ChromaDB caches are looked up by, computed on every request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeyBenchmark {
+
+    private final String query = "  Do I qualify for a   GP Visit Card if I am\tover 70? ";
+    private float[] values;
+    private Embedding embedding;
+
+    @Setup
+    public void setUp() {
+        values = BenchmarkData.embeddingValues(Embedding.DIMENSION);
+        embedding = Embedding.of(values);
+    }
+
+    @Benchmark
+    public String embeddingKey() {
+        return EmbeddingService.singleFlightKey(query);
+    }
+
+    @Benchmark
+    public Embedding fingerprintEmbedding() {
+        // The fingerprint is hashed over all 768 components when the embedding is created
+        return Embedding.of(values);
+    }
+
+    @Benchmark
+    public String chromaQueryKey() {
+        return embedding.fingerprint() + "-" + BenchmarkData.HITS;
+    }
+}
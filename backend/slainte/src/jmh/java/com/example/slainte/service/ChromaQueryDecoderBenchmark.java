@@ -0,0 +1,46 @@
+package com.example.slainte.service;
+
+import com.example.slainte.BenchmarkData;
+import com.example.slainte.model.RetrievalResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 20-hit ChromaDB query response and formatting it as LLM context
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChromaQueryDecoderBenchmark {
+
+    private byte[] response;
+    private RetrievalResult result;
+
+    @Setup
+    public void setUp() throws IOException {
+        RetrievalResult hits = BenchmarkData.retrievalResult(BenchmarkData.HITS);
+        Map<String, Object> body = new LinkedHashMap<>(hits.toRawResults());
+        body.put("embeddings", null);
+        body.put("uris", null);
+        body.put("included", List.of("metadatas", "documents", "distances"));
+        response = new ObjectMapper().writeValueAsBytes(body);
+        result = hits;
+    }
+
+    @Benchmark
+    public RetrievalResult decode() throws IOException {
+        return ChromaQueryDecoder.decode(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public String toContextString() {
+        // A fresh copy, since the formatted context is memoized on the instance
+        return new RetrievalResult(result.getIds(), result.getDocuments(), result.getMetadatas(), result.getDistances())
+            .toContextString();
+    }
+}
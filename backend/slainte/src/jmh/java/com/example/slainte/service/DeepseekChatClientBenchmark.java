@@ -0,0 +1,31 @@
+package com.example.slainte.service;
+
+import com.example.slainte.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wrapping a RAG prompt with 20 documents of context in the model's system prompt
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeepseekChatClientBenchmark {
+
+    private DeepseekChatClient client;
+    private String prompt;
+
+    @Setup
+    public void setUp() {
+        client = new DeepseekChatClient(WebClient.builder());
+        prompt = "Context:\n" + BenchmarkData.retrievalResult(BenchmarkData.HITS).toContextString()
+            + "\n\nQuestion: Do I qualify for a GP visit card?";
+    }
+
+    @Benchmark
+    public String createOptimizedPrompt() {
+        return client.createOptimizedPrompt(prompt);
+    }
+}
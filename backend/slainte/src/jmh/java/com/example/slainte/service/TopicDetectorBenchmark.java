@@ -0,0 +1,62 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.TopicProperties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Topic detection, run once per chat request, with the shipped dictionary and with 500 topics
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicDetectorBenchmark {
+
+    // A topic listed first, one listed further down and one that falls back to keywords
+    @Param({
+        "Do I qualify for a GP visit card?",
+        "Where can I get a flu vaccine for my child?",
+        "How do I renew the prescription for my inhaler online?"
+    })
+    public String query;
+
+    @Param({"shipped", "500"})
+    public String dictionary;
+
+    private TopicDetector detector;
+    private String[] words;
+
+    @Setup
+    public void setUp() {
+        if (dictionary.equals("shipped")) {
+            detector = new TopicDetector(new TopicProperties());
+        } else {
+            // The shipped topics after 500 synthetic ones, so they are matched at the lowest priority
+            TopicDetector.Dictionary large = new TopicDetector.Dictionary();
+            for (int i = 0; i < Integer.parseInt(dictionary); i++) {
+                large.getTopics().add(new TopicDetector.Topic("Condition " + i,
+                        List.of("condition " + i + " ", "syndrome " + i + " ")));
+            }
+            large.getTopics().add(new TopicDetector.Topic("GP Visit Card", List.of("gp visit card")));
+            large.getTopics().add(new TopicDetector.Topic("Vaccines", List.of("vaccine", "vaccination")));
+            large.setStopwords(List.of("about", "with", "what", "where", "information", "tell"));
+            detector = new TopicDetector(large);
+        }
+        words = query.split("\\s+");
+    }
+
+    @Benchmark
+    public String detect() {
+        return detector.detect(query);
+    }
+
+    @Benchmark
+    public void isStopword(Blackhole blackhole) {
+        for (String word : words) {
+            blackhole.consume(detector.isStopword(word));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.slainte.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A latency distribution for a stub, written as {@code fixed:20ms}, {@code uniform:10ms:50ms}
+ * or {@code lognormal:200ms:0.5}. A log-normal latency is given by its median and shape:
+ * 0 is fixed, 0.5 puts p99 at about 3x the median, 1 at about 10x.
+ */
+public final class Latency {
+
+    private enum Kind { FIXED, UNIFORM, LOGNORMAL }
+
+    private final String spec;
+    private final Kind kind;
+    private final long nanos;
+    private final long maxNanos;
+    private final double shape;
+
+    private Latency(String spec, Kind kind, long nanos, long maxNanos, double shape) {
+        this.spec = spec;
+        this.kind = kind;
+        this.nanos = nanos;
+        this.maxNanos = maxNanos;
+        this.shape = shape;
+    }
+
+    public static Latency parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    if (parts.length == 2) {
+                        return new Latency(spec, Kind.FIXED, toNanos(parts[1]), 0, 0);
+                    }
+                    break;
+                case "uniform":
+                    if (parts.length == 3 && toNanos(parts[1]) <= toNanos(parts[2])) {
+                        return new Latency(spec, Kind.UNIFORM, toNanos(parts[1]), toNanos(parts[2]), 0);
+                    }
+                    break;
+                case "lognormal":
+                    if (parts.length == 3 && Double.parseDouble(parts[2]) >= 0) {
+                        return new Latency(spec, Kind.LOGNORMAL, toNanos(parts[1]), 0, Double.parseDouble(parts[2]));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid latency '" + spec + "': " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException(
+                "Invalid latency '" + spec + "', expected fixed:<d>, uniform:<min>:<max> or lognormal:<median>:<shape>");
+    }
+
+    private static long toNanos(String duration) {
+        return DurationStyle.detectAndParse(duration).toNanos();
+    }
+
+    public long sampleNanos() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (kind) {
+            case FIXED -> nanos;
+            case UNIFORM -> nanos == maxNanos ? nanos : random.nextLong(nanos, maxNanos + 1);
+            case LOGNORMAL -> (long) (nanos * Math.exp(shape * random.nextGaussian()));
+        };
+    }
+
+    /**
+     * Blocks the calling thread for one sampled latency
+     */
+    public void sleep() throws InterruptedException {
+        sleepNanos(sampleNanos());
+    }
+
+    static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.slainte.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends chat requests from a fixed number of workers, each waiting for its response before
+ * sending the next (a closed loop), so the backend always has {@code concurrency} requests in flight.
+ * Requests sent during the warm-up are not measured.
+ */
+public class LoadDriver {
+    private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+    private static final String[] QUESTIONS = {
+        "Do I qualify for a GP visit card?",
+        "How do I apply for a medical card?",
+        "Where can I get the flu vaccine?",
+        "What should I do in a mental health emergency?",
+        "How can I manage my blood pressure?",
+        "What maternity services are available during pregnancy?",
+        "Which services are there for older people living at home?",
+        "How do I get a repeat prescription from my doctor?"
+    };
+    private static final int MAX_SAMPLE_ERRORS = 5;
+
+    private final URI chatUri;
+    private final LoadTestSettings settings;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public LoadDriver(URI chatUri, LoadTestSettings settings) {
+        this.chatUri = chatUri;
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public LoadReport run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + settings.getWarmup().toNanos();
+        long measureUntil = measureFrom + settings.getDuration().toNanos();
+        logger.info("Driving {} with {} concurrent requests: {} warm-up, {} measured",
+                chatUri, settings.getConcurrency(), settings.getWarmup(), settings.getDuration());
+
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < settings.getConcurrency(); i++) {
+            Worker worker = new Worker(measureFrom, measureUntil);
+            worker.thread = new Thread(worker, "load-" + i);
+            worker.thread.start();
+            workers.add(worker);
+        }
+
+        long lastCompletion = measureFrom;
+        long errors = 0;
+        List<String> sampleErrors = new ArrayList<>();
+        long[] latencies = new long[0];
+        for (Worker worker : workers) {
+            worker.thread.join();
+            lastCompletion = Math.max(lastCompletion, worker.lastCompletion);
+            errors += worker.errors;
+            for (String error : worker.sampleErrors) {
+                if (sampleErrors.size() < MAX_SAMPLE_ERRORS) {
+                    sampleErrors.add(error);
+                }
+            }
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+        }
+        return new LoadReport(latencies, errors, lastCompletion - measureFrom, sampleErrors);
+    }
+
+    private HttpRequest request() {
+        try {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("messages", List.of(Map.of("role", "user", "content", nextQuestion())));
+            body.put("useRag", settings.isUseRag());
+            return HttpRequest.newBuilder(chatUri)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(2))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rotates through the configured number of distinct questions, or numbers every question so none repeats
+     */
+    private String nextQuestion() {
+        long n = sequence.getAndIncrement();
+        int distinct = settings.getDistinctQueries();
+        long variant = distinct > 0 ? n % distinct : n;
+        return QUESTIONS[(int) (variant % QUESTIONS.length)] + " (" + variant + ")";
+    }
+
+    private final class Worker implements Runnable {
+        private final long measureFrom;
+        private final long measureUntil;
+        private final List<String> sampleErrors = new ArrayList<>();
+        private Thread thread;
+        private long[] latencies = new long[1_024];
+        private int count;
+        private long errors;
+        private long lastCompletion;
+
+        Worker(long measureFrom, long measureUntil) {
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+        }
+
+        @Override
+        public void run() {
+            long sent;
+            while ((sent = System.nanoTime()) < measureUntil) {
+                String error = null;
+                try {
+                    HttpResponse<String> response = httpClient.send(request(), HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() != 200) {
+                        error = "HTTP " + response.statusCode();
+                    } else if (response.body().startsWith("Error")) {
+                        // The backend answers 200 with the error text when the LLM call fails
+                        error = response.body();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                }
+                long completed = System.nanoTime();
+                if (sent < measureFrom) {
+                    continue;
+                }
+                lastCompletion = completed;
+                if (error != null) {
+                    errors++;
+                    if (sampleErrors.size() < MAX_SAMPLE_ERRORS) {
+                        sampleErrors.add(error.length() > 200 ? error.substring(0, 200) : error);
+                    }
+                } else {
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = completed - sent;
+                }
+            }
+        }
+    }
+}
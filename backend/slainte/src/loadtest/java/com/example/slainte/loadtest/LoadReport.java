@@ -0,0 +1,92 @@
+package com.example.slainte.loadtest;
+
+import java.util.*;
+
+/**
+ * Throughput and latency percentiles of the requests sent during the measurement window
+ */
+public final class LoadReport {
+
+    private final long requests;
+    private final long errors;
+    private final double elapsedSeconds;
+    private final long[] sortedNanos;
+    private final List<String> sampleErrors;
+
+    LoadReport(long[] latencyNanos, long errors, long elapsedNanos, List<String> sampleErrors) {
+        this.sortedNanos = latencyNanos.clone();
+        Arrays.sort(this.sortedNanos);
+        this.requests = sortedNanos.length + errors;
+        this.errors = errors;
+        this.elapsedSeconds = elapsedNanos / 1e9;
+        this.sampleErrors = List.copyOf(sampleErrors);
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getErrorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    /**
+     * Successful responses per second
+     */
+    public double getThroughput() {
+        return elapsedSeconds > 0 ? sortedNanos.length / elapsedSeconds : 0;
+    }
+
+    /**
+     * Latency of successful responses at the given percentile (nearest rank), in milliseconds
+     */
+    public double percentileMillis(double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sortedNanos.length);
+        return toMillis(sortedNanos[Math.max(0, Math.min(rank, sortedNanos.length) - 1)]);
+    }
+
+    public double meanMillis() {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (long nanos : sortedNanos) {
+            total += nanos;
+        }
+        return toMillis(total / sortedNanos.length);
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("requests", requests);
+        map.put("errors", errors);
+        map.put("elapsedSeconds", Math.round(elapsedSeconds * 100) / 100.0);
+        map.put("throughputPerSecond", Math.round(getThroughput() * 100) / 100.0);
+        map.put("meanMs", meanMillis());
+        map.put("p50Ms", percentileMillis(50));
+        map.put("p95Ms", percentileMillis(95));
+        map.put("p99Ms", percentileMillis(99));
+        map.put("maxMs", percentileMillis(100));
+        map.put("sampleErrors", sampleErrors);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "requests=%d errors=%d throughput=%.1f/s mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                requests, errors, getThroughput(), meanMillis(), percentileMillis(50), percentileMillis(95),
+                percentileMillis(99), percentileMillis(100));
+    }
+}
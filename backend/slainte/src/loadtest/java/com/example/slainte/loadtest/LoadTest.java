@@ -0,0 +1,93 @@
+package com.example.slainte.loadtest;
+
+import com.example.slainte.SlainteApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of {@code /api/llm/chat} against the stub services, run in the loadtest profile:
+ * {@code mvn -P loadtest test [-Dloadtest.concurrency=64 -Dloadtest.duration=60s ...]}.
+ * <p>
+ * The backend runs in this JVM on a random port with its real configuration, only pointed at the
+ * stubs, so the latency above the stubs' own is the backend's overhead. The report is logged and
+ * written, with the settings and stub call counts, to target/loadtest-result.json.
+ * <p>
+ * A second, fixed scenario keeps 120 long generations in flight as a regression check of the
+ * Ollama connection pool; run one alone with {@code -Dtest=LoadTest#chatThroughputAndLatency}.
+ */
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    @Test
+    public void chatThroughputAndLatency() throws Exception {
+        run(LoadTestSettings.fromSystemProperties(), "target/loadtest-result.json");
+    }
+
+    /**
+     * More generations in flight than the default per-host pool has connections, each holding its
+     * connection longer than the default wait for one; every request must still be answered
+     */
+    @Test
+    public void longGenerationsBeyondTheDefaultPoolSize() throws Exception {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        properties.setProperty("loadtest.concurrency", "120");
+        properties.setProperty("loadtest.warmup", "5s");
+        properties.setProperty("loadtest.duration", "30s");
+        properties.setProperty("loadtest.max-error-rate", "0");
+        properties.setProperty("loadtest.ollama.tokens", "1000");
+        properties.setProperty("loadtest.ollama.token-interval", "fixed:12ms");
+        run(LoadTestSettings.from(properties), "target/loadtest-long-generations-result.json");
+    }
+
+    private void run(LoadTestSettings settings, String resultFile) throws Exception {
+        try (StubServers stubs = new StubServers(settings)) {
+            stubs.start();
+            try (ConfigurableApplicationContext backend = startBackend(settings, stubs)) {
+                int port = ((WebServerApplicationContext) backend).getWebServer().getPort();
+                LoadReport report = new LoadDriver(URI.create("http://localhost:" + port + "/api/llm/chat"), settings).run();
+
+                logger.info("Load test result: {}", report);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("settings", settings.toMap());
+                result.put("result", report.toMap());
+                result.put("stubCalls", stubs.getCalls());
+                new ObjectMapper().writerWithDefaultPrettyPrinter()
+                        .writeValue(new File(resultFile), result);
+
+                assertTrue(report.getRequests() > 0, "No request completed");
+                assertTrue(report.getErrorRate() <= settings.getMaxErrorRate(),
+                        "Error rate " + report.getErrorRate() + " above " + settings.getMaxErrorRate() + ": " + report.toMap());
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startBackend(LoadTestSettings settings, StubServers stubs) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        // Per-request info logging would otherwise dominate the console
+        properties.put("logging.level.com.example.slainte", "WARN");
+        properties.put("slainte.embedding.mode", settings.getEmbeddingMode());
+        properties.put("slainte.embedding.proxy-url", stubs.getEmbeddingProxyUrl());
+        properties.put("slainte.embedding.ollama-url", stubs.getOllamaEmbedUrl());
+        properties.putAll(settings.getAppProperties());
+
+        // As arguments, since default properties would lose to application.properties
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(SlainteApplication.class).run(args);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.slainte.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Load test parameters, read from {@code loadtest.*} system properties (pass them with -D on the Maven command line).
+ * <p>
+ * Any {@code loadtest.app.<property>} is passed on to the backend as {@code <property>}, e.g.
+ * {@code -Dloadtest.app.slainte.semantic-cache.enabled=false}.
+ */
+public final class LoadTestSettings {
+
+    private static final String PREFIX = "loadtest.";
+    private static final String APP_PREFIX = PREFIX + "app.";
+
+    // Load
+    private int concurrency = 16;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(30);
+    private int distinctQueries = 0;
+    private boolean useRag = true;
+    private double maxErrorRate = 0.01;
+
+    // Stubs; ChromaDB and Ollama must be on the ports the backend calls
+    private int chromaPort = 8000;
+    private int ollamaPort = 11434;
+    private String embeddingMode = "proxy";
+    private Latency embedLatency = Latency.parse("lognormal:15ms:0.3");
+    private Latency chromaLatency = Latency.parse("lognormal:30ms:0.5");
+    private int chromaHits = 20;
+    private int documentChars = 1_000;
+    private Latency prefillLatency = Latency.parse("lognormal:150ms:0.4");
+    private Latency tokenInterval = Latency.parse("fixed:10ms");
+    private int responseTokens = 100;
+
+    private final Map<String, Object> appProperties = new LinkedHashMap<>();
+
+    public static LoadTestSettings fromSystemProperties() {
+        return from(System.getProperties());
+    }
+
+    static LoadTestSettings from(Properties properties) {
+        LoadTestSettings settings = new LoadTestSettings();
+        Map<String, String> values = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(APP_PREFIX)) {
+                settings.appProperties.put(name.substring(APP_PREFIX.length()), properties.getProperty(name));
+            } else if (name.startsWith(PREFIX)) {
+                values.put(name.substring(PREFIX.length()), properties.getProperty(name).trim());
+            }
+        }
+
+        settings.concurrency = intValue(values, "concurrency", settings.concurrency, 1);
+        settings.warmup = durationValue(values, "warmup", settings.warmup);
+        settings.duration = durationValue(values, "duration", settings.duration);
+        settings.distinctQueries = intValue(values, "distinct-queries", settings.distinctQueries, 0);
+        settings.useRag = Boolean.parseBoolean(values.getOrDefault("use-rag", String.valueOf(settings.useRag)));
+        settings.maxErrorRate = Double.parseDouble(values.getOrDefault("max-error-rate", String.valueOf(settings.maxErrorRate)));
+
+        settings.chromaPort = intValue(values, "chroma.port", settings.chromaPort, 1);
+        settings.ollamaPort = intValue(values, "ollama.port", settings.ollamaPort, 1);
+        settings.embeddingMode = values.getOrDefault("embedding.mode", settings.embeddingMode);
+        settings.embedLatency = latencyValue(values, "embedding.latency", settings.embedLatency);
+        settings.chromaLatency = latencyValue(values, "chroma.latency", settings.chromaLatency);
+        settings.chromaHits = intValue(values, "chroma.hits", settings.chromaHits, 0);
+        settings.documentChars = intValue(values, "chroma.document-chars", settings.documentChars, 1);
+        settings.prefillLatency = latencyValue(values, "ollama.prefill-latency", settings.prefillLatency);
+        settings.tokenInterval = latencyValue(values, "ollama.token-interval", settings.tokenInterval);
+        settings.responseTokens = intValue(values, "ollama.tokens", settings.responseTokens, 1);
+
+        if (!settings.embeddingMode.equals("proxy") && !settings.embeddingMode.equals("ollama")) {
+            throw new IllegalArgumentException("loadtest.embedding.mode must be proxy or ollama");
+        }
+        return settings;
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue, int min) {
+        String value = values.get(name);
+        int parsed = value != null ? Integer.parseInt(value) : defaultValue;
+        if (parsed < min) {
+            throw new IllegalArgumentException(PREFIX + name + " must be at least " + min);
+        }
+        return parsed;
+    }
+
+    private static Duration durationValue(Map<String, String> values, String name, Duration defaultValue) {
+        String value = values.get(name);
+        return value != null ? DurationStyle.detectAndParse(value) : defaultValue;
+    }
+
+    private static Latency latencyValue(Map<String, String> values, String name, Latency defaultValue) {
+        String value = values.get(name);
+        return value != null ? Latency.parse(value) : defaultValue;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * How many different questions are asked in rotation; 0 makes every question unique, so no cache is hit
+     */
+    public int getDistinctQueries() {
+        return distinctQueries;
+    }
+
+    public boolean isUseRag() {
+        return useRag;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    public int getChromaPort() {
+        return chromaPort;
+    }
+
+    public int getOllamaPort() {
+        return ollamaPort;
+    }
+
+    public String getEmbeddingMode() {
+        return embeddingMode;
+    }
+
+    public Latency getEmbedLatency() {
+        return embedLatency;
+    }
+
+    public Latency getChromaLatency() {
+        return chromaLatency;
+    }
+
+    public int getChromaHits() {
+        return chromaHits;
+    }
+
+    public int getDocumentChars() {
+        return documentChars;
+    }
+
+    public Latency getPrefillLatency() {
+        return prefillLatency;
+    }
+
+    public Latency getTokenInterval() {
+        return tokenInterval;
+    }
+
+    public int getResponseTokens() {
+        return responseTokens;
+    }
+
+    public Map<String, Object> getAppProperties() {
+        return appProperties;
+    }
+
+    /**
+     * The settings as they are reported next to the results
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("concurrency", concurrency);
+        map.put("warmup", warmup.toString());
+        map.put("duration", duration.toString());
+        map.put("distinctQueries", distinctQueries);
+        map.put("useRag", useRag);
+        map.put("embeddingMode", embeddingMode);
+        map.put("embeddingLatency", embedLatency.toString());
+        map.put("chromaLatency", chromaLatency.toString());
+        map.put("chromaHits", chromaHits);
+        map.put("documentChars", documentChars);
+        map.put("prefillLatency", prefillLatency.toString());
+        map.put("tokenInterval", tokenInterval.toString());
+        map.put("responseTokens", responseTokens);
+        map.put("appProperties", appProperties);
+        return map;
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.slainte.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-JVM stand-ins for the services behind the chat pipeline, answering with realistic
+ * payloads after a latency drawn from the configured distributions:
+ * <ul>
+ *   <li>Ollama: {@code /api/generate} (whole or streamed as NDJSON) and {@code /api/embed}</li>
+ *   <li>the Flask embedding proxy: {@code /embed}</li>
+ *   <li>ChromaDB: {@code /api/v1/collections/{uuid}/query} and {@code /get}, which lists the
+ *   {@code source} metadata of a corpus whose GP visit card and medical card documents are routed</li>
+ * </ul>
+ * Embeddings are derived from the text, so the same question always gets the same vector.
+ */
+public class StubServers implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StubServers.class);
+
+    private static final int DIMENSION = 768;
+    private static final String MODEL = "deepseek-r1:1.5b";
+    private static final String[] WORDS = {
+        "You", "can", "apply", "for", "a", "GP", "visit", "card", "online", "or", "by", "post.",
+        "Your", "family", "doctor", "will", "confirm", "whether", "you", "qualify."
+    };
+    // Named like the ingested HSE pages, so the topic dictionary's source patterns match some of them
+    private static final String[] SOURCES = {
+        "HSE_Services_gp-visit-cards_eligibility.pdf", "HSE_Services_medical-cards_apply.pdf",
+        "HSE_Services_flu-vaccine.pdf", "HSE_Services_mental-health-supports.pdf",
+        "HSE_Condition_Pages_Blood-Pressure.pdf", "HSE_Services_maternity.pdf",
+        "HSE_Services_older-people.pdf", "HSE_Services_prescriptions.pdf"
+    };
+    private static final int CHUNKS_PER_SOURCE = 25;
+
+    private final LoadTestSettings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor;
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final byte[] chromaResponse;
+    private HttpServer embeddingProxy;
+
+    public StubServers(LoadTestSettings settings) throws IOException {
+        this.settings = settings;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.chromaResponse = objectMapper.writeValueAsBytes(chromaQueryResponse(settings.getChromaHits(), settings.getDocumentChars()));
+    }
+
+    /**
+     * Binds all stubs; the embedding proxy takes any free port, see {@link #getEmbeddingProxyUrl()}
+     */
+    public void start() throws IOException {
+        HttpServer ollama = bind(settings.getOllamaPort());
+        ollama.createContext("/api/generate", handler("ollama.generate", this::generate));
+        ollama.createContext("/api/embed", handler("ollama.embed", this::ollamaEmbed));
+
+        embeddingProxy = bind(0);
+        embeddingProxy.createContext("/embed", handler("proxy.embed", this::proxyEmbed));
+
+        HttpServer chroma = bind(settings.getChromaPort());
+        HttpHandler chromaQuery = handler("chroma.query", this::chromaQuery);
+        HttpHandler chromaGet = handler("chroma.get", this::chromaGet);
+        chroma.createContext("/api/v1/collections/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/query")) {
+                chromaQuery.handle(exchange);
+            } else if (path.endsWith("/get")) {
+                chromaGet.handle(exchange);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        });
+
+        for (HttpServer server : servers) {
+            server.start();
+        }
+        logger.info("Stubs listening: Ollama on {}, embedding proxy on {}, ChromaDB on {}",
+                settings.getOllamaPort(), embeddingProxy.getAddress().getPort(), settings.getChromaPort());
+    }
+
+    private HttpServer bind(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 1_024);
+        server.setExecutor(executor);
+        servers.add(server);
+        return server;
+    }
+
+    public String getEmbeddingProxyUrl() {
+        return "http://localhost:" + embeddingProxy.getAddress().getPort() + "/embed";
+    }
+
+    public String getOllamaEmbedUrl() {
+        return "http://localhost:" + settings.getOllamaPort() + "/api/embed";
+    }
+
+    /**
+     * Requests served per stub endpoint
+     */
+    public Map<String, Long> getCalls() {
+        Map<String, Long> counts = new TreeMap<>();
+        calls.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface StubHandler {
+        void handle(HttpExchange exchange, JsonNode request) throws Exception;
+    }
+
+    private HttpHandler handler(String endpoint, StubHandler stub) {
+        AtomicLong count = calls.computeIfAbsent(endpoint, key -> new AtomicLong());
+        return exchange -> {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                count.incrementAndGet();
+                stub.handle(exchange, objectMapper.readTree(exchange.getRequestBody()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.warn("Stub {} failed: {}", endpoint, e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void generate(HttpExchange exchange, JsonNode request) throws Exception {
+        long start = System.nanoTime();
+        settings.getPrefillLatency().sleep();
+        long prefill = System.nanoTime() - start;
+        int tokens = settings.getResponseTokens();
+
+        if (request.path("stream").asBoolean(false)) {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            long generateStart = System.nanoTime();
+            for (int i = 0; i < tokens; i++) {
+                settings.getTokenInterval().sleep();
+                Map<String, Object> chunk = new LinkedHashMap<>();
+                chunk.put("model", MODEL);
+                chunk.put("response", token(i));
+                chunk.put("done", false);
+                writeLine(body, chunk);
+            }
+            writeLine(body, stats(Map.of("response", "", "done", true), request, tokens, prefill,
+                    System.nanoTime() - generateStart, System.nanoTime() - start));
+            return;
+        }
+
+        long generate = 0;
+        for (int i = 0; i < tokens; i++) {
+            generate += settings.getTokenInterval().sampleNanos();
+        }
+        Latency.sleepNanos(generate);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            text.append(token(i));
+        }
+        respond(exchange, stats(Map.of("response", text.toString().trim(), "done", true), request, tokens, prefill,
+                generate, System.nanoTime() - start));
+    }
+
+    private Map<String, Object> stats(Map<String, Object> fields, JsonNode request, int tokens,
+                                      long prefill, long generate, long total) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("model", MODEL);
+        response.putAll(fields);
+        response.put("total_duration", total);
+        response.put("prompt_eval_count", request.path("prompt").asText().length() / 4);
+        response.put("prompt_eval_duration", prefill);
+        response.put("eval_count", tokens);
+        response.put("eval_duration", generate);
+        return response;
+    }
+
+    private static String token(int index) {
+        return " " + WORDS[index % WORDS.length];
+    }
+
+    private void ollamaEmbed(HttpExchange exchange, JsonNode request) throws Exception {
+        settings.getEmbedLatency().sleep();
+        List<float[]> embeddings = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            for (JsonNode text : input) {
+                embeddings.add(embedding(text.asText()));
+            }
+        } else {
+            embeddings.add(embedding(input.asText()));
+        }
+        respond(exchange, Map.of("model", request.path("model").asText(), "embeddings", embeddings));
+    }
+
+    private void proxyEmbed(HttpExchange exchange, JsonNode request) throws Exception {
+        settings.getEmbedLatency().sleep();
+        respond(exchange, Map.of("embedding", embedding(request.path("text").asText())));
+    }
+
+    private void chromaQuery(HttpExchange exchange, JsonNode request) throws Exception {
+        settings.getChromaLatency().sleep();
+        respond(exchange, chromaResponse);
+    }
+
+    private void chromaGet(HttpExchange exchange, JsonNode request) throws Exception {
+        settings.getChromaLatency().sleep();
+        respond(exchange, chromaGetResponse(request.path("offset").asInt(0), request.path("limit").asInt(Integer.MAX_VALUE)));
+    }
+
+    /**
+     * A unit vector seeded by the text
+     */
+    static float[] embedding(String text) {
+        Random random = new Random(text.hashCode());
+        float[] values = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            values[i] = (float) random.nextGaussian();
+            norm += values[i] * values[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            values[i] *= scale;
+        }
+        return values;
+    }
+
+    /**
+     * A query response in ChromaDB's shape (one nested list per field) with documents of the given length
+     */
+    static Map<String, Object> chromaQueryResponse(int hits, int documentChars) {
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        for (int i = 0; i < hits; i++) {
+            ids.add("chunk-" + i);
+            StringBuilder document = new StringBuilder(documentChars + 16);
+            for (int word = i; document.length() < documentChars; word++) {
+                document.append(WORDS[word % WORDS.length]).append(word % 40 == 39 ? "\n\n" : " ");
+            }
+            documents.add(document.substring(0, documentChars));
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("source", "hse-guide-" + (i % 4) + ".pdf");
+            metadata.put("page", i + 1);
+            metadatas.add(metadata);
+            distances.add(0.25 + i * 0.015);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("ids", List.of(ids));
+        response.put("documents", List.of(documents));
+        response.put("metadatas", List.of(metadatas));
+        response.put("distances", List.of(distances));
+        response.put("embeddings", null);
+        response.put("uris", null);
+        response.put("data", null);
+        response.put("included", List.of("metadatas", "documents", "distances"));
+        return response;
+    }
+
+    /**
+     * One page of a get response in ChromaDB's shape (one flat list per field), with the metadata only
+     */
+    static Map<String, Object> chromaGetResponse(int offset, int limit) {
+        int total = SOURCES.length * CHUNKS_PER_SOURCE;
+        List<String> ids = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        for (int i = Math.max(0, offset); i < total && ids.size() < limit; i++) {
+            ids.add("chunk-" + i);
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("source", SOURCES[i % SOURCES.length]);
+            metadata.put("page", i / SOURCES.length + 1);
+            metadatas.add(metadata);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("ids", ids);
+        response.put("metadatas", metadatas);
+        response.put("documents", null);
+        response.put("embeddings", null);
+        response.put("included", List.of("metadatas"));
+        return response;
+    }
+
+    private void writeLine(OutputStream body, Map<String, Object> line) throws IOException {
+        body.write(objectMapper.writeValueAsBytes(line));
+        body.write('\n');
+        body.flush();
+    }
+
+    private void respond(HttpExchange exchange, Object body) throws IOException {
+        respond(exchange, objectMapper.writeValueAsBytes(body));
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
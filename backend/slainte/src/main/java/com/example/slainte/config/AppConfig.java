@@ -2,38 +2,57 @@ package com.example.slainte.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
-import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties({CacheProperties.class, SemanticCacheProperties.class,
+        VectorStoreProperties.class, EmbeddingProperties.class, HttpClientProperties.class,
+        RetrievalLogProperties.class, FallbackHedgeProperties.class, TopicProperties.class,
+        PromptBudgetProperties.class})
 public class AppConfig {
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder
-            .setConnectTimeout(Duration.ofSeconds(10))  // Connection timeout
-            .setReadTimeout(Duration.ofSeconds(30))     // Read timeout
-            .build();
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        return createCacheManager(cacheProperties);
     }
-    
-    @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+
+    /**
+     * Builds one bounded Caffeine cache per configured name. Caffeine's W-TinyLFU policy
+     * admits new entries only when they are likely to be used more than the ones they evict,
+     * so a stream of one-off queries cannot flush frequently used embeddings and results.
+     * The caches are asynchronous so {@code @Cacheable} also applies to methods returning
+     * {@code Mono}; blocking and reactive variants of a method share the same entries.
+     */
+    public static CaffeineCacheManager createCacheManager(CacheProperties cacheProperties) {
+        return createCacheManager(cacheProperties, ForkJoinPool.commonPool());
     }
-    
-    @Bean
-    public CacheManager cacheManager() {
-        // Add chromaDirectResults to the cache names
-        return new ConcurrentMapCacheManager(
-            "embeddings", 
-            "chromaResults", 
-            "chromaDirectResults"
-        );
+
+    /**
+     * Variant running eviction and policy maintenance on {@code executor}; tests pass
+     * {@code Runnable::run} so a write's evictions have happened when it returns
+     */
+    public static CaffeineCacheManager createCacheManager(CacheProperties cacheProperties, Executor executor) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAsyncCacheMode(true);
+        // Only the configured caches exist - an unknown cache name fails fast instead of growing unbounded
+        cacheManager.setCacheNames(cacheProperties.getCaches().keySet());
+
+        cacheProperties.getCaches().forEach((name, spec) ->
+            cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                .maximumWeight(spec.getMaxBytes())
+                .weigher(new CacheWeigher(spec.getMaxEntries(), spec.getMaxBytes()))
+                .expireAfterWrite(spec.getTtl())
+                .recordStats()
+                .executor(executor)
+                .buildAsync()));
+
+        return cacheManager;
     }
-}
\ No newline at end of file
+}
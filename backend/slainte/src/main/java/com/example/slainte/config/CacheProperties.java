@@ -0,0 +1,78 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-cache limits for the application caches (prefix {@code slainte.cache}).
+ * Every cache is bounded by entry count, estimated bytes and time-to-live.
+ */
+@ConfigurationProperties(prefix = "slainte.cache")
+public class CacheProperties {
+
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    public CacheProperties() {
+        // Defaults for the caches used by the services; overridable per cache in application.properties
+        // Embeddings are ~3 KB each (768 floats), so 10,000 entries stay well under 64 MB
+        caches.put("embeddings", new Spec(10_000, 64L * 1024 * 1024, Duration.ofHours(24)));
+        // Query results hold up to 20 documents each; keep them shorter-lived as the collection changes
+        caches.put("chromaResults", new Spec(2_000, 64L * 1024 * 1024, Duration.ofMinutes(30)));
+        // Typed results of the retrieval path; kept apart from the formatted strings in chromaResults
+        caches.put("chromaRetrievals", new Spec(2_000, 64L * 1024 * 1024, Duration.ofMinutes(30)));
+        caches.put("chromaDirectResults", new Spec(2_000, 64L * 1024 * 1024, Duration.ofMinutes(30)));
+    }
+
+    public Map<String, Spec> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, Spec> caches) {
+        this.caches = caches;
+    }
+
+    /**
+     * Limits for a single cache
+     */
+    public static class Spec {
+        private long maxEntries = 1_000;
+        private long maxBytes = 16L * 1024 * 1024;
+        private Duration ttl = Duration.ofMinutes(30);
+
+        public Spec() {
+        }
+
+        public Spec(long maxEntries, long maxBytes, Duration ttl) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.ttl = ttl;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.slainte.config;
+
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Weighs cache entries by their estimated retained heap size in bytes.
+ * <p>
+ * Each entry weighs at least {@code maxBytes / maxEntries}, so a cache bounded by
+ * {@code maximumWeight(maxBytes)} can hold neither more than {@code maxEntries}
+ * entries nor more than {@code maxBytes} estimated bytes.
+ */
+public class CacheWeigher implements Weigher<Object, Object> {
+
+    // Rough 64-bit JVM (compressed oops) overheads used by the estimates
+    private static final int OBJECT_HEADER = 16;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int MAP_ENTRY_OVERHEAD = 32;
+    private static final int BOXED_NUMBER = 16;
+    private static final int UNKNOWN_OBJECT = 256;
+
+    private final int minimumWeight;
+
+    public CacheWeigher(long maxEntries, long maxBytes) {
+        long perEntry = maxEntries > 0 ? Math.max(1, maxBytes / maxEntries) : 1;
+        this.minimumWeight = (int) Math.min(Integer.MAX_VALUE, perEntry);
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long bytes = estimateBytes(key) + estimateBytes(value) + MAP_ENTRY_OVERHEAD;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(minimumWeight, bytes));
+    }
+
+    /**
+     * Estimates the retained size of the value types stored in the application caches
+     */
+    public static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            // Assume UTF-16 storage so the estimate never undercounts non-Latin-1 text
+            return STRING_OVERHEAD + 2L * ((String) value).length();
+        }
+        if (value instanceof Embedding) {
+            // float array + two fingerprint longs + the 32-character hex fingerprint
+            return OBJECT_HEADER + ARRAY_HEADER + (long) Float.BYTES * ((Embedding) value).size()
+                    + 2 * Long.BYTES + STRING_OVERHEAD + 64;
+        }
+        if (value instanceof RetrievalResult) {
+            RetrievalResult result = (RetrievalResult) value;
+            return OBJECT_HEADER + estimateBytes(result.getIds()) + estimateBytes(result.getDocuments())
+                    + estimateBytes(result.getMetadatas()) + estimateBytes(result.getDistances())
+                    + estimateBytes(result.getError())
+                    // The formatted context string is memoized on first use and roughly doubles the documents
+                    + estimateBytes(result.getDocuments());
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return BOXED_NUMBER;
+        }
+        if (value instanceof Collection) {
+            long bytes = OBJECT_HEADER + ARRAY_HEADER;
+            for (Object element : (Collection<?>) value) {
+                bytes += REFERENCE + estimateBytes(element);
+            }
+            return bytes;
+        }
+        if (value instanceof Map) {
+            long bytes = OBJECT_HEADER + ARRAY_HEADER;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += MAP_ENTRY_OVERHEAD + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        }
+        return UNKNOWN_OBJECT;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the embedding client (prefix {@code slainte.embedding})
+ */
+@ConfigurationProperties(prefix = "slainte.embedding")
+public class EmbeddingProperties {
+
+    // "proxy" sends one text per request to the Flask service, "ollama" batches texts into Ollama's /api/embed
+    private String mode = "proxy";
+
+    private String proxyUrl = "http://localhost:5000/embed";
+
+    private String ollamaUrl = "http://localhost:11434/api/embed";
+
+    private String model = "nomic-embed-text";
+
+    private final Batch batch = new Batch();
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public boolean isOllamaMode() {
+        return "ollama".equalsIgnoreCase(mode);
+    }
+
+    public String getProxyUrl() {
+        return proxyUrl;
+    }
+
+    public void setProxyUrl(String proxyUrl) {
+        this.proxyUrl = proxyUrl;
+    }
+
+    public String getOllamaUrl() {
+        return ollamaUrl;
+    }
+
+    public void setOllamaUrl(String ollamaUrl) {
+        this.ollamaUrl = ollamaUrl;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Coalescing of concurrent embedding calls in ollama mode
+     */
+    public static class Batch {
+
+        // Texts sent in one /api/embed request; a full batch is sent immediately
+        private int maxSize = 32;
+
+        // How long the first text of a batch waits for others to join it
+        private Duration maxWait = Duration.ofMillis(5);
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for running the fallback search alongside the primary one (prefix {@code slainte.fallback-hedge})
+ */
+@ConfigurationProperties(prefix = "slainte.fallback-hedge")
+public class FallbackHedgeProperties {
+
+    private boolean enabled = true;
+
+    // Hedge while at least this share of recent successful primary retrievals was too short
+    private double rateThreshold = 0.2;
+
+    // Weight of the latest primary retrieval in that share; higher reacts faster and forgets sooner
+    private double smoothing = 0.1;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getRateThreshold() {
+        return rateThreshold;
+    }
+
+    public void setRateThreshold(double rateThreshold) {
+        this.rateThreshold = rateThreshold;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.slainte.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.AddressUtils;
+
+import java.net.InetSocketAddress;
+
+/**
+ * The one outbound HTTP client of the application. ChromaDB, the embedding service and Ollama
+ * are all called through a single Reactor Netty connection provider, which keeps a pool of
+ * keep-alive connections per host, so a request reuses an open connection instead of paying
+ * for a new TCP handshake. WebClient, RestTemplate and RestClient (used by Spring AI) are
+ * all built on it. Hosts with their own limits, such as Ollama's long generations, get a pool
+ * sized for them so they cannot starve, or be starved by, the short ChromaDB and embedding calls.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public HttpPoolMetrics httpPoolMetrics() {
+        return new HttpPoolMetrics();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider connectionProvider(HttpClientProperties properties, HttpPoolMetrics httpPoolMetrics) {
+        ConnectionProvider.Builder builder = configurePool(ConnectionProvider.builder("slainte"),
+            properties, new HttpClientProperties.Host(), httpPoolMetrics);
+        for (HttpClientProperties.Host host : properties.getHosts().values()) {
+            // A host-specific pool starts from Reactor Netty's defaults, so every setting is applied again
+            builder.forRemoteHost(remoteAddress(host.getAddress()),
+                spec -> configurePool(spec, properties, host, httpPoolMetrics));
+        }
+        return builder.build();
+    }
+
+    private static <S extends ConnectionProvider.ConnectionPoolSpec<S>> S configurePool(
+            S spec, HttpClientProperties properties, HttpClientProperties.Host host, HttpPoolMetrics httpPoolMetrics) {
+        return spec
+            .maxConnections(host.getMaxConnections() != null
+                ? host.getMaxConnections() : properties.getMaxConnections())
+            .pendingAcquireMaxCount(host.getPendingAcquireMaxCount() != null
+                ? host.getPendingAcquireMaxCount() : properties.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(host.getPendingAcquireTimeout() != null
+                ? host.getPendingAcquireTimeout() : properties.getPendingAcquireTimeout())
+            .maxIdleTime(properties.getMaxIdleTime())
+            .maxLifeTime(properties.getMaxLifeTime())
+            .evictInBackground(properties.getEvictionInterval())
+            .metrics(true, () -> httpPoolMetrics);
+    }
+
+    /**
+     * The address Reactor Netty keys a host's pool by: unresolved for names, resolved for IP literals
+     */
+    static InetSocketAddress remoteAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port but got " + address);
+        }
+        return AddressUtils.createUnresolved(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    @Bean
+    public HttpClient httpClient(ConnectionProvider connectionProvider, HttpClientProperties properties) {
+        return HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+            .responseTimeout(properties.getResponseTimeout())
+            .keepAlive(true);
+    }
+
+    /**
+     * A new builder for every client, so setting one client's base URL cannot leak into another
+     */
+    @Bean
+    @Scope("prototype")
+    public WebClient.Builder webClientBuilder(HttpClient httpClient) {
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, HttpClient httpClient) {
+        return builder
+            .requestFactory(() -> new ReactorClientHttpRequestFactory(httpClient))
+            .build();
+    }
+
+    /**
+     * Makes the RestClient that Spring AI's Ollama API is built with use the shared pools
+     */
+    @Bean
+    public RestClientCustomizer pooledRestClientCustomizer(HttpClient httpClient) {
+        return builder -> builder.requestFactory(new ReactorClientHttpRequestFactory(httpClient));
+    }
+}
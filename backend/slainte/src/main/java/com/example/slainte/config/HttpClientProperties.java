@@ -0,0 +1,173 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection pool limits and timeouts of the shared outbound HTTP client (prefix {@code slainte.http}).
+ * The pool limits apply to every host unless overridden for it under {@code hosts}.
+ */
+@ConfigurationProperties(prefix = "slainte.http")
+public class HttpClientProperties {
+
+    // Open connections per host (ChromaDB, the embedding proxy and Ollama each get their own pool)
+    private int maxConnections = 50;
+
+    // Requests allowed to wait for a connection per host once every connection is in use
+    private int pendingAcquireMaxCount = 500;
+
+    // How long a request waits for a free connection before failing
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+
+    // Idle keep-alive connections are closed after this long
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+
+    // Connections older than this are closed when released, so DNS and server changes are picked up
+    private Duration maxLifeTime = Duration.ofMinutes(10);
+
+    // How often idle and expired connections are closed in the background
+    private Duration evictionInterval = Duration.ofSeconds(30);
+
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    // Longest wait for the next bytes of a response; a non-streamed LLM answer sends nothing until it is done
+    private Duration responseTimeout = Duration.ofMinutes(5);
+
+    // Pool limits for particular hosts, by a descriptive name
+    private Map<String, Host> hosts = new LinkedHashMap<>();
+
+    public HttpClientProperties() {
+        // A generation holds its connection for as long as it runs, and Ollama queues requests beyond
+        // its parallel slots itself; waiting for a connection must not fail before the response could
+        hosts.put("ollama", new Host("localhost:11434", 512, 2_000, Duration.ofMinutes(5)));
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getPendingAcquireMaxCount() {
+        return pendingAcquireMaxCount;
+    }
+
+    public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+        this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+    }
+
+    public Duration getPendingAcquireTimeout() {
+        return pendingAcquireTimeout;
+    }
+
+    public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+    }
+
+    public Duration getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public void setMaxIdleTime(Duration maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public Duration getMaxLifeTime() {
+        return maxLifeTime;
+    }
+
+    public void setMaxLifeTime(Duration maxLifeTime) {
+        this.maxLifeTime = maxLifeTime;
+    }
+
+    public Duration getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(Duration evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public Map<String, Host> getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(Map<String, Host> hosts) {
+        this.hosts = hosts;
+    }
+
+    /**
+     * Pool limits for one host; limits left unset are the defaults above
+     */
+    public static class Host {
+        // host:port as it appears in the request URLs
+        private String address;
+        private Integer maxConnections;
+        private Integer pendingAcquireMaxCount;
+        private Duration pendingAcquireTimeout;
+
+        public Host() {
+        }
+
+        public Host(String address, Integer maxConnections, Integer pendingAcquireMaxCount,
+                    Duration pendingAcquireTimeout) {
+            this.address = address;
+            this.maxConnections = maxConnections;
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Integer getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(Integer pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.slainte.config;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the live gauges of every per-host pool of the shared connection provider.
+ * Reactor Netty registers a pool the first time a host is called and removes it when the
+ * pool is disposed; the gauges are read when the stats are requested, so nothing is sampled.
+ */
+public final class HttpPoolMetrics implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(key(id, remoteAddress), new Pool(poolName, remoteAddress, metrics));
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(key(id, remoteAddress));
+    }
+
+    /**
+     * Active, idle and allocated connections and pending acquires per host, plus the totals
+     */
+    public Map<String, Object> getStats() {
+        int active = 0;
+        int idle = 0;
+        int allocated = 0;
+        int pending = 0;
+        List<Map<String, Object>> hosts = new ArrayList<>();
+        for (Pool pool : pools.values()) {
+            ConnectionPoolMetrics metrics = pool.metrics;
+            active += metrics.acquiredSize();
+            idle += metrics.idleSize();
+            allocated += metrics.allocatedSize();
+            pending += metrics.pendingAcquireSize();
+
+            Map<String, Object> host = new LinkedHashMap<>();
+            host.put("pool", pool.name);
+            host.put("remoteAddress", String.valueOf(pool.remoteAddress));
+            host.put("active", metrics.acquiredSize());
+            host.put("idle", metrics.idleSize());
+            host.put("allocated", metrics.allocatedSize());
+            host.put("pendingAcquires", metrics.pendingAcquireSize());
+            host.put("maxConnections", metrics.maxAllocatedSize());
+            host.put("maxPendingAcquires", metrics.maxPendingAcquireSize());
+            hosts.add(host);
+        }
+        hosts.sort(Comparator.comparing(host -> (String) host.get("remoteAddress")));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", active);
+        stats.put("idle", idle);
+        stats.put("allocated", allocated);
+        stats.put("pendingAcquires", pending);
+        stats.put("hosts", hosts);
+        return stats;
+    }
+
+    private static String key(String id, SocketAddress remoteAddress) {
+        return id + "-" + remoteAddress;
+    }
+
+    private static final class Pool {
+        private final String name;
+        private final SocketAddress remoteAddress;
+        private final ConnectionPoolMetrics metrics;
+
+        Pool(String name, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            this.name = name;
+            this.remoteAddress = remoteAddress;
+            this.metrics = metrics;
+        }
+    }
+}
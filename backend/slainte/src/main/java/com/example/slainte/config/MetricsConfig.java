@@ -0,0 +1,73 @@
+package com.example.slainte.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * The meter registry behind the pipeline metrics, and the binding of the Caffeine caches to it
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Long enough that the histogram never rotates while the process runs
+    private static final Duration HISTOGRAM_EXPIRY = Duration.ofDays(365 * 100);
+
+    /**
+     * An in-memory registry, scraped in Prometheus text format at /api/admin/metrics/prometheus.
+     * The actuator is not a dependency, so nothing else defines one; another registry bean replaces it.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public MeterRegistry meterRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(cumulativeHistograms());
+        return registry;
+    }
+
+    /**
+     * Keeps histogram buckets counting since startup, like the {@code +Inf} bucket and {@code _count}.
+     * Micrometer's buckets are time-windowed by default and empty out two minutes after the last
+     * recording, which leaves the exported buckets decreasing and breaks {@code histogram_quantile}.
+     * The Prometheus registry configures its histograms the same way.
+     */
+    public static MeterFilter cumulativeHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                    .expiry(HISTOGRAM_EXPIRY)
+                    .bufferLength(1)
+                    .build()
+                    .merge(config);
+            }
+        };
+    }
+
+    /**
+     * Publishes hit, miss, eviction and size meters for every Caffeine cache once all caches exist
+     */
+    @Bean
+    public SmartInitializingSingleton cacheMetricsBinder(MeterRegistry meterRegistry, CacheManager cacheManager) {
+        return () -> {
+            for (String name : cacheManager.getCacheNames()) {
+                Cache cache = cacheManager.getCache(name);
+                if (cache instanceof CaffeineCache caffeineCache) {
+                    CaffeineCacheMetrics.monitor(meterRegistry, caffeineCache.getNativeCache(), name);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.slainte.config;
+
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the meters of a registry in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * Meter names are converted the way Prometheus' own registry does it: dots become
+ * underscores, counters get a {@code _total} suffix and timers are reported in seconds.
+ * Timers and summaries with histogram buckets are written as histograms with cumulative
+ * {@code le} buckets, the others as summaries with a count and a sum. The gauges a registry
+ * derives from a histogram's buckets are skipped, as the histogram itself carries them.
+ */
+public final class PrometheusTextFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private PrometheusTextFormat() {
+    }
+
+    /**
+     * Every meter of the registry, grouped into one family per metric name and sorted by name
+     */
+    public static String scrape(MeterRegistry registry) {
+        Map<String, Family> families = new TreeMap<>();
+        for (Meter meter : registry.getMeters()) {
+            if (meter.getId().syntheticAssociation() != null) {
+                continue;
+            }
+            collect(meter, families);
+        }
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            family.writeTo(out);
+        }
+        return out.toString();
+    }
+
+    private static void collect(Meter meter, Map<String, Family> families) {
+        Meter.Id id = meter.getId();
+        String name = sanitize(id.getName());
+        String help = id.getDescription();
+        List<Tag> tags = id.getTags();
+
+        meter.use(
+            gauge -> family(families, name, "gauge", help).sample(name, tags, gauge.value()),
+            counter -> family(families, name + "_total", "counter", help)
+                .sample(name + "_total", tags, counter.count()),
+            timer -> distribution(families, name + "_seconds", help, tags, timer.takeSnapshot(), true),
+            summary -> distribution(families, name, help, tags, summary.takeSnapshot(), false),
+            longTaskTimer -> family(families, name + "_active_count", "gauge", help)
+                .sample(name + "_active_count", tags, longTaskTimer.activeTasks()),
+            timeGauge -> family(families, name + "_seconds", "gauge", help)
+                .sample(name + "_seconds", tags, timeGauge.value(TimeUnit.SECONDS)),
+            functionCounter -> family(families, name + "_total", "counter", help)
+                .sample(name + "_total", tags, functionCounter.count()),
+            functionTimer -> family(families, name + "_seconds", "summary", help)
+                .sample(name + "_seconds_count", tags, functionTimer.count())
+                .sample(name + "_seconds_sum", tags, functionTimer.totalTime(TimeUnit.SECONDS)),
+            other -> {
+                for (Measurement measurement : other.measure()) {
+                    String sampleName = name + "_" + sanitize(measurement.getStatistic().getTagValueRepresentation());
+                    family(families, sampleName, "untyped", help).sample(sampleName, tags, measurement.getValue());
+                }
+            });
+    }
+
+    private static void distribution(Map<String, Family> families, String name, String help, List<Tag> tags,
+                                     HistogramSnapshot snapshot, boolean seconds) {
+        CountAtBucket[] buckets = snapshot.histogramCounts();
+        Family family = family(families, name, buckets.length > 0 ? "histogram" : "summary", help);
+        for (CountAtBucket bucket : buckets) {
+            double le = seconds ? bucket.bucket(TimeUnit.SECONDS) : bucket.bucket();
+            family.sample(name + "_bucket", tags, "le", format(le), bucket.count());
+        }
+        if (buckets.length > 0) {
+            family.sample(name + "_bucket", tags, "le", "+Inf", snapshot.count());
+        }
+        family.sample(name + "_count", tags, snapshot.count());
+        family.sample(name + "_sum", tags, seconds ? snapshot.total(TimeUnit.SECONDS) : snapshot.total());
+
+        family(families, name + "_max", "gauge", help)
+            .sample(name + "_max", tags, seconds ? snapshot.max(TimeUnit.SECONDS) : snapshot.max());
+    }
+
+    private static Family family(Map<String, Family> families, String name, String type, String help) {
+        return families.computeIfAbsent(name, key -> new Family(key, type, help));
+    }
+
+    /**
+     * Metric and label names may only contain letters, digits, underscores and colons
+     */
+    static String sanitize(String name) {
+        StringBuilder sanitized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                    || (c >= '0' && c <= '9' && i > 0);
+            sanitized.append(valid ? c : '_');
+        }
+        return sanitized.toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    /**
+     * The samples of one metric name, written under a single HELP and TYPE line
+     */
+    private static final class Family {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final StringBuilder samples = new StringBuilder();
+
+        Family(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+
+        Family sample(String sampleName, List<Tag> tags, double value) {
+            return sample(sampleName, tags, null, null, value);
+        }
+
+        Family sample(String sampleName, List<Tag> tags, String extraLabel, String extraValue, double value) {
+            samples.append(sampleName);
+            if (!tags.isEmpty() || extraLabel != null) {
+                samples.append('{');
+                boolean first = true;
+                for (Tag tag : tags) {
+                    if (!first) {
+                        samples.append(',');
+                    }
+                    samples.append(sanitize(tag.getKey())).append("=\"");
+                    appendEscaped(samples, tag.getValue());
+                    samples.append('"');
+                    first = false;
+                }
+                if (extraLabel != null) {
+                    if (!first) {
+                        samples.append(',');
+                    }
+                    samples.append(extraLabel).append("=\"").append(extraValue).append('"');
+                }
+                samples.append('}');
+            }
+            samples.append(' ').append(format(value)).append('\n');
+            return this;
+        }
+
+        void writeTo(StringBuilder out) {
+            if (help != null && !help.isEmpty()) {
+                out.append("# HELP ").append(name).append(' ');
+                // HELP text escapes only backslashes and line breaks
+                out.append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            }
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            out.append(samples);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for packing retrieved context into a token budget (prefix {@code slainte.prompt-budget})
+ */
+@ConfigurationProperties(prefix = "slainte.prompt-budget")
+public class PromptBudgetProperties {
+
+    // When disabled every retrieved chunk is sent; the tokens used are still estimated and reported
+    private boolean enabled = true;
+
+    // Estimated tokens the retrieved chunks may take up in a prompt, separators and sources included
+    private int contextTokens = 1024;
+
+    // Stitch retrieved chunks that are neighbours in their document, sending their overlap once
+    private boolean mergeAdjacentChunks = true;
+
+    // Weight of the latest prompt in the estimator's calibration against the model's token counts
+    private double calibrationSmoothing = 0.05;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getContextTokens() {
+        return contextTokens;
+    }
+
+    public void setContextTokens(int contextTokens) {
+        this.contextTokens = contextTokens;
+    }
+
+    public boolean isMergeAdjacentChunks() {
+        return mergeAdjacentChunks;
+    }
+
+    public void setMergeAdjacentChunks(boolean mergeAdjacentChunks) {
+        this.mergeAdjacentChunks = mergeAdjacentChunks;
+    }
+
+    public double getCalibrationSmoothing() {
+        return calibrationSmoothing;
+    }
+
+    public void setCalibrationSmoothing(double calibrationSmoothing) {
+        this.calibrationSmoothing = calibrationSmoothing;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings for the retrieval event log (prefix {@code slainte.retrieval-log})
+ */
+@ConfigurationProperties(prefix = "slainte.retrieval-log")
+public class RetrievalLogProperties {
+
+    private boolean enabled = true;
+
+    // Fraction of successful retrievals that are logged, from 0 (none) to 1 (all); failed ones are always logged
+    private double sampleRate = 0.1;
+
+    // Characters of retrieved context written per event; the rest is cut off
+    private int maxPayloadChars = 2_000;
+
+    // Events waiting for the writer thread; further events are dropped rather than slowing requests down
+    private int queueCapacity = 1_024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxPayloadChars() {
+        return maxPayloadChars;
+    }
+
+    public void setMaxPayloadChars(int maxPayloadChars) {
+        this.maxPayloadChars = maxPayloadChars;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
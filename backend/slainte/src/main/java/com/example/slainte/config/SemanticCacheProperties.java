@@ -0,0 +1,54 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the semantic answer cache (prefix {@code slainte.semantic-cache})
+ */
+@ConfigurationProperties(prefix = "slainte.semantic-cache")
+public class SemanticCacheProperties {
+
+    private boolean enabled = true;
+
+    // Minimum cosine similarity between query embeddings for a stored answer to be reused
+    private double similarityThreshold = 0.95;
+
+    // Stored answers per (RAG flag, prompt template) partition; the oldest is replaced when full
+    private int maxEntries = 1_000;
+
+    private Duration ttl = Duration.ofHours(6);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public void setSimilarityThreshold(double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.time.Duration;
+
+/**
+ * Settings for topic detection and topic routing (prefix {@code slainte.topics})
+ */
+@ConfigurationProperties(prefix = "slainte.topics")
+public class TopicProperties {
+
+    // JSON file with the topics, their phrases and sources, and the stopwords skipped in keyword topics
+    private Resource dictionary = new ClassPathResource("topics.json");
+
+    private Routing routing = new Routing();
+
+    public Resource getDictionary() {
+        return dictionary;
+    }
+
+    public void setDictionary(Resource dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+
+    /**
+     * Restricting the vector search of a query to the documents of its topic
+     */
+    public static class Routing {
+        // Search only the sources of a detected topic, widening to the whole corpus when they fall short
+        private boolean enabled = true;
+        // Topics whose sources are more than this fraction of the corpus are searched unrestricted
+        private double maxFraction = 0.5;
+        // Records per page when the collection's sources are listed at startup
+        private int loadBatchSize = 1000;
+        // When the sources could not be listed, how long until a query tries again
+        private Duration retryInterval = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getMaxFraction() {
+            return maxFraction;
+        }
+
+        public void setMaxFraction(double maxFraction) {
+            this.maxFraction = maxFraction;
+        }
+
+        public int getLoadBatchSize() {
+            return loadBatchSize;
+        }
+
+        public void setLoadBatchSize(int loadBatchSize) {
+            this.loadBatchSize = loadBatchSize;
+        }
+
+        public Duration getRetryInterval() {
+            return retryInterval;
+        }
+
+        public void setRetryInterval(Duration retryInterval) {
+            this.retryInterval = retryInterval;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.slainte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Selects and tunes the vector store used for retrieval (prefix {@code slainte.vector-store})
+ */
+@ConfigurationProperties(prefix = "slainte.vector-store")
+public class VectorStoreProperties {
+
+    // "chroma" queries the ChromaDB server; "hnsw", "segment" and "exact" serve queries in-process
+    private String type = "chroma";
+
+    // Records fetched from ChromaDB per request while loading the corpus into an embedded store
+    private int loadBatchSize = 500;
+
+    private Hnsw hnsw = new Hnsw();
+
+    private Segment segment = new Segment();
+
+    private Exact exact = new Exact();
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public Hnsw getHnsw() {
+        return hnsw;
+    }
+
+    public void setHnsw(Hnsw hnsw) {
+        this.hnsw = hnsw;
+    }
+
+    public Segment getSegment() {
+        return segment;
+    }
+
+    public void setSegment(Segment segment) {
+        this.segment = segment;
+    }
+
+    public Exact getExact() {
+        return exact;
+    }
+
+    public void setExact(Exact exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Graph parameters for the embedded HNSW index
+     */
+    public static class Hnsw {
+        // Links per node on the upper layers; layer 0 keeps twice as many
+        private int m = 16;
+
+        // Candidate list size while inserting; higher builds a better graph more slowly
+        private int efConstruction = 200;
+
+        // Candidate list size while searching; raised to topK when smaller
+        private int efSearch = 64;
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+    }
+
+    /**
+     * Location of the memory-mapped segment file used by the "segment" store
+     */
+    public static class Segment {
+        // Built from ChromaDB on first start when missing
+        private String path = "data/health_assistant.seg";
+
+        // Checks the CRC32C of the whole file on open, which reads every page once; the header is always validated
+        private boolean verifyChecksum = false;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public boolean isVerifyChecksum() {
+            return verifyChecksum;
+        }
+
+        public void setVerifyChecksum(boolean verifyChecksum) {
+            this.verifyChecksum = verifyChecksum;
+        }
+    }
+
+    /**
+     * Scoring for the brute-force "exact" store
+     */
+    public static class Exact {
+        // "l2" (squared Euclidean, ChromaDB's default space) or "cosine" (1 - cosine similarity)
+        private String metric = "l2";
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+    }
+}
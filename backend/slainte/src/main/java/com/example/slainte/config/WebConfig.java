@@ -16,6 +16,7 @@ public class WebConfig {
                         .allowedOrigins(getAllowedOrigins())  // ✅ Fetch from properties or use defaults
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("Content-Type", "Authorization") // ✅ Restrict to necessary headers
+                        .exposedHeaders("Server-Timing") // Per-stage latency of chat responses, read by the frontend
                         .allowCredentials(true); // ✅ Enable credentials (cookies, auth headers)
             }
         };
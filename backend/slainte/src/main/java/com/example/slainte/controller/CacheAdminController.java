@@ -0,0 +1,184 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.config.CacheProperties;
+import com.example.slainte.config.CacheWeigher;
+import com.example.slainte.service.ChromaDBLowLevelService;
+import com.example.slainte.service.EmbeddingService;
+import com.example.slainte.service.SemanticAnswerCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Admin endpoints to inspect the application caches and evict entries
+ */
+@RestController
+@RequestMapping("/api/admin/caches")
+public class CacheAdminController {
+
+    // Longest key shown when listing entries (embedding cache keys are full query texts)
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final CacheManager cacheManager;
+    private final CacheProperties cacheProperties;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final EmbeddingService embeddingService;
+    private final ChromaDBLowLevelService chromaDBService;
+
+    public CacheAdminController(CacheManager cacheManager, CacheProperties cacheProperties,
+                                SemanticAnswerCache semanticAnswerCache, EmbeddingService embeddingService,
+                                ChromaDBLowLevelService chromaDBService) {
+        this.cacheManager = cacheManager;
+        this.cacheProperties = cacheProperties;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.embeddingService = embeddingService;
+        this.chromaDBService = chromaDBService;
+    }
+
+    /**
+     * Size, limits and hit/miss/eviction counters for every cache
+     */
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> listCaches() {
+        List<Map<String, Object>> caches = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            CaffeineCache cache = findCache(name);
+            if (cache != null) {
+                caches.add(describe(name, cache));
+            }
+        }
+        return ResponseEntity.ok(caches);
+    }
+
+    /**
+     * Hit rate, entry count and lookup time of the semantic answer cache
+     */
+    @GetMapping("/semantic-answers")
+    public ResponseEntity<Map<String, Object>> getSemanticAnswerStats() {
+        return ResponseEntity.ok(semanticAnswerCache.getStats());
+    }
+
+    /**
+     * How many embedding and ChromaDB calls were collapsed into an identical call already in flight
+     */
+    @GetMapping("/single-flight")
+    public ResponseEntity<List<Map<String, Object>>> getSingleFlightStats() {
+        return ResponseEntity.ok(List.of(
+            embeddingService.getSingleFlightStats(),
+            chromaDBService.getSingleFlightStats()));
+    }
+
+    /**
+     * Removes every stored answer from the semantic answer cache
+     */
+    @DeleteMapping("/semantic-answers")
+    public ResponseEntity<Map<String, Object>> clearSemanticAnswers() {
+        semanticAnswerCache.clear();
+        return ResponseEntity.ok(semanticAnswerCache.getStats());
+    }
+
+    /**
+     * Statistics for one cache plus its entries (key and estimated size), up to the given limit
+     */
+    @GetMapping("/{name}")
+    public ResponseEntity<Map<String, Object>> getCache(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "100") int limit) {
+        CaffeineCache cache = findCache(name);
+        if (cache == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = describe(name, cache);
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : cache.getNativeCache().asMap().entrySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            Map<String, Object> entryInfo = new LinkedHashMap<>();
+            entryInfo.put("key", truncate(String.valueOf(entry.getKey())));
+            entryInfo.put("estimatedBytes",
+                CacheWeigher.estimateBytes(entry.getKey()) + CacheWeigher.estimateBytes(entry.getValue()));
+            entries.add(entryInfo);
+        }
+        response.put("entries", entries);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Evicts every entry of a cache
+     */
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Map<String, Object>> clearCache(@PathVariable String name) {
+        CaffeineCache cache = findCache(name);
+        if (cache == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        long removed = cache.getNativeCache().estimatedSize();
+        cache.clear();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("cache", name);
+        response.put("evicted", removed);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Evicts a single entry by its key
+     */
+    @DeleteMapping("/{name}/entries")
+    public ResponseEntity<Map<String, Object>> evictEntry(@PathVariable String name, @RequestParam String key) {
+        CaffeineCache cache = findCache(name);
+        if (cache == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("cache", name);
+        response.put("key", truncate(key));
+        response.put("evicted", cache.evictIfPresent(key));
+        return ResponseEntity.ok(response);
+    }
+
+    private CaffeineCache findCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        return cache instanceof CaffeineCache ? (CaffeineCache) cache : null;
+    }
+
+    private Map<String, Object> describe(String name, CaffeineCache cache) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = cache.getNativeCache();
+        // Apply pending evictions and weight updates so the reported sizes are current
+        nativeCache.cleanUp();
+        CacheStats stats = nativeCache.stats();
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", name);
+        info.put("size", nativeCache.estimatedSize());
+        // Weighted size is the sum of the per-entry byte estimates used for eviction
+        nativeCache.policy().eviction().ifPresent(eviction ->
+            eviction.weightedSize().ifPresent(bytes -> info.put("estimatedBytes", bytes)));
+
+        CacheProperties.Spec spec = cacheProperties.getCaches().get(name);
+        if (spec != null) {
+            info.put("maxEntries", spec.getMaxEntries());
+            info.put("maxBytes", spec.getMaxBytes());
+            info.put("ttlSeconds", spec.getTtl().getSeconds());
+        }
+
+        info.put("hits", stats.hitCount());
+        info.put("misses", stats.missCount());
+        info.put("hitRate", stats.hitRate());
+        info.put("evictions", stats.evictionCount());
+        return info;
+    }
+
+    private String truncate(String key) {
+        return key.length() <= MAX_KEY_LENGTH ? key : key.substring(0, MAX_KEY_LENGTH) + "...";
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.slainte.controller;
 
+import com.example.slainte.model.Embedding;
 import com.example.slainte.service.ChromaDBService;
 import com.example.slainte.service.EmbeddingService;
 import org.springframework.http.ResponseEntity;
@@ -25,10 +26,7 @@ public class ChromaDBController {
         
         try {
             // Create a simple test embedding (512 dimensions of 0.1)
-            List<Double> testEmbedding = new ArrayList<>();
-            for (int i = 0; i < 512; i++) {
-                testEmbedding.add(0.1);
-            }
+            Embedding testEmbedding = Embedding.filled(512, 0.1f);
             
             // Query ChromaDB with the test embedding
             String chromaResponse = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -60,7 +58,7 @@ public class ChromaDBController {
             }
             
             // Generate embedding for the query
-            List<Double> embedding = embeddingService.getEmbedding(query);
+            Embedding embedding = embeddingService.getEmbedding(query);
             
             // Query ChromaDB with the embedding
             String chromaResponse = chromaDBService.queryDatabase(embedding, 3);
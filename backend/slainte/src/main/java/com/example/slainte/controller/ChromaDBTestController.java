@@ -6,6 +6,7 @@ import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.slainte.model.Embedding;
 
 import java.util.*;
 
@@ -65,16 +66,11 @@ public class ChromaDBTestController {
             String url = CHROMADB_HOST + "/api/v1/collections/" + collectionName + "/query";
             
             // Create a simple embedding vector (all 0.1 values)
-            List<Double> embedding = new ArrayList<>();
-            for (int i = 0; i < 768; i++) {
-                embedding.add(0.1);
-            }
+            Embedding embedding = Embedding.filled(Embedding.DIMENSION, 0.1f);
             
             // Create the minimal required request body
             Map<String, Object> requestBody = new HashMap<>();
-            List<List<Double>> embeddings = new ArrayList<>();
-            embeddings.add(embedding);
-            requestBody.put("query_embeddings", embeddings);
+            requestBody.put("query_embeddings", List.of(embedding));
             requestBody.put("n_results", 1);
             
             // Convert to JSON
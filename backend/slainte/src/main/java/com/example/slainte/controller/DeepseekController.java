@@ -1,16 +1,39 @@
 package com.example.slainte.controller;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import com.example.slainte.dto.ChatRequest;
+import com.example.slainte.dto.LlmStreamChunk;
 import com.example.slainte.dto.Message;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.service.ContextPacker;
 import com.example.slainte.service.KnowledgeBaseService;
 import com.example.slainte.service.DeepseekChatClient;
+import com.example.slainte.service.FallbackPredictor;
+import com.example.slainte.service.PipelineMetrics;
+import com.example.slainte.service.PipelineMetrics.HedgeOutcome;
+import com.example.slainte.service.PipelineMetrics.Path;
+import com.example.slainte.service.PipelineMetrics.Stage;
+import com.example.slainte.service.SemanticAnswerCache;
+import com.example.slainte.service.StageTimings;
+import com.example.slainte.service.TopicDetector;
+import com.example.slainte.service.TopicRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/llm")
@@ -18,174 +41,530 @@ import java.util.Optional;
 public class DeepseekController {
     private static final Logger logger = LoggerFactory.getLogger(DeepseekController.class);
 
+    // Identifies how prompts are built; bump when formatPromptWithContext, the context packing, the chunk
+    // stitching or the system prompt changes so answers cached for the old template are not reused
+    static final String PROMPT_TEMPLATE_VERSION = "hse-context-v3";
+
     private final DeepseekChatClient chatClient;
     private final KnowledgeBaseService knowledgeBaseService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final PipelineMetrics pipelineMetrics;
+    private final FallbackPredictor fallbackPredictor;
+    private final TopicDetector topicDetector;
+    private final TopicRouter topicRouter;
+    private final ContextPacker contextPacker;
 
-    public DeepseekController(DeepseekChatClient chatClient, KnowledgeBaseService knowledgeBaseService) {
+    public DeepseekController(DeepseekChatClient chatClient, KnowledgeBaseService knowledgeBaseService,
+                              SemanticAnswerCache semanticAnswerCache, PipelineMetrics pipelineMetrics,
+                              FallbackPredictor fallbackPredictor, TopicDetector topicDetector,
+                              TopicRouter topicRouter, ContextPacker contextPacker) {
         this.chatClient = chatClient;
         this.knowledgeBaseService = knowledgeBaseService;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.pipelineMetrics = pipelineMetrics;
+        this.fallbackPredictor = fallbackPredictor;
+        this.topicDetector = topicDetector;
+        this.topicRouter = topicRouter;
+        this.contextPacker = contextPacker;
     }
 
+    /**
+     * Answers a chat request without blocking: the embedding, the vector store query and the
+     * LLM call are composed into one Mono, so no request thread waits while the model generates.
+     * Spring MVC completes the response asynchronously when the Mono emits.
+     * The Server-Timing header breaks the response time down by pipeline stage.
+     */
     @PostMapping("/chat")
-    public ResponseEntity<String> chatWithContext(@RequestBody ChatRequest chatRequest) {
-        try {
-            long startTime = System.currentTimeMillis();
-            
+    public Mono<ResponseEntity<String>> chatWithContext(@RequestBody ChatRequest chatRequest) {
+        long startTime = System.nanoTime();
+        StageTimings timings = new StageTimings();
+        
+        return Mono.defer(() -> {
             // Extract the latest user message
             Message latestUserMessage = extractLatestUserMessage(chatRequest);
             logger.info("Processing chat request: {}", latestUserMessage.getContent());
             
-            // Check if this is a symptom assessment start
-            boolean isStartingAssessment = false;
-            if (chatRequest.getMessages() != null) {
-                Optional<Message> startAssessmentMsg = chatRequest.getMessages().stream()
-                    .filter(m -> "system".equals(m.getRole()) && 
-                           m.getContent() != null && 
-                           m.getContent().contains("start assessment"))
-                    .findFirst();
-                
-                if (startAssessmentMsg.isPresent()) {
-                    isStartingAssessment = true;
-                    logger.info("Detected start of symptom assessment flow");
-                }
-            }
+            // Determine whether RAG should be used for this request
+            boolean useRag = resolveUseRag(chatRequest);
+            String userQuery = latestUserMessage.getContent();
             
-            // Check if the useRag flag is present and false
-            boolean useRag = true; // Default to true for backward compatibility
-            if (chatRequest.getUseRag() != null) {
-                useRag = chatRequest.getUseRag();
-            }
+            // Reuse the answer to a semantically equivalent question, skipping retrieval and generation
+            Mono<ResponseEntity<String>> cached = semanticAnswerCache
+                .lookupAsync(userQuery, useRag, PROMPT_TEMPLATE_VERSION)
+                .map(answer -> {
+                    logger.info("Request answered from semantic cache in {} ms", (System.nanoTime() - startTime) / 1_000_000);
+                    return ResponseEntity.ok(answer);
+                });
             
-            // Force useRag to false if this is a start assessment message
-            if (isStartingAssessment) {
-                useRag = false;
-                logger.info("Forcing RAG off for symptom assessment start");
-            }
-            
-            // Log whether RAG is being used for this request
-            logger.info("RAG usage for this request: {}", useRag ? "ENABLED" : "DISABLED");
-            
-            String finalPrompt;
+            Mono<ResponseEntity<String>> generated = Mono.defer(() -> buildPrompt(userQuery, useRag))
+                // Send the prompt to the AI model
+                .flatMap(prompt -> pipelineMetrics.time(Stage.LLM_TOTAL, chatClient.promptAsync(prompt)))
+                .flatMap(response -> semanticAnswerCache
+                    .storeAsync(userQuery, useRag, PROMPT_TEMPLATE_VERSION, response)
+                    .onErrorResume(e -> {
+                        logger.warn("Could not store answer in semantic cache: {}", e.getMessage());
+                        return Mono.empty();
+                    })
+                    .thenReturn(ResponseEntity.ok(response)))
+                .doOnNext(response -> logger.info("Request processed in {} ms", (System.nanoTime() - startTime) / 1_000_000));
             
-            if (useRag) {
-                // Only retrieve information from ChromaDB if useRag is true
-                String userQuery = latestUserMessage.getContent();
-                String topic = extractPrimaryTopic(userQuery);
-                
-                logger.info("Detected primary topic: {}", topic);
-                
-                // Perform the initial search
-                String retrievedInfo = knowledgeBaseService.search(userQuery);
-                
-                // Check if retrievedInfo contains an error or is too short
-                if (retrievedInfo.startsWith("Error:") || retrievedInfo.length() < 50) {
-                    logger.warn("Error or insufficient context retrieved: {}", retrievedInfo);
-                    
-                    // Try a more general search as fallback
-                    String fallbackQuery = topic + " information HSE";
-                    logger.info("Trying fallback query: {}", fallbackQuery);
-                    retrievedInfo = knowledgeBaseService.search(fallbackQuery);
+            return cached.switchIfEmpty(generated)
+                .map(response -> {
+                    timings.add(StageTimings.TOTAL, System.nanoTime() - startTime);
+                    return ResponseEntity.status(response.getStatusCode())
+                        .header(StageTimings.HEADER, timings.toServerTiming())
+                        .body(response.getBody());
+                });
+        })
+        // Every timed stage of this request adds itself to its timings
+        .contextWrite(timings::putInto)
+        .onErrorResume(e -> {
+            logger.error("Error processing chat request", e);
+            return Mono.just(ResponseEntity.badRequest().body("Error: " + e.getMessage()));
+        });
+    }
+    
+    /**
+     * Builds the prompt for a chat request, with retrieved context when RAG is enabled
+     */
+    private Mono<String> buildPrompt(String userQuery, boolean useRag) {
+        if (!useRag) {
+            // Skip RAG retrieval entirely
+            logger.info("Skipping RAG retrieval as requested");
+            return Mono.just(userQuery);
+        }
+        
+        // Only retrieve information from ChromaDB if useRag is true
+        String topic = topicDetector.detect(userQuery);
+        logger.info("Detected primary topic: {}", topic);
+        
+        return resolveContext(userQuery, topic)
+            // Only the most relevant chunks that fit the token budget go into the prompt
+            .map(retrieval -> {
+                ContextPacker.Packed packed = contextPacker.pack(retrieval);
+                logger.info("Context of {} chunks, about {} tokens", packed.getRetrieval().size(), packed.getTokens());
+                return packed.getRetrieval().toContextString();
+            })
+            .switchIfEmpty(Mono.fromSupplier(() -> {
+                logger.info("Using empty context placeholder");
+                return noContextFound(topic);
+            }))
+            .flatMap(retrievedInfo -> pipelineMetrics.time(Stage.PROMPT_ASSEMBLY,
+                // Format the prompt with retrieved context
+                Mono.fromSupplier(() -> formatPromptWithContext(retrievedInfo, userQuery, topic)))
+                .map(finalPrompt -> {
+                    logger.info("Using RAG context with length: {} for topic: {}", retrievedInfo.length(), topic);
                     
-                    if (retrievedInfo.startsWith("Error:") || retrievedInfo.length() < 50) {
+                    // Log the full formatted prompt for debugging
+                    logger.debug("==========FULL FORMATTED PROMPT==========");
+                    logger.debug(finalPrompt);
+                    logger.debug("==========END FORMATTED PROMPT==========");
+                    return finalPrompt;
+                }));
+    }
+    
+    /**
+     * Retrieves context for the query, retrying with a more general topic query when the first
+     * result is an error or too short. Completes empty when both are insufficient.
+     * While recent primary retrievals often needed the fallback, both are searched in parallel.
+     * The primary search is restricted to the documents of the topic when it has any.
+     */
+    private Mono<RetrievalResult> resolveContext(String userQuery, String topic) {
+        String fallbackQuery = topic + " information HSE";
+        Set<String> sources = topicRouter.route(topic);
+        Mono<RetrievalResult> primary = (sources.isEmpty()
+                ? knowledgeBaseService.retrieveAsync(userQuery)
+                : knowledgeBaseService.retrieveAsync(userQuery, sources))
+            .doOnNext(retrieval -> {
+                // A failed search says nothing about whether the query needs the fallback, and
+                // hedging while the backend fails would only double its load
+                if (!retrieval.hasError()) {
+                    fallbackPredictor.recordPrimary(isInsufficientContext(retrieval.toContextString()));
+                }
+            });
+        if (fallbackPredictor.shouldHedge()) {
+            return hedgedContext(primary, fallbackQuery, topic);
+        }
+        
+        return primary.flatMap(retrieval -> {
+            if (!isInsufficientContext(retrieval.toContextString())) {
+                return Mono.just(retrieval);
+            }
+            logger.warn("Error or insufficient context retrieved: {}", retrieval.toContextString());
+            
+            // Try a more general search as fallback
+            logger.info("Trying fallback query: {}", fallbackQuery);
+            pipelineMetrics.count(Path.FALLBACK);
+            return fallbackSearch(fallbackQuery)
+                .flatMap(fallback -> {
+                    if (isInsufficientContext(fallback.toContextString())) {
                         logger.warn("Fallback search also failed or insufficient");
-                        retrievedInfo = "No relevant information found about " + topic + " in the HSE knowledge base.";
-                        logger.info("Using empty context placeholder");
-                    } else {
-                        logger.info("Using fallback context for topic: {}", topic);
+                        return Mono.empty();
                     }
+                    logger.info("Using fallback context for topic: {}", topic);
+                    return Mono.just(fallback);
+                });
+        });
+    }
+    
+    /**
+     * Searches the primary and fallback queries at the same time, so retrieval takes as long as the
+     * slower of the two instead of both in turn. The primary result is still preferred: once it passes
+     * the quality check it is used and the fallback search is cancelled if it is still running. The
+     * fallback result is used only when the primary one is insufficient.
+     */
+    private Mono<RetrievalResult> hedgedContext(Mono<RetrievalResult> primary, String fallbackQuery, String topic) {
+        logger.info("Searching fallback query in parallel: {}", fallbackQuery);
+        Mono<Candidate> fallback = Mono.deferContextual(context -> {
+                // Its time overlaps the primary search, so it is not part of the sum of the stages
+                StageTimings timings = StageTimings.from(context);
+                if (timings != null) {
+                    timings.describe(StageTimings.FALLBACK, StageTimings.PARALLEL);
                 }
+                return fallbackSearch(fallbackQuery);
+            })
+            .map(retrieval -> new Candidate(retrieval, false));
+        
+        return Flux.merge(primary.map(retrieval -> new Candidate(retrieval, true)), fallback)
+            .filter(candidate -> !isInsufficientContext(candidate.retrieval.toContextString()))
+            // A usable primary result ends the race, cancelling the fallback search
+            .takeUntil(candidate -> candidate.primary)
+            .reduce((first, second) -> second.primary ? second : first)
+            .doOnNext(candidate -> {
+                if (candidate.primary) {
+                    pipelineMetrics.count(HedgeOutcome.PRIMARY);
+                } else {
+                    logger.info("Using fallback context for topic: {}", topic);
+                    pipelineMetrics.count(Path.FALLBACK);
+                    pipelineMetrics.count(HedgeOutcome.FALLBACK);
+                }
+            })
+            .map(candidate -> candidate.retrieval)
+            .switchIfEmpty(Mono.fromRunnable(() -> {
+                logger.warn("Primary and fallback search both failed or insufficient");
+                pipelineMetrics.count(Path.FALLBACK);
+                pipelineMetrics.count(HedgeOutcome.NEITHER);
+            }));
+    }
+    
+    /**
+     * Searches the fallback query, timed as a whole as the fallback stage. Its own embedding and
+     * vector query are left out of the request's embed and chroma timings, which are the primary search.
+     */
+    private Mono<RetrievalResult> fallbackSearch(String fallbackQuery) {
+        return pipelineMetrics.time(Stage.FALLBACK_SEARCH,
+            knowledgeBaseService.retrieveAsync(fallbackQuery).contextWrite(StageTimings::removeFrom));
+    }
+    
+    /**
+     * A retrieval in a hedged search, and whether it came from the primary query
+     */
+    private static class Candidate {
+        private final RetrievalResult retrieval;
+        private final boolean primary;
+        
+        Candidate(RetrievalResult retrieval, boolean primary) {
+            this.retrieval = retrieval;
+            this.primary = primary;
+        }
+    }
+    
+    /**
+     * Streaming chat endpoint over Server-Sent Events.
+     * Emits a "sources" event with the sources of the documents packed into the prompt and their
+     * estimated tokens, then one "token" event per generated token as Ollama streams them, then a final "stats" event.
+     * Time-to-first-token is the latency reported for this endpoint. The headers are sent
+     * before any stage runs, so the per-stage breakdown is in the stats event instead.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> chatStream(@RequestBody ChatRequest chatRequest) {
+        long startTime = System.nanoTime();
+        StageTimings timings = new StageTimings();
+        
+        return Mono.defer(() -> prepareStreamingPrompt(chatRequest))
+            .flatMapMany(prepared -> {
+                long llmStartTime = System.nanoTime();
+                AtomicLong firstTokenNanos = new AtomicLong();
+                AtomicInteger tokenCount = new AtomicInteger();
+                AtomicReference<LlmStreamChunk> finalChunk = new AtomicReference<>();
                 
-                // Format the prompt with retrieved context
-                finalPrompt = formatPromptWithContext(retrievedInfo, userQuery, topic);
-                logger.info("Using RAG context with length: {} for topic: {}", retrievedInfo.length(), topic);
+                Flux<ServerSentEvent<Map<String, Object>>> tokens = chatClient.promptStream(prepared.prompt)
+                    .doOnNext(chunk -> {
+                        if (chunk.isDone()) {
+                            finalChunk.set(chunk);
+                        }
+                    })
+                    .filter(chunk -> chunk.getResponse() != null && !chunk.getResponse().isEmpty())
+                    .map(chunk -> {
+                        if (firstTokenNanos.compareAndSet(0, System.nanoTime())) {
+                            logger.info("Time to first token: {} ms", 
+                                    (firstTokenNanos.get() - startTime) / 1_000_000);
+                            pipelineMetrics.record(Stage.LLM_FIRST_TOKEN, firstTokenNanos.get() - llmStartTime);
+                        }
+                        tokenCount.incrementAndGet();
+                        Map<String, Object> data = new HashMap<>();
+                        data.put("text", chunk.getResponse());
+                        return sseEvent("token", data);
+                    });
                 
-                // Log the full formatted prompt for debugging
-                logger.debug("==========FULL FORMATTED PROMPT==========");
-                logger.debug(finalPrompt);
-                logger.debug("==========END FORMATTED PROMPT==========");
-            } else {
-                // Skip RAG retrieval entirely
-                finalPrompt = latestUserMessage.getContent();
-                logger.info("Skipping RAG retrieval as requested");
-            }
-            
-            // Send the prompt to the AI model
-            String response = chatClient.prompt(finalPrompt);
-            
-            long endTime = System.currentTimeMillis();
-            logger.info("Request processed in {} ms", (endTime - startTime));
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error processing chat request", e);
-            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
-        }
+                Mono<ServerSentEvent<Map<String, Object>>> stats = Mono.fromSupplier(() -> {
+                    long endTime = System.nanoTime();
+                    Map<String, Object> data = new HashMap<>();
+                    long ttft = firstTokenNanos.get() > 0 ? firstTokenNanos.get() - startTime : endTime - startTime;
+                    data.put("timeToFirstTokenMs", ttft / 1_000_000);
+                    data.put("totalMs", (endTime - startTime) / 1_000_000);
+                    data.put("tokens", tokenCount.get());
+                    pipelineMetrics.record(Stage.LLM_TOTAL, endTime - llmStartTime);
+                    
+                    // Include Ollama's own statistics from the final chunk when present
+                    LlmStreamChunk last = finalChunk.get();
+                    pipelineMetrics.recordTokensPerSecond(tokensPerSecond(last, tokenCount.get(),
+                            firstTokenNanos.get() > 0 ? endTime - firstTokenNanos.get() : 0));
+                    addLlmTimings(timings, last, llmStartTime, firstTokenNanos.get(), endTime);
+                    timings.add(StageTimings.TOTAL, endTime - startTime);
+                    data.put("timings", timings.toMillis());
+                    if (last != null) {
+                        data.put("promptEvalCount", last.getPromptEvalCount());
+                        data.put("promptEvalDurationMs", nanosToMillis(last.getPromptEvalDuration()));
+                        data.put("evalCount", last.getEvalCount());
+                        data.put("evalDurationMs", nanosToMillis(last.getEvalDuration()));
+                    }
+                    
+                    logger.info("Streamed {} tokens, first token after {} ms, total {} ms", 
+                            tokenCount.get(), data.get("timeToFirstTokenMs"), data.get("totalMs"));
+                    return sseEvent("stats", data);
+                });
+                
+                return Flux.concat(Mono.just(sseEvent("sources", prepared.sources)), tokens, stats);
+            })
+            .contextWrite(timings::putInto)
+            .onErrorResume(e -> {
+                logger.error("Error processing streaming chat request", e);
+                Map<String, Object> data = new HashMap<>();
+                data.put("error", e.getMessage());
+                return Flux.just(sseEvent("error", data));
+            });
     }
     
     /**
-     * Diagnostic endpoint to see what would be sent to the LLM
+     * Diagnostic endpoint to see what would be sent to the LLM, with the time each stage took
+     * in the "timings" field and the Server-Timing header. The context is resolved, routed and
+     * packed the way chatWithContext does it, so the reported prompt is the one it would send.
      */
     @PostMapping("/debug")
-    public ResponseEntity<Map<String, Object>> debugChat(@RequestBody ChatRequest chatRequest) {
-        try {
-            Map<String, Object> result = new java.util.HashMap<>();
-            
+    public Mono<ResponseEntity<Map<String, Object>>> debugChat(@RequestBody ChatRequest chatRequest) {
+        long startTime = System.nanoTime();
+        StageTimings timings = new StageTimings();
+        Map<String, Object> result = new java.util.HashMap<>();
+        
+        return Mono.defer(() -> {
             // Extract the latest user message
             Message latestUserMessage = extractLatestUserMessage(chatRequest);
-            result.put("userMessage", latestUserMessage.getContent());
+            String userQuery = latestUserMessage.getContent();
+            result.put("userMessage", userQuery);
             
             // Get RAG info
-            boolean useRag = chatRequest.getUseRag() != null ? chatRequest.getUseRag() : true;
+            boolean useRag = resolveUseRag(chatRequest);
             result.put("useRag", useRag);
-            
-            if (useRag) {
-                // Get the context that would be retrieved
-                String userQuery = latestUserMessage.getContent();
-                
-                // Extract primary topic
-                String topic = extractPrimaryTopic(userQuery);
-                result.put("detectedTopic", topic);
-                
-                String retrievedInfo = knowledgeBaseService.search(userQuery);
-                result.put("retrievedContext", retrievedInfo);
-                result.put("retrievedContextLength", retrievedInfo.length());
-                
-                // Check for fallback if needed
-                if (retrievedInfo.startsWith("Error:") || retrievedInfo.length() < 50) {
-                    String fallbackQuery = topic + " information HSE";
-                    result.put("fallbackQuery", fallbackQuery);
-                    
-                    String fallbackInfo = knowledgeBaseService.search(fallbackQuery);
-                    result.put("fallbackContext", fallbackInfo);
-                    result.put("fallbackContextLength", fallbackInfo.length());
-                    
-                    // Which context would be used
-                    if (fallbackInfo.startsWith("Error:") || fallbackInfo.length() < 50) {
-                        result.put("finalContext", "No relevant information found.");
-                    } else {
-                        result.put("finalContext", fallbackInfo);
-                    }
-                } else {
-                    result.put("finalContext", retrievedInfo);
-                }
-                
-                // Format the final prompt
-                String finalPrompt = formatPromptWithContext(
-                    (String)result.get("finalContext"), 
-                    userQuery, 
-                    topic
-                );
-                result.put("finalPrompt", finalPrompt);
-            } else {
-                result.put("finalPrompt", latestUserMessage.getContent());
+            if (!useRag) {
+                result.put("finalPrompt", userQuery);
+                return Mono.just(result);
             }
             
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
+            // Extract primary topic and the sources its search is restricted to
+            String topic = topicDetector.detect(userQuery);
+            result.put("detectedTopic", topic);
+            result.put("routedSources", topicRouter.route(topic));
+            
+            return resolveContext(userQuery, topic)
+                .map(retrieval -> {
+                    result.put("retrievedContext", retrieval.toContextString());
+                    result.put("retrievedContextLength", retrieval.toContextString().length());
+                    ContextPacker.Packed packed = contextPacker.pack(retrieval);
+                    result.put("contextChunks", packed.getRetrieval().size());
+                    result.put("droppedChunks", packed.getDropped());
+                    result.put("contextTokens", packed.getTokens());
+                    return packed.getRetrieval().toContextString();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> noContextFound(topic)))
+                .flatMap(finalContext -> {
+                    result.put("finalContext", finalContext);
+                    return pipelineMetrics.time(Stage.PROMPT_ASSEMBLY,
+                        Mono.fromSupplier(() -> formatPromptWithContext(finalContext, userQuery, topic)));
+                })
+                .map(finalPrompt -> {
+                    result.put("finalPrompt", finalPrompt);
+                    return result;
+                });
+        })
+        .map(body -> {
+            timings.add(StageTimings.TOTAL, System.nanoTime() - startTime);
+            body.put("timings", timings.toMillis());
+            return ResponseEntity.ok()
+                .header(StageTimings.HEADER, timings.toServerTiming())
+                .body(body);
+        })
+        .contextWrite(timings::putInto)
+        .onErrorResume(e -> {
             logger.error("Error in debug chat", e);
             Map<String, Object> error = new java.util.HashMap<>();
             error.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(error);
+            return Mono.just(ResponseEntity.status(500).body(error));
+        });
+    }
+    
+    /**
+     * Resolves the prompt and source list for a streaming chat request.
+     * Applies the same RAG, assessment and fallback rules as chatWithContext.
+     */
+    private Mono<StreamingPrompt> prepareStreamingPrompt(ChatRequest chatRequest) {
+        Message latestUserMessage = extractLatestUserMessage(chatRequest);
+        String userQuery = latestUserMessage.getContent();
+        logger.info("Processing streaming chat request: {}", userQuery);
+        
+        Map<String, Object> sources = new HashMap<>();
+        boolean useRag = resolveUseRag(chatRequest);
+        sources.put("useRag", useRag);
+        
+        if (!useRag) {
+            sources.put("sources", List.of());
+            return Mono.just(new StreamingPrompt(userQuery, sources));
+        }
+        
+        String topic = topicDetector.detect(userQuery);
+        sources.put("topic", topic);
+        
+        return resolveContext(userQuery, topic)
+            .flatMap(retrieval -> {
+                ContextPacker.Packed packed = contextPacker.pack(retrieval);
+                sources.put("contextTokens", packed.getTokens());
+                sources.put("droppedChunks", packed.getDropped());
+                return streamingPrompt(packed.getRetrieval().toContextString(), packed.getRetrieval(),
+                    userQuery, topic, sources);
+            })
+            .switchIfEmpty(Mono.defer(() -> streamingPrompt(noContextFound(topic),
+                new RetrievalResult(null, null, null, null), userQuery, topic, sources)));
+    }
+    
+    private Mono<StreamingPrompt> streamingPrompt(String retrievedInfo, RetrievalResult retrieval, String userQuery,
+                                            String topic, Map<String, Object> sources) {
+        // Describe each retrieved document by its source, id and distance
+        List<Map<String, Object>> sourceList = new ArrayList<>();
+        for (int i = 0; i < retrieval.size(); i++) {
+            Map<String, Object> source = new HashMap<>();
+            if (i < retrieval.getMetadatas().size() && retrieval.getMetadatas().get(i) != null) {
+                source.put("source", retrieval.getMetadatas().get(i).get("source"));
+            }
+            if (i < retrieval.getIds().size()) {
+                source.put("id", retrieval.getIds().get(i));
+            }
+            if (i < retrieval.getDistances().size()) {
+                source.put("distance", retrieval.getDistances().get(i));
+            }
+            sourceList.add(source);
+        }
+        sources.put("sources", sourceList);
+        
+        return pipelineMetrics.time(Stage.PROMPT_ASSEMBLY,
+                Mono.fromSupplier(() -> formatPromptWithContext(retrievedInfo, userQuery, topic)))
+            .map(prompt -> new StreamingPrompt(prompt, sources));
+    }
+    
+    private String noContextFound(String topic) {
+        return "No relevant information found about " + topic + " in the HSE knowledge base.";
+    }
+    
+    /**
+     * Decide whether RAG should be used: honour the useRag flag (default true),
+     * but always disable it at the start of a symptom assessment
+     */
+    private boolean resolveUseRag(ChatRequest chatRequest) {
+        // Check if this is a symptom assessment start
+        boolean isStartingAssessment = false;
+        if (chatRequest.getMessages() != null) {
+            Optional<Message> startAssessmentMsg = chatRequest.getMessages().stream()
+                .filter(m -> "system".equals(m.getRole()) && 
+                       m.getContent() != null && 
+                       m.getContent().contains("start assessment"))
+                .findFirst();
+            
+            if (startAssessmentMsg.isPresent()) {
+                isStartingAssessment = true;
+                logger.info("Detected start of symptom assessment flow");
+            }
+        }
+        
+        // Check if the useRag flag is present and false
+        boolean useRag = true; // Default to true for backward compatibility
+        if (chatRequest.getUseRag() != null) {
+            useRag = chatRequest.getUseRag();
+        }
+        
+        // Force useRag to false if this is a start assessment message
+        if (isStartingAssessment) {
+            useRag = false;
+            logger.info("Forcing RAG off for symptom assessment start");
+        }
+        
+        // Log whether RAG is being used for this request
+        logger.info("RAG usage for this request: {}", useRag ? "ENABLED" : "DISABLED");
+        pipelineMetrics.count(useRag ? Path.RAG : Path.NO_RAG);
+        return useRag;
+    }
+    
+    /**
+     * Retrieved context is unusable if it is an error or too short to be informative
+     */
+    private boolean isInsufficientContext(String retrievedInfo) {
+        return retrievedInfo.startsWith("Error:") || retrievedInfo.length() < 50;
+    }
+    
+    private ServerSentEvent<Map<String, Object>> sseEvent(String name, Map<String, Object> data) {
+        return ServerSentEvent.<Map<String, Object>>builder()
+            .event(name)
+            .data(data)
+            .build();
+    }
+    
+    /**
+     * Prefill and generation time as reported by Ollama, or else split at the first streamed token
+     */
+    private void addLlmTimings(StageTimings timings, LlmStreamChunk last, long llmStartTime,
+                               long firstTokenTime, long endTime) {
+        if (last != null && last.getPromptEvalDuration() != null && last.getEvalDuration() != null) {
+            timings.add(StageTimings.LLM_PREFILL, last.getPromptEvalDuration());
+            timings.add(StageTimings.LLM_GENERATE, last.getEvalDuration());
+        } else if (firstTokenTime > 0) {
+            timings.add(StageTimings.LLM_PREFILL, firstTokenTime - llmStartTime);
+            timings.add(StageTimings.LLM_GENERATE, endTime - firstTokenTime);
+        }
+    }
+    
+    /**
+     * Generation speed as measured by Ollama, or else the streamed tokens over the time after the first one
+     */
+    private double tokensPerSecond(LlmStreamChunk last, int tokens, long generationNanos) {
+        if (last != null && last.getEvalCount() != null && last.getEvalDuration() != null
+                && last.getEvalDuration() > 0) {
+            return last.getEvalCount() * 1e9 / last.getEvalDuration();
+        }
+        return generationNanos > 0 ? tokens * 1e9 / generationNanos : 0;
+    }
+    
+    private Long nanosToMillis(Long nanos) {
+        return nanos != null ? nanos / 1_000_000 : null;
+    }
+    
+    /**
+     * Prompt and source metadata resolved before streaming starts
+     */
+    private static class StreamingPrompt {
+        private final String prompt;
+        private final Map<String, Object> sources;
+        
+        StreamingPrompt(String prompt, Map<String, Object> sources) {
+            this.prompt = prompt;
+            this.sources = sources;
         }
     }
     
@@ -214,66 +593,10 @@ public class DeepseekController {
         return firstMessage;
     }
 
-    /**
-     * Extract the primary topic from a user query
-     */
-    private String extractPrimaryTopic(String query) {
-        // This is a simple implementation that could be enhanced with NLP techniques
-        String lowerQuery = query.toLowerCase();
-        
-        // Check for common health topics in HSE context
-        if (lowerQuery.contains("gp visit card")) return "GP Visit Card";
-        if (lowerQuery.contains("medical card")) return "Medical Card";
-        if (lowerQuery.contains("hospital")) return "Hospitals";
-        if (lowerQuery.contains("emergency") || lowerQuery.contains("urgent care")) return "Emergency Services";
-        if (lowerQuery.contains("covid") || lowerQuery.contains("coronavirus")) return "COVID-19";
-        if (lowerQuery.contains("vaccine") || lowerQuery.contains("vaccination")) return "Vaccines";
-        if (lowerQuery.contains("mental health")) return "Mental Health";
-        if (lowerQuery.contains("diabetes")) return "Diabetes";
-        if (lowerQuery.contains("blood pressure") || lowerQuery.contains("hypertension")) return "Blood Pressure";
-        if (lowerQuery.contains("pregnancy") || lowerQuery.contains("maternity")) return "Pregnancy Services";
-        if (lowerQuery.contains("child") || lowerQuery.contains("pediatric")) return "Children's Health";
-        if (lowerQuery.contains("elderly") || lowerQuery.contains("older")) return "Services for Older People";
-        
-        // For queries that don't match specific topics, extract important words
-        // This is a very simple approach - could be improved with NLP
-        String[] words = query.split("\\s+");
-        StringBuilder topic = new StringBuilder();
-        
-        for (String word : words) {
-            // Skip common words and focus on potentially meaningful terms
-            if (word.length() > 3 && !isCommonWord(word)) {
-                if (topic.length() > 0) topic.append(" ");
-                topic.append(word);
-                
-                // Limit topic length
-                if (topic.length() > 30) break;
-            }
-        }
-        
-        return topic.length() > 0 ? topic.toString() : "Health Information";
-    }
-    
-    /**
-     * Check if a word is a common word that's less likely to be a meaningful topic
-     */
-    private boolean isCommonWord(String word) {
-        String[] commonWords = {"about", "with", "this", "that", "what", "when", "where", "which", 
-                               "who", "whom", "whose", "why", "how", "information", "need", "would", 
-                               "could", "should", "tell", "know", "find"};
-        
-        String lowerWord = word.toLowerCase();
-        for (String commonWord : commonWords) {
-            if (lowerWord.equals(commonWord)) return true;
-        }
-        
-        return false;
-    }
-
     /**
      * Formats the prompt by including relevant retrieved context.
      */
-    private String formatPromptWithContext(String context, String userMessage, String topic) {
+    static String formatPromptWithContext(String context, String userMessage, String topic) {
         if (context == null || context.isEmpty() || context.equals("No results found.") || context.startsWith("Error")) {
             return userMessage;
         } else {
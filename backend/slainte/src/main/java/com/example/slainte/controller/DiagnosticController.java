@@ -72,6 +72,33 @@ public class DiagnosticController {
         return ResponseEntity.ok(knowledgeBaseService.getLastContextInfo());
     }
     
+    /**
+     * Get debug information about the most recent retrievals, newest first
+     */
+    @GetMapping("/contexts")
+    public ResponseEntity<List<Map<String, Object>>> getRecentContexts(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(knowledgeBaseService.getRecentContextInfo(limit));
+    }
+    
+    /**
+     * Get debug information about one retrieval by its request id, while it is still kept
+     */
+    @GetMapping("/contexts/{requestId}")
+    public ResponseEntity<Map<String, Object>> getContextInfo(@PathVariable long requestId) {
+        return knowledgeBaseService.getContextInfo(requestId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Counters of the sampled retrieval event log
+     */
+    @GetMapping("/retrieval-log")
+    public ResponseEntity<Map<String, Object>> getRetrievalLogStats() {
+        return ResponseEntity.ok(knowledgeBaseService.getRetrievalLogStats());
+    }
+    
     /**
      * Run a minimal test query to ChromaDB with new test service
      */
@@ -4,6 +4,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.example.slainte.service.EmbeddingService;
 import com.example.slainte.service.ChromaDBLowLevelService;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,21 +53,17 @@ public class DiagnosticSearchController {
             response.put("topK", topK);
             
             // Get embedding and log its details
-            List<Double> embedding = embeddingService.getEmbedding(query);
+            Embedding embedding = embeddingService.getEmbedding(query);
             response.put("embeddingSize", embedding.size());
-            response.put("embeddingFirstFew", embedding.subList(0, Math.min(5, embedding.size())));
+            response.put("embeddingFirstFew", embedding.head(5));
             
-            // Get raw results from ChromaDB
-            Map<String, Object> rawResults = chromaDBService.getRawResults(embedding, topK);
-            response.put("rawResults", rawResults);
+            // Query ChromaDB once and derive every view from the same result
+            RetrievalResult results = chromaDBService.query(embedding, topK);
+            response.put("rawResults", results.toRawResults());
+            response.put("textResults", results.toContextString());
             
-            // Get formatted text results
-            String textResults = chromaDBService.queryDatabase(embedding, topK);
-            response.put("textResults", textResults);
-            
-            // Extract just the documents for easier viewing
-            List<String> documents = chromaDBService.extractDocuments(rawResults);
-            response.put("documents", documents);
+            // Include just the documents for easier viewing
+            response.put("documents", results.getDocuments());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -84,13 +82,10 @@ public class DiagnosticSearchController {
         
         try {
             // Create a simple embedding for a generic query
-            List<Double> embedding = new ArrayList<>();
-            for (int i = 0; i < 768; i++) {
-                embedding.add(0.1);
-            }
+            Embedding embedding = Embedding.filled(Embedding.DIMENSION, 0.1f);
             
             // Get a large number of documents to see what's available
-            Map<String, Object> rawResults = chromaDBService.getRawResults(embedding, 20);
+            Map<String, Object> rawResults = chromaDBService.query(embedding, 20).toRawResults();
             
             // Extract just the documents and metadata
             if (rawResults.containsKey("documents")) {
@@ -118,29 +113,21 @@ public class DiagnosticSearchController {
         
         try {
             // Get embedding for the keyword
-            List<Double> embedding = embeddingService.getEmbedding(keyword);
+            Embedding embedding = embeddingService.getEmbedding(keyword);
             
-            // Get raw results from ChromaDB
-            Map<String, Object> rawResults = chromaDBService.getRawResults(embedding, 10);
+            // Get typed results from ChromaDB
+            RetrievalResult retrieval = chromaDBService.query(embedding, 10);
             
             // Extract just the documents and their metadata
             List<Map<String, Object>> results = new ArrayList<>();
-            
-            if (rawResults.containsKey("documents") && rawResults.containsKey("metadatas")) {
-                List<List<String>> documents = (List<List<String>>) rawResults.get("documents");
-                List<List<Map<String, Object>>> metadatas = (List<List<Map<String, Object>>>) rawResults.get("metadatas");
-                
-                if (!documents.isEmpty() && !metadatas.isEmpty()) {
-                    List<String> docList = documents.get(0);
-                    List<Map<String, Object>> metaList = metadatas.get(0);
-                    
-                    for (int i = 0; i < docList.size() && i < metaList.size(); i++) {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("document", docList.get(i));
-                        result.put("metadata", metaList.get(i));
-                        results.add(result);
-                    }
-                }
+            List<String> docList = retrieval.getDocuments();
+            List<Map<String, Object>> metaList = retrieval.getMetadatas();
+            
+            for (int i = 0; i < docList.size() && i < metaList.size(); i++) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("document", docList.get(i));
+                result.put("metadata", metaList.get(i));
+                results.add(result);
             }
             
             response.put("keyword", keyword);
@@ -0,0 +1,29 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.config.HttpPoolMetrics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Admin endpoint to inspect the connection pools of the shared outbound HTTP client
+ */
+@RestController
+@RequestMapping("/api/admin/http-pools")
+public class HttpPoolAdminController {
+
+    private final HttpPoolMetrics httpPoolMetrics;
+
+    public HttpPoolAdminController(HttpPoolMetrics httpPoolMetrics) {
+        this.httpPoolMetrics = httpPoolMetrics;
+    }
+
+    /**
+     * Active, idle and allocated connections and pending acquires for each host called so far
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        return ResponseEntity.ok(httpPoolMetrics.getStats());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.config.PrometheusTextFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Admin endpoint serving the pipeline, cache and request metrics for Prometheus to scrape
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+public class MetricsAdminController {
+
+    private final MeterRegistry meterRegistry;
+
+    public MetricsAdminController(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Every registered meter in the Prometheus text exposition format
+     */
+    @GetMapping("/prometheus")
+    public ResponseEntity<String> scrape() {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, PrometheusTextFormat.CONTENT_TYPE)
+            .body(PrometheusTextFormat.scrape(meterRegistry));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.service.VectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Admin endpoints for the active vector store
+ */
+@RestController
+@RequestMapping("/api/admin/vector-store")
+public class VectorStoreAdminController {
+    private static final Logger logger = LoggerFactory.getLogger(VectorStoreAdminController.class);
+
+    private final VectorStore vectorStore;
+
+    public VectorStoreAdminController(VectorStore vectorStore) {
+        this.vectorStore = vectorStore;
+    }
+
+    /**
+     * Reloads the store from ChromaDB, so documents added since it was built are served.
+     * Queries keep using the previous data until the new data is in place.
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("store", vectorStore.getName());
+        long start = System.currentTimeMillis();
+        try {
+            vectorStore.reload();
+            response.put("status", "reloaded");
+            response.put("elapsedMs", System.currentTimeMillis() - start);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Failed to reload the {} vector store: {}", vectorStore.getName(), e.getMessage(), e);
+            response.put("status", "failed");
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.slainte.dto;
+
+import com.example.slainte.model.Embedding;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Response body of the embedding service ({"embedding": [...]}).
+ * The vector is decoded straight into an {@link Embedding}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EmbeddingResponse {
+    private Embedding embedding;
+
+    // Default constructor (needed for Jackson deserialization)
+    public EmbeddingResponse() {}
+
+    public EmbeddingResponse(Embedding embedding) {
+        this.embedding = embedding;
+    }
+
+    public Embedding getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(Embedding embedding) {
+        this.embedding = embedding;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.slainte.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One line of Ollama's NDJSON /api/generate stream.
+ * Intermediate chunks carry a token in {@code response}; the final chunk has
+ * {@code done=true} and the generation statistics (durations in nanoseconds).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LlmStreamChunk {
+    private String response;
+    private boolean done;
+
+    @JsonProperty("prompt_eval_count")
+    private Long promptEvalCount;
+
+    @JsonProperty("prompt_eval_duration")
+    private Long promptEvalDuration;
+
+    @JsonProperty("eval_count")
+    private Long evalCount;
+
+    @JsonProperty("eval_duration")
+    private Long evalDuration;
+
+    @JsonProperty("total_duration")
+    private Long totalDuration;
+
+    // Default constructor (needed for Jackson deserialization)
+    public LlmStreamChunk() {}
+
+    // Constructor for a token chunk
+    public LlmStreamChunk(String response, boolean done) {
+        this.response = response;
+        this.done = done;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    public Long getPromptEvalCount() {
+        return promptEvalCount;
+    }
+
+    public void setPromptEvalCount(Long promptEvalCount) {
+        this.promptEvalCount = promptEvalCount;
+    }
+
+    public Long getPromptEvalDuration() {
+        return promptEvalDuration;
+    }
+
+    public void setPromptEvalDuration(Long promptEvalDuration) {
+        this.promptEvalDuration = promptEvalDuration;
+    }
+
+    public Long getEvalCount() {
+        return evalCount;
+    }
+
+    public void setEvalCount(Long evalCount) {
+        this.evalCount = evalCount;
+    }
+
+    public Long getEvalDuration() {
+        return evalDuration;
+    }
+
+    public void setEvalDuration(Long evalDuration) {
+        this.evalDuration = evalDuration;
+    }
+
+    public Long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(Long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+}
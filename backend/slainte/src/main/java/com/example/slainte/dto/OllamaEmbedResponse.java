@@ -0,0 +1,30 @@
+package com.example.slainte.dto;
+
+import com.example.slainte.model.Embedding;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Response body of Ollama's batched /api/embed endpoint ({"embeddings": [[...], ...]}),
+ * with one vector per input text in request order
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OllamaEmbedResponse {
+    private List<Embedding> embeddings;
+
+    // Default constructor (needed for Jackson deserialization)
+    public OllamaEmbedResponse() {}
+
+    public OllamaEmbedResponse(List<Embedding> embeddings) {
+        this.embeddings = embeddings;
+    }
+
+    public List<Embedding> getEmbeddings() {
+        return embeddings;
+    }
+
+    public void setEmbeddings(List<Embedding> embeddings) {
+        this.embeddings = embeddings;
+    }
+}
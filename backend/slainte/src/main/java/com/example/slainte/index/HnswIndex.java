@@ -0,0 +1,333 @@
+package com.example.slainte.index;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Hierarchical Navigable Small World graph for approximate nearest-neighbour search
+ * under squared L2 distance (the metric ChromaDB uses by default).
+ * <p>
+ * Vectors are stored row by row in one float array and neighbour lists are primitive
+ * int arrays, so a search touches no boxed values. Nodes are numbered in insertion order.
+ * <p>
+ * Any number of threads may search concurrently, but {@link #add} must not run while
+ * searches are in progress - build the index fully, then publish it.
+ */
+public final class HnswIndex {
+
+    // Guards against pathological level draws; 16 layers covers billions of nodes at m=16
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final VectorKernel kernel = VectorKernels.best();
+    private final ThreadLocal<VisitedSet> visited = ThreadLocal.withInitial(VisitedSet::new);
+
+    private float[] vectors;
+    // links[node][level] = {count, neighbour...}
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, long seed) {
+        if (dimension <= 0 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimension=" + dimension
+                    + ", m=" + m + ", efConstruction=" + efConstruction);
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+        this.vectors = new float[dimension * 64];
+        this.links = new int[64][][];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Inserts a vector and returns its node number
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        ensureCapacity(size + 1);
+
+        int node = size;
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxConnections(l)];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int offset = node * dimension;
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vectors, offset, current, l);
+        }
+
+        NodeHeap results = new NodeHeap(efConstruction + 1, true);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            searchLayer(vectors, offset, current, efConstruction, l, results);
+            int[] sorted = drainAscending(results);
+            current = sorted[0];
+
+            int[] selected = selectNeighbors(node, sorted, m);
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Returns up to {@code k} nodes nearest to the query, nearest first.
+     * {@code ef} is the candidate list size and is raised to {@code k} when smaller.
+     */
+    public Neighbors search(float[] query, int k, int ef) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + query.length);
+        }
+        if (size == 0 || k <= 0) {
+            return Neighbors.EMPTY;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, 0, current, l);
+        }
+
+        NodeHeap results = new NodeHeap(Math.max(ef, k) + 1, true);
+        searchLayer(query, 0, current, Math.max(ef, k), 0, results);
+        while (results.size() > k) {
+            results.pop();
+        }
+
+        int count = results.size();
+        int[] nodes = new int[count];
+        float[] distances = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            distances[i] = results.topDistance();
+            nodes[i] = results.pop();
+        }
+        return new Neighbors(nodes, distances);
+    }
+
+    /**
+     * Copy of the stored vector for a node
+     */
+    public float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double draw = -Math.log(1.0 - random.nextDouble()) * levelMultiplier;
+        return Math.min((int) draw, MAX_LEVEL);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > links.length) {
+            int capacity = Math.max(required, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+    }
+
+    /**
+     * Walks to the neighbour nearest the query on one layer until no neighbour is closer
+     */
+    private int greedyClosest(float[] query, int queryOffset, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, queryOffset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float d = distance(query, queryOffset, candidate);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; leaves the {@code ef} nearest nodes in {@code results}
+     * (a farthest-first heap, so its top is the current worst match)
+     */
+    private void searchLayer(float[] query, int queryOffset, int entry, int ef, int level, NodeHeap results) {
+        VisitedSet seen = visited.get();
+        seen.reset(size);
+
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        results.clear();
+
+        float entryDistance = distance(query, queryOffset, entry);
+        seen.mark(entry);
+        candidates.push(entry, entryDistance);
+        results.push(entry, entryDistance);
+
+        while (!candidates.isEmpty()) {
+            float candidateDistance = candidates.topDistance();
+            if (results.size() >= ef && candidateDistance > results.topDistance()) {
+                break;
+            }
+            int candidate = candidates.pop();
+
+            int[] neighbours = links[candidate][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!seen.mark(neighbour)) {
+                    continue;
+                }
+                float d = distance(query, queryOffset, neighbour);
+                if (results.size() < ef || d < results.topDistance()) {
+                    candidates.push(neighbour, d);
+                    results.push(neighbour, d);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] drainAscending(NodeHeap heap) {
+        int[] sorted = new int[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap.pop();
+        }
+        return sorted;
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: a candidate is kept only if it is
+     * closer to the base node than to every neighbour already kept, which spreads links
+     * across clusters instead of spending them all on one dense region.
+     * Candidates must be sorted nearest first.
+     */
+    private int[] selectNeighbors(int base, int[] candidates, int limit) {
+        int[] selected = new int[Math.min(limit, candidates.length)];
+        int count = 0;
+        int baseOffset = base * dimension;
+        for (int candidate : candidates) {
+            if (count == selected.length) {
+                break;
+            }
+            if (candidate == base) {
+                continue;
+            }
+            float toBase = distance(vectors, baseOffset, candidate);
+            boolean keep = true;
+            for (int i = 0; i < count; i++) {
+                if (distance(vectors, selected[i] * dimension, candidate) < toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Adds a back link from {@code node} to {@code neighbour}, re-pruning when the list is full
+     */
+    private void connect(int node, int neighbour, int level) {
+        int[] list = links[node][level];
+        int count = list[0];
+        int limit = maxConnections(level);
+        if (count < limit) {
+            list[++count] = neighbour;
+            list[0] = count;
+            return;
+        }
+
+        // Full: keep the best of the existing links plus the new one
+        int nodeOffset = node * dimension;
+        NodeHeap byDistance = new NodeHeap(count + 1, true);
+        for (int i = 1; i <= count; i++) {
+            byDistance.push(list[i], distance(vectors, nodeOffset, list[i]));
+        }
+        byDistance.push(neighbour, distance(vectors, nodeOffset, neighbour));
+
+        int[] selected = selectNeighbors(node, drainAscending(byDistance), limit);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    private float distance(float[] query, int queryOffset, int node) {
+        return kernel.squaredL2(query, queryOffset, vectors, node * dimension, dimension);
+    }
+
+    /**
+     * Per-thread visited marks; bumping the epoch clears every mark in O(1)
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Marks the node and returns true if it had not been seen in this search
+         */
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
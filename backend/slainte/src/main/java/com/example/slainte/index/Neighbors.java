@@ -0,0 +1,28 @@
+package com.example.slainte.index;
+
+/**
+ * Search result: node numbers and their squared L2 distances, nearest first
+ */
+public final class Neighbors {
+    static final Neighbors EMPTY = new Neighbors(new int[0], new float[0]);
+
+    private final int[] nodes;
+    private final float[] distances;
+
+    Neighbors(int[] nodes, float[] distances) {
+        this.nodes = nodes;
+        this.distances = distances;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public int node(int i) {
+        return nodes[i];
+    }
+
+    public float distance(int i) {
+        return distances[i];
+    }
+}
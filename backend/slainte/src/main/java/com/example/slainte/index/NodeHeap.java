@@ -0,0 +1,91 @@
+package com.example.slainte.index;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, distance) pairs held in parallel primitive arrays,
+ * so graph traversal never boxes a candidate. Ordered nearest-first or farthest-first.
+ */
+final class NodeHeap {
+    private final boolean farthestFirst;
+    private int[] nodes;
+    private float[] distances;
+    private int size;
+
+    NodeHeap(int initialCapacity, boolean farthestFirst) {
+        int capacity = Math.max(4, initialCapacity);
+        this.nodes = new int[capacity];
+        this.distances = new float[capacity];
+        this.farthestFirst = farthestFirst;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topDistance() {
+        return distances[0];
+    }
+
+    void push(int node, float distance) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(distance, distances[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+    }
+
+    /**
+     * Removes the top entry and returns its node
+     */
+    int pop() {
+        int top = nodes[0];
+        int lastNode = nodes[--size];
+        float lastDistance = distances[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(distances[right], distances[child])) {
+                child = right;
+            }
+            if (!before(distances[child], lastDistance)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        distances[i] = lastDistance;
+        return top;
+    }
+
+    private boolean before(float a, float b) {
+        return farthestFirst ? a > b : a < b;
+    }
+}
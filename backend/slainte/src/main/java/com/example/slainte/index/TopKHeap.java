@@ -0,0 +1,97 @@
+package com.example.slainte.index;
+
+/**
+ * Keeps the {@code k} smallest distances seen so far in a fixed-size max-heap.
+ * Both arrays are allocated once, so offering a candidate never allocates; a candidate
+ * that is no better than the current worst match costs a single comparison.
+ */
+public final class TopKHeap {
+    private final int[] nodes;
+    private final float[] distances;
+    private int size;
+
+    public TopKHeap(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.nodes = new int[k];
+        this.distances = new float[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Distance a candidate must beat to enter the heap; infinite until the heap is full
+     */
+    public float threshold() {
+        return size < nodes.length ? Float.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Adds the candidate if it is among the {@code k} nearest so far
+     */
+    public void offer(int node, float distance) {
+        if (size < nodes.length) {
+            siftUp(size++, node, distance);
+        } else if (distance < distances[0]) {
+            siftDown(0, node, distance);
+        }
+    }
+
+    /**
+     * Empties the heap into a result sorted nearest first
+     */
+    public Neighbors drain() {
+        int count = size;
+        int[] sortedNodes = new int[count];
+        float[] sortedDistances = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedNodes[i] = nodes[0];
+            sortedDistances[i] = distances[0];
+            size--;
+            if (size > 0) {
+                siftDown(0, nodes[size], distances[size]);
+            }
+        }
+        return new Neighbors(sortedNodes, sortedDistances);
+    }
+
+    private void siftUp(int i, int node, float distance) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] >= distance) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+    }
+
+    private void siftDown(int i, int node, float distance) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && distances[right] > distances[child]) {
+                child = right;
+            }
+            if (distances[child] <= distance) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.slainte.index;
+
+/**
+ * Distance primitives over rows of float arrays. Obtain an instance from {@link VectorKernels}.
+ */
+public interface VectorKernel {
+
+    /**
+     * Dot product of {@code length} floats starting at the given offsets
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Squared Euclidean distance of {@code length} floats starting at the given offsets
+     */
+    float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Short name for logs and diagnostics, e.g. "scalar" or "simd-256"
+     */
+    String getName();
+}
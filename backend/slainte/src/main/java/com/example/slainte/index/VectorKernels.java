@@ -0,0 +1,44 @@
+package com.example.slainte.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the fastest available {@link VectorKernel} once per JVM
+ */
+public final class VectorKernels {
+    private static final Logger logger = LoggerFactory.getLogger(VectorKernels.class);
+
+    private static final VectorKernel BEST = detect();
+
+    private VectorKernels() {
+    }
+
+    /**
+     * The Vector API kernel when {@code jdk.incubator.vector} is resolved, otherwise the scalar one
+     */
+    public static VectorKernel best() {
+        return BEST;
+    }
+
+    public static VectorKernel scalar() {
+        return ScalarVectorKernel.INSTANCE;
+    }
+
+    private static VectorKernel detect() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            logger.info("jdk.incubator.vector not enabled, using scalar vector kernel");
+            return ScalarVectorKernel.INSTANCE;
+        }
+        try {
+            // Loaded by name so this class links even when the module is absent
+            VectorKernel kernel = (VectorKernel) Class.forName("com.example.slainte.index.SimdVectorKernel")
+                    .getDeclaredConstructor().newInstance();
+            logger.info("Using {} vector kernel", kernel.getName());
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Vector API kernel unavailable, using scalar vector kernel: {}", e.toString());
+            return ScalarVectorKernel.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.slainte.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only, memory-mapped file holding a collection's vectors, ids, metadata and documents.
+ * <p>
+ * Opening a segment maps the file and reads the 64-byte header, and nothing else. Pages are
+ * faulted in by the OS as queries touch them, so a segment is queryable as soon as it is
+ * mapped and its vectors live in the page cache rather than on the Java heap.
+ * <p>
+ * Layout (all values little-endian):
+ * <pre>
+ *   header    64 bytes   magic "SLVS", version, dimension, count, section offsets, CRC32C,
+ *                        number of records in the collection the segment was built from
+ *   vectors   count x dimension float32, row per record, starting at byte 64
+ *   offsets   (3 x count + 1) int32 into the string heap: ids, then metadata, then documents
+ *   heap      UTF-8 strings; string j spans [offsets[j], offsets[j + 1])
+ * </pre>
+ * Metadata is stored as the JSON text of each record's metadata map.
+ * The checksum covers every byte after the header. The source count can exceed {@code count}
+ * when records were skipped, and is 0 in segments written before it was recorded.
+ */
+public final class VectorSegment {
+
+    public static final int MAGIC = 0x53564C53; // "SLVS" read little-endian
+    public static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    private final int dimension;
+    private final int count;
+    private final FloatBuffer vectors;
+    private final IntBuffer offsets;
+    private final ByteBuffer heap;
+    private final long sourceCount;
+
+    private VectorSegment(int dimension, int count, long sourceCount, FloatBuffer vectors, IntBuffer offsets,
+                          ByteBuffer heap) {
+        this.dimension = dimension;
+        this.count = count;
+        this.sourceCount = sourceCount;
+        this.vectors = vectors;
+        this.offsets = offsets;
+        this.heap = heap;
+    }
+
+    /**
+     * One record to write: its embedding values, id, metadata JSON and document text
+     */
+    public static final class Entry {
+        private final String id;
+        private final float[] vector;
+        private final String metadataJson;
+        private final String document;
+
+        public Entry(String id, float[] vector, String metadataJson, String document) {
+            this.id = id;
+            this.vector = vector;
+            this.metadataJson = metadataJson != null ? metadataJson : "{}";
+            this.document = document != null ? document : "";
+        }
+    }
+
+    /**
+     * Writes the entries to {@code path}. The file is written beside the target and moved into
+     * place, so a reader never maps a partially written segment.
+     */
+    public static void write(Path path, int dimension, List<Entry> entries) throws IOException {
+        write(path, dimension, entries, entries.size());
+    }
+
+    /**
+     * Writes the entries, recording that they were built from {@code sourceCount} records
+     */
+    public static void write(Path path, int dimension, List<Entry> entries, long sourceCount) throws IOException {
+        int count = entries.size();
+        byte[][] strings = new byte[3 * count][];
+        long heapLength = 0;
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries.get(i);
+            if (entry.vector.length != dimension) {
+                throw new IllegalArgumentException("Entry " + entry.id + " has dimension "
+                        + entry.vector.length + ", expected " + dimension);
+            }
+            strings[i] = entry.id.getBytes(StandardCharsets.UTF_8);
+            strings[count + i] = entry.metadataJson.getBytes(StandardCharsets.UTF_8);
+            strings[2 * count + i] = entry.document.getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte[] string : strings) {
+            heapLength += string.length;
+        }
+
+        long vectorsOffset = HEADER_BYTES;
+        long offsetsOffset = vectorsOffset + (long) count * dimension * Float.BYTES;
+        long heapOffset = offsetsOffset + (3L * count + 1) * Integer.BYTES;
+        long fileLength = heapOffset + heapLength;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Segment of " + fileLength + " bytes exceeds the 2 GB mapping limit");
+        }
+
+        ByteBuffer body = ByteBuffer.allocate((int) (fileLength - HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        for (Entry entry : entries) {
+            for (float value : entry.vector) {
+                body.putFloat(value);
+            }
+        }
+        int position = 0;
+        body.putInt(position);
+        for (byte[] string : strings) {
+            position += string.length;
+            body.putInt(position);
+        }
+        for (byte[] string : strings) {
+            body.put(string);
+        }
+        body.flip();
+
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+              .putInt(VERSION)
+              .putInt(dimension)
+              .putInt(count)
+              .putLong(vectorsOffset)
+              .putLong(offsetsOffset)
+              .putLong(heapOffset)
+              .putLong(heapLength)
+              .putLong(crc.getValue())
+              .putLong(sourceCount);
+        header.clear();
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a segment file. With {@code verifyChecksum} every page is read once to check the CRC32C;
+     * without it only the header is read and pages load lazily.
+     */
+    public static VectorSegment open(Path path, boolean verifyChecksum) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Segment " + path + " is too short for a header: " + size + " bytes");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + path + " exceeds the 2 GB mapping limit");
+            }
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        int dimension = buffer.getInt(8);
+        int count = buffer.getInt(12);
+        long vectorsOffset = buffer.getLong(16);
+        long offsetsOffset = buffer.getLong(24);
+        long heapOffset = buffer.getLong(32);
+        long heapLength = buffer.getLong(40);
+        long checksum = buffer.getLong(48);
+        long sourceCount = buffer.getLong(56);
+
+        if (magic != MAGIC) {
+            throw new IOException("Not a vector segment: " + path);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported segment version " + version + " in " + path
+                    + " (expected " + VERSION + ")");
+        }
+        if (dimension <= 0 || count < 0
+                || vectorsOffset != HEADER_BYTES
+                || offsetsOffset != vectorsOffset + (long) count * dimension * Float.BYTES
+                || heapOffset != offsetsOffset + (3L * count + 1) * Integer.BYTES
+                || heapOffset + heapLength != buffer.capacity()) {
+            throw new IOException("Corrupt segment header in " + path);
+        }
+
+        if (verifyChecksum) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+            if (crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in segment " + path);
+            }
+        }
+
+        FloatBuffer vectors = buffer.slice((int) vectorsOffset, (int) (offsetsOffset - vectorsOffset))
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        IntBuffer offsets = buffer.slice((int) offsetsOffset, (int) (heapOffset - offsetsOffset))
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        ByteBuffer heap = buffer.slice((int) heapOffset, (int) heapLength);
+        return new VectorSegment(dimension, count, sourceCount, vectors, offsets, heap);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Number of records in the collection when the segment was built, 0 if not recorded
+     */
+    public long sourceCount() {
+        return sourceCount;
+    }
+
+    public String id(int node) {
+        return string(node);
+    }
+
+    public String metadataJson(int node) {
+        return string(count + node);
+    }
+
+    public String document(int node) {
+        return string(2 * count + node);
+    }
+
+    /**
+     * Copies a record's vector into {@code target}, which must hold at least {@link #dimension()} floats
+     */
+    public void copyVector(int node, float[] target) {
+        vectors.get(node * dimension, target, 0, dimension);
+    }
+
+    /**
+     * Exact nearest-neighbour scan under squared L2, nearest first.
+     * Each row is copied into one scratch array, so the scan allocates nothing per record.
+     */
+    public Neighbors search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + query.length);
+        }
+        int limit = Math.min(k, count);
+        if (limit <= 0) {
+            return Neighbors.EMPTY;
+        }
+
+        VectorKernel kernel = VectorKernels.best();
+        float[] row = new float[dimension];
+        TopKHeap nearest = new TopKHeap(limit);
+        for (int node = 0; node < count; node++) {
+            vectors.get(node * dimension, row, 0, dimension);
+            nearest.offer(node, kernel.squaredL2(query, 0, row, 0, dimension));
+        }
+        return nearest.drain();
+    }
+
+    private String string(int index) {
+        int start = offsets.get(index);
+        int end = offsets.get(index + 1);
+        byte[] bytes = new byte[end - start];
+        heap.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.slainte.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable embedding vector backed by a primitive float array.
+ * A 128-bit content fingerprint is computed once on creation and used for
+ * equality, hashing and cache keys, so the vector is never re-hashed element by element.
+ * Serializes to (and deserializes from) a plain JSON array of float32 values.
+ */
+@JsonSerialize(using = Embedding.Float32Serializer.class)
+@JsonDeserialize(using = Embedding.Float32Deserializer.class)
+public final class Embedding {
+
+    // Dimension of nomic-embed-text vectors stored in the health_assistant collection
+    public static final int DIMENSION = 768;
+
+    private static final Embedding EMPTY = new Embedding(new float[0]);
+    private static final long SEED = 0x9747b28cL;
+
+    private final float[] values;
+    private final long fingerprintHigh;
+    private final long fingerprintLow;
+    private final String fingerprint;
+
+    // Takes ownership of the array - callers must not keep a reference to it
+    private Embedding(float[] values) {
+        this.values = values;
+        long[] hash = murmur3x64128(values);
+        this.fingerprintHigh = hash[0];
+        this.fingerprintLow = hash[1];
+        this.fingerprint = String.format("%016x%016x", fingerprintHigh, fingerprintLow);
+    }
+
+    /**
+     * Creates an embedding from a copy of the given values
+     */
+    public static Embedding of(float... values) {
+        return new Embedding(values.clone());
+    }
+
+    /**
+     * Creates an embedding from boxed numbers, e.g. a generic JSON list
+     */
+    public static Embedding fromList(List<? extends Number> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).floatValue();
+        }
+        return new Embedding(array);
+    }
+
+    /**
+     * Creates an embedding of the given dimension with every component set to the same value
+     */
+    public static Embedding filled(int dimension, float value) {
+        float[] array = new float[dimension];
+        Arrays.fill(array, value);
+        return new Embedding(array);
+    }
+
+    public static Embedding empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Direct access to the backing array for hot loops. The array must not be modified.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    /**
+     * Returns a copy of the first {@code count} components (or fewer if the vector is shorter)
+     */
+    public float[] head(int count) {
+        return Arrays.copyOf(values, Math.min(count, values.length));
+    }
+
+    /**
+     * Pads with zeros or truncates to the requested dimension in a single copy.
+     * Returns this instance when the dimension already matches.
+     */
+    public Embedding resize(int dimension) {
+        if (values.length == dimension) {
+            return this;
+        }
+        return new Embedding(Arrays.copyOf(values, dimension));
+    }
+
+    /**
+     * 128-bit content fingerprint as 32 hex characters, suitable as a cache key
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public long fingerprintHigh() {
+        return fingerprintHigh;
+    }
+
+    public long fingerprintLow() {
+        return fingerprintLow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Embedding)) return false;
+        Embedding other = (Embedding) o;
+        return fingerprintHigh == other.fingerprintHigh
+                && fingerprintLow == other.fingerprintLow
+                && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprintLow ^ (fingerprintLow >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "Embedding[dim=" + values.length + ", fingerprint=" + fingerprint + "]";
+    }
+
+    /**
+     * MurmurHash3 x64 128-bit over the IEEE 754 bits of the vector, four floats per block
+     */
+    private static long[] murmur3x64128(float[] data) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = SEED;
+        long h2 = SEED;
+
+        int n = data.length;
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            long k1 = bits(data[i]) | ((long) Float.floatToIntBits(data[i + 1]) << 32);
+            long k2 = bits(data[i + 2]) | ((long) Float.floatToIntBits(data[i + 3]) << 32);
+
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // Tail of up to three floats
+        int remaining = n - i;
+        if (remaining == 3) {
+            long k2 = bits(data[i + 2]);
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+        if (remaining >= 1) {
+            long k1 = bits(data[i]);
+            if (remaining >= 2) {
+                k1 |= (long) Float.floatToIntBits(data[i + 1]) << 32;
+            }
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+
+        long length = (long) n * Float.BYTES;
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[] { h1, h2 };
+    }
+
+    private static long bits(float value) {
+        return Float.floatToIntBits(value) & 0xffffffffL;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Writes the vector as a JSON array using the shortest float32 representation
+     * (e.g. 0.1 rather than 0.10000000149011612)
+     */
+    public static class Float32Serializer extends StdSerializer<Embedding> {
+        public Float32Serializer() {
+            super(Embedding.class);
+        }
+
+        @Override
+        public void serialize(Embedding embedding, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            float[] values = embedding.values;
+            gen.writeStartArray(embedding, values.length);
+            for (float value : values) {
+                gen.writeNumber(value);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a JSON number array straight into a float array without boxing
+     */
+    public static class Float32Deserializer extends StdDeserializer<Embedding> {
+        public Float32Deserializer() {
+            super(Embedding.class);
+        }
+
+        @Override
+        public Embedding deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (Embedding) ctxt.handleUnexpectedToken(Embedding.class, p);
+            }
+
+            float[] buffer = new float[DIMENSION];
+            int size = 0;
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (!token.isNumeric()) {
+                    return (Embedding) ctxt.handleUnexpectedToken(Embedding.class, p);
+                }
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = p.getFloatValue();
+            }
+
+            return new Embedding(size == buffer.length ? buffer : Arrays.copyOf(buffer, size));
+        }
+    }
+}
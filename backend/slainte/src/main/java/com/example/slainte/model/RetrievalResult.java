@@ -0,0 +1,130 @@
+package com.example.slainte.model;
+
+import java.util.*;
+
+/**
+ * Typed result of a single vector store query.
+ * Both the formatted context string and the raw-results map are derived from
+ * this object locally, so one query round trip serves every view of the results.
+ */
+public class RetrievalResult {
+    private final List<String> ids;
+    private final List<String> documents;
+    private final List<Map<String, Object>> metadatas;
+    private final List<Double> distances;
+    private final String error;
+
+    // Formatted context is derived lazily and reused once computed
+    private String context;
+
+    public RetrievalResult(List<String> ids, List<String> documents,
+                           List<Map<String, Object>> metadatas, List<Double> distances) {
+        this.ids = ids != null ? ids : Collections.emptyList();
+        this.documents = documents != null ? documents : Collections.emptyList();
+        this.metadatas = metadatas != null ? metadatas : Collections.emptyList();
+        this.distances = distances != null ? distances : Collections.emptyList();
+        this.error = null;
+    }
+
+    private RetrievalResult(String error) {
+        this.ids = Collections.emptyList();
+        this.documents = Collections.emptyList();
+        this.metadatas = Collections.emptyList();
+        this.distances = Collections.emptyList();
+        this.error = error;
+    }
+
+    /**
+     * Creates a result that carries only an error message
+     */
+    public static RetrievalResult error(String message) {
+        return new RetrievalResult(message);
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public List<String> getDocuments() {
+        return documents;
+    }
+
+    public List<Map<String, Object>> getMetadatas() {
+        return metadatas;
+    }
+
+    public List<Double> getDistances() {
+        return distances;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Formats the documents as the context string sent to the LLM.
+     * Each document is followed by its source (when known) and separated by a rule.
+     * Errors are returned verbatim so callers can detect them as before.
+     */
+    public String toContextString() {
+        if (context == null) {
+            context = formatContext();
+        }
+        return context;
+    }
+
+    private String formatContext() {
+        if (error != null) {
+            return error;
+        }
+        if (documents.isEmpty()) {
+            return "No documents found.";
+        }
+
+        StringBuilder resultBuilder = new StringBuilder();
+        for (int i = 0; i < documents.size(); i++) {
+            resultBuilder.append(documents.get(i));
+
+            // Add source metadata if available
+            if (i < metadatas.size() && metadatas.get(i) != null) {
+                Map<String, Object> metadata = metadatas.get(i);
+                if (metadata.containsKey("source")) {
+                    resultBuilder.append("\n[Source: ").append(metadata.get("source")).append("]");
+                }
+            }
+
+            // Add separator between documents
+            if (i < documents.size() - 1) {
+                resultBuilder.append("\n\n---\n\n");
+            }
+        }
+
+        String result = resultBuilder.toString().trim();
+        return result.isEmpty() ? "No relevant documents found." : result;
+    }
+
+    /**
+     * Builds a map in the shape of a raw ChromaDB query response
+     * (one nested list per field, since only a single query embedding is sent)
+     */
+    public Map<String, Object> toRawResults() {
+        Map<String, Object> rawResults = new HashMap<>();
+        if (error != null) {
+            rawResults.put("error", error);
+            return rawResults;
+        }
+        rawResults.put("ids", List.of(ids));
+        rawResults.put("documents", List.of(documents));
+        rawResults.put("metadatas", List.of(metadatas));
+        rawResults.put("distances", List.of(distances));
+        return rawResults;
+    }
+}
@@ -5,8 +5,14 @@ import java.util.List;
 public class SearchResponse {
     private List<String> documents;
 
+    // Default constructor (needed for Jackson deserialization)
+    public SearchResponse() {}
+
+    public SearchResponse(List<String> documents) {
+        this.documents = documents;
+    }
+
     public List<String> getDocuments() {
         return documents;
     }
 }
-
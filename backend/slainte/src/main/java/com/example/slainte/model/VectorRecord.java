@@ -0,0 +1,37 @@
+package com.example.slainte.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One stored chunk of the collection: its id, embedding, text and metadata
+ */
+public final class VectorRecord {
+    private final String id;
+    private final Embedding embedding;
+    private final String document;
+    private final Map<String, Object> metadata;
+
+    public VectorRecord(String id, Embedding embedding, String document, Map<String, Object> metadata) {
+        this.id = id;
+        this.embedding = embedding;
+        this.document = document != null ? document : "";
+        this.metadata = metadata != null ? metadata : Collections.emptyMap();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Embedding getEmbedding() {
+        return embedding;
+    }
+
+    public String getDocument() {
+        return document;
+    }
+
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+}
@@ -3,14 +3,13 @@ package com.example.slainte.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.slainte.model.Embedding;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -25,22 +24,20 @@ public class ChromaDBDirectClient {
     private final String COLLECTION_NAME = "health_assistant";
     // The collection UUID from your test results
     private final String COLLECTION_UUID = "4b704b22-bbe9-4f7c-a8d2-9c5cb5e6cc1b";
-    private final HttpClient httpClient;
+    private final WebClient webClient;
     private final ObjectMapper objectMapper;
     
-    public ChromaDBDirectClient() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+    public ChromaDBDirectClient(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.build();
         this.objectMapper = new ObjectMapper();
         logger.info("ChromaDB direct client initialized");
     }
     
     /**
-     * Query ChromaDB with the embedding vector directly using Java's HttpClient
+     * Query ChromaDB with the embedding vector directly, without the typed result parsing
      */
-    @Cacheable(value = "chromaDirectResults", key = "#queryEmbedding.hashCode() + '-' + #nResults")
-    public String queryDatabase(List<Double> queryEmbedding, int nResults) {
+    @Cacheable(value = "chromaDirectResults", key = "#queryEmbedding.fingerprint() + '-' + #nResults")
+    public String queryDatabase(Embedding queryEmbedding, int nResults) {
         try {
             logger.info("Querying ChromaDB directly with embedding of size: {} for {} results", 
                     queryEmbedding.size(), nResults);
@@ -52,9 +49,7 @@ public class ChromaDBDirectClient {
             Map<String, Object> requestBody = new HashMap<>();
             
             // For ChromaDB, query_embeddings is a single array of arrays
-            List<List<Double>> embeddings = new ArrayList<>();
-            embeddings.add(queryEmbedding);
-            requestBody.put("query_embeddings", embeddings);
+            requestBody.put("query_embeddings", List.of(queryEmbedding));
             requestBody.put("n_results", nResults);
             
             // Add include parameters as array
@@ -65,33 +60,26 @@ public class ChromaDBDirectClient {
             String jsonRequest = objectMapper.writeValueAsString(requestBody);
             logger.debug("Request JSON: {}", jsonRequest);
             
-            // Create the HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonRequest))
-                    .build();
-            
             // Send the request
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            ResponseEntity<String> response = post(url, jsonRequest);
             
             // Check the response status
-            int statusCode = response.statusCode();
+            int statusCode = response.getStatusCode().value();
             logger.debug("ChromaDB response status: {}", statusCode);
-            logger.debug("ChromaDB raw response: {}", response.body());
+            logger.debug("ChromaDB raw response: {}", response.getBody());
             
             if (statusCode >= 200 && statusCode < 300) {
                 try {
                     // Parse the response
-                    Map<String, Object> responseBody = objectMapper.readValue(response.body(), Map.class);
+                    Map<String, Object> responseBody = objectMapper.readValue(response.getBody(), Map.class);
                     return processChromaDBResponse(responseBody);
                 } catch (Exception e) {
                     logger.error("Error parsing ChromaDB response: {}", e.getMessage());
-                    return "Error parsing ChromaDB response: " + e.getMessage() + "\nRaw response: " + response.body();
+                    return "Error parsing ChromaDB response: " + e.getMessage() + "\nRaw response: " + response.getBody();
                 }
             } else {
-                logger.error("ChromaDB error response: {} - {}", statusCode, response.body());
-                return "Error from ChromaDB: " + response.body();
+                logger.error("ChromaDB error response: {} - {}", statusCode, response.getBody());
+                return "Error from ChromaDB: " + response.getBody();
             }
         } catch (Exception e) {
             logger.error("Error querying ChromaDB directly: {}", e.getMessage(), e);
@@ -121,15 +109,9 @@ public class ChromaDBDirectClient {
             // Full JSON with correct dimensions
             String jsonBody = "{\"query_embeddings\":[" + embeddingBuilder.toString() + "],\"n_results\":1}";
             
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            ResponseEntity<String> response = post(url, jsonBody);
             
-            return "Status: " + response.statusCode() + "\nBody: " + response.body();
+            return "Status: " + response.getStatusCode().value() + "\nBody: " + response.getBody();
         } catch (Exception e) {
             return "Error in minimal query test: " + e.getMessage();
         }
@@ -144,46 +126,30 @@ public class ChromaDBDirectClient {
         try {
             // 1. Test basic connection
             String healthUrl = CHROMADB_HOST + "/api/v1/heartbeat";
-            HttpRequest healthRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(healthUrl))
-                    .GET()
-                    .build();
+            ResponseEntity<String> healthResponse = get(healthUrl);
             
-            HttpResponse<String> healthResponse = httpClient.send(
-                    healthRequest, 
-                    HttpResponse.BodyHandlers.ofString()
-            );
-            
-            result.put("connection", healthResponse.statusCode() == 200 ? "OK" : "Failed");
-            result.put("heartbeat", healthResponse.body());
+            result.put("connection", healthResponse.getStatusCode().value() == 200 ? "OK" : "Failed");
+            result.put("heartbeat", healthResponse.getBody());
             
             // 2. Test if collection exists
             String collectionUrl = CHROMADB_HOST + "/api/v1/collections";
-            HttpRequest collectionRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(collectionUrl))
-                    .GET()
-                    .build();
-            
-            HttpResponse<String> collectionResponse = httpClient.send(
-                    collectionRequest, 
-                    HttpResponse.BodyHandlers.ofString()
-            );
+            ResponseEntity<String> collectionResponse = get(collectionUrl);
             
-            result.put("collections_response", collectionResponse.body());
+            result.put("collections_response", collectionResponse.getBody());
             
             // Check if our collection exists
             List<Map<String, Object>> collections;
             try {
                 // Try to parse as an array first
                 collections = objectMapper.readValue(
-                        collectionResponse.body(), 
+                        collectionResponse.getBody(), 
                         List.class
                 );
             } catch (Exception e) {
                 logger.debug("Failed to parse collections as array, trying as map", e);
                 // Fall back to parsing as a map
                 Map<String, Object> collectionsData = objectMapper.readValue(
-                        collectionResponse.body(), 
+                        collectionResponse.getBody(), 
                         Map.class
                 );
                 collections = (List<Map<String, Object>>) collectionsData.get("collections");
@@ -208,17 +174,9 @@ public class ChromaDBDirectClient {
             if (collectionExists) {
                 // Use UUID instead of name for collection info
                 String collectionInfoUrl = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID;
-                HttpRequest infoRequest = HttpRequest.newBuilder()
-                        .uri(URI.create(collectionInfoUrl))
-                        .GET()
-                        .build();
+                    ResponseEntity<String> infoResponse = get(collectionInfoUrl);
                 
-                HttpResponse<String> infoResponse = httpClient.send(
-                        infoRequest, 
-                        HttpResponse.BodyHandlers.ofString()
-                );
-                
-                result.put("collection_info", objectMapper.readValue(infoResponse.body(), Map.class));
+                result.put("collection_info", objectMapper.readValue(infoResponse.getBody(), Map.class));
             }
             
             result.put("status", "success");
@@ -232,6 +190,25 @@ public class ChromaDBDirectClient {
         }
     }
     
+    /**
+     * POST a JSON body over the pooled WebClient, returning error responses instead of throwing
+     */
+    private ResponseEntity<String> post(String url, String jsonBody) {
+        return webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonBody)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+    }
+    
+    private ResponseEntity<String> get(String url) {
+        return webClient.get()
+                .uri(url)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+    }
+    
     @SuppressWarnings("unchecked")
     private String processChromaDBResponse(Map<String, Object> responseBody) {
         try {
@@ -301,9 +278,10 @@ public class ChromaDBDirectClient {
             
             String result = resultBuilder.toString().trim();
             
-            // Log a preview of the result
-            String preview = result.length() > 100 ? result.substring(0, 100) + "..." : result;
-            logger.info("ChromaDB returned {} documents. Preview: {}", documents.size(), preview);
+            logger.info("ChromaDB returned {} documents", documents.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Preview: {}", result.length() > 100 ? result.substring(0, 100) + "..." : result);
+            }
             
             return result.isEmpty() ? "No relevant documents found." : result;
             
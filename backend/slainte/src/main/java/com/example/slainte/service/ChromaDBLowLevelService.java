@@ -2,307 +2,368 @@ package com.example.slainte.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import reactor.core.publisher.Mono;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 @Service
-public class ChromaDBLowLevelService {
+public class ChromaDBLowLevelService implements VectorStore {
     private static final Logger logger = LoggerFactory.getLogger(ChromaDBLowLevelService.class);
     
     private final String CHROMADB_HOST = "http://localhost:8000";
     private final String COLLECTION_NAME = "health_assistant";
     private final String COLLECTION_UUID = "4b704b22-bbe9-4f7c-a8d2-9c5cb5e6cc1b";
     private final String CHROMADB_URL;
+    private final String CHROMADB_GET_URL;
+    private final String CHROMADB_COUNT_URL;
     private final ObjectMapper objectMapper;
+    private final WebClient webClient;
+    // Concurrent cache misses for the same embedding and result count share one ChromaDB query
+    private final SingleFlight<String, RetrievalResult> inFlight = new SingleFlight<>("chromaRetrievals");
 
     public ChromaDBLowLevelService() {
+        this(WebClient.builder());
+    }
+
+    @Autowired
+    public ChromaDBLowLevelService(WebClient.Builder webClientBuilder) {
         // Use collection UUID instead of name in the URL
         this.CHROMADB_URL = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/query";
+        this.CHROMADB_GET_URL = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/get";
+        this.CHROMADB_COUNT_URL = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/count";
         this.objectMapper = new ObjectMapper();
+        // Built on the shared connection pools; both the blocking and the non-blocking paths use it
+        this.webClient = webClientBuilder.baseUrl(CHROMADB_URL).build();
         logger.info("ChromaDB low-level service initialized with URL: {}", CHROMADB_URL);
     }
 
     /**
-     * Query ChromaDB with the embedding vector using low-level HttpURLConnection
+     * Query ChromaDB once and return the typed results (ids, documents, metadata and distances).
+     * The formatted context and the raw-results view are both derived from this single round trip.
      */
-    @Cacheable(value = "chromaResults", key = "#queryEmbedding.hashCode() + '-' + #nResults")
-    public String queryDatabase(List<Double> queryEmbedding, int nResults) {
-        HttpURLConnection conn = null;
-        try {
-            logger.info("Querying ChromaDB with embedding of size: {} for {} results", 
-                    queryEmbedding.size(), nResults);
-            
-            // Validate embedding dimensions
-            if (queryEmbedding.size() != 768) {
-                logger.warn("Embedding dimension {} does not match required dimension 768", queryEmbedding.size());
-                // Pad or truncate if needed - padding is safer
-                if (queryEmbedding.size() < 768) {
-                    // Pad with zeros
-                    List<Double> paddedEmbedding = new ArrayList<>(queryEmbedding);
-                    while (paddedEmbedding.size() < 768) {
-                        paddedEmbedding.add(0.0);
-                    }
-                    queryEmbedding = paddedEmbedding;
-                    logger.info("Padded embedding to 768 dimensions");
-                } else {
-                    // Truncate
-                    queryEmbedding = queryEmbedding.subList(0, 768);
-                    logger.info("Truncated embedding to 768 dimensions");
-                }
-            }
-            
-            // Create the URL
-            URL url = new URL(CHROMADB_URL);
-            
-            // Open connection
-            conn = (HttpURLConnection) url.openConnection();
-            
-            // Setup the request
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setDoOutput(true);
-            
-            // Create the query body
-            Map<String, Object> requestBody = new HashMap<>();
-            
-            // For ChromaDB, query_embeddings is a single array of arrays
-            List<List<Double>> embeddings = new ArrayList<>();
-            embeddings.add(queryEmbedding);
-            requestBody.put("query_embeddings", embeddings);
-            requestBody.put("n_results", nResults);
-            
-            // Add include parameters as array
-            List<String> include = Arrays.asList("documents", "metadatas", "distances");
-            requestBody.put("include", include);
-            
-            // Convert the map to a JSON string
-            String jsonRequest = objectMapper.writeValueAsString(requestBody);
-            logger.debug("Request JSON: {}", jsonRequest);
-            
-            // Write the request body
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonRequest.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get the response
-            int responseCode = conn.getResponseCode();
-            logger.debug("ChromaDB response code: {}", responseCode);
-            
-            // Read the response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-            }
-            
-            if (responseCode >= 200 && responseCode < 300) {
-                Map<String, Object> responseBody = objectMapper.readValue(response.toString(), Map.class);
-                return processChromaDBResponse(responseBody);
-            } else {
-                logger.error("ChromaDB error response: {} - {}", responseCode, response.toString());
-                return "Error from ChromaDB: " + response.toString();
-            }
-            
-        } catch (Exception e) {
+    @Override
+    @Cacheable(value = "chromaRetrievals", key = "#queryEmbedding.fingerprint() + '-' + #nResults")
+    public RetrievalResult query(Embedding queryEmbedding, int nResults) {
+        return inFlight.execute(queryEmbedding.fingerprint() + "-" + nResults,
+                () -> queryChroma(queryEmbedding, nResults));
+    }
+
+    /**
+     * Blocking query restricted to chunks from the given sources; an empty set searches everything.
+     * Shares the cache and in-flight calls of the filtered {@link #queryAsync(Embedding, int, Set)}.
+     */
+    @Cacheable(value = "chromaRetrievals", key = "T(com.example.slainte.service.ChromaDBLowLevelService).queryKey(#queryEmbedding, #nResults, #sources)")
+    public RetrievalResult query(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        return inFlight.execute(queryKey(queryEmbedding, nResults, sources),
+                () -> queryChroma(queryEmbedding, nResults, sources));
+    }
+
+    private RetrievalResult queryChroma(Embedding queryEmbedding, int nResults) {
+        return queryChroma(queryEmbedding, nResults, Collections.emptySet());
+    }
+
+    private RetrievalResult queryChroma(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        return sendQuery(queryEmbedding, nResults, sources).block();
+    }
+
+    /**
+     * Non-blocking variant of {@link #query}: the request is sent with the WebClient, so no thread
+     * waits while ChromaDB searches. Shares the chromaRetrievals cache and in-flight calls with query.
+     */
+    @Override
+    @Cacheable(value = "chromaRetrievals", key = "#queryEmbedding.fingerprint() + '-' + #nResults")
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int nResults) {
+        return inFlight.executeAsync(queryEmbedding.fingerprint() + "-" + nResults,
+                () -> sendQuery(queryEmbedding, nResults));
+    }
+
+    /**
+     * Non-blocking query restricted to chunks from the given sources, with a {@code where} filter
+     * on their {@code source} metadata, so ChromaDB only searches that part of the collection.
+     * Filtered results are cached and shared per embedding, result count and set of sources.
+     */
+    @Override
+    @Cacheable(value = "chromaRetrievals", key = "T(com.example.slainte.service.ChromaDBLowLevelService).queryKey(#queryEmbedding, #nResults, #sources)")
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        if (sources.isEmpty()) {
+            return queryAsync(queryEmbedding, nResults);
+        }
+        return inFlight.executeAsync(queryKey(queryEmbedding, nResults, sources),
+                () -> sendQuery(queryEmbedding, nResults, sources));
+    }
+
+    /**
+     * Cache and single-flight key of a query; the sources are sorted so any set of the same names shares it
+     */
+    public static String queryKey(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        String key = queryEmbedding.fingerprint() + "-" + nResults;
+        if (sources.isEmpty()) {
+            return key;
+        }
+        return key + "-" + String.join("|", new TreeSet<>(sources));
+    }
+
+    private Mono<RetrievalResult> sendQuery(Embedding queryEmbedding, int nResults) {
+        return sendQuery(queryEmbedding, nResults, Collections.emptySet());
+    }
+
+    /**
+     * Sends one query and decodes the response; failures are returned as error results
+     */
+    private Mono<RetrievalResult> sendQuery(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        return Mono.fromSupplier(() -> createQueryBody(queryEmbedding, nResults, sources))
+            .flatMap(requestBody -> webClient.post()
+                .bodyValue(requestBody)
+                .exchangeToMono(this::readQueryResponse))
+            .onErrorResume(e -> {
+                logger.error("Error querying ChromaDB: {}", e.getMessage(), e);
+                return Mono.just(RetrievalResult.error("Error querying ChromaDB: " + e.getMessage()));
+            });
+    }
+
+    /**
+     * Decodes a successful response from its bytes; the body of an error response is kept as the message
+     */
+    private Mono<RetrievalResult> readQueryResponse(ClientResponse response) {
+        if (!response.statusCode().is2xxSuccessful()) {
+            return response.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .map(body -> {
+                    logger.error("ChromaDB error response: {} - {}", response.statusCode().value(), body);
+                    return RetrievalResult.error("Error from ChromaDB: " + body);
+                });
+        }
+        // The received chunks are joined into one buffer and parsed in place, never copied into a string
+        return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()))
+            .map(this::decodeQueryResponse)
+            .switchIfEmpty(Mono.fromSupplier(() -> RetrievalResult.error("Error querying ChromaDB: empty response")));
+    }
+
+    private RetrievalResult decodeQueryResponse(DataBuffer body) {
+        // Closing the stream releases the buffer
+        try (InputStream in = body.asInputStream(true)) {
+            RetrievalResult result = ChromaQueryDecoder.decode(in);
+            // The context itself is logged, sampled, by the retrieval event log
+            logger.debug("ChromaDB returned {} documents", result.size());
+            return result;
+        } catch (IOException e) {
             logger.error("Error querying ChromaDB: {}", e.getMessage(), e);
-            return "Error querying ChromaDB: " + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+            return RetrievalResult.error("Error querying ChromaDB: " + e.getMessage());
         }
     }
-    
+
     /**
-     * Get raw results from ChromaDB for programmatic access
+     * Builds the body of a single-embedding query asking for documents, metadata and distances,
+     * filtered to the given sources unless there are none
      */
-    public Map<String, Object> getRawResults(List<Double> queryEmbedding, int nResults) {
-        HttpURLConnection conn = null;
-        try {
-            logger.info("Getting raw results from ChromaDB with embedding of size: {} for {} results", 
-                    queryEmbedding.size(), nResults);
-            
-            // Validate embedding dimensions
-            if (queryEmbedding.size() != 768) {
-                logger.warn("Embedding dimension {} does not match required dimension 768", queryEmbedding.size());
-                // Pad or truncate if needed - padding is safer
-                if (queryEmbedding.size() < 768) {
-                    // Pad with zeros
-                    List<Double> paddedEmbedding = new ArrayList<>(queryEmbedding);
-                    while (paddedEmbedding.size() < 768) {
-                        paddedEmbedding.add(0.0);
-                    }
-                    queryEmbedding = paddedEmbedding;
-                    logger.info("Padded embedding to 768 dimensions");
-                } else {
-                    // Truncate
-                    queryEmbedding = queryEmbedding.subList(0, 768);
-                    logger.info("Truncated embedding to 768 dimensions");
-                }
-            }
-            
-            // Create the URL
-            URL url = new URL(CHROMADB_URL);
-            
-            // Open connection
-            conn = (HttpURLConnection) url.openConnection();
-            
-            // Setup the request
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setDoOutput(true);
-            
-            // Create the query body
+    Map<String, Object> createQueryBody(Embedding queryEmbedding, int nResults, Set<String> sources) {
+        logger.info("Querying ChromaDB with embedding of size: {} for {} results",
+                queryEmbedding.size(), nResults);
+
+        // Validate embedding dimensions
+        if (queryEmbedding.size() != Embedding.DIMENSION) {
+            logger.warn("Embedding dimension {} does not match required dimension {}",
+                    queryEmbedding.size(), Embedding.DIMENSION);
+            // Pad with zeros or truncate in a single copy - padding is safer
+            queryEmbedding = queryEmbedding.resize(Embedding.DIMENSION);
+            logger.info("Resized embedding to {} dimensions", Embedding.DIMENSION);
+        }
+
+        // Create the query body
+        Map<String, Object> requestBody = new HashMap<>();
+
+        // For ChromaDB, query_embeddings is a single array of arrays
+        requestBody.put("query_embeddings", List.of(queryEmbedding));
+        requestBody.put("n_results", nResults);
+
+        // Add include parameters as array
+        List<String> include = Arrays.asList("documents", "metadatas", "distances");
+        requestBody.put("include", include);
+
+        if (!sources.isEmpty()) {
+            requestBody.put("where", Map.of("source", Map.of("$in", new ArrayList<>(sources))));
+        }
+        return requestBody;
+    }
+
+    @Override
+    public String getName() {
+        return "chroma";
+    }
+
+    /**
+     * Collapsed calls, executions and in-flight keys of the query single-flight
+     */
+    public Map<String, Object> getSingleFlightStats() {
+        return inFlight.getStats();
+    }
+
+    /**
+     * Fetch one page of stored records (ids, embeddings, documents and metadata) from the collection.
+     * Used to load the corpus into an embedded vector store; an empty page means the end was reached.
+     */
+    public List<VectorRecord> fetchRecords(int offset, int limit) throws IOException {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("offset", offset);
+        requestBody.put("limit", limit);
+        requestBody.put("include", Arrays.asList("embeddings", "documents", "metadatas"));
+
+        ChromaResponse response = post(CHROMADB_GET_URL, requestBody);
+        if (!response.isSuccess()) {
+            throw new IOException("ChromaDB returned " + response.status + " for get: " + response.body);
+        }
+        return parseGetResponse(objectMapper.readValue(response.body, Map.class));
+    }
+
+    /**
+     * Fetch every record in the collection, one page of {@code batchSize} records at a time
+     */
+    public List<VectorRecord> fetchAllRecords(int batchSize) throws IOException {
+        int limit = Math.max(1, batchSize);
+        List<VectorRecord> records = new ArrayList<>();
+        List<VectorRecord> page;
+        do {
+            page = fetchRecords(records.size(), limit);
+            records.addAll(page);
+        } while (page.size() == limit);
+        logger.info("Fetched {} records from ChromaDB collection {}", records.size(), COLLECTION_NAME);
+        return records;
+    }
+
+    /**
+     * The distinct {@code source} metadata values in the collection, i.e. the ingested documents.
+     * Only the metadata is fetched, one page of {@code batchSize} records at a time.
+     */
+    public Set<String> fetchSources(int batchSize) throws IOException {
+        int limit = Math.max(1, batchSize);
+        Set<String> sources = new HashSet<>();
+        int offset = 0;
+        List<VectorRecord> page;
+        do {
             Map<String, Object> requestBody = new HashMap<>();
-            
-            // For ChromaDB, query_embeddings is a single array of arrays
-            List<List<Double>> embeddings = new ArrayList<>();
-            embeddings.add(queryEmbedding);
-            requestBody.put("query_embeddings", embeddings);
-            requestBody.put("n_results", nResults);
-            
-            // Add include parameters as array
-            List<String> include = Arrays.asList("documents", "metadatas", "distances");
-            requestBody.put("include", include);
-            
-            // Convert the map to a JSON string
-            String jsonRequest = objectMapper.writeValueAsString(requestBody);
-            
-            // Write the request body
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonRequest.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+            requestBody.put("offset", offset);
+            requestBody.put("limit", limit);
+            requestBody.put("include", List.of("metadatas"));
+
+            ChromaResponse response = post(CHROMADB_GET_URL, requestBody);
+            if (!response.isSuccess()) {
+                throw new IOException("ChromaDB returned " + response.status + " for get: " + response.body);
             }
-            
-            // Get the response
-            int responseCode = conn.getResponseCode();
-            
-            // Read the response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
+            page = parseGetResponse(objectMapper.readValue(response.body, Map.class));
+            for (VectorRecord record : page) {
+                Object source = record.getMetadata() != null ? record.getMetadata().get("source") : null;
+                if (source != null) {
+                    sources.add(source.toString());
                 }
             }
-            
-            if (responseCode >= 200 && responseCode < 300) {
-                return objectMapper.readValue(response.toString(), Map.class);
-            } else {
-                logger.error("ChromaDB error fetching raw results: {} - {}", responseCode, response.toString());
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("error", "Error from ChromaDB: " + response.toString());
-                return errorResponse;
-            }
-            
-        } catch (Exception e) {
-            logger.error("Error getting raw results from ChromaDB: {}", e.getMessage(), e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Error: " + e.getMessage());
-            return errorResponse;
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+            offset += page.size();
+        } while (page.size() == limit);
+        logger.info("Found {} sources in ChromaDB collection {}", sources.size(), COLLECTION_NAME);
+        return sources;
+    }
+
+    /**
+     * Number of records in the collection; embedded stores compare it with what they were built from
+     */
+    public long fetchCount() throws IOException {
+        ChromaResponse response;
+        try {
+            response = webClient.get()
+                .uri(URI.create(CHROMADB_COUNT_URL))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchangeToMono(clientResponse -> clientResponse.bodyToMono(String.class)
+                    .defaultIfEmpty("")
+                    .map(body -> new ChromaResponse(clientResponse.statusCode().value(), body)))
+                .block();
+        } catch (RuntimeException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (!response.isSuccess()) {
+            throw new IOException("ChromaDB returned " + response.status + " for count: " + response.body);
+        }
+        try {
+            return Long.parseLong(response.body.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected count from ChromaDB: " + response.body, e);
+        }
+    }
+
+    /**
+     * POST a JSON body over the pooled WebClient and wait for the whole response, whatever its status
+     */
+    private ChromaResponse post(String endpoint, Map<String, Object> requestBody) throws IOException {
+        // Convert the map to a JSON string
+        String jsonRequest = objectMapper.writeValueAsString(requestBody);
+        logger.debug("Request JSON: {}", jsonRequest);
+
+        try {
+            ChromaResponse response = webClient.post()
+                .uri(URI.create(endpoint))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonRequest)
+                .exchangeToMono(clientResponse -> clientResponse.bodyToMono(String.class)
+                    .defaultIfEmpty("")
+                    .map(body -> new ChromaResponse(clientResponse.statusCode().value(), body)))
+                .block();
+            logger.debug("ChromaDB response code: {}", response.status);
+            return response;
+        } catch (RuntimeException e) {
+            throw new IOException(e.getMessage(), e);
         }
     }
+
+    /**
+     * Query ChromaDB and return the results formatted as a context string
+     */
+    public String queryDatabase(Embedding queryEmbedding, int nResults) {
+        return query(queryEmbedding, nResults).toContextString();
+    }
     
+    /**
+     * Get raw results from ChromaDB for programmatic access
+     */
+    public Map<String, Object> getRawResults(Embedding queryEmbedding, int nResults) {
+        return query(queryEmbedding, nResults).toRawResults();
+    }
+    
+    /**
+     * Convert a parsed ChromaDB get response (flat lists, one entry per record) into records.
+     * Records without an embedding get an empty one, so callers can page by record count.
+     */
     @SuppressWarnings("unchecked")
-    private String processChromaDBResponse(Map<String, Object> responseBody) {
-        try {
-            if (!responseBody.containsKey("documents")) {
-                return "No documents in response.";
-            }
-            
-            List<List<String>> documentsList = (List<List<String>>) responseBody.get("documents");
-            if (documentsList.isEmpty() || documentsList.get(0).isEmpty()) {
-                return "No documents found.";
-            }
-            
-            List<String> documents = documentsList.get(0);
-            List<Double> distances = new ArrayList<>();
-            List<Map<String, Object>> metadatas = new ArrayList<>();
-            
-            // Get distances if available
-            if (responseBody.containsKey("distances")) {
-                try {
-                    List<List<Double>> distancesList = (List<List<Double>>) responseBody.get("distances");
-                    if (!distancesList.isEmpty()) {
-                        distances = distancesList.get(0);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Couldn't process distances", e);
-                }
-            }
-            
-            // Get metadata if available
-            if (responseBody.containsKey("metadatas")) {
-                try {
-                    List<List<Map<String, Object>>> metadatasList = 
-                        (List<List<Map<String, Object>>>) responseBody.get("metadatas");
-                    if (!metadatasList.isEmpty()) {
-                        metadatas = metadatasList.get(0);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Couldn't process metadatas", e);
-                }
-            }
-            
-            // Build the result string with metadata
-            StringBuilder resultBuilder = new StringBuilder();
-            for (int i = 0; i < documents.size(); i++) {
-                String document = documents.get(i);
-                resultBuilder.append(document);
-                
-                // Add source metadata if available
-                if (i < metadatas.size() && metadatas.get(i) != null) {
-                    Map<String, Object> metadata = metadatas.get(i);
-                    if (metadata.containsKey("source")) {
-                        resultBuilder.append("\n[Source: ").append(metadata.get("source")).append("]");
-                    }
-                }
-                
-                // Add distance if available (for debugging)
-                if (i < distances.size()) {
-                    double distance = distances.get(i);
-                    logger.debug("Document {} distance: {}", i, distance);
-                }
-                
-                // Add separator between documents
-                if (i < documents.size() - 1) {
-                    resultBuilder.append("\n\n---\n\n");
-                }
-            }
-            
-            String result = resultBuilder.toString().trim();
-            
-            // Log a preview of the result
-            String preview = result.length() > 100 ? result.substring(0, 100) + "..." : result;
-            logger.info("ChromaDB returned {} documents. Preview: {}", documents.size(), preview);
-            
-            return result.isEmpty() ? "No relevant documents found." : result;
-            
-        } catch (Exception e) {
-            logger.error("Error processing ChromaDB response", e);
-            return "Error processing search results: " + e.getMessage();
+    List<VectorRecord> parseGetResponse(Map<String, Object> responseBody) {
+        List<String> ids = (List<String>) responseBody.getOrDefault("ids", Collections.emptyList());
+        List<List<Number>> embeddings = (List<List<Number>>) responseBody.get("embeddings");
+        List<String> documents = (List<String>) responseBody.get("documents");
+        List<Map<String, Object>> metadatas = (List<Map<String, Object>>) responseBody.get("metadatas");
+
+        List<VectorRecord> records = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            List<Number> values = embeddings != null && i < embeddings.size() ? embeddings.get(i) : null;
+            records.add(new VectorRecord(
+                    ids.get(i),
+                    values != null ? Embedding.fromList(values) : Embedding.empty(),
+                    documents != null && i < documents.size() ? documents.get(i) : null,
+                    metadatas != null && i < metadatas.size() ? metadatas.get(i) : null));
         }
+        return records;
     }
     
     /**
@@ -326,4 +387,18 @@ public class ChromaDBLowLevelService {
             return Collections.emptyList();
         }
     }
-}
\ No newline at end of file
+
+    private static final class ChromaResponse {
+        private final int status;
+        private final String body;
+
+        ChromaResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
@@ -3,14 +3,13 @@ package com.example.slainte.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.slainte.model.Embedding;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -22,15 +21,13 @@ public class ChromaDBService {
     private final String COLLECTION_NAME = "health_assistant";
     private final String COLLECTION_UUID = "4b704b22-bbe9-4f7c-a8d2-9c5cb5e6cc1b";
     private final String CHROMADB_URL;
-    private final HttpClient httpClient;
+    private final WebClient webClient;
     private final ObjectMapper objectMapper;
 
-    public ChromaDBService() {
+    public ChromaDBService(WebClient.Builder webClientBuilder) {
         // Use collection UUID instead of name in the URL
         this.CHROMADB_URL = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/query";
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.webClient = webClientBuilder.baseUrl(CHROMADB_URL).build();
         this.objectMapper = new ObjectMapper();
         logger.info("ChromaDB service initialized with URL: {}", CHROMADB_URL);
     }
@@ -39,38 +36,26 @@ public class ChromaDBService {
      * Query ChromaDB with the embedding vector.
      * Results are cached by the embedding signature to improve performance.
      */
-    @Cacheable(value = "chromaResults", key = "#queryEmbedding.hashCode() + '-' + #nResults")
-    public String queryDatabase(List<Double> queryEmbedding, int nResults) {
+    @Cacheable(value = "chromaResults", key = "#queryEmbedding.fingerprint() + '-' + #nResults")
+    public String queryDatabase(Embedding queryEmbedding, int nResults) {
         try {
             logger.info("Querying ChromaDB with embedding of size: {} for {} results", 
                     queryEmbedding.size(), nResults);
             
             // Validate embedding dimensions
-            if (queryEmbedding.size() != 768) {
-                logger.warn("Embedding dimension {} does not match required dimension 768", queryEmbedding.size());
-                // Pad or truncate if needed - padding is safer
-                if (queryEmbedding.size() < 768) {
-                    // Pad with zeros
-                    List<Double> paddedEmbedding = new ArrayList<>(queryEmbedding);
-                    while (paddedEmbedding.size() < 768) {
-                        paddedEmbedding.add(0.0);
-                    }
-                    queryEmbedding = paddedEmbedding;
-                    logger.info("Padded embedding to 768 dimensions");
-                } else {
-                    // Truncate
-                    queryEmbedding = queryEmbedding.subList(0, 768);
-                    logger.info("Truncated embedding to 768 dimensions");
-                }
+            if (queryEmbedding.size() != Embedding.DIMENSION) {
+                logger.warn("Embedding dimension {} does not match required dimension {}", 
+                        queryEmbedding.size(), Embedding.DIMENSION);
+                // Pad with zeros or truncate in a single copy - padding is safer
+                queryEmbedding = queryEmbedding.resize(Embedding.DIMENSION);
+                logger.info("Resized embedding to {} dimensions", Embedding.DIMENSION);
             }
             
             // Create the query body
             Map<String, Object> requestBody = new HashMap<>();
             
             // For ChromaDB, query_embeddings is a single array of arrays
-            List<List<Double>> embeddings = new ArrayList<>();
-            embeddings.add(queryEmbedding);
-            requestBody.put("query_embeddings", embeddings);
+            requestBody.put("query_embeddings", List.of(queryEmbedding));
             requestBody.put("n_results", nResults);
             
             // Add include parameters as array
@@ -81,26 +66,23 @@ public class ChromaDBService {
             String jsonRequest = objectMapper.writeValueAsString(requestBody);
             logger.debug("Request JSON: {}", jsonRequest);
             
-            // Create HTTP request with Java's HttpClient
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(CHROMADB_URL))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonRequest))
-                    .build();
-            
-            // Send the request
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            // Send the request over the pooled WebClient, keeping error responses instead of throwing
+            ResponseEntity<String> response = webClient.post()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(jsonRequest)
+                    .exchangeToMono(clientResponse -> clientResponse.toEntity(String.class))
+                    .block();
             
             // Check status code and response
-            int statusCode = response.statusCode();
+            int statusCode = response.getStatusCode().value();
             logger.debug("ChromaDB response status: {}", statusCode);
             
             if (statusCode >= 200 && statusCode < 300) {
-                Map<String, Object> responseBody = objectMapper.readValue(response.body(), Map.class);
+                Map<String, Object> responseBody = objectMapper.readValue(response.getBody(), Map.class);
                 return processChromaDBResponse(responseBody);
             } else {
-                logger.error("ChromaDB error response: {} - {}", statusCode, response.body());
-                return "Error from ChromaDB: " + response.body();
+                logger.error("ChromaDB error response: {} - {}", statusCode, response.getBody());
+                return "Error from ChromaDB: " + response.getBody();
             }
         } catch (Exception e) {
             logger.error("Error querying ChromaDB: {}", e.getMessage(), e);
@@ -112,7 +94,7 @@ public class ChromaDBService {
      * Async version of queryDatabase for parallel processing
      * Uses CompletableFuture for better integration with existing code
      */
-    public CompletableFuture<String> queryDatabaseAsync(List<Double> queryEmbedding, int nResults) {
+    public CompletableFuture<String> queryDatabaseAsync(Embedding queryEmbedding, int nResults) {
         return CompletableFuture.supplyAsync(() -> {
             return queryDatabase(queryEmbedding, nResults);
         });
@@ -187,9 +169,10 @@ public class ChromaDBService {
             
             String result = resultBuilder.toString().trim();
             
-            // Log a preview of the result
-            String preview = result.length() > 100 ? result.substring(0, 100) + "..." : result;
-            logger.info("ChromaDB returned {} documents. Preview: {}", documents.size(), preview);
+            logger.info("ChromaDB returned {} documents", documents.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Preview: {}", result.length() > 100 ? result.substring(0, 100) + "..." : result);
+            }
             
             return result.isEmpty() ? "No relevant documents found." : result;
             
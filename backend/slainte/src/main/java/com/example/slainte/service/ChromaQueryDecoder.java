@@ -0,0 +1,151 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Decodes a ChromaDB query response straight from its bytes into a {@link RetrievalResult}.
+ * <p>
+ * The body is read token by token with a streaming parser, so neither the whole body as a
+ * string nor a generic map tree is ever built; only the ids, documents, metadata and
+ * distances of the first query end up on the heap. Every other field (embeddings, uris,
+ * the include list, results of further queries) is skipped without being decoded.
+ */
+final class ChromaQueryDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ChromaQueryDecoder() {
+    }
+
+    /**
+     * Decodes the response and closes the stream
+     */
+    static RetrievalResult decode(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("ChromaDB query response is not a JSON object");
+            }
+
+            List<String> ids = null;
+            List<String> documents = null;
+            List<Map<String, Object>> metadatas = null;
+            List<Double> distances = null;
+            boolean hasDocuments = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "ids" -> ids = readFirst(parser, ChromaQueryDecoder::readString);
+                    case "documents" -> {
+                        hasDocuments = true;
+                        documents = readFirst(parser, ChromaQueryDecoder::readString);
+                    }
+                    case "metadatas" -> metadatas = readFirst(parser, ChromaQueryDecoder::readMetadata);
+                    case "distances" -> distances = readFirst(parser, ChromaQueryDecoder::readDistance);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (!hasDocuments) {
+                return RetrievalResult.error("No documents in response.");
+            }
+            return new RetrievalResult(ids, documents, metadatas, distances);
+        }
+    }
+
+    /**
+     * Reads the first inner list of a list of lists (one per query embedding) and skips the rest
+     */
+    private static <T> List<T> readFirst(JsonParser parser, ElementReader<T> reader) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            // null, or a value Chroma does not send here
+            parser.skipChildren();
+            return null;
+        }
+        List<T> first = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first == null && parser.currentToken() == JsonToken.START_ARRAY) {
+                first = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    first.add(reader.read(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return first;
+    }
+
+    // An element of an unexpected type is read as null, and skipped whole so the parser stays in step
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+            return parser.getValueAsString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static Double readDistance(JsonParser parser) throws IOException {
+        if (parser.currentToken().isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readMetadata(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            return (Map<String, Object>) readValue(parser);
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Reads the value at the current token the way a generic ObjectMapper would
+     */
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    object.put(name, readValue(parser));
+                }
+                return object;
+            case START_ARRAY:
+                List<Object> array = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+}
@@ -2,13 +2,10 @@ package com.example.slainte.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
+import org.springframework.web.reactive.function.client.WebClient;
 
 /**
  * A minimal service just for testing ChromaDB connectivity
@@ -19,12 +16,10 @@ public class ChromaTestService {
     
     private final String CHROMADB_HOST = "http://localhost:8000";
     private final String COLLECTION_NAME = "health_assistant";
-    private final HttpClient httpClient;
+    private final WebClient webClient;
     
-    public ChromaTestService() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+    public ChromaTestService(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.baseUrl(CHROMADB_HOST).build();
     }
     
     /**
@@ -32,7 +27,7 @@ public class ChromaTestService {
      */
     public String runMinimalTest() {
         try {
-            String url = CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_NAME + "/query";
+            String path = "/api/v1/collections/" + COLLECTION_NAME + "/query";
             
             // Create a 768-dimension embedding (all filled with 0.1)
             StringBuilder embeddingBuilder = new StringBuilder();
@@ -48,15 +43,14 @@ public class ChromaTestService {
             // Full JSON with correct dimensions
             String jsonBody = "{\"query_embeddings\":[" + embeddingBuilder.toString() + "],\"n_results\":1}";
             
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            ResponseEntity<String> response = webClient.post()
+                    .uri(path)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(jsonBody)
+                    .exchangeToMono(clientResponse -> clientResponse.toEntity(String.class))
+                    .block();
             
-            return "Status: " + response.statusCode() + "\nBody: " + response.body();
+            return "Status: " + response.getStatusCode().value() + "\nBody: " + response.getBody();
         } catch (Exception e) {
             return "Error in minimal test: " + e.getMessage();
         }
@@ -67,16 +61,12 @@ public class ChromaTestService {
      */
     public String testHeartbeat() {
         try {
-            String url = CHROMADB_HOST + "/api/v1/heartbeat";
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            ResponseEntity<String> response = webClient.get()
+                    .uri("/api/v1/heartbeat")
+                    .exchangeToMono(clientResponse -> clientResponse.toEntity(String.class))
+                    .block();
             
-            return "Status: " + response.statusCode() + "\nBody: " + response.body();
+            return "Status: " + response.getStatusCode().value() + "\nBody: " + response.getBody();
         } catch (Exception e) {
             return "Error checking heartbeat: " + e.getMessage();
         }
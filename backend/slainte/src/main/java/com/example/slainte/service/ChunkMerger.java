@@ -0,0 +1,188 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Stitches retrieved chunks that are neighbours in the same document back together.
+ * <p>
+ * The ingestion script cuts documents into chunks that overlap their successor by up to 50
+ * characters, and records each chunk's {@code source} and {@code chunk_index}. Hits are grouped
+ * by source and ordered by chunk index; consecutive chunks whose texts overlap are joined, with
+ * the overlap kept once. Consecutive chunks that do not overlap are left apart: a chunk cut back
+ * to a sentence end leaves a gap before the next one, and joining them would hide it.
+ * <p>
+ * A stitched chunk takes the place of its most relevant part, keeps the id and metadata of its
+ * first chunk and the smallest distance of its parts. Hits without the metadata are kept as they are.
+ */
+@Component
+public class ChunkMerger {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkMerger.class);
+
+    // Shorter matches could be chance; longer ones are searched up to the longest overlap expected
+    static final int MIN_OVERLAP = 8;
+    static final int MAX_OVERLAP = 256;
+
+    /**
+     * The retrieval with adjacent chunks stitched, in the order of the retrieval; the same
+     * instance when nothing could be stitched
+     */
+    public RetrievalResult merge(RetrievalResult retrieval) {
+        int count = retrieval.size();
+        if (retrieval.hasError() || count < 2 || retrieval.getMetadatas().size() != count) {
+            return retrieval;
+        }
+
+        // Positions in the retrieval of the chunks of each source, by chunk index
+        Map<String, TreeMap<Integer, Integer>> bySource = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> metadata = retrieval.getMetadatas().get(i);
+            if (metadata == null || metadata.get("source") == null || !(metadata.get("chunk_index") instanceof Number)) {
+                continue;
+            }
+            int chunkIndex = ((Number) metadata.get("chunk_index")).intValue();
+            bySource.computeIfAbsent(metadata.get("source").toString(), source -> new TreeMap<>())
+                .putIfAbsent(chunkIndex, i);
+        }
+
+        Stitching stitching = new Stitching(retrieval);
+        for (TreeMap<Integer, Integer> chunks : bySource.values()) {
+            if (chunks.size() < 2) {
+                continue;
+            }
+            List<Integer> run = new ArrayList<>();
+            StringBuilder runText = null;
+            int previousIndex = Integer.MIN_VALUE;
+            for (Map.Entry<Integer, Integer> chunk : chunks.entrySet()) {
+                String text = retrieval.getDocuments().get(chunk.getValue());
+                int overlap = runText != null && chunk.getKey() == previousIndex + 1 ? overlap(runText, text) : 0;
+                if (overlap > 0) {
+                    runText.append(text, overlap, text.length());
+                } else {
+                    stitching.add(run, runText);
+                    run = new ArrayList<>();
+                    runText = new StringBuilder(text);
+                }
+                run.add(chunk.getValue());
+                previousIndex = chunk.getKey();
+            }
+            stitching.add(run, runText);
+        }
+        if (stitching.getMerged() == 0) {
+            return retrieval;
+        }
+        logger.debug("Stitched {} retrieved chunks onto their neighbours", stitching.getMerged());
+        return stitching.toResult();
+    }
+
+    /**
+     * Length of the longest end of {@code previous} that {@code next} starts with, or 0 if shorter than MIN_OVERLAP
+     */
+    static int overlap(CharSequence previous, String next) {
+        int longest = Math.min(MAX_OVERLAP, Math.min(previous.length(), next.length()));
+        for (int length = longest; length >= MIN_OVERLAP; length--) {
+            if (endsWith(previous, next, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean endsWith(CharSequence previous, String next, int length) {
+        int offset = previous.length() - length;
+        for (int i = 0; i < length; i++) {
+            if (previous.charAt(offset + i) != next.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The runs of one retrieval, each stored at the position of its most relevant chunk
+     */
+    private static final class Stitching {
+        private final RetrievalResult retrieval;
+        private final String[] texts;
+        // The chunk whose id and metadata a position takes: the first of its run
+        private final int[] origin;
+        // The position a chunk's run is stored at
+        private final int[] slot;
+        private int merged;
+
+        Stitching(RetrievalResult retrieval) {
+            int count = retrieval.size();
+            this.retrieval = retrieval;
+            this.texts = retrieval.getDocuments().toArray(new String[0]);
+            this.origin = new int[count];
+            this.slot = new int[count];
+            for (int i = 0; i < count; i++) {
+                origin[i] = i;
+                slot[i] = i;
+            }
+        }
+
+        /**
+         * Stores a run of chunks in chunk order with its stitched text; single chunks stay as they are
+         */
+        void add(List<Integer> run, StringBuilder text) {
+            if (run.size() < 2) {
+                return;
+            }
+            // Retrievals list the nearest chunk first
+            int target = Collections.min(run);
+            texts[target] = text.toString();
+            origin[target] = run.get(0);
+            for (int position : run) {
+                slot[position] = target;
+            }
+            merged += run.size() - 1;
+        }
+
+        RetrievalResult toResult() {
+            int count = texts.length;
+            boolean hasIds = retrieval.getIds().size() == count;
+            boolean hasDistances = retrieval.getDistances().size() == count;
+            List<String> ids = hasIds ? new ArrayList<>() : null;
+            List<String> documents = new ArrayList<>();
+            List<Map<String, Object>> metadatas = new ArrayList<>();
+            List<Double> distances = hasDistances ? new ArrayList<>() : null;
+            for (int i = 0; i < count; i++) {
+                if (slot[i] != i) {
+                    continue;
+                }
+                documents.add(texts[i]);
+                metadatas.add(retrieval.getMetadatas().get(origin[i]));
+                if (hasIds) {
+                    ids.add(retrieval.getIds().get(origin[i]));
+                }
+                if (hasDistances) {
+                    distances.add(nearest(i));
+                }
+            }
+            return new RetrievalResult(ids, documents, metadatas, distances);
+        }
+
+        /**
+         * The smallest distance of the chunks stored at a position
+         */
+        private Double nearest(int position) {
+            Double nearest = retrieval.getDistances().get(position);
+            for (int i = 0; i < slot.length; i++) {
+                Double distance = retrieval.getDistances().get(i);
+                if (slot[i] == position && distance != null && (nearest == null || distance < nearest)) {
+                    nearest = distance;
+                }
+            }
+            return nearest;
+        }
+
+        int getMerged() {
+            return merged;
+        }
+    }
+}
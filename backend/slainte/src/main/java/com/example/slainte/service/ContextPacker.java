@@ -0,0 +1,187 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.PromptBudgetProperties;
+import com.example.slainte.model.RetrievalResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Fits retrieved chunks into the prompt's token budget, so prefill time on the LLM is bounded
+ * by the budget rather than by how many chunks were retrieved.
+ * <p>
+ * Neighbouring chunks of a document are first stitched together by the {@link ChunkMerger}, so
+ * their overlap is counted and sent once. Chunks are then taken in order of relevance (distance,
+ * nearest first) while their estimated tokens, as formatted in the context with their source and
+ * separator, fit the budget. A chunk that does not fit is skipped and the smaller ones after it
+ * are still tried. The most relevant chunk is
+ * always kept, so a usable retrieval never becomes an empty context.
+ */
+@Component
+public class ContextPacker {
+    private static final Logger logger = LoggerFactory.getLogger(ContextPacker.class);
+
+    // Formatting RetrievalResult.toContextString adds around each chunk
+    private static final String SEPARATOR = "\n\n---\n\n";
+    private static final String SOURCE_PREFIX = "\n[Source: ";
+
+    private final PromptBudgetProperties properties;
+    private final TokenEstimator tokenEstimator;
+    private final ChunkMerger chunkMerger;
+    private final PipelineMetrics pipelineMetrics;
+
+    public ContextPacker(PromptBudgetProperties properties, TokenEstimator tokenEstimator,
+                         ChunkMerger chunkMerger, PipelineMetrics pipelineMetrics) {
+        this.properties = properties;
+        this.tokenEstimator = tokenEstimator;
+        this.chunkMerger = chunkMerger;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * The chunks of the retrieval that fit the budget, most relevant first, and their estimated tokens.
+     * Error and empty results are returned as they are.
+     */
+    public Packed pack(RetrievalResult retrieved) {
+        if (retrieved.hasError() || retrieved.size() == 0) {
+            return new Packed(retrieved, 0, 0);
+        }
+        RetrievalResult retrieval = retrieved;
+        if (properties.isMergeAdjacentChunks()) {
+            retrieval = chunkMerger.merge(retrieved);
+            pipelineMetrics.countMergedChunks(retrieved.size() - retrieval.size());
+        }
+        int count = retrieval.size();
+
+        int[] cost = new int[count];
+        for (int i = 0; i < count; i++) {
+            cost[i] = chunkTokens(retrieval, i);
+        }
+        Integer[] order = relevanceOrder(retrieval);
+        int budget = properties.isEnabled() ? properties.getContextTokens() : Integer.MAX_VALUE;
+
+        int[] selected = new int[count];
+        int selectedCount = 0;
+        int tokens = 0;
+        for (int i : order) {
+            if (selectedCount == 0 || (long) tokens + cost[i] <= budget) {
+                selected[selectedCount++] = i;
+                tokens += cost[i];
+            }
+        }
+        int dropped = count - selectedCount;
+        pipelineMetrics.recordContextTokens(tokens, dropped);
+        if (dropped == 0 && isSorted(order)) {
+            return new Packed(retrieval, tokens, 0);
+        }
+        logger.info("Packed {} of {} chunks into {} of {} context tokens", selectedCount, count, tokens, budget);
+        return new Packed(select(retrieval, Arrays.copyOf(selected, selectedCount)), tokens, dropped);
+    }
+
+    /**
+     * Estimated tokens of a context that was not packed
+     */
+    public int estimateTokens(String context) {
+        return tokenEstimator.estimate(context);
+    }
+
+    /**
+     * Estimated tokens of a chunk as it appears in the context: text, source line and separator
+     */
+    private int chunkTokens(RetrievalResult retrieval, int i) {
+        int tokens = tokenEstimator.estimate(retrieval.getDocuments().get(i)) + tokenEstimator.estimate(SEPARATOR);
+        if (i < retrieval.getMetadatas().size() && retrieval.getMetadatas().get(i) != null) {
+            Object source = retrieval.getMetadatas().get(i).get("source");
+            if (source != null) {
+                tokens += tokenEstimator.estimate(SOURCE_PREFIX + source + "]");
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Indices by ascending distance; the retrieval's own order when distances are missing
+     */
+    private static Integer[] relevanceOrder(RetrievalResult retrieval) {
+        Integer[] order = new Integer[retrieval.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        List<Double> distances = retrieval.getDistances();
+        if (distances.size() != order.length) {
+            return order;
+        }
+        for (Double distance : distances) {
+            if (distance == null) {
+                return order;
+            }
+        }
+        // Stable, so equally distant chunks keep their order
+        Arrays.sort(order, Comparator.comparingDouble(distances::get));
+        return order;
+    }
+
+    private static boolean isSorted(Integer[] order) {
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RetrievalResult select(RetrievalResult retrieval, int[] indices) {
+        int count = retrieval.size();
+        return new RetrievalResult(select(retrieval.getIds(), indices, count),
+                select(retrieval.getDocuments(), indices, count),
+                select(retrieval.getMetadatas(), indices, count),
+                select(retrieval.getDistances(), indices, count));
+    }
+
+    // Lists that are not one entry per document are left out rather than misaligned
+    private static <T> List<T> select(List<T> values, int[] indices, int count) {
+        if (values.size() != count) {
+            return null;
+        }
+        List<T> selected = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            selected.add(values.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * A retrieval cut down to the token budget
+     */
+    public static class Packed {
+        private final RetrievalResult retrieval;
+        private final int tokens;
+        private final int dropped;
+
+        Packed(RetrievalResult retrieval, int tokens, int dropped) {
+            this.retrieval = retrieval;
+            this.tokens = tokens;
+            this.dropped = dropped;
+        }
+
+        public RetrievalResult getRetrieval() {
+            return retrieval;
+        }
+
+        /**
+         * Estimated tokens of the packed context
+         */
+        public int getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Chunks that did not fit
+         */
+        public int getDropped() {
+            return dropped;
+        }
+    }
+}
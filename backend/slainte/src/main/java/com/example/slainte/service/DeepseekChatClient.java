@@ -1,11 +1,16 @@
 package com.example.slainte.service;
 
+import com.example.slainte.config.PromptBudgetProperties;
+import com.example.slainte.dto.LlmStreamChunk;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
@@ -15,13 +20,30 @@ import java.util.Map;
 public class DeepseekChatClient {
     private static final Logger logger = LoggerFactory.getLogger(DeepseekChatClient.class);
 
+    // Returned when Ollama's reply has no response field; not an answer, so never cached
+    public static final String NO_RESPONSE = "No response from AI.";
+
     private final String AI_API_URL = "http://localhost:11434/api/generate";
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    // Calibrated with the prompt token counts Ollama reports
+    private final TokenEstimator tokenEstimator;
+    private final PipelineMetrics pipelineMetrics;
 
     public DeepseekChatClient(WebClient.Builder webClientBuilder) {
+        this(webClientBuilder, new TokenEstimator(new PromptBudgetProperties(), new SimpleMeterRegistry()));
+    }
+
+    public DeepseekChatClient(WebClient.Builder webClientBuilder, TokenEstimator tokenEstimator) {
+        this(webClientBuilder, tokenEstimator, new PipelineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Autowired
+    public DeepseekChatClient(WebClient.Builder webClientBuilder, TokenEstimator tokenEstimator, PipelineMetrics pipelineMetrics) {
         this.webClient = webClientBuilder.baseUrl(AI_API_URL).build();
         this.objectMapper = new ObjectMapper();
+        this.tokenEstimator = tokenEstimator;
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     // System prompt defined here 
@@ -37,18 +59,13 @@ public class DeepseekChatClient {
             
             logger.debug("Full prompt to LLM: {}", fullPrompt);
             
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "deepseek-r1:1.5b");
-            requestBody.put("prompt", fullPrompt);
-            requestBody.put("temperature", 0.0);
-            requestBody.put("stream", false);
-
+            Map<String, Object> requestBody = createRequestBody(fullPrompt, false);
             
             String response = webClient.post()
                 .bodyValue(requestBody)
                 .retrieve()
                 .bodyToMono(String.class)
-                .map(this::extractResponse)
+                .map(json -> extractResponse(json, fullPrompt, null))
                 .block(); // Still blocking for now, but prepared for future async implementation
                 
             return response;
@@ -59,38 +76,98 @@ public class DeepseekChatClient {
     }
     
     /**
-     * Async version of prompt for non-blocking operations
+     * Async version of prompt for non-blocking operations. When the request is timed, Ollama's
+     * prompt evaluation and generation durations are added to its timings as llm-prefill and llm-generate.
+     * The generation speed is recorded from Ollama's token count and generation duration, as for streams.
      */
     public Mono<String> promptAsync(String inputText) {
         String fullPrompt = createOptimizedPrompt(inputText);
         
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", "deepseek-r1:7b");
-        requestBody.put("prompt", fullPrompt);
-        requestBody.put("temperature", 0.0);
-        requestBody.put("stream", false);
+        Map<String, Object> requestBody = createRequestBody(fullPrompt, false);
+        
+        return Mono.deferContextual(context -> webClient.post()
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(json -> extractResponse(json, fullPrompt, StageTimings.from(context))))
+            .onErrorResume(e -> Mono.just("Error retrieving response: " + e.getMessage()));
+    }
+    
+    /**
+     * Streaming version of prompt: emits each NDJSON chunk as Ollama generates it.
+     * The last chunk has done=true and carries the generation statistics.
+     */
+    public Flux<LlmStreamChunk> promptStream(String inputText) {
+        String fullPrompt = createOptimizedPrompt(inputText);
         
+        Map<String, Object> requestBody = createRequestBody(fullPrompt, true);
+        
+        // Each line of the NDJSON body is decoded as a separate string
         return webClient.post()
             .bodyValue(requestBody)
             .retrieve()
-            .bodyToMono(String.class)
-            .map(this::extractResponse)
-            .onErrorResume(e -> Mono.just("Error retrieving response: " + e.getMessage()));
+            .bodyToFlux(String.class)
+            .filter(line -> !line.isBlank())
+            .map(this::parseStreamChunk)
+            .doOnNext(chunk -> {
+                if (chunk.isDone() && chunk.getPromptEvalCount() != null) {
+                    tokenEstimator.calibrate(fullPrompt, chunk.getPromptEvalCount());
+                }
+            });
     }
     
+    /**
+     * The /api/generate request. Sampling parameters only take effect under "options"; at
+     * temperature 0 the same prompt gets the same answer, which the semantic answer cache relies on.
+     */
+    Map<String, Object> createRequestBody(String fullPrompt, boolean stream) {
+        Map<String, Object> options = new HashMap<>();
+        options.put("temperature", 0.0);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", "deepseek-r1:1.5b");
+        requestBody.put("prompt", fullPrompt);
+        requestBody.put("options", options);
+        requestBody.put("stream", stream);
+        return requestBody;
+    }
+
     /**
      * Creates an optimized prompt to reduce token usage
      */
-    private String createOptimizedPrompt(String inputText) {
+    String createOptimizedPrompt(String inputText) {
         // Only include essential parts of the system prompt
         String essentialPrompt = MAIN_SYSTEM_PROMPT;
         return essentialPrompt + "\n\nUser: " + inputText + "\nAI:";
     }
 
-    private String extractResponse(String jsonResponse) {
+    private LlmStreamChunk parseStreamChunk(String line) {
+        try {
+            return objectMapper.readValue(line, LlmStreamChunk.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Error parsing AI stream chunk: " + e.getMessage(), e);
+        }
+    }
+
+    private String extractResponse(String jsonResponse, String fullPrompt, StageTimings timings) {
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
-            return root.has("response") ? root.get("response").asText() : "No response from AI.";
+            if (fullPrompt != null && root.hasNonNull("prompt_eval_count")) {
+                tokenEstimator.calibrate(fullPrompt, root.get("prompt_eval_count").asLong());
+            }
+            if (timings != null) {
+                // Durations are reported in nanoseconds
+                if (root.hasNonNull("prompt_eval_duration")) {
+                    timings.add(StageTimings.LLM_PREFILL, root.get("prompt_eval_duration").asLong());
+                }
+                if (root.hasNonNull("eval_duration")) {
+                    timings.add(StageTimings.LLM_GENERATE, root.get("eval_duration").asLong());
+                }
+            }
+            if (root.hasNonNull("eval_count") && root.hasNonNull("eval_duration") && root.get("eval_duration").asLong() > 0) {
+                pipelineMetrics.recordTokensPerSecond(root.get("eval_count").asLong() * 1e9 / root.get("eval_duration").asLong());
+            }
+            return root.has("response") ? root.get("response").asText() : NO_RESPONSE;
         } catch (Exception e) {
             logger.error("Error parsing AI response", e);
             return "Error parsing AI response: " + e.getMessage();
@@ -0,0 +1,137 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.Embedding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent embedding calls into batched requests.
+ * <p>
+ * The first text of a batch starts a timer of {@code maxWait}; texts submitted before it fires
+ * join the same batch, which is sent when the timer fires or as soon as it holds
+ * {@code maxBatchSize} distinct texts. Identical texts in one batch are sent once. The sender
+ * returns one embedding per text in request order, and each result is handed back to every
+ * caller that asked for it.
+ */
+class EmbeddingBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    private final Function<List<String>, Mono<List<Embedding>>> sender;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    // Callers waiting on each distinct text, in submission order
+    private Map<String, List<CompletableFuture<Embedding>>> pending = new LinkedHashMap<>();
+    private Disposable scheduledFlush;
+
+    EmbeddingBatcher(Function<List<String>, Mono<List<Embedding>>> sender, int maxBatchSize, Duration maxWait) {
+        this(sender, maxBatchSize, maxWait, Schedulers.parallel());
+    }
+
+    EmbeddingBatcher(Function<List<String>, Mono<List<Embedding>>> sender, int maxBatchSize, Duration maxWait,
+                     Scheduler scheduler) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.sender = sender;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues the text for the next batch; nothing is queued until the result is subscribed to
+     */
+    Mono<Embedding> submit(String text) {
+        return Mono.defer(() -> Mono.fromFuture(enqueue(text)));
+    }
+
+    private CompletableFuture<Embedding> enqueue(String text) {
+        CompletableFuture<Embedding> result = new CompletableFuture<>();
+        Map<String, List<CompletableFuture<Embedding>>> ready = null;
+        synchronized (lock) {
+            pending.computeIfAbsent(text, t -> new ArrayList<>(1)).add(result);
+            if (pending.size() >= maxBatchSize) {
+                ready = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flushOnTimer, maxWaitNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return result;
+    }
+
+    private void flushOnTimer() {
+        Map<String, List<CompletableFuture<Embedding>>> ready;
+        synchronized (lock) {
+            // Cleared first so the running timer is not disposed (and interrupted) by takePending
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            ready = takePending();
+        }
+        send(ready);
+    }
+
+    // Must hold the lock
+    private Map<String, List<CompletableFuture<Embedding>>> takePending() {
+        Map<String, List<CompletableFuture<Embedding>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(Map<String, List<CompletableFuture<Embedding>>> batch) {
+        List<String> texts = new ArrayList<>(batch.keySet());
+        logger.debug("Sending embedding batch of {} texts", texts.size());
+        Mono<List<Embedding>> response;
+        try {
+            response = sender.apply(texts);
+        } catch (RuntimeException e) {
+            response = Mono.error(e);
+        }
+        response.defaultIfEmpty(List.of()).subscribe(
+                embeddings -> complete(texts, embeddings, batch),
+                error -> batch.values().forEach(callers -> fail(callers, error)));
+    }
+
+    private void complete(List<String> texts, List<Embedding> embeddings,
+                          Map<String, List<CompletableFuture<Embedding>>> batch) {
+        if (embeddings.size() != texts.size()) {
+            IllegalStateException error = new IllegalStateException(
+                    "Embedding batch returned " + embeddings.size() + " vectors for " + texts.size() + " texts");
+            batch.values().forEach(callers -> fail(callers, error));
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            Embedding embedding = embeddings.get(i);
+            for (CompletableFuture<Embedding> caller : batch.get(texts.get(i))) {
+                caller.complete(embedding);
+            }
+        }
+    }
+
+    private void fail(List<CompletableFuture<Embedding>> callers, Throwable error) {
+        for (CompletableFuture<Embedding> caller : callers) {
+            caller.completeExceptionally(error);
+        }
+    }
+}
@@ -2,108 +2,136 @@ package com.example.slainte.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import com.example.slainte.config.EmbeddingProperties;
+import com.example.slainte.dto.EmbeddingResponse;
+import com.example.slainte.dto.OllamaEmbedResponse;
+import com.example.slainte.model.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.regex.Pattern;
 
 @Service
 public class EmbeddingService {
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingService.class);
 
-    // Updated to use Ollama embedding service (alternatively can use the Flask proxy service)
-    private final String EMBEDDING_API_URL = "http://localhost:5000/embed";
-    // Direct Ollama API (uncomment to use directly instead of through Flask)
-    // private final String EMBEDDING_API_URL = "http://localhost:11434/api/embeddings";
-    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     private final WebClient webClient;
-    private final boolean useDirectOllamaApi = false; // Set to true to use Ollama API directly
+    private final EmbeddingProperties properties;
+    private final PipelineMetrics pipelineMetrics;
+    // Only set in ollama mode, where concurrent calls share batched /api/embed requests
+    private final EmbeddingBatcher batcher;
+    // Concurrent requests for the same question share one embedding call
+    private final SingleFlight<String, Embedding> inFlight = new SingleFlight<>("embeddings");
 
     public EmbeddingService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.baseUrl(EMBEDDING_API_URL).build();
+        this(webClientBuilder, new EmbeddingProperties());
+    }
+
+    public EmbeddingService(WebClient.Builder webClientBuilder, EmbeddingProperties properties) {
+        this(webClientBuilder, properties, new PipelineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Autowired
+    public EmbeddingService(WebClient.Builder webClientBuilder, EmbeddingProperties properties, PipelineMetrics pipelineMetrics) {
+        this.properties = properties;
+        this.pipelineMetrics = pipelineMetrics;
+        if (properties.isOllamaMode()) {
+            this.webClient = webClientBuilder.baseUrl(properties.getOllamaUrl()).build();
+            this.batcher = new EmbeddingBatcher(this::embedBatch,
+                    properties.getBatch().getMaxSize(), properties.getBatch().getMaxWait());
+            logger.info("Embedding texts through Ollama {} in batches of up to {} (window {})",
+                    properties.getOllamaUrl(), properties.getBatch().getMaxSize(), properties.getBatch().getMaxWait());
+        } else {
+            this.webClient = webClientBuilder.baseUrl(properties.getProxyUrl()).build();
+            this.batcher = null;
+        }
     }
 
     /**
      * Generates an embedding for a given text using the external embedding service.
-     * Results are cached to improve performance for repeated queries.
+     * Results are cached to improve performance for repeated queries. Only calls that miss the
+     * cache are timed as the embedding stage, so the request that computes a vector reports it.
+     * Empty embeddings from failed calls are not cached.
      */
-    @Cacheable("embeddings")
-    public List<Double> getEmbedding(String text) {
+    @Cacheable(value = "embeddings", unless = "#result == null || #result.isEmpty()")
+    public Embedding getEmbedding(String text) {
         try {
             logger.info("Generating embedding for text of length: {}", text.length());
-            
-            Map<String, Object> requestBody;
-            if (useDirectOllamaApi) {
-                // Format for direct Ollama API
-                requestBody = new HashMap<>();
-                requestBody.put("model", "nomic-embed-text");
-                requestBody.put("prompt", text);
-            } else {
-                // Format for Flask service
-                requestBody = new HashMap<>();
-                requestBody.put("text", text);
-            }
-            
-            Map response = webClient.post()
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block(); // Still blocking for now, but prepared for future async implementation
-                
-            if (response != null) {
-                if (useDirectOllamaApi && response.containsKey("embedding")) {
-                    // Ollama API returns embedding directly
-                    return (List<Double>) response.get("embedding");
-                } else if (!useDirectOllamaApi && response.containsKey("embedding")) {
-                    // Flask service format
-                    return (List<Double>) response.get("embedding");
-                }
+
+            Embedding embedding = pipelineMetrics.time(PipelineMetrics.Stage.EMBEDDING,
+                    () -> inFlight.execute(singleFlightKey(text), () -> requestEmbedding(text).block()));
+            if (embedding != null) {
+                return embedding;
             }
-            
+
             logger.warn("Invalid response format from embedding service");
         } catch (Exception e) {
             logger.error("Error fetching embedding: {}", e.getMessage(), e);
         }
-        return Collections.emptyList();
+        return Embedding.empty();
     }
     
     /**
-     * Async version of getEmbedding for non-blocking operations
+     * Async version of getEmbedding for non-blocking operations.
+     * Shares the embeddings cache with getEmbedding. A failed call completes with an empty
+     * embedding, which is not cached, so the next call for the same text tries again.
      */
-    public Mono<List<Double>> getEmbeddingAsync(String text) {
-        Map<String, Object> requestBody;
-        if (useDirectOllamaApi) {
-            // Format for direct Ollama API
-            requestBody = new HashMap<>();
-            requestBody.put("model", "nomic-embed-text");
-            requestBody.put("prompt", text);
-        } else {
-            // Format for Flask service
-            requestBody = new HashMap<>();
-            requestBody.put("text", text);
+    @Cacheable(value = "embeddings", unless = "#result == null || #result.isEmpty()")
+    public Mono<Embedding> getEmbeddingAsync(String text) {
+        return pipelineMetrics.time(PipelineMetrics.Stage.EMBEDDING,
+                inFlight.executeAsync(singleFlightKey(text), () -> requestEmbedding(text)))
+            .defaultIfEmpty(Embedding.empty())
+            .onErrorResume(e -> {
+                logger.error("Error fetching embedding async: {}", e.getMessage(), e);
+                return Mono.just(Embedding.empty());
+            });
+    }
+
+    /**
+     * Collapsed calls, executions and in-flight keys of the embedding single-flight
+     */
+    public Map<String, Object> getSingleFlightStats() {
+        return inFlight.getStats();
+    }
+
+    /**
+     * Key under which concurrent calls share one embedding: trimmed, whitespace collapsed and
+     * lower-cased. nomic-embed-text uses an uncased tokenizer, so these variants embed alike.
+     */
+    static String singleFlightKey(String text) {
+        return WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private Mono<Embedding> requestEmbedding(String text) {
+        if (batcher != null) {
+            return batcher.submit(text);
         }
-        
+        // The Flask service returns {"embedding": [...]}
+        return webClient.post()
+            .bodyValue(Map.of("text", text))
+            .retrieve()
+            .bodyToMono(EmbeddingResponse.class)
+            .mapNotNull(EmbeddingResponse::getEmbedding);
+    }
+
+    /**
+     * Sends one /api/embed request for a whole batch; Ollama returns the vectors in input order
+     */
+    private Mono<List<Embedding>> embedBatch(List<String> texts) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", properties.getModel());
+        requestBody.put("input", texts);
         return webClient.post()
             .bodyValue(requestBody)
             .retrieve()
-            .bodyToMono(Map.class)
-            .map(response -> {
-                if (response != null) {
-                    if (useDirectOllamaApi && response.containsKey("embedding")) {
-                        // Ollama API returns embedding directly
-                        return (List<Double>) response.get("embedding");
-                    } else if (!useDirectOllamaApi && response.containsKey("embedding")) {
-                        // Flask service format
-                        return (List<Double>) response.get("embedding");
-                    }
-                }
-                return Collections.<Double>emptyList();
-            })
-            .onErrorResume(e -> {
-                logger.error("Error fetching embedding async: {}", e.getMessage(), e);
-                return Mono.just(Collections.emptyList());
-            });
+            .bodyToMono(OllamaEmbedResponse.class)
+            .mapNotNull(OllamaEmbedResponse::getEmbeddings);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,259 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.index.Neighbors;
+import com.example.slainte.index.TopKHeap;
+import com.example.slainte.index.VectorKernel;
+import com.example.slainte.index.VectorKernels;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+/**
+ * Vector store that answers queries by exact brute-force search over an in-memory matrix.
+ * <p>
+ * Every chunk embedding is held row by row in one float array with its norm precomputed, so
+ * scoring a candidate is a single dot product run through the Vector API kernel (or the scalar
+ * kernel when the incubator module is not enabled). The k best candidates are kept in a
+ * fixed-size heap. At the collection's size this beats an approximate index and is never wrong.
+ * Rows are grouped by their {@code source} metadata, so a query restricted to some sources only
+ * scores the row ranges of those documents.
+ * <p>
+ * The corpus is copied from ChromaDB once the application is ready; until then queries are passed
+ * through to ChromaDB. Active when {@code slainte.vector-store.type=exact}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "slainte.vector-store", name = "type", havingValue = "exact")
+public class ExactVectorStore implements VectorStore {
+    private static final Logger logger = LoggerFactory.getLogger(ExactVectorStore.class);
+
+    private final ChromaDBLowLevelService chromaDBService;
+    private final VectorStoreProperties properties;
+    private final boolean cosine;
+    private final VectorKernel kernel = VectorKernels.best();
+
+    private volatile Snapshot snapshot;
+
+    public ExactVectorStore(ChromaDBLowLevelService chromaDBService, VectorStoreProperties properties) {
+        this.chromaDBService = chromaDBService;
+        this.properties = properties;
+        this.cosine = "cosine".equalsIgnoreCase(properties.getExact().getMetric());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Failed to load the corpus for exact search, queries will use ChromaDB: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches every record from ChromaDB and replaces the in-memory matrix
+     */
+    @Override
+    public void reload() throws Exception {
+        long start = System.currentTimeMillis();
+        List<VectorRecord> records = chromaDBService.fetchAllRecords(properties.getLoadBatchSize());
+        load(records);
+        logger.info("Exact search matrix loaded with {} records in {} ms using the {} kernel",
+                size(), System.currentTimeMillis() - start, kernel.getName());
+    }
+
+    /**
+     * Copies the records into a contiguous matrix and makes it the one queries use
+     */
+    public void load(List<VectorRecord> records) {
+        int dimension = Embedding.DIMENSION;
+        List<VectorRecord> indexed = new ArrayList<>(records.size());
+        for (VectorRecord record : records) {
+            if (record.getEmbedding().size() != dimension) {
+                logger.warn("Skipping record {} with embedding dimension {}", record.getId(), record.getEmbedding().size());
+                continue;
+            }
+            indexed.add(record);
+        }
+        // Stable, so the chunks of a document keep their order
+        indexed.sort(Comparator.comparing(ExactVectorStore::sourceOf));
+
+        Map<String, int[]> partitions = new HashMap<>();
+        for (int row = 0; row < indexed.size(); row++) {
+            int start = row;
+            partitions.computeIfAbsent(sourceOf(indexed.get(row)), source -> new int[] {start, start})[1] = row + 1;
+        }
+
+        float[] matrix = new float[indexed.size() * dimension];
+        float[] norms = new float[indexed.size()];
+        for (int row = 0; row < indexed.size(); row++) {
+            float[] values = indexed.get(row).getEmbedding().values();
+            System.arraycopy(values, 0, matrix, row * dimension, dimension);
+            float squaredNorm = kernel.dot(values, 0, values, 0, dimension);
+            // Cosine needs the inverse norm; squared L2 needs the squared norm
+            norms[row] = cosine ? inverseNorm(squaredNorm) : squaredNorm;
+        }
+        this.snapshot = new Snapshot(dimension, matrix, norms, indexed, partitions);
+    }
+
+    private static String sourceOf(VectorRecord record) {
+        Object source = record.getMetadata() != null ? record.getMetadata().get("source") : null;
+        return source != null ? source.toString() : "";
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.records.size() : 0;
+    }
+
+    @Override
+    public RetrievalResult query(Embedding queryEmbedding, int topK) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            logger.debug("Exact search matrix not loaded yet, querying ChromaDB");
+            return chromaDBService.query(queryEmbedding, topK);
+        }
+        return search(current, queryEmbedding, topK, new int[] {0, current.records.size()});
+    }
+
+    /**
+     * Exact search over the rows of the given sources only
+     */
+    public RetrievalResult query(Embedding queryEmbedding, int topK, Set<String> sources) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            logger.debug("Exact search matrix not loaded yet, querying ChromaDB");
+            return chromaDBService.query(queryEmbedding, topK, sources);
+        }
+        if (sources.isEmpty()) {
+            return query(queryEmbedding, topK);
+        }
+        int[] ranges = new int[sources.size() * 2];
+        int rangeCount = 0;
+        for (String source : sources) {
+            int[] partition = current.partitions.get(source);
+            if (partition != null) {
+                ranges[rangeCount++] = partition[0];
+                ranges[rangeCount++] = partition[1];
+            }
+        }
+        return search(current, queryEmbedding, topK, Arrays.copyOf(ranges, rangeCount));
+    }
+
+    /**
+     * Finds the nearest rows among the {@code [start, end)} row ranges listed pairwise in {@code ranges}
+     */
+    private RetrievalResult search(Snapshot current, Embedding queryEmbedding, int topK, int[] ranges) {
+        int count = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            count += ranges[i + 1] - ranges[i];
+        }
+        if (count == 0 || topK <= 0) {
+            return new RetrievalResult(null, null, null, null);
+        }
+
+        long start = System.nanoTime();
+        float[] query = queryEmbedding.resize(current.dimension).values();
+        Neighbors neighbors = search(current, query, Math.min(topK, count), ranges);
+
+        List<String> ids = new ArrayList<>(neighbors.size());
+        List<String> documents = new ArrayList<>(neighbors.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(neighbors.size());
+        List<Double> distances = new ArrayList<>(neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            VectorRecord record = current.records.get(neighbors.node(i));
+            ids.add(record.getId());
+            documents.add(record.getDocument());
+            metadatas.add(record.getMetadata());
+            distances.add((double) neighbors.distance(i));
+        }
+
+        logger.info("Exact search returned {} documents from {} of {} rows in {} us",
+                documents.size(), count, current.records.size(), (System.nanoTime() - start) / 1_000);
+        return new RetrievalResult(ids, documents, metadatas, distances);
+    }
+
+    /**
+     * Scores every row with one dot product: squared L2 is |q|^2 + |x|^2 - 2 q.x,
+     * and cosine distance is 1 - q.x / (|q| |x|)
+     */
+    private Neighbors search(Snapshot current, float[] query, int k, int[] ranges) {
+        int dimension = current.dimension;
+        float[] matrix = current.matrix;
+        float[] norms = current.norms;
+        float queryNorm = kernel.dot(query, 0, query, 0, dimension);
+        float queryScale = cosine ? inverseNorm(queryNorm) : 0f;
+
+        TopKHeap nearest = new TopKHeap(k);
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int row = ranges[i], offset = row * dimension; row < ranges[i + 1]; row++, offset += dimension) {
+                float dot = kernel.dot(query, 0, matrix, offset, dimension);
+                float distance = cosine
+                        ? 1f - dot * queryScale * norms[row]
+                        : Math.max(0f, queryNorm + norms[row] - 2f * dot);
+                nearest.offer(row, distance);
+            }
+        }
+        return nearest.drain();
+    }
+
+    private static float inverseNorm(float squaredNorm) {
+        return squaredNorm > 0f ? (float) (1.0 / Math.sqrt(squaredNorm)) : 0f;
+    }
+
+    @Override
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK) {
+        // Until the exact search matrix is loaded queries go to ChromaDB over HTTP, which must not block
+        if (snapshot == null) {
+            return chromaDBService.queryAsync(queryEmbedding, topK);
+        }
+        return VectorStore.super.queryAsync(queryEmbedding, topK);
+    }
+
+    @Override
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK, Set<String> sources) {
+        if (snapshot == null) {
+            return chromaDBService.queryAsync(queryEmbedding, topK, sources);
+        }
+        return Mono.fromSupplier(() -> query(queryEmbedding, topK, sources));
+    }
+
+    @Override
+    public String getName() {
+        return "exact";
+    }
+
+    private static final class Snapshot {
+        private final int dimension;
+        private final float[] matrix;
+        private final float[] norms;
+        // Indexed by matrix row
+        private final List<VectorRecord> records;
+        // The [start, end) rows of each source
+        private final Map<String, int[]> partitions;
+
+        Snapshot(int dimension, float[] matrix, float[] norms, List<VectorRecord> records,
+                 Map<String, int[]> partitions) {
+            this.dimension = dimension;
+            this.matrix = matrix;
+            this.norms = norms;
+            this.records = records;
+            this.partitions = partitions;
+        }
+    }
+}
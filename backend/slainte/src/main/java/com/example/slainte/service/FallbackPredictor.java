@@ -0,0 +1,50 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.FallbackHedgeProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a chat request should start the fallback search in parallel with the primary one.
+ * <p>
+ * Keeps an exponentially weighted share of primary retrievals that turned out too short to use.
+ * Failed retrievals are not recorded: they are not a property of the query, and hedging them
+ * would double the load on a failing embedding service or ChromaDB.
+ * While that share is above the threshold, the fallback is likely to be needed, so starting it
+ * early saves a serial round trip; otherwise it would mostly be wasted work and is not started.
+ * Every primary retrieval updates the share, hedged or not, so hedging stops once retrieval recovers.
+ */
+@Component
+public class FallbackPredictor {
+
+    private final FallbackHedgeProperties properties;
+    // The share as double bits, updated with compare-and-set
+    private final AtomicLong insufficientRate = new AtomicLong(Double.doubleToLongBits(0.0));
+
+    public FallbackPredictor(FallbackHedgeProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        Gauge.builder("slainte.retrieval.insufficient.rate", this, FallbackPredictor::getInsufficientRate)
+            .description("Recent share of successful primary retrievals that were too short to use")
+            .register(meterRegistry);
+    }
+
+    public boolean shouldHedge() {
+        return properties.isEnabled() && getInsufficientRate() >= properties.getRateThreshold();
+    }
+
+    public void recordPrimary(boolean insufficient) {
+        double outcome = insufficient ? 1.0 : 0.0;
+        double smoothing = properties.getSmoothing();
+        insufficientRate.getAndUpdate(bits -> {
+            double rate = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(rate + smoothing * (outcome - rate));
+        });
+    }
+
+    public double getInsufficientRate() {
+        return Double.longBitsToDouble(insufficientRate.get());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.index.HnswIndex;
+import com.example.slainte.index.Neighbors;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+/**
+ * Vector store that answers queries from an in-process HNSW graph instead of the ChromaDB server.
+ * <p>
+ * The health_assistant corpus is copied out of ChromaDB once the application is ready and indexed
+ * in memory. Until that load completes (or if it fails) queries are passed through to ChromaDB,
+ * so the application serves requests throughout. Active when {@code slainte.vector-store.type=hnsw}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "slainte.vector-store", name = "type", havingValue = "hnsw")
+public class HnswVectorStore implements VectorStore {
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorStore.class);
+
+    // Fixed seed so the same corpus always builds the same graph
+    private static final long LEVEL_SEED = 42L;
+
+    private final ChromaDBLowLevelService chromaDBService;
+    private final VectorStoreProperties properties;
+    private final VectorStoreProperties.Hnsw settings;
+
+    // Published only once fully built, so searches never see a partially built graph
+    private volatile Snapshot snapshot;
+
+    public HnswVectorStore(ChromaDBLowLevelService chromaDBService, VectorStoreProperties properties) {
+        this.chromaDBService = chromaDBService;
+        this.properties = properties;
+        this.settings = properties.getHnsw();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Failed to load the corpus into the HNSW index, queries will use ChromaDB: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches every record from ChromaDB and replaces the index with a freshly built one
+     */
+    @Override
+    public void reload() throws Exception {
+        long start = System.currentTimeMillis();
+        List<VectorRecord> records = chromaDBService.fetchAllRecords(properties.getLoadBatchSize());
+
+        long loaded = System.currentTimeMillis();
+        load(records);
+        logger.info("HNSW index built with {} records in {} ms (fetch {} ms, build {} ms)",
+                records.size(), System.currentTimeMillis() - start, loaded - start,
+                System.currentTimeMillis() - loaded);
+    }
+
+    /**
+     * Builds an index over the given records and makes it the one queries use
+     */
+    public void load(List<VectorRecord> records) {
+        HnswIndex index = new HnswIndex(Embedding.DIMENSION, settings.getM(), settings.getEfConstruction(), LEVEL_SEED);
+        List<VectorRecord> indexed = new ArrayList<>(records.size());
+        for (VectorRecord record : records) {
+            Embedding embedding = record.getEmbedding();
+            if (embedding.size() != Embedding.DIMENSION) {
+                logger.warn("Skipping record {} with embedding dimension {}", record.getId(), embedding.size());
+                continue;
+            }
+            index.add(embedding.values());
+            indexed.add(record);
+        }
+        this.snapshot = new Snapshot(index, indexed);
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.index.size() : 0;
+    }
+
+    @Override
+    public RetrievalResult query(Embedding queryEmbedding, int topK) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            logger.debug("HNSW index not loaded yet, querying ChromaDB");
+            return chromaDBService.query(queryEmbedding, topK);
+        }
+
+        long start = System.nanoTime();
+        Embedding query = queryEmbedding.resize(Embedding.DIMENSION);
+        Neighbors neighbors = current.index.search(query.values(), topK, settings.getEfSearch());
+
+        List<String> ids = new ArrayList<>(neighbors.size());
+        List<String> documents = new ArrayList<>(neighbors.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(neighbors.size());
+        List<Double> distances = new ArrayList<>(neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            VectorRecord record = current.records.get(neighbors.node(i));
+            ids.add(record.getId());
+            documents.add(record.getDocument());
+            metadatas.add(record.getMetadata());
+            distances.add((double) neighbors.distance(i));
+        }
+
+        logger.info("HNSW index returned {} documents in {} us", documents.size(), (System.nanoTime() - start) / 1_000);
+        return new RetrievalResult(ids, documents, metadatas, distances);
+    }
+
+    @Override
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK) {
+        // Until the HNSW index is loaded queries go to ChromaDB over HTTP, which must not block
+        if (snapshot == null) {
+            return chromaDBService.queryAsync(queryEmbedding, topK);
+        }
+        return VectorStore.super.queryAsync(queryEmbedding, topK);
+    }
+
+    @Override
+    public String getName() {
+        return "hnsw";
+    }
+
+    private static final class Snapshot {
+        private final HnswIndex index;
+        // Indexed by HNSW node number
+        private final List<VectorRecord> records;
+
+        Snapshot(HnswIndex index, List<VectorRecord> records) {
+            this.index = index;
+            this.records = records;
+        }
+    }
+}
@@ -2,38 +2,51 @@ package com.example.slainte.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
 import com.example.slainte.model.SearchResponse;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Service
 public class KnowledgeBaseService {
     private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseService.class);
     
     private final EmbeddingService embeddingService;
-    private final ChromaDBLowLevelService chromaDBService;
-    private final ExecutorService executorService;
+    private final VectorStore vectorStore;
+    // Spring's application task executor: a bounded pool, or one virtual thread per task
+    // when spring.threads.virtual.enabled is set on Java 21+. Shut down with the context.
+    private final TaskExecutor taskExecutor;
+    private final RetrievalEventLog retrievalEventLog;
+    private final PipelineMetrics pipelineMetrics;
     
-    // Add a variable to store the last retrieved context
-    private String lastRetrievedContext;
-    private Map<String, Object> lastRawResults;
+    // The last retrievals, for the diagnostics endpoints; each request writes its own slot
+    private final RecentRetrievals recentRetrievals = new RecentRetrievals(RECENT_RETRIEVALS);
     
     // Configuration for search
     private final int DEFAULT_TOP_K = 20;
     private final int MAX_TOP_K = 20;
+    private static final int RECENT_RETRIEVALS = 64;
     
     public KnowledgeBaseService(
             EmbeddingService embeddingService, 
-            ChromaDBLowLevelService chromaDBService) {
+            VectorStore vectorStore,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+            RetrievalEventLog retrievalEventLog,
+            PipelineMetrics pipelineMetrics) {
         this.embeddingService = embeddingService;
-        this.chromaDBService = chromaDBService;
-        this.executorService = Executors.newFixedThreadPool(4); // Thread pool for parallel processing
-        this.lastRetrievedContext = "";
-        this.lastRawResults = new HashMap<>();
+        this.vectorStore = vectorStore;
+        this.taskExecutor = taskExecutor;
+        this.retrievalEventLog = retrievalEventLog;
+        this.pipelineMetrics = pipelineMetrics;
+        logger.info("Knowledge base using vector store: {}, parallel searches on {}",
+                vectorStore.getName(), taskExecutor.getClass().getSimpleName());
     }
     
     /**
@@ -47,97 +60,162 @@ public class KnowledgeBaseService {
      * Synchronous method to search the knowledge base with customizable number of results
      */
     public String search(String query, int topK) {
+        return retrieve(query, topK).toContextString();
+    }
+    
+    /**
+     * Search the knowledge base and return the typed results (documents, sources, distances)
+     */
+    public RetrievalResult retrieve(String query) {
+        return retrieve(query, DEFAULT_TOP_K);
+    }
+    
+    /**
+     * Runs a single vector store query and records it as the last retrieval.
+     * The context string and raw results are both derived from the returned result.
+     */
+    public RetrievalResult retrieve(String query, int topK) {
         try {
             // Validate parameters
             if (query == null || query.trim().isEmpty()) {
-                return "Error: Query cannot be empty.";
+                return RetrievalResult.error("Error: Query cannot be empty.");
             }
             
             // Limit topK to a reasonable range
-            topK = Math.min(Math.max(1, topK), MAX_TOP_K);
+            int boundedTopK = Math.min(Math.max(1, topK), MAX_TOP_K);
             
-            logger.info("Searching knowledge base for query: {} (topK: {})", query, topK);
+            logger.info("Searching knowledge base for query: {} (topK: {})", query, boundedTopK);
             
-            // Get embeddings
-            List<Double> queryEmbedding = embeddingService.getEmbedding(query);
+            // Get embeddings; the embedding service times the call when it is not cached
+            Embedding queryEmbedding = embeddingService.getEmbedding(query);
             if (queryEmbedding == null || queryEmbedding.isEmpty()) {
                 logger.warn("Failed to generate embedding for query: {}", query);
-                return "Error: Failed to generate embedding.";
+                return RetrievalResult.error("Error: Failed to generate embedding.");
             }
             
             logger.info("Generated embedding of size: {}", queryEmbedding.size());
             
-            // Also store the raw results for programmatic access
-            this.lastRawResults = chromaDBService.getRawResults(queryEmbedding, topK);
-            
-            // Query ChromaDB
-            String result = chromaDBService.queryDatabase(queryEmbedding, topK);
-            
-            // Store the retrieved context
-            this.lastRetrievedContext = result;
-            
-            // Enhanced logging of retrieved context
-            logRetrievedContext(query, result);
-            
-            return result;
+            // Query the vector store once for documents, metadata, distances and ids
+            return recordRetrieval(query, pipelineMetrics.time(PipelineMetrics.Stage.VECTOR_QUERY,
+                    () -> vectorStore.query(queryEmbedding, boundedTopK)));
         } catch (Exception e) {
             logger.error("Error searching knowledge base: {}", e.getMessage(), e);
-            return "Error: " + e.getMessage();
+            return RetrievalResult.error("Error: " + e.getMessage());
         }
     }
     
     /**
-     * Enhanced logging of retrieved context
+     * Non-blocking version of search
+     */
+    public Mono<String> searchAsync(String query) {
+        return retrieveAsync(query, DEFAULT_TOP_K).map(RetrievalResult::toContextString);
+    }
+    
+    /**
+     * Non-blocking version of retrieve
+     */
+    public Mono<RetrievalResult> retrieveAsync(String query) {
+        return retrieveAsync(query, DEFAULT_TOP_K);
+    }
+    
+    /**
+     * Non-blocking version of retrieve: the embedding and the vector store query are both
+     * awaited without parking a thread. Errors are returned as error results, as in retrieve.
      */
-    private void logRetrievedContext(String query, String result) {
-        // Log a preview of the retrieved context
-        String preview = result.length() > 200 ? result.substring(0, 200) + "..." : result;
-        logger.info("Retrieved context for query [{}]: {}", query, preview);
+    public Mono<RetrievalResult> retrieveAsync(String query, int topK) {
+        if (query == null || query.trim().isEmpty()) {
+            return Mono.just(RetrievalResult.error("Error: Query cannot be empty."));
+        }
         
-        // Log the full content with clear boundaries for better visibility
-        logger.info("==========BEGIN FULL CONTEXT==========");
+        int boundedTopK = Math.min(Math.max(1, topK), MAX_TOP_K);
+        logger.info("Searching knowledge base for query: {} (topK: {})", query, boundedTopK);
         
-        // Split and log by paragraphs for better readability
-        String[] paragraphs = result.split("\\n\\n");
-        for (int i = 0; i < paragraphs.length; i++) {
-            logger.info("PARAGRAPH {}: {}", i+1, paragraphs[i].replaceAll("\\n", " "));
+        return embeddingService.getEmbeddingAsync(query)
+            .defaultIfEmpty(Embedding.empty())
+            .flatMap(queryEmbedding -> {
+                if (queryEmbedding.isEmpty()) {
+                    logger.warn("Failed to generate embedding for query: {}", query);
+                    return Mono.just(RetrievalResult.error("Error: Failed to generate embedding."));
+                }
+                logger.info("Generated embedding of size: {}", queryEmbedding.size());
+                return pipelineMetrics.time(PipelineMetrics.Stage.VECTOR_QUERY,
+                        vectorStore.queryAsync(queryEmbedding, boundedTopK))
+                    .map(retrieval -> recordRetrieval(query, retrieval));
+            })
+            .onErrorResume(e -> {
+                logger.error("Error searching knowledge base: {}", e.getMessage(), e);
+                return Mono.just(RetrievalResult.error("Error: " + e.getMessage()));
+            });
+    }
+    
+    /**
+     * Non-blocking version of retrieve, restricted to the given sources
+     */
+    public Mono<RetrievalResult> retrieveAsync(String query, Set<String> sources) {
+        return retrieveAsync(query, DEFAULT_TOP_K, sources);
+    }
+    
+    /**
+     * Non-blocking retrieve restricted to the chunks of the given sources, e.g. the documents of the
+     * query's topic. When the restricted search fails or finds nothing, the whole corpus is searched
+     * with the same embedding. A topic with fewer than {@code topK} chunks keeps the ones it has,
+     * without a second round trip. An empty set searches everything.
+     */
+    public Mono<RetrievalResult> retrieveAsync(String query, int topK, Set<String> sources) {
+        if (sources.isEmpty()) {
+            return retrieveAsync(query, topK);
+        }
+        if (query == null || query.trim().isEmpty()) {
+            return Mono.just(RetrievalResult.error("Error: Query cannot be empty."));
         }
         
-        logger.info("==========END FULL CONTEXT==========");
-        
-        // Log statistics about the retrieved content
-        int charCount = result.length();
-        int wordCount = result.split("\\s+").length;
-        int paragraphCount = paragraphs.length;
+        int boundedTopK = Math.min(Math.max(1, topK), MAX_TOP_K);
+        logger.info("Searching {} sources of the knowledge base for query: {} (topK: {})",
+                sources.size(), query, boundedTopK);
         
-        logger.info("Context statistics - Characters: {}, Words: {}, Paragraphs: {}", 
-                charCount, wordCount, paragraphCount);
+        return embeddingService.getEmbeddingAsync(query)
+            .defaultIfEmpty(Embedding.empty())
+            .flatMap(queryEmbedding -> {
+                if (queryEmbedding.isEmpty()) {
+                    logger.warn("Failed to generate embedding for query: {}", query);
+                    return Mono.just(RetrievalResult.error("Error: Failed to generate embedding."));
+                }
+                return pipelineMetrics.time(PipelineMetrics.Stage.VECTOR_QUERY,
+                        vectorStore.queryAsync(queryEmbedding, boundedTopK, sources))
+                    .flatMap(routed -> {
+                        if (!routed.hasError() && routed.size() > 0) {
+                            pipelineMetrics.count(PipelineMetrics.RouteOutcome.ROUTED);
+                            return Mono.just(routed);
+                        }
+                        logger.info("Routed search found {} documents, searching the whole knowledge base", routed.size());
+                        pipelineMetrics.count(PipelineMetrics.RouteOutcome.WIDENED);
+                        return pipelineMetrics.time(PipelineMetrics.Stage.VECTOR_QUERY,
+                                vectorStore.queryAsync(queryEmbedding, boundedTopK));
+                    })
+                    .map(retrieval -> recordRetrieval(query, retrieval));
+            })
+            .onErrorResume(e -> {
+                logger.error("Error searching knowledge base: {}", e.getMessage(), e);
+                return Mono.just(RetrievalResult.error("Error: " + e.getMessage()));
+            });
+    }
+    
+    /**
+     * Stores the retrieval under a new request id for the diagnostics endpoints and hands it to the event log
+     */
+    private RetrievalResult recordRetrieval(String query, RetrievalResult retrieval) {
+        RecentRetrievals.Entry entry = recentRetrievals.record(query, retrieval);
+        logger.debug("Recorded retrieval {} for query [{}]", entry.getRequestId(), query);
+        // Sampled and written on the event log's own thread, not here
+        retrievalEventLog.publish(entry);
+        return retrieval;
     }
     
     /**
      * Get search results as a structured SearchResponse object
      */
     public SearchResponse getSearchResults(String query, int topK) {
-        // First perform the search to update lastRawResults
-        search(query, topK);
-        
-        // Create the response object
-        SearchResponse response = new SearchResponse();
-        
-        // Extract just the documents from the raw results
-        List<String> documents = chromaDBService.extractDocuments(lastRawResults);
-        
-        // Set the documents in the response
-        // Using reflection since SearchResponse doesn't have a setter
-        try {
-            java.lang.reflect.Field documentsField = SearchResponse.class.getDeclaredField("documents");
-            documentsField.setAccessible(true);
-            documentsField.set(response, documents);
-        } catch (Exception e) {
-            logger.error("Error setting documents in SearchResponse", e);
-        }
-        
-        return response;
+        return new SearchResponse(retrieve(query, topK).getDocuments());
     }
     
     /**
@@ -154,43 +232,8 @@ public class KnowledgeBaseService {
         // Make a final copy of the parameter for use in the lambda
         final int finalTopK = Math.min(Math.max(1, topK), MAX_TOP_K);
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Validate parameters
-                if (query == null || query.trim().isEmpty()) {
-                    return "Error: Query cannot be empty.";
-                }
-                
-                logger.info("Parallel searching knowledge base for query: {} (topK: {})", query, finalTopK);
-                
-                // First get the embedding
-                List<Double> queryEmbedding = embeddingService.getEmbedding(query);
-                if (queryEmbedding == null || queryEmbedding.isEmpty()) {
-                    logger.warn("Failed to generate embedding for query: {}", query);
-                    return "Error: Failed to generate embedding.";
-                }
-                
-                // Also store the raw results for programmatic access
-                synchronized(this) {
-                    this.lastRawResults = chromaDBService.getRawResults(queryEmbedding, finalTopK);
-                }
-                
-                // Then query ChromaDB with the embedding
-                String result = chromaDBService.queryDatabase(queryEmbedding, finalTopK);
-                
-                // Store the retrieved context
-                synchronized(this) {
-                    this.lastRetrievedContext = result;
-                    // Log the context
-                    logRetrievedContext(query, result);
-                }
-                
-                return result;
-            } catch (Exception e) {
-                logger.error("Error in parallel search: {}", e.getMessage(), e);
-                return "Error: " + e.getMessage();
-            }
-        }, executorService);
+        return CompletableFuture.supplyAsync(
+                () -> retrieve(query, finalTopK).toContextString(), taskExecutor);
     }
     
     /**
@@ -198,14 +241,19 @@ public class KnowledgeBaseService {
      * @return The last retrieved context as a string
      */
     public String getLastRetrievedContext() {
-        return this.lastRetrievedContext;
+        return recentRetrievals.latest()
+                .map(entry -> entry.getResult().toContextString())
+                .orElse("");
     }
     
     /**
      * Get the raw results from the last search
      */
     public Map<String, Object> getLastRawResults() {
-        return this.lastRawResults;
+        return recentRetrievals.latest()
+                .map(RecentRetrievals.Entry::getResult)
+                .orElseGet(() -> new RetrievalResult(null, null, null, null))
+                .toRawResults();
     }
     
     /**
@@ -213,30 +261,62 @@ public class KnowledgeBaseService {
      * Can be called by a controller to expose this data via API
      */
     public Map<String, Object> getLastContextInfo() {
+        return recentRetrievals.latest()
+                .map(this::describe)
+                .orElseGet(() -> describe(null));
+    }
+    
+    /**
+     * Context info of one retrieval, while it is still among the recent ones
+     */
+    public Optional<Map<String, Object>> getContextInfo(long requestId) {
+        return recentRetrievals.find(requestId).map(this::describe);
+    }
+    
+    /**
+     * Context info of up to {@code limit} recent retrievals, newest first
+     */
+    public List<Map<String, Object>> getRecentContextInfo(int limit) {
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (RecentRetrievals.Entry entry : recentRetrievals.recent(limit)) {
+            contexts.add(describe(entry));
+        }
+        return contexts;
+    }
+    
+    /**
+     * Published, sampled-out, dropped and written counts of the retrieval event log
+     */
+    public Map<String, Object> getRetrievalLogStats() {
+        return retrievalEventLog.getStats();
+    }
+    
+    private Map<String, Object> describe(RecentRetrievals.Entry entry) {
+        RetrievalResult result = entry != null ? entry.getResult() : new RetrievalResult(null, null, null, null);
+        // Nothing retrieved yet reads as an empty context
+        String context = entry != null ? result.toContextString() : "";
+        
         Map<String, Object> contextInfo = new HashMap<>();
-        contextInfo.put("context", this.lastRetrievedContext);
-        contextInfo.put("timestamp", new Date().toString());
-        contextInfo.put("contextLength", this.lastRetrievedContext.length());
+        if (entry != null) {
+            contextInfo.put("requestId", entry.getRequestId());
+            contextInfo.put("query", entry.getQuery());
+        }
+        contextInfo.put("context", context);
+        contextInfo.put("timestamp", entry != null ? Date.from(entry.getTimestamp()).toString() : new Date().toString());
+        contextInfo.put("contextLength", context.length());
         
         // Add a preview of the context for easy viewing
-        String preview = this.lastRetrievedContext;
+        String preview = context;
         if (preview.length() > 300) {
             preview = preview.substring(0, 300) + "...";
         }
         contextInfo.put("preview", preview);
         
         // Add the document count if available
-        if (this.lastRawResults.containsKey("documents")) {
-            try {
-                List<List<String>> documentsList = (List<List<String>>) this.lastRawResults.get("documents");
-                if (!documentsList.isEmpty()) {
-                    contextInfo.put("documentCount", documentsList.get(0).size());
-                }
-            } catch (Exception e) {
-                logger.warn("Couldn't get document count from raw results", e);
-            }
+        if (result.size() > 0) {
+            contextInfo.put("documentCount", result.size());
         }
         
         return contextInfo;
     }
-}
\ No newline at end of file
+}
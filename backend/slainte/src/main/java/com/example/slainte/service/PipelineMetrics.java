@@ -0,0 +1,247 @@
+package com.example.slainte.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Timers and counters for each stage of the chat pipeline.
+ * <p>
+ * Every stage is a {@code slainte.pipeline.stage} timer tagged with the stage name, with
+ * fixed histogram buckets from 5 ms to 2 minutes, so p50/p95/p99 can be computed per stage
+ * from the scraped buckets. The meters are created once here; recording is a lock-free increment.
+ */
+@Component
+public class PipelineMetrics {
+
+    /**
+     * The timed stages of a chat request
+     */
+    public enum Stage {
+        EMBEDDING("embedding", StageTimings.EMBED),
+        VECTOR_QUERY("vector_query", StageTimings.CHROMA),
+        FALLBACK_SEARCH("fallback_search", StageTimings.FALLBACK),
+        PROMPT_ASSEMBLY("prompt_assembly", StageTimings.PROMPT),
+        LLM_FIRST_TOKEN("llm_first_token", null),
+        LLM_TOTAL("llm_total", null);
+
+        private final String tag;
+        // Name in the request's Server-Timing header; the LLM is broken down there by Ollama's own durations
+        private final String timingName;
+
+        Stage(String tag, String timingName) {
+            this.tag = tag;
+            this.timingName = timingName;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public String getTimingName() {
+            return timingName;
+        }
+    }
+
+    /**
+     * Which way a chat request was answered
+     */
+    public enum Path {
+        RAG("rag"),
+        NO_RAG("no_rag"),
+        FALLBACK("fallback");
+
+        private final String tag;
+
+        Path(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Which retrieval answered a request that ran the fallback search alongside the primary one
+     */
+    public enum HedgeOutcome {
+        PRIMARY("primary"),
+        FALLBACK("fallback"),
+        NEITHER("neither");
+
+        private final String tag;
+
+        HedgeOutcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * How a search restricted to the sources of the query's topic turned out
+     */
+    public enum RouteOutcome {
+        ROUTED("routed"),
+        WIDENED("widened");
+
+        private final String tag;
+
+        RouteOutcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    // Bucket boundaries spanning a cached embedding lookup up to a slow LLM generation
+    private static final Duration[] STAGE_BUCKETS = {
+        Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+        Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+        Duration.ofMillis(2_500), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30),
+        Duration.ofSeconds(60), Duration.ofSeconds(120)
+    };
+    private static final double[] TOKENS_PER_SECOND_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500};
+    private static final double[] CONTEXT_TOKEN_BUCKETS = {64, 128, 256, 512, 1024, 2048, 4096, 8192};
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Path, Counter> pathCounters = new EnumMap<>(Path.class);
+    private final Map<HedgeOutcome, Counter> hedgeCounters = new EnumMap<>(HedgeOutcome.class);
+    private final Map<RouteOutcome, Counter> routeCounters = new EnumMap<>(RouteOutcome.class);
+    private final DistributionSummary tokensPerSecond;
+    private final DistributionSummary contextTokens;
+    private final Counter droppedChunks;
+    private final Counter mergedChunks;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("slainte.pipeline.stage")
+                .description("Time spent in one stage of the chat pipeline")
+                .tag("stage", stage.getTag())
+                .serviceLevelObjectives(STAGE_BUCKETS)
+                .register(registry));
+        }
+        for (Path path : Path.values()) {
+            pathCounters.put(path, Counter.builder("slainte.chat.requests")
+                .description("Chat requests by how their context was resolved")
+                .tag("path", path.getTag())
+                .register(registry));
+        }
+        for (HedgeOutcome outcome : HedgeOutcome.values()) {
+            hedgeCounters.put(outcome, Counter.builder("slainte.retrieval.hedges")
+                .description("Chat requests that searched the fallback query in parallel, by which result was used")
+                .tag("used", outcome.getTag())
+                .register(registry));
+        }
+        for (RouteOutcome outcome : RouteOutcome.values()) {
+            routeCounters.put(outcome, Counter.builder("slainte.retrieval.routes")
+                .description("Searches restricted to the sources of the query's topic, by whether they had to be widened")
+                .tag("outcome", outcome.getTag())
+                .register(registry));
+        }
+        this.tokensPerSecond = DistributionSummary.builder("slainte.llm.tokens.per.second")
+            .description("Generation speed of LLM responses, in tokens per second")
+            .serviceLevelObjectives(TOKENS_PER_SECOND_BUCKETS)
+            .register(registry);
+        this.contextTokens = DistributionSummary.builder("slainte.prompt.context.tokens")
+            .description("Estimated tokens of the retrieved context packed into a prompt")
+            .serviceLevelObjectives(CONTEXT_TOKEN_BUCKETS)
+            .register(registry);
+        this.droppedChunks = Counter.builder("slainte.prompt.context.dropped")
+            .description("Retrieved chunks left out of prompts because they did not fit the token budget")
+            .register(registry);
+        this.mergedChunks = Counter.builder("slainte.prompt.context.merged")
+            .description("Retrieved chunks stitched onto a neighbouring chunk of the same document")
+            .register(registry);
+    }
+
+    public void record(Stage stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the stage and adds it to the request's timings, if the request is timed
+     */
+    private void record(Stage stage, long nanos, StageTimings timings) {
+        record(stage, nanos);
+        if (timings != null && stage.getTimingName() != null) {
+            timings.add(stage.getTimingName(), nanos);
+        }
+    }
+
+    /**
+     * Runs a blocking stage and records how long it took, whether it returned or threw.
+     * The time is also added to the timings bound to the current thread.
+     */
+    public <T> T time(Stage stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - start, StageTimings.current());
+        }
+    }
+
+    /**
+     * Times a non-blocking stage from subscription until it emits, completes empty, fails or is
+     * cancelled. The time is also added to the timings in the subscriber's context.
+     */
+    public <T> Mono<T> time(Stage stage, Mono<T> work) {
+        return Mono.deferContextual(context -> {
+            long start = System.nanoTime();
+            StageTimings timings = StageTimings.from(context);
+            // Recorded before the value is passed on, so work done downstream is not counted
+            AtomicBoolean recorded = new AtomicBoolean();
+            Runnable stop = () -> {
+                if (recorded.compareAndSet(false, true)) {
+                    record(stage, System.nanoTime() - start, timings);
+                }
+            };
+            return work
+                .doOnSuccess(value -> stop.run())
+                .doOnError(e -> stop.run())
+                .doOnCancel(stop);
+        });
+    }
+
+    public void count(Path path) {
+        pathCounters.get(path).increment();
+    }
+
+    public void count(HedgeOutcome outcome) {
+        hedgeCounters.get(outcome).increment();
+    }
+
+    public void count(RouteOutcome outcome) {
+        routeCounters.get(outcome).increment();
+    }
+
+    public void recordTokensPerSecond(double rate) {
+        if (rate > 0 && Double.isFinite(rate)) {
+            tokensPerSecond.record(rate);
+        }
+    }
+
+    public void recordContextTokens(int tokens, int dropped) {
+        contextTokens.record(tokens);
+        droppedChunks.increment(dropped);
+    }
+
+    public void countMergedChunks(int merged) {
+        mergedChunks.increment(merged);
+    }
+}
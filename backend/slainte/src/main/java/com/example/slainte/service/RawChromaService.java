@@ -2,18 +2,14 @@ package com.example.slainte.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import org.springframework.web.reactive.function.client.WebClient;
+import com.example.slainte.model.Embedding;
 
 /**
- * A raw HTTP service for ChromaDB using Java's HttpURLConnection
+ * A raw HTTP service for ChromaDB that sends hand-built JSON and returns the response as text
  */
 @Service
 public class RawChromaService {
@@ -23,25 +19,20 @@ public class RawChromaService {
     private final String COLLECTION_NAME = "health_assistant";
     // The collection UUID from your test results
     private final String COLLECTION_UUID = "4b704b22-bbe9-4f7c-a8d2-9c5cb5e6cc1b";
+    private final WebClient webClient;
+    
+    public RawChromaService(WebClient.Builder webClientBuilder) {
+        // Use collection UUID instead of name in the URL
+        this.webClient = webClientBuilder
+                .baseUrl(CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/query")
+                .build();
+    }
     
     /**
-     * Perform a raw query to ChromaDB using Java's HttpURLConnection
+     * Perform a raw query to ChromaDB with a truncated embedding
      */
-    public String rawQuery(List<Double> embedding, int nResults) {
-        HttpURLConnection conn = null;
+    public String rawQuery(Embedding embedding, int nResults) {
         try {
-            // Create the URL for the query endpoint - using UUID instead of name
-            URL url = new URL(CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/query");
-            
-            // Open connection
-            conn = (HttpURLConnection) url.openConnection();
-            
-            // Setup the request
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setDoOutput(true);
-            
             // Limit the embedding size for simplicity in this test
             int embeddingSize = Math.min(embedding.size(), 10);
             
@@ -63,37 +54,18 @@ public class RawChromaService {
             
             logger.info("Raw ChromaDB query: {}", jsonRequest);
             
-            // Write the request body
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonRequest.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get the response
-            int responseCode = conn.getResponseCode();
-            
-            // Read the response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-            }
+            ResponseEntity<String> response = post(jsonRequest);
+            int responseCode = response.getStatusCode().value();
+            String body = response.getBody() != null ? response.getBody() : "";
             
             logger.info("ChromaDB raw response code: {}", responseCode);
-            logger.info("ChromaDB raw response: {}", response.toString());
+            logger.info("ChromaDB raw response: {}", body);
             
-            return "Response Code: " + responseCode + "\n\nResponse Body: " + response.toString();
+            return "Response Code: " + responseCode + "\n\nResponse Body: " + body;
             
         } catch (Exception e) {
             logger.error("Error executing raw ChromaDB query: {}", e.getMessage(), e);
             return "Error: " + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
     
@@ -101,20 +73,7 @@ public class RawChromaService {
      * Test method with hardcoded values
      */
     public String testHardcodedQuery() {
-        HttpURLConnection conn = null;
         try {
-            // Create the URL for the query endpoint - using UUID instead of name
-            URL url = new URL(CHROMADB_HOST + "/api/v1/collections/" + COLLECTION_UUID + "/query");
-            
-            // Open connection
-            conn = (HttpURLConnection) url.openConnection();
-            
-            // Setup the request
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setDoOutput(true);
-            
             // Create a 768-dimension embedding (all filled with 0.1)
             StringBuilder embeddingBuilder = new StringBuilder();
             embeddingBuilder.append('[');
@@ -131,37 +90,30 @@ public class RawChromaService {
             
             logger.info("Hardcoded ChromaDB query: {}", jsonRequest);
             
-            // Write the request body
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonRequest.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get the response
-            int responseCode = conn.getResponseCode();
-            
-            // Read the response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream(), StandardCharsets.UTF_8))) {
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-            }
+            ResponseEntity<String> response = post(jsonRequest);
+            int responseCode = response.getStatusCode().value();
+            String body = response.getBody() != null ? response.getBody() : "";
             
             logger.info("ChromaDB hardcoded response code: {}", responseCode);
-            logger.info("ChromaDB hardcoded response: {}", response.toString());
+            logger.info("ChromaDB hardcoded response: {}", body);
             
-            return "Response Code: " + responseCode + "\n\nResponse Body: " + response.toString();
+            return "Response Code: " + responseCode + "\n\nResponse Body: " + body;
             
         } catch (Exception e) {
             logger.error("Error executing hardcoded ChromaDB query: {}", e.getMessage(), e);
             return "Error: " + e.getMessage();
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * POST a JSON body to the query endpoint over the pooled WebClient, returning error responses instead of throwing
+     */
+    private ResponseEntity<String> post(String jsonRequest) {
+        return webClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonRequest)
+                .exchangeToMono(response -> response.toEntity(String.class))
+                .block();
+    }
+}
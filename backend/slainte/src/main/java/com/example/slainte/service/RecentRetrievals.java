@@ -0,0 +1,123 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last retrievals, kept for diagnostics in a fixed-size ring buffer.
+ * <p>
+ * Each retrieval claims the next request id from an atomic counter and writes its own slot,
+ * so concurrent requests never wait on each other and never overwrite each other's entry
+ * until the buffer has wrapped around. Readers scan the slots without locking.
+ */
+public final class RecentRetrievals {
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+
+    public RecentRetrievals(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Stores the retrieval in the slot of a new request id, replacing the oldest entry once full
+     */
+    public Entry record(String query, RetrievalResult result) {
+        long requestId = nextRequestId.getAndIncrement();
+        Entry entry = new Entry(requestId, query, result, Instant.now());
+        int slot = (int) (requestId % slots.length());
+        Entry current;
+        do {
+            current = slots.get(slot);
+            // A writer a full lap ahead already took the slot; this entry is the older one
+            if (current != null && current.requestId > requestId) {
+                return entry;
+            }
+        } while (!slots.compareAndSet(slot, current, entry));
+        return entry;
+    }
+
+    /**
+     * The retrieval with the highest request id, if any was recorded
+     */
+    public Optional<Entry> latest() {
+        Entry latest = null;
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null && (latest == null || entry.requestId > latest.requestId)) {
+                latest = entry;
+            }
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    /**
+     * The retrieval with the given request id, unless it has already been overwritten
+     */
+    public Optional<Entry> find(long requestId) {
+        if (requestId <= 0) {
+            return Optional.empty();
+        }
+        Entry entry = slots.get((int) (requestId % slots.length()));
+        return entry != null && entry.requestId == requestId ? Optional.of(entry) : Optional.empty();
+    }
+
+    /**
+     * Up to {@code limit} retrievals, newest first
+     */
+    public List<Entry> recent(int limit) {
+        List<Entry> entries = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::getRequestId).reversed());
+        return entries.subList(0, Math.min(Math.max(0, limit), entries.size()));
+    }
+
+    /**
+     * One recorded retrieval; immutable, so it can be read while newer ones are written
+     */
+    public static final class Entry {
+        private final long requestId;
+        private final String query;
+        private final RetrievalResult result;
+        private final Instant timestamp;
+
+        Entry(long requestId, String query, RetrievalResult result, Instant timestamp) {
+            this.requestId = requestId;
+            this.query = query;
+            this.result = result;
+            this.timestamp = timestamp;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public RetrievalResult getResult() {
+            return result;
+        }
+
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+    }
+}
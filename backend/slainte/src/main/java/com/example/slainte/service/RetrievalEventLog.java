@@ -0,0 +1,227 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.RetrievalLogProperties;
+import com.example.slainte.model.RetrievalResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes one structured log line per sampled retrieval, on a background thread.
+ * <p>
+ * The request thread only decides whether the retrieval is sampled and hands the recorded
+ * entry to a bounded queue; the statistics, the capped payload and the log line are all
+ * produced by the writer thread. When the queue is full the event is dropped and counted,
+ * so a slow log appender can never hold up a chat request.
+ */
+@Service
+public class RetrievalEventLog {
+    // A separate logger, so retrieval events can be routed or silenced on their own
+    private static final Logger logger = LoggerFactory.getLogger("slainte.retrieval");
+
+    private final RetrievalLogProperties properties;
+    private final ThreadPoolExecutor writer;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    public RetrievalEventLog(RetrievalLogProperties properties) {
+        this.properties = properties;
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "retrieval-log");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.increment());
+    }
+
+    /**
+     * Queues the retrieval for logging if it is sampled; never formats or writes on the caller's thread
+     */
+    public void publish(RecentRetrievals.Entry entry) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        published.increment();
+        // Failed retrievals are always logged, successful ones at the sampling rate
+        if (!entry.getResult().hasError() && ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate()) {
+            sampledOut.increment();
+            return;
+        }
+        writer.execute(() -> write(entry));
+    }
+
+    private void write(RecentRetrievals.Entry entry) {
+        try {
+            if (entry.getResult().hasError()) {
+                logger.warn(format(entry, properties.getMaxPayloadChars()));
+            } else {
+                logger.info(format(entry, properties.getMaxPayloadChars()));
+            }
+            written.increment();
+        } catch (RuntimeException e) {
+            logger.warn("Could not log retrieval {}: {}", entry.getRequestId(), e.getMessage());
+        }
+    }
+
+    /**
+     * One line of {@code key=value} pairs: the request, statistics over the documents and
+     * the context itself, cut to {@code maxPayloadChars} with line breaks escaped
+     */
+    static String format(RecentRetrievals.Entry entry, int maxPayloadChars) {
+        RetrievalResult result = entry.getResult();
+        StringBuilder line = new StringBuilder(256 + Math.max(0, maxPayloadChars));
+        line.append("retrieval requestId=").append(entry.getRequestId())
+            .append(" timestamp=").append(entry.getTimestamp());
+        appendQuoted(line.append(" query="), entry.getQuery(), 200);
+
+        if (result.hasError()) {
+            appendQuoted(line.append(" error="), result.getError(), maxPayloadChars);
+            return line.toString();
+        }
+
+        int characters = 0;
+        int words = 0;
+        int paragraphs = 0;
+        for (String document : result.getDocuments()) {
+            if (document == null) {
+                continue;
+            }
+            characters += document.length();
+            words += countWords(document);
+            paragraphs += countParagraphs(document);
+        }
+        line.append(" documents=").append(result.size())
+            .append(" characters=").append(characters)
+            .append(" words=").append(words)
+            .append(" paragraphs=").append(paragraphs);
+
+        List<Double> distances = result.getDistances();
+        if (!distances.isEmpty()) {
+            double nearest = Double.MAX_VALUE;
+            double farthest = -Double.MAX_VALUE;
+            for (Double distance : distances) {
+                if (distance != null) {
+                    nearest = Math.min(nearest, distance);
+                    farthest = Math.max(farthest, distance);
+                }
+            }
+            if (nearest <= farthest) {
+                line.append(" nearestDistance=").append(nearest)
+                    .append(" farthestDistance=").append(farthest);
+            }
+        }
+
+        Set<Object> sources = new LinkedHashSet<>();
+        for (Map<String, Object> metadata : result.getMetadatas()) {
+            if (metadata != null && metadata.get("source") != null) {
+                sources.add(metadata.get("source"));
+            }
+        }
+        line.append(" sources=").append(sources);
+
+        if (maxPayloadChars > 0) {
+            appendQuoted(line.append(" context="), result.toContextString(), maxPayloadChars);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Appends at most {@code limit} characters in quotes, escaping quotes and line breaks so the
+     * event stays on one line, and marks a cut-off value with an ellipsis
+     */
+    private static void appendQuoted(StringBuilder line, String value, int limit) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        int end = Math.min(value.length(), limit);
+        line.append('"');
+        for (int i = 0; i < end; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                default -> line.append(c);
+            }
+        }
+        if (end < value.length()) {
+            line.append("...");
+        }
+        line.append('"');
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    /**
+     * Non-empty blocks of text separated by blank lines
+     */
+    private static int countParagraphs(String text) {
+        int paragraphs = 0;
+        boolean inParagraph = false;
+        int newlines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                newlines++;
+                if (newlines >= 2) {
+                    inParagraph = false;
+                }
+            } else if (!Character.isWhitespace(c)) {
+                if (!inParagraph) {
+                    paragraphs++;
+                    inParagraph = true;
+                }
+                newlines = 0;
+            }
+        }
+        return paragraphs;
+    }
+
+    /**
+     * How many retrievals were published, skipped by sampling, dropped on a full queue and written
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("sampleRate", properties.getSampleRate());
+        stats.put("published", published.sum());
+        stats.put("sampledOut", sampledOut.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("written", written.sum());
+        stats.put("queued", writer.getQueue().size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        // Give queued events a moment to reach the log
+        writer.awaitTermination(2, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.index.Neighbors;
+import com.example.slainte.index.VectorSegment;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Vector store that answers queries by scanning a memory-mapped segment file.
+ * <p>
+ * An existing segment is mapped while the bean is created, so it serves queries before the
+ * application has finished starting and without parsing any ChromaDB JSON. When the file is
+ * missing or unreadable it is built from ChromaDB once the application is ready; until then
+ * queries are passed through to ChromaDB. A mapped segment is rebuilt at that point too when
+ * the collection's record count differs from the one it was built from, and on {@link #reload()}.
+ * Active when {@code slainte.vector-store.type=segment}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "slainte.vector-store", name = "type", havingValue = "segment")
+public class SegmentVectorStore implements VectorStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentVectorStore.class);
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    private final ChromaDBLowLevelService chromaDBService;
+    private final VectorStoreProperties properties;
+    private final Path path;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile VectorSegment segment;
+
+    public SegmentVectorStore(ChromaDBLowLevelService chromaDBService, VectorStoreProperties properties) {
+        this.chromaDBService = chromaDBService;
+        this.properties = properties;
+        this.path = Paths.get(properties.getSegment().getPath());
+    }
+
+    @PostConstruct
+    public void openExisting() {
+        if (!Files.exists(path)) {
+            logger.info("No vector segment at {}, it will be built from ChromaDB on startup", path);
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            logger.warn("Could not open vector segment {}, it will be rebuilt: {}", path, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissingOrStale() {
+        if (segment != null && !isStale()) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            if (segment != null) {
+                logger.error("Failed to rebuild stale vector segment {}, keeping the mapped one: {}",
+                        path, e.getMessage(), e);
+            } else {
+                logger.error("Failed to build vector segment {}, queries will use ChromaDB: {}", path, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether the collection's record count differs from the one the mapped segment was built from.
+     * When ChromaDB cannot be reached the segment is kept.
+     */
+    boolean isStale() {
+        VectorSegment current = segment;
+        try {
+            long collectionCount = chromaDBService.fetchCount();
+            if (collectionCount != current.sourceCount()) {
+                logger.info("Vector segment {} was built from {} records but the collection has {}, rebuilding",
+                        path, current.sourceCount(), collectionCount);
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            logger.warn("Could not check vector segment {} against ChromaDB, keeping it: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void reload() throws Exception {
+        rebuild();
+    }
+
+    /**
+     * Fetches every record from ChromaDB, writes a new segment file and maps it
+     */
+    public void rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        List<VectorRecord> records = chromaDBService.fetchAllRecords(properties.getLoadBatchSize());
+        write(records);
+        logger.info("Vector segment {} written with {} records in {} ms",
+                path, records.size(), System.currentTimeMillis() - start);
+        open();
+    }
+
+    /**
+     * Writes the records to the segment file; records whose dimension differs from
+     * {@link Embedding#DIMENSION} are skipped
+     */
+    public void write(List<VectorRecord> records) throws IOException {
+        List<VectorSegment.Entry> entries = new ArrayList<>(records.size());
+        for (VectorRecord record : records) {
+            Embedding embedding = record.getEmbedding();
+            if (embedding.size() != Embedding.DIMENSION) {
+                logger.warn("Skipping record {} with embedding dimension {}", record.getId(), embedding.size());
+                continue;
+            }
+            entries.add(new VectorSegment.Entry(record.getId(), embedding.values(),
+                    objectMapper.writeValueAsString(record.getMetadata()), record.getDocument()));
+        }
+        VectorSegment.write(path, Embedding.DIMENSION, entries, records.size());
+    }
+
+    /**
+     * Maps the segment file and makes it the one queries use
+     */
+    public void open() throws IOException {
+        long start = System.nanoTime();
+        VectorSegment opened = VectorSegment.open(path, properties.getSegment().isVerifyChecksum());
+        this.segment = opened;
+        logger.info("Vector segment {} mapped with {} records of dimension {} in {} us",
+                path, opened.size(), opened.dimension(), (System.nanoTime() - start) / 1_000);
+    }
+
+    public boolean isLoaded() {
+        return segment != null;
+    }
+
+    public int size() {
+        VectorSegment current = segment;
+        return current != null ? current.size() : 0;
+    }
+
+    @Override
+    public RetrievalResult query(Embedding queryEmbedding, int topK) {
+        VectorSegment current = segment;
+        if (current == null) {
+            logger.debug("Vector segment not loaded yet, querying ChromaDB");
+            return chromaDBService.query(queryEmbedding, topK);
+        }
+
+        long start = System.nanoTime();
+        // The segment header carries the dimension the collection was embedded with
+        Embedding query = queryEmbedding.resize(current.dimension());
+        Neighbors neighbors = current.search(query.values(), topK);
+
+        List<String> ids = new ArrayList<>(neighbors.size());
+        List<String> documents = new ArrayList<>(neighbors.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(neighbors.size());
+        List<Double> distances = new ArrayList<>(neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            int node = neighbors.node(i);
+            ids.add(current.id(node));
+            documents.add(current.document(node));
+            metadatas.add(parseMetadata(current.metadataJson(node)));
+            distances.add((double) neighbors.distance(i));
+        }
+
+        logger.info("Vector segment returned {} documents in {} us", documents.size(), (System.nanoTime() - start) / 1_000);
+        return new RetrievalResult(ids, documents, metadatas, distances);
+    }
+
+    @Override
+    public Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK) {
+        // Until the vector segment is loaded queries go to ChromaDB over HTTP, which must not block
+        if (segment == null) {
+            return chromaDBService.queryAsync(queryEmbedding, topK);
+        }
+        return VectorStore.super.queryAsync(queryEmbedding, topK);
+    }
+
+    @Override
+    public String getName() {
+        return "segment";
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (IOException e) {
+            logger.warn("Unreadable metadata in vector segment: {}", e.getMessage());
+            return new HashMap<>();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.SemanticCacheProperties;
+import com.example.slainte.index.VectorKernel;
+import com.example.slainte.index.VectorKernels;
+import com.example.slainte.model.Embedding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches LLM answers by the meaning of the question rather than its exact wording.
+ * <p>
+ * A stored answer is returned when a new query's embedding has a cosine similarity at or
+ * above the configured threshold with a cached query in the same partition. Partitions are
+ * keyed by the RAG flag and prompt template, so an answer is only reused for a prompt built
+ * the same way. Generation runs at temperature 0, so a reused answer is equivalent to a new one.
+ * <p>
+ * Each partition keeps its unit-normalized query vectors in one contiguous float matrix,
+ * so a lookup is a single linear scan of dot products with no per-entry allocation.
+ */
+@Service
+public class SemanticAnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final EmbeddingService embeddingService;
+    private final SemanticCacheProperties properties;
+    private final LongSupplier nanoClock;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    @Autowired
+    public SemanticAnswerCache(EmbeddingService embeddingService, SemanticCacheProperties properties) {
+        this(embeddingService, properties, System::nanoTime);
+    }
+
+    SemanticAnswerCache(EmbeddingService embeddingService, SemanticCacheProperties properties, LongSupplier nanoClock) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the stored answer for the most similar cached query, if it is similar enough
+     */
+    public Optional<String> lookup(String query, boolean useRag, String promptTemplate) {
+        if (!properties.isEnabled() || query == null || query.isBlank()) {
+            return Optional.empty();
+        }
+
+        // The embedding service is cached, so the retrieval that follows a miss reuses this vector
+        return lookup(embeddingService.getEmbedding(query), query, useRag, promptTemplate);
+    }
+
+    /**
+     * Non-blocking variant of {@link #lookup}; completes empty when no answer is similar enough
+     */
+    public Mono<String> lookupAsync(String query, boolean useRag, String promptTemplate) {
+        if (!properties.isEnabled() || query == null || query.isBlank()) {
+            return Mono.empty();
+        }
+        return embeddingService.getEmbeddingAsync(query)
+            .flatMap(embedding -> Mono.justOrEmpty(lookup(embedding, query, useRag, promptTemplate)));
+    }
+
+    private Optional<String> lookup(Embedding embedding, String query, boolean useRag, String promptTemplate) {
+        float[] unit = normalize(embedding);
+        if (unit == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        Partition partition = partitions.get(partitionKey(useRag, promptTemplate));
+        Match match = partition != null
+            ? partition.nearest(unit, nanoClock.getAsLong(), properties.getTtl().toNanos())
+            : null;
+        lookupNanos.add(System.nanoTime() - start);
+
+        if (match != null && match.similarity >= properties.getSimilarityThreshold()) {
+            hits.increment();
+            logger.info("Semantic cache hit (similarity {}) for query: {} - matched: {}",
+                    String.format("%.4f", match.similarity), query, match.query);
+            return Optional.of(match.answer);
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores a generated answer for the query. Error responses and the no-response placeholder are never cached.
+     */
+    public void store(String query, boolean useRag, String promptTemplate, String answer) {
+        if (!isStorable(query, answer)) {
+            return;
+        }
+        store(embeddingService.getEmbedding(query), query, useRag, promptTemplate, answer);
+    }
+
+    /**
+     * Non-blocking variant of {@link #store}
+     */
+    public Mono<Void> storeAsync(String query, boolean useRag, String promptTemplate, String answer) {
+        if (!isStorable(query, answer)) {
+            return Mono.empty();
+        }
+        return embeddingService.getEmbeddingAsync(query)
+            .doOnNext(embedding -> store(embedding, query, useRag, promptTemplate, answer))
+            .then();
+    }
+
+    private boolean isStorable(String query, String answer) {
+        return properties.isEnabled() && query != null && !query.isBlank()
+                && answer != null && !answer.isBlank() && !answer.startsWith("Error")
+                && !answer.equals(DeepseekChatClient.NO_RESPONSE);
+    }
+
+    private void store(Embedding embedding, String query, boolean useRag, String promptTemplate, String answer) {
+        float[] unit = normalize(embedding);
+        if (unit == null) {
+            return;
+        }
+
+        Partition partition = partitions.computeIfAbsent(partitionKey(useRag, promptTemplate),
+                key -> new Partition(unit.length, Math.max(1, properties.getMaxEntries())));
+        if (partition.add(unit, query, answer, nanoClock.getAsLong())) {
+            stores.increment();
+        }
+    }
+
+    /**
+     * Removes every stored answer
+     */
+    public void clear() {
+        partitions.clear();
+    }
+
+    /**
+     * Hit rate, entry counts and average lookup time
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+
+        int entries = 0;
+        for (Partition partition : partitions.values()) {
+            entries += partition.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("similarityThreshold", properties.getSimilarityThreshold());
+        stats.put("partitions", partitions.size());
+        stats.put("entries", entries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        stats.put("stores", stores.sum());
+        stats.put("averageLookupMicros", lookups > 0 ? lookupNanos.sum() / 1_000.0 / lookups : 0.0);
+        return stats;
+    }
+
+    private String partitionKey(boolean useRag, String promptTemplate) {
+        return (useRag ? "rag" : "direct") + "|" + promptTemplate;
+    }
+
+    /**
+     * Scales the embedding to unit length so cosine similarity is a plain dot product
+     */
+    private float[] normalize(Embedding embedding) {
+        if (embedding == null || embedding.isEmpty()) {
+            return null;
+        }
+        float[] values = embedding.values();
+        double sumOfSquares = 0.0;
+        for (float value : values) {
+            sumOfSquares += value * value;
+        }
+        if (sumOfSquares == 0.0) {
+            return null;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sumOfSquares));
+        float[] unit = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            unit[i] = values[i] * scale;
+        }
+        return unit;
+    }
+
+    private static final class Match {
+        private final double similarity;
+        private final String query;
+        private final String answer;
+
+        Match(double similarity, String query, String answer) {
+            this.similarity = similarity;
+            this.query = query;
+            this.answer = answer;
+        }
+    }
+
+    /**
+     * Fixed-capacity ring of cached answers sharing one embedding dimension.
+     * Vectors are stored row by row in a single array; when full, the oldest row is overwritten.
+     */
+    private static final class Partition {
+        private static final VectorKernel KERNEL = VectorKernels.best();
+
+        private final int dimension;
+        private final int capacity;
+        private final float[] vectors;
+        private final String[] queries;
+        private final String[] answers;
+        private final long[] storedAt;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int count;
+        private int next;
+
+        Partition(int dimension, int capacity) {
+            this.dimension = dimension;
+            this.capacity = capacity;
+            this.vectors = new float[dimension * capacity];
+            this.queries = new String[capacity];
+            this.answers = new String[capacity];
+            this.storedAt = new long[capacity];
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Match nearest(float[] unit, long now, long ttlNanos) {
+            if (unit.length != dimension) {
+                return null;
+            }
+            lock.readLock().lock();
+            try {
+                int best = -1;
+                float bestSimilarity = -2.0f;
+                for (int row = 0; row < count; row++) {
+                    if (now - storedAt[row] > ttlNanos) {
+                        continue;
+                    }
+                    float similarity = dot(unit, row * dimension);
+                    if (similarity > bestSimilarity) {
+                        bestSimilarity = similarity;
+                        best = row;
+                    }
+                }
+                return best < 0 ? null : new Match(bestSimilarity, queries[best], answers[best]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean add(float[] unit, String query, String answer, long now) {
+            if (unit.length != dimension) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                // Replace the answer in place when the same question is stored again
+                int row = -1;
+                for (int i = 0; i < count; i++) {
+                    if (query.equals(queries[i])) {
+                        row = i;
+                        break;
+                    }
+                }
+                if (row < 0) {
+                    row = next;
+                    next = (next + 1) % capacity;
+                    count = Math.min(count + 1, capacity);
+                }
+
+                System.arraycopy(unit, 0, vectors, row * dimension, dimension);
+                queries[row] = query;
+                answers[row] = answer;
+                storedAt[row] = now;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private float dot(float[] unit, int offset) {
+            return KERNEL.dot(unit, 0, vectors, offset, dimension);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.slainte.service;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one computation.
+ * <p>
+ * The first caller for a key runs the computation; callers that arrive while it is in flight
+ * wait for and share its result (or its exception) instead of repeating the work. Nothing is
+ * retained once the computation finishes - caching the result is left to the caller.
+ * A reactive computation is cancelled once every caller waiting for it has cancelled.
+ */
+public final class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs the computation, or waits for the one already running for this key
+     */
+    public V execute(K key, Supplier<V> computation) {
+        Flight<V> created = new Flight<>();
+        Flight<V> flight = join(key, created);
+        if (flight != created) {
+            collapsed.increment();
+            return await(flight.result);
+        }
+
+        executions.increment();
+        try {
+            V value = computation.get();
+            created.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Reactive variant of {@link #execute}. The shared computation is subscribed to once and
+     * keeps running while any caller still waits for it, even if the caller that started it
+     * cancels. It is cancelled when the last one does, e.g. a hedged search that lost its race.
+     */
+    public Mono<V> executeAsync(K key, Supplier<Mono<V>> computation) {
+        return Mono.defer(() -> {
+            Flight<V> created = new Flight<>();
+            Flight<V> flight = join(key, created);
+            if (flight != created) {
+                collapsed.increment();
+            } else {
+                executions.increment();
+                Mono<V> source;
+                try {
+                    source = computation.get();
+                } catch (RuntimeException e) {
+                    source = Mono.error(e);
+                }
+                CompletableFuture<V> result = created.result;
+                created.computation = source.doFinally(signal -> inFlight.remove(key, created))
+                    .subscribe(result::complete, result::completeExceptionally, () -> result.complete(null));
+            }
+            return Mono.fromFuture(flight.result, true)
+                .doOnCancel(() -> leave(key, flight));
+        });
+    }
+
+    /**
+     * Joins the computation in flight for the key, or makes the given one the key's computation
+     */
+    private Flight<V> join(K key, Flight<V> created) {
+        return inFlight.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return created;
+            }
+            existing.waiting++;
+            return existing;
+        });
+    }
+
+    /**
+     * Stops waiting for a reactive computation, cancelling it if no other caller waits for it
+     */
+    private void leave(K key, Flight<V> flight) {
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != flight || --current.waiting > 0) {
+                return current;
+            }
+            current.abandoned = true;
+            return null;
+        });
+        // Outside the map's lock, as cancelling runs the computation's doFinally
+        if (flight.abandoned) {
+            Disposable computation = flight.computation;
+            if (computation != null) {
+                computation.dispose();
+            }
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Followers see the leader's exception as if they had run the computation themselves
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Computations run, calls that shared another call's computation and keys currently in flight
+     */
+    public Map<String, Object> getStats() {
+        long executionCount = executions.sum();
+        long collapsedCount = collapsed.sum();
+        long calls = executionCount + collapsedCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("calls", calls);
+        stats.put("executions", executionCount);
+        stats.put("collapsed", collapsedCount);
+        stats.put("collapseRate", calls == 0 ? 0.0 : (double) collapsedCount / calls);
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    /**
+     * A computation in flight and the number of callers waiting for it. The count is only
+     * changed while the map holds the key's lock, and only for the key's current computation.
+     */
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private int waiting = 1;
+        private boolean abandoned;
+        // The subscription of a reactive computation
+        private volatile Disposable computation;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.slainte.service;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Where the time of one chat request went, reported in its {@code Server-Timing} header.
+ * <p>
+ * A request creates one instance and makes it visible to the stages it runs: the reactive
+ * pipeline carries it in the Reactor context, blocking code binds it to the current thread.
+ * {@link PipelineMetrics} adds each timed stage to it; the LLM client adds the prefill and
+ * generation durations reported by Ollama. Stages that run more than once in turn are summed.
+ * A search that runs alongside the others, like a hedged fallback, is kept out of the timings
+ * with {@link #removeFrom} and recorded once as its own wall-clock time, described as parallel.
+ */
+public final class StageTimings {
+
+    public static final String EMBED = "embed";
+    public static final String CHROMA = "chroma";
+    public static final String FALLBACK = "fallback";
+    public static final String PROMPT = "prompt";
+    public static final String LLM_PREFILL = "llm-prefill";
+    public static final String LLM_GENERATE = "llm-generate";
+    public static final String TOTAL = "total";
+
+    public static final String HEADER = "Server-Timing";
+
+    public static final String PARALLEL = "parallel";
+
+    // The order stages are listed in, whatever order they were recorded in
+    private static final List<String> ORDER = List.of(EMBED, CHROMA, FALLBACK, PROMPT, LLM_PREFILL, LLM_GENERATE, TOTAL);
+
+    private static final Object CONTEXT_KEY = StageTimings.class;
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Long> nanos = new ConcurrentHashMap<>();
+    private final Map<String, String> descriptions = new ConcurrentHashMap<>();
+
+    public void add(String stage, long elapsedNanos) {
+        if (elapsedNanos >= 0) {
+            nanos.merge(stage, elapsedNanos, Long::sum);
+        }
+    }
+
+    /**
+     * Adds a description to a stage in the Server-Timing header, e.g. that it overlapped the others
+     */
+    public void describe(String stage, String description) {
+        descriptions.put(stage, description);
+    }
+
+    /**
+     * The recorded stages in milliseconds, in pipeline order
+     */
+    public Map<String, Double> toMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (String stage : ORDER) {
+            Long elapsed = nanos.get(stage);
+            if (elapsed != null) {
+                millis.put(stage, Math.round(elapsed / 100_000.0) / 10.0);
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * The value of a Server-Timing header, e.g. {@code embed;dur=12.5, chroma;dur=40.1, fallback;desc="parallel";dur=52.0}
+     */
+    public String toServerTiming() {
+        StringJoiner header = new StringJoiner(", ");
+        toMillis().forEach((stage, millis) -> {
+            String description = descriptions.get(stage);
+            header.add(stage + (description != null ? ";desc=\"" + description + "\"" : "") + ";dur=" + millis);
+        });
+        return header.toString();
+    }
+
+    /**
+     * Adds these timings to a Reactor context, for the stages of a reactive pipeline
+     */
+    public Context putInto(Context context) {
+        return context.put(CONTEXT_KEY, this);
+    }
+
+    /**
+     * Removes the timings from a Reactor context, so the stages run with it are not added to them
+     */
+    public static Context removeFrom(Context context) {
+        return context.delete(CONTEXT_KEY);
+    }
+
+    /**
+     * The timings carried by a Reactor context, or null when the request is not timed
+     */
+    public static StageTimings from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /**
+     * Makes these timings the current ones for blocking stages on this thread, until the scope is closed
+     */
+    public Scope bind() {
+        StageTimings previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * The timings bound to this thread, or null when none are
+     */
+    public static StageTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Unbinds the timings from the thread
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.PromptBudgetProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates how many tokens the LLM's tokenizer makes of a text, without the tokenizer.
+ * <p>
+ * The text is split the way byte-level BPE pre-tokenizers split it: a word takes one token
+ * per few letters and absorbs the space before it, digits and punctuation are a token each,
+ * and a run of line breaks is one token. That count is multiplied by a scale calibrated
+ * against the {@code prompt_eval_count} Ollama reports for each prompt sent, so the estimate
+ * converges on the tokenizer of the model actually serving. Estimating is a single pass
+ * over the characters, without allocation.
+ */
+@Component
+public class TokenEstimator {
+
+    // Letters of a word per BPE token for the Qwen-based DeepSeek-R1 distills: common words up to
+    // this length are a single token of their large vocabulary, longer and rarer ones are split
+    private static final double LETTERS_PER_TOKEN = 6.0;
+    // Observed counts further from the estimate than this are not used for calibration: Ollama
+    // reports only the tokens it evaluated, fewer than the prompt when a cached prefix was reused
+    private static final double MIN_SCALE = 0.5;
+    private static final double MAX_SCALE = 2.0;
+
+    private final double smoothing;
+    // The calibrated scale as double bits, updated with compare-and-set
+    private final AtomicLong scale = new AtomicLong(Double.doubleToLongBits(1.0));
+
+    public TokenEstimator(PromptBudgetProperties properties, MeterRegistry meterRegistry) {
+        this.smoothing = properties.getCalibrationSmoothing();
+        Gauge.builder("slainte.prompt.token.scale", this, TokenEstimator::getScale)
+            .description("Calibrated ratio of the model's prompt token counts to the uncalibrated estimate")
+            .register(meterRegistry);
+    }
+
+    /**
+     * The estimated token count of the text
+     */
+    public int estimate(CharSequence text) {
+        return (int) Math.ceil(countPieces(text) * getScale());
+    }
+
+    /**
+     * Adjusts the scale towards the token count the model reported for a prompt
+     */
+    public void calibrate(CharSequence prompt, long observedTokens) {
+        int pieces = countPieces(prompt);
+        if (pieces == 0 || observedTokens <= 0) {
+            return;
+        }
+        double observedScale = (double) observedTokens / pieces;
+        if (observedScale < MIN_SCALE || observedScale > MAX_SCALE) {
+            return;
+        }
+        scale.getAndUpdate(bits -> {
+            double current = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(current + smoothing * (observedScale - current));
+        });
+    }
+
+    public double getScale() {
+        return Double.longBitsToDouble(scale.get());
+    }
+
+    /**
+     * The uncalibrated estimate: word pieces, digits, symbols and line break runs
+     */
+    static int countPieces(CharSequence text) {
+        int pieces = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c)) {
+                int start = i;
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                pieces += (int) Math.ceil((i - start) / LETTERS_PER_TOKEN);
+            } else if (c == '\n' || c == '\r') {
+                while (i < length && (text.charAt(i) == '\n' || text.charAt(i) == '\r')) {
+                    i++;
+                }
+                pieces++;
+            } else if (Character.isWhitespace(c)) {
+                // Spaces are part of the token that follows them
+                i++;
+            } else {
+                // A digit, punctuation or a symbol
+                pieces++;
+                i++;
+            }
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.slainte.service;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a set of phrases, each with a priority, that finds the
+ * highest-priority phrase occurring anywhere in a text in a single pass.
+ * <p>
+ * The failure links are folded into a dense transition table, so matching costs one array
+ * lookup per character whatever the number of phrases. Characters are compared lower-cased.
+ * Characters that occur in no phrase share one column of the table, which keeps it small.
+ */
+final class TopicAutomaton {
+
+    static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static final int ABSENT = -1;
+
+    // Column of each ASCII character, and of the other characters used by the phrases (sorted)
+    private final int[] asciiColumns = new int[128];
+    private final char[] otherChars;
+    private final int[] otherColumns;
+    private final int columns;
+
+    private final int[] transitions;
+    // Lowest priority of the phrases that end in each state, including through its failure links
+    private final int[] matches;
+
+    /**
+     * @param phrases    the phrases; blank ones are ignored
+     * @param priorities the priority of each phrase, lower wins
+     */
+    TopicAutomaton(List<String> phrases, int[] priorities) {
+        // Number the distinct characters; column 0 is every character no phrase uses
+        SortedSet<Character> alphabet = new TreeSet<>();
+        int maxStates = 1;
+        for (String phrase : phrases) {
+            for (int i = 0; i < phrase.length(); i++) {
+                alphabet.add(Character.toLowerCase(phrase.charAt(i)));
+            }
+            maxStates += phrase.length();
+        }
+        List<Character> others = new ArrayList<>();
+        int column = 1;
+        for (char c : alphabet) {
+            if (c < 128) {
+                asciiColumns[c] = column++;
+            } else {
+                others.add(c);
+            }
+        }
+        this.otherChars = new char[others.size()];
+        this.otherColumns = new int[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i);
+            otherColumns[i] = column++;
+        }
+        this.columns = column;
+
+        // Trie of the phrases
+        int[] table = new int[maxStates * columns];
+        Arrays.fill(table, ABSENT);
+        int[] output = new int[maxStates];
+        Arrays.fill(output, NO_MATCH);
+        int states = 1;
+        for (int p = 0; p < phrases.size(); p++) {
+            String phrase = phrases.get(p);
+            if (phrase.isBlank()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                int index = state * columns + columnOf(Character.toLowerCase(phrase.charAt(i)));
+                if (table[index] == ABSENT) {
+                    table[index] = states++;
+                }
+                state = table[index];
+            }
+            output[state] = Math.min(output[state], priorities[p]);
+        }
+
+        // Breadth-first, replace each missing transition by the one of the failure state
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < columns; c++) {
+            int next = table[c];
+            if (next == ABSENT) {
+                table[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            output[state] = Math.min(output[state], output[failure[state]]);
+            for (int c = 0; c < columns; c++) {
+                int index = state * columns + c;
+                int fallback = table[failure[state] * columns + c];
+                if (table[index] == ABSENT) {
+                    table[index] = fallback;
+                } else {
+                    failure[table[index]] = fallback;
+                    queue[tail++] = table[index];
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(table, states * columns);
+        this.matches = Arrays.copyOf(output, states);
+    }
+
+    /**
+     * The lowest priority of the phrases found in the text, or {@link #NO_MATCH}
+     */
+    int bestMatch(CharSequence text) {
+        int state = 0;
+        int best = NO_MATCH;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + columnOf(Character.toLowerCase(text.charAt(i)))];
+            if (matches[state] < best) {
+                best = matches[state];
+                if (best == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    int getStateCount() {
+        return matches.length;
+    }
+
+    private int columnOf(char c) {
+        if (c < 128) {
+            return asciiColumns[c];
+        }
+        int index = Arrays.binarySearch(otherChars, c);
+        return index >= 0 ? otherColumns[index] : 0;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.TopicProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Detects the primary health topic of a user query, used to label the retrieved context and
+ * to build the fallback search query.
+ * <p>
+ * The topics and their phrases come from a JSON dictionary (see {@link TopicProperties}) and
+ * are compiled once into an Aho-Corasick automaton, so a query is scanned once however many
+ * topics there are. A phrase matches anywhere in the query, ignoring case; when several
+ * topics match, the one listed first in the dictionary wins. Queries without a known topic
+ * get one made of their first meaningful words.
+ */
+@Component
+public class TopicDetector {
+    private static final Logger logger = LoggerFactory.getLogger(TopicDetector.class);
+
+    static final String DEFAULT_TOPIC = "Health Information";
+
+    // Words of this length or shorter never make up a keyword topic
+    private static final int MAX_SHORT_WORD_LENGTH = 3;
+    // A keyword topic stops growing once it is longer than this
+    private static final int MAX_KEYWORD_TOPIC_LENGTH = 30;
+
+    private final String[] topicNames;
+    private final Map<String, List<String>> sourcePatterns = new LinkedHashMap<>();
+    private final TopicAutomaton automaton;
+    private final StopwordSet stopwords;
+
+    @Autowired
+    public TopicDetector(TopicProperties properties) {
+        this(load(properties.getDictionary()));
+    }
+
+    TopicDetector(Dictionary dictionary) {
+        List<String> phrases = new ArrayList<>();
+        List<Integer> priorities = new ArrayList<>();
+        this.topicNames = new String[dictionary.getTopics().size()];
+        for (int i = 0; i < topicNames.length; i++) {
+            Topic topic = dictionary.getTopics().get(i);
+            topicNames[i] = topic.getName();
+            if (!topic.getSources().isEmpty()) {
+                sourcePatterns.put(topic.getName(), List.copyOf(topic.getSources()));
+            }
+            for (String phrase : topic.getPhrases()) {
+                phrases.add(phrase);
+                priorities.add(i);
+            }
+        }
+        this.automaton = new TopicAutomaton(phrases, priorities.stream().mapToInt(Integer::intValue).toArray());
+        this.stopwords = new StopwordSet(dictionary.getStopwords());
+        logger.info("Topic detection compiled {} topics with {} phrases into {} states, {} stopwords",
+                topicNames.length, phrases.size(), automaton.getStateCount(), dictionary.getStopwords().size());
+    }
+
+    private static Dictionary load(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return new ObjectMapper().readValue(in, Dictionary.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load the topic dictionary from " + resource, e);
+        }
+    }
+
+    /**
+     * The topic of the query: the first dictionary topic one of whose phrases it contains,
+     * else its first words that are longer than three characters and not stopwords,
+     * else "Health Information"
+     */
+    public String detect(String query) {
+        int match = automaton.bestMatch(query);
+        if (match != TopicAutomaton.NO_MATCH) {
+            return topicNames[match];
+        }
+        return keywordTopic(query);
+    }
+
+    /**
+     * Joins the meaningful words of the query, split on whitespace, until the topic is long enough
+     */
+    private String keywordTopic(String query) {
+        StringBuilder topic = null;
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isWhitespace(query.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isWhitespace(query.charAt(i))) {
+                i++;
+            }
+            if (i - start > MAX_SHORT_WORD_LENGTH && !stopwords.contains(query, start, i)) {
+                if (topic == null) {
+                    topic = new StringBuilder(MAX_KEYWORD_TOPIC_LENGTH + 16);
+                } else {
+                    topic.append(' ');
+                }
+                topic.append(query, start, i);
+                if (topic.length() > MAX_KEYWORD_TOPIC_LENGTH) {
+                    break;
+                }
+            }
+        }
+        return topic != null ? topic.toString() : DEFAULT_TOPIC;
+    }
+
+    // The characters matched by \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    public boolean isStopword(String word) {
+        return stopwords.contains(word, 0, word.length());
+    }
+
+    public int getTopicCount() {
+        return topicNames.length;
+    }
+
+    /**
+     * The source patterns of each dictionary topic that lists any, in dictionary order
+     */
+    public Map<String, List<String>> getSourcePatterns() {
+        return Collections.unmodifiableMap(sourcePatterns);
+    }
+
+    /**
+     * Open-addressing hash set of lower-cased words, looked up by a range of a query without copying it
+     */
+    private static final class StopwordSet {
+        private final String[] table;
+        private final int mask;
+
+        StopwordSet(Collection<String> words) {
+            int capacity = Integer.highestOneBit(Math.max(words.size(), 1) * 4 - 1) << 1;
+            this.table = new String[capacity];
+            this.mask = capacity - 1;
+            for (String word : words) {
+                String lowerWord = word.toLowerCase(Locale.ROOT);
+                int slot = hash(lowerWord, 0, lowerWord.length()) & mask;
+                while (table[slot] != null && !table[slot].equals(lowerWord)) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = lowerWord;
+            }
+        }
+
+        boolean contains(CharSequence text, int start, int end) {
+            int slot = hash(text, start, end) & mask;
+            String word;
+            while ((word = table[slot]) != null) {
+                if (matches(word, text, start, end)) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private static boolean matches(String word, CharSequence text, int start, int end) {
+            if (word.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (word.charAt(i) != Character.toLowerCase(text.charAt(start + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(CharSequence text, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + Character.toLowerCase(text.charAt(i));
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * The topic dictionary file: topics in priority order, and stopwords
+     */
+    public static class Dictionary {
+        private List<Topic> topics = new ArrayList<>();
+        private List<String> stopwords = new ArrayList<>();
+
+        public List<Topic> getTopics() {
+            return topics;
+        }
+
+        public void setTopics(List<Topic> topics) {
+            this.topics = topics;
+        }
+
+        public List<String> getStopwords() {
+            return stopwords;
+        }
+
+        public void setStopwords(List<String> stopwords) {
+            this.stopwords = stopwords;
+        }
+    }
+
+    /**
+     * A topic, the phrases that identify it and the documents that cover it. Each source pattern
+     * is part of the {@code source} metadata of the documents (e.g. a folder of the corpus).
+     */
+    public static class Topic {
+        private String name;
+        private List<String> phrases = new ArrayList<>();
+        private List<String> sources = new ArrayList<>();
+
+        public Topic() {
+        }
+
+        public Topic(String name, List<String> phrases) {
+            this.name = name;
+            this.phrases = phrases;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getPhrases() {
+            return phrases;
+        }
+
+        public void setPhrases(List<String> phrases) {
+            this.phrases = phrases;
+        }
+
+        public List<String> getSources() {
+            return sources;
+        }
+
+        public void setSources(List<String> sources) {
+            this.sources = sources;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.TopicProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Routes a query's vector search to the documents of its detected topic.
+ * <p>
+ * Topics in the dictionary may list source patterns; once the application is ready, the
+ * {@code source} metadata values of the collection are listed and each pattern is resolved to
+ * the sources that contain it. A query whose topic resolves to sources then searches only
+ * those chunks (a {@code where} filter in ChromaDB, a row range of an embedded index). Keyword
+ * topics, topics without sources and topics covering most of the corpus are not routed.
+ * If the sources cannot be listed, e.g. because ChromaDB is not up yet, nothing is routed and
+ * the first query after the retry interval lists them again in the background.
+ */
+@Component
+public class TopicRouter {
+    private static final Logger logger = LoggerFactory.getLogger(TopicRouter.class);
+
+    private final TopicDetector topicDetector;
+    private final ChromaDBLowLevelService chromaDBService;
+    private final TopicProperties.Routing properties;
+
+    private volatile Map<String, Set<String>> routes = Collections.emptyMap();
+    private volatile boolean loaded;
+    // Set when listing the sources failed; queries retry from then on
+    private volatile boolean loadFailed;
+    private volatile long nextAttemptNanos;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    public TopicRouter(TopicDetector topicDetector, ChromaDBLowLevelService chromaDBService,
+                       TopicProperties properties) {
+        this.topicDetector = topicDetector;
+        this.chromaDBService = chromaDBService;
+        this.properties = properties.getRouting();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!properties.isEnabled()) {
+            logger.info("Topic routing disabled, every query searches the whole corpus");
+            return;
+        }
+        tryLoad();
+    }
+
+    /**
+     * Lists the collection's sources and resolves the routes; on failure routing stays off until a retry succeeds
+     */
+    private void tryLoad() {
+        try {
+            load(chromaDBService.fetchSources(properties.getLoadBatchSize()));
+        } catch (Exception e) {
+            nextAttemptNanos = System.nanoTime() + properties.getRetryInterval().toNanos();
+            loadFailed = true;
+            logger.error("Failed to list the collection's sources, queries are not routed until a retry in {} succeeds: {}",
+                    properties.getRetryInterval(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lists the sources again off the caller's thread, once the retry interval has passed
+     */
+    private void retryLoad() {
+        if (System.nanoTime() - nextAttemptNanos < 0 || !loading.compareAndSet(false, true)) {
+            return;
+        }
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                tryLoad();
+            } finally {
+                loading.set(false);
+            }
+        });
+    }
+
+    /**
+     * Resolves the topics' source patterns against the sources of the corpus and replaces the routes
+     */
+    public void load(Collection<String> sources) {
+        Map<String, Set<String>> resolved = new HashMap<>();
+        topicDetector.getSourcePatterns().forEach((topic, patterns) -> {
+            Set<String> matched = new TreeSet<>();
+            for (String source : sources) {
+                for (String pattern : patterns) {
+                    if (source.contains(pattern)) {
+                        matched.add(source);
+                        break;
+                    }
+                }
+            }
+            if (matched.isEmpty()) {
+                logger.warn("No sources match the patterns {} of topic {}", patterns, topic);
+            } else if (matched.size() > sources.size() * properties.getMaxFraction()) {
+                logger.info("Topic {} covers {} of {} sources, not routed", topic, matched.size(), sources.size());
+            } else {
+                resolved.put(topic, Collections.unmodifiableSet(matched));
+                logger.info("Topic {} routed to {} of {} sources", topic, matched.size(), sources.size());
+            }
+        });
+        this.routes = resolved;
+        if (loadFailed) {
+            loadFailed = false;
+            logger.info("Topic routing enabled after listing the sources again");
+        }
+        this.loaded = true;
+    }
+
+    /**
+     * The sources to search for a query on this topic, or an empty set to search everything
+     */
+    public Set<String> route(String topic) {
+        if (loadFailed) {
+            retryLoad();
+        }
+        return routes.getOrDefault(topic, Collections.emptySet());
+    }
+
+    /**
+     * Whether the collection's sources have been listed, so queries on routed topics are restricted
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getRouteCount() {
+        return routes.size();
+    }
+}
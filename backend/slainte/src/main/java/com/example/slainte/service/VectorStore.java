@@ -0,0 +1,49 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * Nearest-neighbour search over the health_assistant document chunks.
+ * The active implementation is chosen with {@code slainte.vector-store.type}.
+ */
+public interface VectorStore {
+
+    /**
+     * Returns the {@code topK} chunks closest to the query embedding, nearest first.
+     * Distances are squared L2, matching ChromaDB's default space.
+     */
+    RetrievalResult query(Embedding queryEmbedding, int topK);
+
+    /**
+     * Non-blocking variant of {@link #query}. In-process stores answer in microseconds,
+     * so by default the search runs on the subscribing thread.
+     */
+    default Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK) {
+        return Mono.fromSupplier(() -> query(queryEmbedding, topK));
+    }
+
+    /**
+     * Variant of {@link #queryAsync(Embedding, int)} that only searches chunks whose {@code source}
+     * metadata is one of {@code sources}; an empty set searches everything. Stores that cannot
+     * restrict a search to some sources search the whole corpus.
+     */
+    default Mono<RetrievalResult> queryAsync(Embedding queryEmbedding, int topK, Set<String> sources) {
+        return queryAsync(queryEmbedding, topK);
+    }
+
+    /**
+     * Reloads the corpus from ChromaDB, e.g. after documents were added to the collection.
+     * Stores that query ChromaDB directly have nothing to reload.
+     */
+    default void reload() throws Exception {
+    }
+
+    /**
+     * Short name of the implementation, used in logs and diagnostics
+     */
+    String getName();
+}
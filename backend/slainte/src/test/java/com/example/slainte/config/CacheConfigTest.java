@@ -0,0 +1,162 @@
+package com.example.slainte.config;
+
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheConfigTest {
+
+    private CaffeineCacheManager createManager(long maxEntries, long maxBytes) {
+        CacheProperties properties = new CacheProperties();
+        properties.getCaches().put("embeddings", new CacheProperties.Spec(maxEntries, maxBytes, Duration.ofHours(1)));
+        properties.getCaches().put("chromaResults", new CacheProperties.Spec(maxEntries, maxBytes, Duration.ofHours(1)));
+        // Maintenance runs on the writing thread, so the assertions see every eviction and frequency update
+        return AppConfig.createCacheManager(properties, Runnable::run);
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(CaffeineCacheManager manager, String name) {
+        return ((CaffeineCache) manager.getCache(name)).getNativeCache();
+    }
+
+    private long weightedSize(com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+        return cache.policy().eviction().flatMap(e -> {
+            OptionalLong size = e.weightedSize();
+            return size.isPresent() ? Optional.of(size.getAsLong()) : Optional.empty();
+        }).orElseThrow();
+    }
+
+    @Test
+    public void testConfiguredCachesExistAndUnknownNamesAreRejected() {
+        CaffeineCacheManager manager = createManager(100, 1024 * 1024);
+
+        assertTrue(manager.getCacheNames().containsAll(List.of("embeddings", "chromaResults", "chromaRetrievals", "chromaDirectResults")));
+        assertNull(manager.getCache("unbounded"));
+    }
+
+    @Test
+    public void testRecordsHitsAndMisses() {
+        CaffeineCacheManager manager = createManager(100, 1024 * 1024);
+        Cache cache = manager.getCache("embeddings");
+
+        assertNull(cache.get("missing"));
+        cache.put("query", Embedding.filled(Embedding.DIMENSION, 0.1f));
+        assertNotNull(cache.get("query"));
+
+        assertEquals(1, nativeCache(manager, "embeddings").stats().hitCount());
+        assertEquals(1, nativeCache(manager, "embeddings").stats().missCount());
+    }
+
+    @Test
+    public void testEntryLimitBoundsSmallValues() {
+        // Byte budget is generous, so the entry count is the binding limit
+        CaffeineCacheManager manager = createManager(50, 64L * 1024 * 1024);
+        Cache cache = manager.getCache("chromaResults");
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("key-" + i, RetrievalResult.error("Error: " + i));
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = nativeCache(manager, "chromaResults");
+        nativeCache.cleanUp();
+
+        assertTrue(nativeCache.estimatedSize() <= 50, "size was " + nativeCache.estimatedSize());
+        assertTrue(nativeCache.stats().evictionCount() >= 950);
+    }
+
+    @Test
+    public void testByteLimitBoundsLargeValues() {
+        // Each embedding is ~3 KB, so 64 KB holds about 20 of them despite the 1,000 entry limit
+        long maxBytes = 64 * 1024;
+        CaffeineCacheManager manager = createManager(1_000, maxBytes);
+        Cache cache = manager.getCache("embeddings");
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("query " + i, Embedding.filled(Embedding.DIMENSION, i));
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = nativeCache(manager, "embeddings");
+        nativeCache.cleanUp();
+
+        assertTrue(weightedSize(nativeCache) <= maxBytes);
+        assertTrue(nativeCache.estimatedSize() < 25, "size was " + nativeCache.estimatedSize());
+    }
+
+    @Test
+    public void testSoakUniqueQueriesKeepMemoryFlat() {
+        // A long stream of never-repeated queries must not grow the cache past its limits
+        long maxEntries = 200;
+        long maxBytes = 2L * 1024 * 1024;
+        CaffeineCacheManager manager = createManager(maxEntries, maxBytes);
+        Cache embeddings = manager.getCache("embeddings");
+        Cache results = manager.getCache("chromaResults");
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeEmbeddings = nativeCache(manager, "embeddings");
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeResults = nativeCache(manager, "chromaResults");
+
+        Embedding frequentEmbedding = Embedding.filled(Embedding.DIMENSION, 0.5f);
+        embeddings.put("what is a gp visit card", frequentEmbedding);
+
+        long plateauBytes = -1;
+        for (int i = 1; i <= 50_000; i++) {
+            String query = "unique query number " + i;
+            Embedding embedding = Embedding.filled(Embedding.DIMENSION, i);
+            embeddings.put(query, embedding);
+            results.put(embedding.fingerprint() + "-20", new RetrievalResult(
+                List.of("doc" + i), List.of("Document text for " + query),
+                List.of(Map.of("source", "source" + (i % 10) + ".txt")), List.of(0.1)));
+
+            // A popular query keeps being read throughout the stream
+            if (i % 10 == 0) {
+                embeddings.get("what is a gp visit card");
+            }
+
+            if (i % 10_000 == 0) {
+                nativeEmbeddings.cleanUp();
+                nativeResults.cleanUp();
+                long bytes = weightedSize(nativeEmbeddings) + weightedSize(nativeResults);
+
+                assertTrue(nativeEmbeddings.estimatedSize() <= maxEntries);
+                assertTrue(nativeResults.estimatedSize() <= maxEntries);
+                assertTrue(bytes <= 2 * maxBytes);
+
+                // After the first checkpoint the retained bytes plateau instead of growing with the stream
+                if (plateauBytes < 0) {
+                    plateauBytes = bytes;
+                } else {
+                    assertTrue(bytes <= plateauBytes * 1.1, "retained bytes grew from " + plateauBytes + " to " + bytes);
+                }
+            }
+        }
+
+        // Frequency-based admission keeps the popular entry resident
+        nativeEmbeddings.cleanUp();
+        assertEquals(frequentEmbedding, embeddings.get("what is a gp visit card", Embedding.class));
+    }
+
+    @Test
+    public void testWeigherEnforcesMinimumPerEntryWeight() {
+        CacheWeigher weigher = new CacheWeigher(100, 100_000);
+
+        // Small entries weigh maxBytes / maxEntries, so at most maxEntries fit in the byte budget
+        assertEquals(1_000, weigher.weigh("k", "v"));
+
+        // Large entries weigh their estimated size
+        Embedding embedding = Embedding.filled(Embedding.DIMENSION, 1.0f);
+        assertTrue(weigher.weigh("k", embedding) > Embedding.DIMENSION * Float.BYTES);
+    }
+
+    @Test
+    public void testEstimateBytesCountsRetrievalResultDocuments() {
+        String document = "x".repeat(10_000);
+        RetrievalResult result = new RetrievalResult(
+            List.of("id1"), List.of(document), List.of(Map.of("source", "a.txt")), List.of(0.5));
+
+        assertTrue(CacheWeigher.estimateBytes(result) > 2L * 2 * document.length());
+        assertTrue(CacheWeigher.estimateBytes(RetrievalResult.error("Error: x")) < 1_000);
+    }
+}
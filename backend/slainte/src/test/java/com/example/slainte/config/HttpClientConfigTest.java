@@ -0,0 +1,175 @@
+package com.example.slainte.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientConfigTest {
+
+    private final HttpClientConfig config = new HttpClientConfig();
+    private final HttpPoolMetrics poolMetrics = new HttpPoolMetrics();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+    private ConnectionProvider connectionProvider;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/heartbeat", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"nanosecond heartbeat\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxConnections(4);
+        connectionProvider = config.connectionProvider(properties, poolMetrics);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionProvider.dispose();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSequentialRequestsReuseOneKeepAliveConnection() {
+        HttpClient httpClient = config.httpClient(connectionProvider, new HttpClientProperties());
+        // Separate builders, as separate services get, still share the pool
+        WebClient first = config.webClientBuilder(httpClient).baseUrl(baseUrl).build();
+        WebClient second = config.webClientBuilder(httpClient).baseUrl(baseUrl).build();
+
+        for (int i = 0; i < 5; i++) {
+            WebClient client = i % 2 == 0 ? first : second;
+            assertNotNull(client.get().uri("/heartbeat").retrieve().bodyToMono(String.class).block());
+            awaitReleased();
+        }
+
+        assertEquals(5, requests.get());
+        assertEquals(1, clientPorts.size());
+
+        Map<String, Object> stats = poolMetrics.getStats();
+        assertEquals(0, stats.get("active"));
+        assertEquals(1, stats.get("idle"));
+        assertEquals(1, stats.get("allocated"));
+        assertEquals(0, stats.get("pendingAcquires"));
+        List<?> hosts = (List<?>) stats.get("hosts");
+        assertEquals(1, hosts.size());
+        assertEquals(4, ((Map<?, ?>) hosts.get(0)).get("maxConnections"));
+    }
+
+    @Test
+    public void testRestTemplateSharesThePool() {
+        HttpClient httpClient = config.httpClient(connectionProvider, new HttpClientProperties());
+        WebClient webClient = config.webClientBuilder(httpClient).baseUrl(baseUrl).build();
+        RestTemplate restTemplate = config.restTemplate(new RestTemplateBuilder(), httpClient);
+
+        webClient.get().uri("/heartbeat").retrieve().bodyToMono(String.class).block();
+        awaitReleased();
+        restTemplate.getForObject(baseUrl + "/heartbeat", String.class);
+
+        assertEquals(2, requests.get());
+        assertEquals(1, clientPorts.size());
+        assertEquals(1, poolMetrics.getStats().get("allocated"));
+    }
+
+    @Test
+    public void testHostLimitsOverrideTheDefaults() throws Exception {
+        // Stands in for Ollama, each generation holding its connection while the model runs
+        HttpServer generations = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        generations.createContext("/generate", exchange -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"response\":\"done\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        ExecutorService generationExecutor = Executors.newCachedThreadPool();
+        generations.setExecutor(generationExecutor);
+        generations.start();
+        try {
+            HttpClientProperties properties = new HttpClientProperties();
+            properties.setMaxConnections(4);
+            // A wait this short for every host would fail the queued generations below
+            properties.setPendingAcquireTimeout(Duration.ofMillis(50));
+            properties.getHosts().put("llm", new HttpClientProperties.Host(
+                "127.0.0.1:" + generations.getAddress().getPort(), 2, 100, Duration.ofSeconds(30)));
+            connectionProvider.dispose();
+            connectionProvider = config.connectionProvider(properties, poolMetrics);
+            HttpClient httpClient = config.httpClient(connectionProvider, properties);
+            WebClient webClient = config.webClientBuilder(httpClient)
+                .baseUrl("http://127.0.0.1:" + generations.getAddress().getPort())
+                .build();
+
+            // Three times as many generations as connections, each waiting far longer than 50 ms for one
+            List<String> bodies = Flux.range(0, 6)
+                .flatMap(i -> webClient.get().uri("/generate").retrieve().bodyToMono(String.class))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+            assertEquals(6, bodies.size());
+            List<?> hosts = (List<?>) poolMetrics.getStats().get("hosts");
+            assertEquals(1, hosts.size());
+            assertEquals(2, ((Map<?, ?>) hosts.get(0)).get("maxConnections"));
+            assertEquals(100, ((Map<?, ?>) hosts.get(0)).get("maxPendingAcquires"));
+        } finally {
+            generations.stop(0);
+            generationExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOllamaHasItsOwnLimitsByDefault() {
+        HttpClientProperties.Host ollama = new HttpClientProperties().getHosts().get("ollama");
+
+        assertEquals(InetSocketAddress.createUnresolved("localhost", 11434),
+            HttpClientConfig.remoteAddress(ollama.getAddress()));
+        assertTrue(ollama.getMaxConnections() > new HttpClientProperties().getMaxConnections());
+        assertTrue(ollama.getPendingAcquireTimeout().compareTo(new HttpClientProperties().getResponseTimeout()) >= 0);
+    }
+
+    @Test
+    public void testNoPoolsBeforeAnyRequest() {
+        Map<String, Object> stats = poolMetrics.getStats();
+
+        assertEquals(0, stats.get("allocated"));
+        assertTrue(((List<?>) stats.get("hosts")).isEmpty());
+    }
+
+    // The caller sees the body just before the connection goes back to the pool
+    private void awaitReleased() {
+        long deadline = System.currentTimeMillis() + 1_000;
+        while ((Integer) poolMetrics.getStats().get("active") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
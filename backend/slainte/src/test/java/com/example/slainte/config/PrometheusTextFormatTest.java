@@ -0,0 +1,118 @@
+package com.example.slainte.config;
+
+import com.example.slainte.service.PipelineMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrometheusTextFormatTest {
+
+    @Test
+    public void testCountersAndGaugesWithEscapedLabels() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Counter.builder("slainte.test.requests").description("Requests").tag("path", "say \"hi\"")
+            .register(registry).increment(3);
+        Gauge.builder("slainte.test.size", () -> 42).register(registry);
+
+        String scrape = PrometheusTextFormat.scrape(registry);
+
+        assertTrue(scrape.contains("# HELP slainte_test_requests_total Requests\n"));
+        assertTrue(scrape.contains("# TYPE slainte_test_requests_total counter\n"));
+        assertTrue(scrape.contains("slainte_test_requests_total{path=\"say \\\"hi\\\"\"} 3.0\n"));
+        assertTrue(scrape.contains("# TYPE slainte_test_size gauge\nslainte_test_size 42.0\n"));
+    }
+
+    @Test
+    public void testStageTimersAreHistogramsInSeconds() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(registry);
+        metrics.record(PipelineMetrics.Stage.VECTOR_QUERY, Duration.ofMillis(20).toNanos());
+        metrics.record(PipelineMetrics.Stage.VECTOR_QUERY, Duration.ofMillis(400).toNanos());
+
+        String scrape = PrometheusTextFormat.scrape(registry);
+
+        // One TYPE line for all stages of the family
+        assertEquals(1, count(scrape, "# TYPE slainte_pipeline_stage_seconds histogram\n"), scrape);
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_count{stage=\"vector_query\"} 2.0\n"));
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_sum{stage=\"vector_query\"} 0.42\n"));
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_bucket{stage=\"vector_query\",le=\"+Inf\"} 2.0\n"));
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_max{stage=\"vector_query\"} 0.4\n"));
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_bucket{stage=\"vector_query\",le=\"0.025\"} 1.0\n"));
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_bucket{stage=\"vector_query\",le=\"0.5\"} 2.0\n"));
+
+        // Bucket counts are cumulative: they never decrease as le grows
+        double previous = 0;
+        for (String line : scrape.split("\n")) {
+            if (line.startsWith("slainte_pipeline_stage_seconds_bucket{stage=\"vector_query\"")) {
+                double value = Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+                assertTrue(value >= previous, line);
+                previous = value;
+            }
+        }
+        assertEquals(2.0, previous);
+    }
+
+    @Test
+    public void testBucketsStayCumulativeWithoutTraffic() {
+        MockClock clock = new MockClock();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        registry.config().meterFilter(MetricsConfig.cumulativeHistograms());
+        PipelineMetrics metrics = new PipelineMetrics(registry);
+        for (int i = 0; i < 10; i++) {
+            metrics.record(PipelineMetrics.Stage.EMBEDDING, Duration.ofMillis(2).toNanos());
+        }
+
+        // Well past Micrometer's default two minute histogram window
+        clock.add(Duration.ofMinutes(5));
+        String scrape = PrometheusTextFormat.scrape(registry);
+
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_bucket{stage=\"embedding\",le=\"0.005\"} 10.0\n"), scrape);
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_bucket{stage=\"embedding\",le=\"+Inf\"} 10.0\n"), scrape);
+        assertTrue(scrape.contains("slainte_pipeline_stage_seconds_count{stage=\"embedding\"} 10.0\n"), scrape);
+        // The registry's gauges per bucket are not exported next to the histogram
+        assertFalse(scrape.contains("_histogram"), scrape);
+    }
+
+    @Test
+    public void testCacheHitsAndMissesAreExported() {
+        CacheProperties properties = new CacheProperties();
+        properties.getCaches().put("embeddings", new CacheProperties.Spec(100, 1024 * 1024, Duration.ofHours(1)));
+        CaffeineCacheManager manager = AppConfig.createCacheManager(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new MetricsConfig().cacheMetricsBinder(registry, manager).afterSingletonsInstantiated();
+
+        CaffeineCache cache = (CaffeineCache) manager.getCache("embeddings");
+        cache.get("missing");
+        cache.put("present", "value");
+        cache.get("present");
+
+        String scrape = PrometheusTextFormat.scrape(registry);
+
+        assertTrue(scrape.contains("cache_gets_total{cache=\"embeddings\",result=\"hit\"} 1.0\n"), scrape);
+        assertTrue(scrape.contains("cache_gets_total{cache=\"embeddings\",result=\"miss\"} 1.0\n"), scrape);
+    }
+
+    @Test
+    public void testSanitize() {
+        assertEquals("slainte_llm_tokens_per_second", PrometheusTextFormat.sanitize("slainte.llm.tokens.per.second"));
+        assertEquals("_lives", PrometheusTextFormat.sanitize("9lives"));
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
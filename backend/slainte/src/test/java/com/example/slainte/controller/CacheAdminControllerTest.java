@@ -0,0 +1,127 @@
+package com.example.slainte.controller;
+
+import com.example.slainte.config.AppConfig;
+import com.example.slainte.config.CacheProperties;
+import com.example.slainte.config.SemanticCacheProperties;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.service.ChromaDBLowLevelService;
+import com.example.slainte.service.EmbeddingService;
+import com.example.slainte.service.SemanticAnswerCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CacheAdminControllerTest {
+
+    private CacheManager cacheManager;
+    private SemanticAnswerCache semanticAnswerCache;
+    private CacheAdminController cacheAdminController;
+
+    @BeforeEach
+    public void setup() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheManager = AppConfig.createCacheManager(cacheProperties);
+        semanticAnswerCache = new SemanticAnswerCache(mock(EmbeddingService.class), new SemanticCacheProperties());
+        EmbeddingService embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.getSingleFlightStats()).thenReturn(Map.of("name", "embeddings"));
+        ChromaDBLowLevelService chromaDBService = mock(ChromaDBLowLevelService.class);
+        when(chromaDBService.getSingleFlightStats()).thenReturn(Map.of("name", "chromaRetrievals"));
+        cacheAdminController = new CacheAdminController(cacheManager, cacheProperties, semanticAnswerCache,
+            embeddingService, chromaDBService);
+    }
+
+    @Test
+    public void testListCachesReportsLimitsAndCounters() {
+        cacheManager.getCache("embeddings").put("query", Embedding.filled(Embedding.DIMENSION, 0.1f));
+        cacheManager.getCache("embeddings").get("query");
+        cacheManager.getCache("embeddings").get("other");
+
+        ResponseEntity<List<Map<String, Object>>> response = cacheAdminController.listCaches();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<String, Object> embeddings = response.getBody().stream()
+            .filter(cache -> "embeddings".equals(cache.get("name")))
+            .findFirst().orElseThrow();
+        assertEquals(1L, embeddings.get("size"));
+        assertEquals(1L, embeddings.get("hits"));
+        assertEquals(1L, embeddings.get("misses"));
+        assertEquals(10_000L, embeddings.get("maxEntries"));
+        assertTrue((Long) embeddings.get("estimatedBytes") > Embedding.DIMENSION * Float.BYTES);
+        assertEquals(4, response.getBody().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetCacheListsEntriesUpToLimit() {
+        for (int i = 0; i < 5; i++) {
+            cacheManager.getCache("chromaResults").put("fingerprint" + i + "-20", "Document " + i);
+        }
+
+        ResponseEntity<Map<String, Object>> response = cacheAdminController.getCache("chromaResults", 3);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) response.getBody().get("entries");
+        assertEquals(3, entries.size());
+        assertTrue(((String) entries.get(0).get("key")).startsWith("fingerprint"));
+        assertTrue((Long) entries.get(0).get("estimatedBytes") > 0);
+    }
+
+    @Test
+    public void testEvictEntry() {
+        cacheManager.getCache("embeddings").put("query", Embedding.filled(4, 0.1f));
+
+        ResponseEntity<Map<String, Object>> response = cacheAdminController.evictEntry("embeddings", "query");
+
+        assertEquals(true, response.getBody().get("evicted"));
+        assertNull(cacheManager.getCache("embeddings").get("query"));
+
+        // Evicting again reports that nothing was removed
+        assertEquals(false, cacheAdminController.evictEntry("embeddings", "query").getBody().get("evicted"));
+    }
+
+    @Test
+    public void testClearCache() {
+        cacheManager.getCache("chromaResults").put("a-20", "A");
+        cacheManager.getCache("chromaResults").put("b-20", "B");
+
+        ResponseEntity<Map<String, Object>> response = cacheAdminController.clearCache("chromaResults");
+
+        assertEquals(2L, response.getBody().get("evicted"));
+        assertNull(cacheManager.getCache("chromaResults").get("a-20"));
+    }
+
+    @Test
+    public void testUnknownCacheReturnsNotFound() {
+        assertEquals(HttpStatus.NOT_FOUND, cacheAdminController.getCache("missing", 10).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, cacheAdminController.clearCache("missing").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, cacheAdminController.evictEntry("missing", "k").getStatusCode());
+    }
+
+    @Test
+    public void testSemanticAnswerStats() {
+        semanticAnswerCache.lookup("", true, "hse-context-v1");
+
+        ResponseEntity<Map<String, Object>> response = cacheAdminController.getSemanticAnswerStats();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(0, response.getBody().get("entries"));
+        assertEquals(0.95, response.getBody().get("similarityThreshold"));
+        assertEquals(HttpStatus.OK, cacheAdminController.clearSemanticAnswers().getStatusCode());
+    }
+
+    @Test
+    public void testSingleFlightStatsCoverEmbeddingsAndChroma() {
+        ResponseEntity<List<Map<String, Object>>> response = cacheAdminController.getSingleFlightStats();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("embeddings", response.getBody().get(0).get("name"));
+        assertEquals("chromaRetrievals", response.getBody().get(1).get("name"));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.slainte.controller;
 
+import com.example.slainte.model.Embedding;
 import com.example.slainte.service.ChromaDBService;
 import com.example.slainte.service.EmbeddingService;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,7 +36,7 @@ public class ChromaDBControllerTest {
     @Test
     public void testChromaDBEndpointSuccess() {
         // Configure mock
-        when(chromaDBServiceMock.queryDatabase(anyList(), eq(3)))
+        when(chromaDBServiceMock.queryDatabase(any(Embedding.class), eq(3)))
             .thenReturn("Test ChromaDB response");
         
         // Execute test
@@ -51,13 +52,13 @@ public class ChromaDBControllerTest {
         assertEquals("Test ChromaDB response", responseBody.get("response"));
         
         // Verify mock interactions
-        verify(chromaDBServiceMock).queryDatabase(anyList(), eq(3));
+        verify(chromaDBServiceMock).queryDatabase(any(Embedding.class), eq(3));
     }
     
     @Test
     public void testChromaDBEndpointError() {
         // Configure mock to throw exception
-        when(chromaDBServiceMock.queryDatabase(anyList(), eq(3)))
+        when(chromaDBServiceMock.queryDatabase(any(Embedding.class), eq(3)))
             .thenThrow(new RuntimeException("Test error"));
         
         // Execute test
@@ -72,7 +73,7 @@ public class ChromaDBControllerTest {
         assertEquals("Test error", responseBody.get("error"));
         
         // Verify mock interactions
-        verify(chromaDBServiceMock).queryDatabase(anyList(), eq(3));
+        verify(chromaDBServiceMock).queryDatabase(any(Embedding.class), eq(3));
     }
     
     @Test
@@ -82,10 +83,7 @@ public class ChromaDBControllerTest {
         Map<String, String> requestBody = new HashMap<>();
         requestBody.put("query", testQuery);
         
-        List<Double> mockEmbedding = new ArrayList<>();
-        for (int i = 0; i < 512; i++) {
-            mockEmbedding.add(0.1);
-        }
+        Embedding mockEmbedding = Embedding.filled(512, 0.1f);
         
         // Configure mocks
         when(embeddingServiceMock.getEmbedding(testQuery)).thenReturn(mockEmbedding);
@@ -1,9 +1,24 @@
 package com.example.slainte.controller;
 
+import com.example.slainte.config.FallbackHedgeProperties;
+import com.example.slainte.config.PromptBudgetProperties;
+import com.example.slainte.config.TopicProperties;
 import com.example.slainte.dto.ChatRequest;
+import com.example.slainte.dto.LlmStreamChunk;
 import com.example.slainte.dto.Message;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.service.ChromaDBLowLevelService;
+import com.example.slainte.service.ChunkMerger;
+import com.example.slainte.service.ContextPacker;
 import com.example.slainte.service.DeepseekChatClient;
+import com.example.slainte.service.FallbackPredictor;
 import com.example.slainte.service.KnowledgeBaseService;
+import com.example.slainte.service.PipelineMetrics;
+import com.example.slainte.service.SemanticAnswerCache;
+import com.example.slainte.service.TopicDetector;
+import com.example.slainte.service.TokenEstimator;
+import com.example.slainte.service.TopicRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,8 +26,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,11 +49,43 @@ public class DeepseekControllerTest {
     @Mock
     private KnowledgeBaseService knowledgeBaseServiceMock;
     
+    @Mock
+    private SemanticAnswerCache semanticAnswerCacheMock;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private FallbackPredictor fallbackPredictor;
+    
+    private PipelineMetrics pipelineMetrics;
+    
+    // Not loaded unless a test loads it, so queries are not routed
+    private TopicRouter topicRouter;
+    
+    private PromptBudgetProperties promptBudget;
+    
     private DeepseekController deepseekController;
     
     @BeforeEach
     public void setup() {
-        deepseekController = new DeepseekController(chatClientMock, knowledgeBaseServiceMock);
+        meterRegistry = new SimpleMeterRegistry();
+        fallbackPredictor = new FallbackPredictor(new FallbackHedgeProperties(), meterRegistry);
+        promptBudget = new PromptBudgetProperties();
+        TopicDetector topicDetector = new TopicDetector(new TopicProperties());
+        topicRouter = new TopicRouter(topicDetector, mock(ChromaDBLowLevelService.class), new TopicProperties());
+        pipelineMetrics = new PipelineMetrics(meterRegistry);
+        ContextPacker contextPacker = new ContextPacker(promptBudget, new TokenEstimator(promptBudget, meterRegistry),
+            new ChunkMerger(), pipelineMetrics);
+        deepseekController = new DeepseekController(chatClientMock, knowledgeBaseServiceMock, semanticAnswerCacheMock,
+            pipelineMetrics, fallbackPredictor, topicDetector, topicRouter, contextPacker);
+        
+        // Semantic cache misses and stores without a result unless a test says otherwise
+        lenient().when(semanticAnswerCacheMock.lookupAsync(anyString(), anyBoolean(), anyString())).thenReturn(Mono.empty());
+        lenient().when(semanticAnswerCacheMock.storeAsync(anyString(), anyBoolean(), anyString(), anyString())).thenReturn(Mono.empty());
+    }
+    
+    // A single document without metadata, whose context string is the text itself
+    private RetrievalResult context(String text) {
+        return new RetrievalResult(List.of("doc-1"), List.of(text), null, List.of(0.1));
     }
     
     @Test
@@ -48,8 +102,8 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks
-        when(knowledgeBaseServiceMock.search("Tell me about GP Visit Cards"))
-            .thenReturn("GP Visit Card information from knowledge base");
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(context("GP Visit Card information from knowledge base")));
         
         // The formatted prompt would contain both the context and the user query
         String formattedPrompt = "### HSE INFORMATION ON GP VISIT CARDS ###\n\n" +
@@ -59,19 +113,19 @@ public class DeepseekControllerTest {
                                "please answer the following query about GP Visit Cards: " +
                                "Tell me about GP Visit Cards";
         
-        when(chatClientMock.prompt(formattedPrompt))
-            .thenReturn("AI response about GP Visit Cards");
+        when(chatClientMock.promptAsync(formattedPrompt))
+            .thenReturn(Mono.just("AI response about GP Visit Cards"));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals("AI response about GP Visit Cards", responseEntity.getBody());
         
         // Verify mock interactions
-        verify(knowledgeBaseServiceMock).search("Tell me about GP Visit Cards");
-        verify(chatClientMock).prompt(formattedPrompt);
+        verify(knowledgeBaseServiceMock).retrieveAsync("Tell me about GP Visit Cards");
+        verify(chatClientMock).promptAsync(formattedPrompt);
     }
     
     @Test
@@ -88,11 +142,11 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks
-        when(chatClientMock.prompt("Tell me about GP Visit Cards"))
-            .thenReturn("AI response about GP Visit Cards without context");
+        when(chatClientMock.promptAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just("AI response about GP Visit Cards without context"));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
@@ -100,7 +154,42 @@ public class DeepseekControllerTest {
         
         // Verify mock interactions - should not call knowledge base service
         verifyNoInteractions(knowledgeBaseServiceMock);
-        verify(chatClientMock).prompt("Tell me about GP Visit Cards");
+        verify(chatClientMock).promptAsync("Tell me about GP Visit Cards");
+        
+        // The response time is broken down in the Server-Timing header
+        String serverTiming = responseEntity.getHeaders().getFirst("Server-Timing");
+        assertNotNull(serverTiming);
+        assertTrue(serverTiming.matches("total;dur=[0-9.]+"), serverTiming);
+        
+        // The request is counted on the no-RAG path and the LLM call is timed
+        assertEquals(1.0, meterRegistry.get("slainte.chat.requests").tag("path", "no_rag").counter().count());
+        assertEquals(0.0, meterRegistry.get("slainte.chat.requests").tag("path", "rag").counter().count());
+        assertEquals(1, meterRegistry.get("slainte.pipeline.stage").tag("stage", "llm_total").timer().count());
+        
+        // The generated answer is stored for semantically similar questions
+        verify(semanticAnswerCacheMock).storeAsync("Tell me about GP Visit Cards", false,
+            DeepseekController.PROMPT_TEMPLATE_VERSION, "AI response about GP Visit Cards without context");
+    }
+    
+    @Test
+    public void testSemanticCacheHitSkipsRetrievalAndGeneration() {
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        
+        Message userMessage = new Message();
+        userMessage.setRole("user");
+        userMessage.setContent("GP visit card application");
+        request.setMessages(new ArrayList<>(List.of(userMessage)));
+        
+        when(semanticAnswerCacheMock.lookupAsync("GP visit card application", true, DeepseekController.PROMPT_TEMPLATE_VERSION))
+            .thenReturn(Mono.just("Cached answer about GP Visit Cards"));
+        
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
+        
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals("Cached answer about GP Visit Cards", responseEntity.getBody());
+        verifyNoInteractions(knowledgeBaseServiceMock, chatClientMock);
+        verify(semanticAnswerCacheMock, never()).storeAsync(anyString(), anyBoolean(), anyString(), anyString());
     }
     
     @Test
@@ -127,11 +216,11 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks
-        when(chatClientMock.prompt("I have a headache"))
-            .thenReturn("AI assessment response for headache");
+        when(chatClientMock.promptAsync("I have a headache"))
+            .thenReturn(Mono.just("AI assessment response for headache"));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
@@ -139,7 +228,7 @@ public class DeepseekControllerTest {
         
         // Verify mock interactions - should not call knowledge base service
         verifyNoInteractions(knowledgeBaseServiceMock);
-        verify(chatClientMock).prompt("I have a headache");
+        verify(chatClientMock).promptAsync("I have a headache");
     }
     
     @Test
@@ -156,8 +245,8 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks - should use specialized query
-        when(knowledgeBaseServiceMock.search("Information on GP Visit Card eligibility and application process"))
-            .thenReturn("Specialized GP Visit Card information");
+        when(knowledgeBaseServiceMock.retrieveAsync("Information on GP Visit Card eligibility and application process"))
+            .thenReturn(Mono.just(context("Specialized GP Visit Card information")));
         
         String formattedPrompt = "### HSE INFORMATION ON GP VISIT CARDS ###\n\n" +
                                "Specialized GP Visit Card information\n\n" +
@@ -166,19 +255,19 @@ public class DeepseekControllerTest {
                                "please answer the following query about GP Visit Cards: " +
                                "How do I get a GP visit card?";
         
-        when(chatClientMock.prompt(formattedPrompt))
-            .thenReturn("AI response about getting a GP Visit Card");
+        when(chatClientMock.promptAsync(formattedPrompt))
+            .thenReturn(Mono.just("AI response about getting a GP Visit Card"));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals("AI response about getting a GP Visit Card", responseEntity.getBody());
         
         // Verify mock interactions - should use specialized query
-        verify(knowledgeBaseServiceMock).search("Information on GP Visit Card eligibility and application process");
-        verify(chatClientMock).prompt(formattedPrompt);
+        verify(knowledgeBaseServiceMock).retrieveAsync("Information on GP Visit Card eligibility and application process");
+        verify(chatClientMock).promptAsync(formattedPrompt);
     }
     
     @Test
@@ -195,11 +284,11 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks - first search returns insufficient context
-        when(knowledgeBaseServiceMock.search("Tell me about GP Visit Cards"))
-            .thenReturn("Short"); // Too short, should trigger fallback
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(context("Short"))); // Too short, should trigger fallback
         
-        when(knowledgeBaseServiceMock.search("GP Visit Card information HSE"))
-            .thenReturn("Fallback GP Visit Card information from HSE knowledge base");
+        when(knowledgeBaseServiceMock.retrieveAsync("GP Visit Card information HSE"))
+            .thenReturn(Mono.just(context("Fallback GP Visit Card information from HSE knowledge base")));
         
         String formattedPrompt = "### HSE INFORMATION ON GP VISIT CARDS ###\n\n" +
                                "Fallback GP Visit Card information from HSE knowledge base\n\n" +
@@ -208,20 +297,191 @@ public class DeepseekControllerTest {
                                "please answer the following query about GP Visit Cards: " +
                                "Tell me about GP Visit Cards";
         
-        when(chatClientMock.prompt(formattedPrompt))
-            .thenReturn("AI response with fallback information");
+        when(chatClientMock.promptAsync(formattedPrompt))
+            .thenReturn(Mono.just("AI response with fallback information"));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals("AI response with fallback information", responseEntity.getBody());
         
         // Verify mock interactions - should try original query then fallback
-        verify(knowledgeBaseServiceMock).search("Tell me about GP Visit Cards");
-        verify(knowledgeBaseServiceMock).search("GP Visit Card information HSE");
-        verify(chatClientMock).prompt(formattedPrompt);
+        verify(knowledgeBaseServiceMock).retrieveAsync("Tell me about GP Visit Cards");
+        verify(knowledgeBaseServiceMock).retrieveAsync("GP Visit Card information HSE");
+        verify(chatClientMock).promptAsync(formattedPrompt);
+    }
+    
+    @Test
+    public void testHedgedSearchUsesPrimaryAndCancelsFallback() throws InterruptedException {
+        // Recent primary retrievals were unusable, so the fallback is searched in parallel
+        for (int i = 0; i < 5; i++) {
+            fallbackPredictor.recordPrimary(true);
+        }
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        String primaryContext = "GP Visit Card information from the HSE knowledge base, long enough to be used";
+        CountDownLatch fallbackCancelled = new CountDownLatch(1);
+        Sinks.Empty<Void> fallbackStarted = Sinks.empty();
+        // The primary answers once the fallback search is under way
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(fallbackStarted.asMono().then(Mono.just(context(primaryContext)).delayElement(Duration.ofMillis(20))));
+        when(knowledgeBaseServiceMock.retrieveAsync("GP Visit Card information HSE"))
+            .thenReturn(Mono.<RetrievalResult>never()
+                .doOnSubscribe(subscription -> fallbackStarted.tryEmitEmpty())
+                .doOnCancel(fallbackCancelled::countDown));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        // Completes although the fallback never does
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block(Duration.ofSeconds(5));
+        
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        // The fallback is cancelled as the race ends, possibly just after the response is complete
+        assertTrue(fallbackCancelled.await(5, TimeUnit.SECONDS));
+        verify(chatClientMock).promptAsync(argThat(prompt -> prompt.contains(primaryContext)));
+        assertEquals(1.0, meterRegistry.get("slainte.retrieval.hedges").tag("used", "primary").counter().count());
+        assertEquals(0.0, meterRegistry.get("slainte.chat.requests").tag("path", "fallback").counter().count());
+    }
+    
+    @Test
+    public void testHedgedSearchUsesFallbackWhenPrimaryIsInsufficient() {
+        for (int i = 0; i < 5; i++) {
+            fallbackPredictor.recordPrimary(true);
+        }
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        String fallbackContext = "Fallback GP Visit Card information from HSE knowledge base";
+        Sinks.Empty<Void> fallbackStarted = Sinks.empty();
+        // The primary answers only after the fallback was started, so both run at once
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(fallbackStarted.asMono().then(Mono.just(context("Short")).delayElement(Duration.ofMillis(20))));
+        when(knowledgeBaseServiceMock.retrieveAsync("GP Visit Card information HSE"))
+            .thenReturn(Mono.just(context(fallbackContext)).doOnSubscribe(subscription -> fallbackStarted.tryEmitEmpty()));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response with fallback information"));
+        
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block(Duration.ofSeconds(5));
+        
+        assertEquals("AI response with fallback information", responseEntity.getBody());
+        verify(chatClientMock).promptAsync(argThat(prompt -> prompt.contains(fallbackContext)));
+        assertEquals(1.0, meterRegistry.get("slainte.retrieval.hedges").tag("used", "fallback").counter().count());
+        assertEquals(1.0, meterRegistry.get("slainte.chat.requests").tag("path", "fallback").counter().count());
+    }
+    
+    @Test
+    public void testHedgedFallbackIsTimedApartFromThePrimarySearch() {
+        for (int i = 0; i < 5; i++) {
+            fallbackPredictor.recordPrimary(true);
+        }
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        // Both searches embed their query at the same time
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(pipelineMetrics.time(PipelineMetrics.Stage.EMBEDDING, Mono.just(context("Short")).delayElement(Duration.ofMillis(200))));
+        when(knowledgeBaseServiceMock.retrieveAsync("GP Visit Card information HSE"))
+            .thenReturn(pipelineMetrics.time(PipelineMetrics.Stage.EMBEDDING,
+                Mono.just(context("Fallback GP Visit Card information from HSE knowledge base")).delayElement(Duration.ofMillis(200))));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block(Duration.ofSeconds(5));
+        
+        // The embed timing is the primary search only, and the fallback is its wall-clock time marked as parallel
+        Map<String, Double> durations = new HashMap<>();
+        String serverTiming = responseEntity.getHeaders().getFirst("Server-Timing");
+        for (String entry : serverTiming.split(", ")) {
+            durations.put(entry.substring(0, entry.indexOf(';')), Double.parseDouble(entry.substring(entry.indexOf("dur=") + 4)));
+        }
+        assertTrue(serverTiming.contains("fallback;desc=\"parallel\";dur="), serverTiming);
+        assertTrue(durations.get("embed") >= 200.0 && durations.get("embed") < 400.0, serverTiming);
+        assertTrue(durations.get("fallback") >= 200.0, serverTiming);
+        assertTrue(durations.get("embed") <= durations.get("total"), serverTiming);
+        assertEquals(2, meterRegistry.get("slainte.pipeline.stage").tag("stage", "embedding").timer().count());
+    }
+    
+    @Test
+    public void testFallbackIsNotSearchedWhilePrimaryRetrievalsAreUsable() {
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(context("GP Visit Card information from the HSE knowledge base, long enough to be used")));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        deepseekController.chatWithContext(request).block();
+        
+        verify(knowledgeBaseServiceMock, never()).retrieveAsync("GP Visit Card information HSE");
+        assertEquals(0.0, fallbackPredictor.getInsufficientRate());
+    }
+    
+    @Test
+    public void testFailedPrimarySearchesDoNotStartHedging() {
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(RetrievalResult.error("Error: ChromaDB unavailable")));
+        when(knowledgeBaseServiceMock.retrieveAsync("GP Visit Card information HSE"))
+            .thenReturn(Mono.just(RetrievalResult.error("Error: ChromaDB unavailable")));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        for (int i = 0; i < 5; i++) {
+            deepseekController.chatWithContext(request).block();
+        }
+        
+        // The fallback is still tried in turn, but the failures do not count towards hedging
+        verify(knowledgeBaseServiceMock, times(5)).retrieveAsync("GP Visit Card information HSE");
+        assertEquals(0.0, fallbackPredictor.getInsufficientRate());
+        assertFalse(fallbackPredictor.shouldHedge());
+    }
+    
+    @Test
+    public void testPrimarySearchIsRoutedToTheSourcesOfTheTopic() {
+        topicRouter.load(List.of("HSE_Services_gp-visit-cards_carers.pdf", "HSE_Condition_Pages_Asthma.pdf",
+            "HSE_Condition_Pages_Diabetes.pdf", "HSE_Condition_Pages_Angina.pdf"));
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards", Set.of("HSE_Services_gp-visit-cards_carers.pdf")))
+            .thenReturn(Mono.just(context("GP Visit Card information from the HSE knowledge base, long enough to be used")));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
+        
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        verify(knowledgeBaseServiceMock, never()).retrieveAsync("Tell me about GP Visit Cards");
+    }
+    
+    @Test
+    public void testContextIsPackedIntoTheTokenBudget() {
+        promptBudget.setContextTokens(60);
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        // Three chunks of about 25 tokens each, listed least relevant first
+        List<String> chunks = List.of(
+            "Least relevant chunk about opening hours of offices across the whole country today",
+            "Most relevant chunk about applying for a GP visit card online or by post anytime",
+            "Second chunk about who qualifies for a GP visit card and which incomes are assessed");
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(new RetrievalResult(List.of("a", "b", "c"), chunks, null, List.of(0.9, 0.1, 0.2))));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        deepseekController.chatWithContext(request).block();
+        
+        // The two nearest chunks fit, nearest first; the third is left out
+        verify(chatClientMock).promptAsync(argThat(prompt -> prompt.contains(chunks.get(1) + "\n\n---\n\n" + chunks.get(2))
+            && !prompt.contains(chunks.get(0))));
+        assertEquals(1.0, meterRegistry.get("slainte.prompt.context.dropped").counter().count());
     }
     
     @Test
@@ -238,18 +498,18 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks to throw exception
-        when(knowledgeBaseServiceMock.search("Tell me about GP Visit Cards"))
-            .thenThrow(new RuntimeException("Knowledge base error"));
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.error(new RuntimeException("Knowledge base error")));
         
         // Execute test
-        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request);
+        ResponseEntity<String> responseEntity = deepseekController.chatWithContext(request).block();
         
         // Verify result
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         assertTrue(responseEntity.getBody().contains("Error: Knowledge base error"));
         
         // Verify mock interactions
-        verify(knowledgeBaseServiceMock).search("Tell me about GP Visit Cards");
+        verify(knowledgeBaseServiceMock).retrieveAsync("Tell me about GP Visit Cards");
         verifyNoInteractions(chatClientMock);
     }
     
@@ -267,11 +527,11 @@ public class DeepseekControllerTest {
         request.setMessages(messages);
         
         // Configure mocks
-        when(knowledgeBaseServiceMock.search("Tell me about GP Visit Cards"))
-            .thenReturn("GP Visit Card information from knowledge base");
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards"))
+            .thenReturn(Mono.just(context("GP Visit Card information from knowledge base")));
         
         // Execute test
-        ResponseEntity<Map<String, Object>> responseEntity = deepseekController.debugChat(request);
+        ResponseEntity<Map<String, Object>> responseEntity = deepseekController.debugChat(request).block();
         
         // Verify result
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
@@ -288,7 +548,127 @@ public class DeepseekControllerTest {
         assertTrue(finalPrompt.contains("GP Visit Card information from knowledge base"));
         assertTrue(finalPrompt.contains("Tell me about GP Visit Cards"));
         
+        // The context is packed as for /chat, and its tokens are those of the packed context
+        assertNotNull(responseBody.get("contextTokens"));
+        
         // Verify mock interactions
-        verify(knowledgeBaseServiceMock).search("Tell me about GP Visit Cards");
+        verify(knowledgeBaseServiceMock).retrieveAsync("Tell me about GP Visit Cards");
+    }
+    
+    @Test
+    public void testDebugReportsThePromptChatWouldSend() {
+        topicRouter.load(List.of("HSE_Services_gp-visit-cards_carers.pdf", "HSE_Condition_Pages_Asthma.pdf",
+            "HSE_Condition_Pages_Diabetes.pdf", "HSE_Condition_Pages_Angina.pdf"));
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        String context = "GP Visit Card information from the HSE knowledge base, long enough to be used";
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards", Set.of("HSE_Services_gp-visit-cards_carers.pdf")))
+            .thenReturn(Mono.just(context(context)));
+        when(chatClientMock.promptAsync(anyString())).thenReturn(Mono.just("AI response"));
+        
+        Map<String, Object> debug = deepseekController.debugChat(request).block().getBody();
+        deepseekController.chatWithContext(request).block();
+        
+        // The routed search is used, and the prompt is the one /chat sends
+        assertEquals(Set.of("HSE_Services_gp-visit-cards_carers.pdf"), debug.get("routedSources"));
+        assertEquals(1, debug.get("contextChunks"));
+        assertTrue((Integer) debug.get("contextTokens") > 0);
+        verify(chatClientMock).promptAsync((String) debug.get("finalPrompt"));
+        verify(knowledgeBaseServiceMock, never()).search(anyString());
+    }
+    
+    @Test
+    public void testChatStreamEmitsSourcesTokensAndStats() {
+        // Prepare test data
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(true);
+        request.setMessages(List.of(new Message("user", "Tell me about GP Visit Cards")));
+        
+        String context = "GP Visit Card information from the HSE knowledge base, long enough to be used";
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("source", "GP visit card.pdf");
+        RetrievalResult retrieval = new RetrievalResult(
+            List.of("doc-1"), List.of(context), List.of(metadata), List.of(0.2));
+        
+        // Configure mocks
+        when(knowledgeBaseServiceMock.retrieveAsync("Tell me about GP Visit Cards")).thenReturn(Mono.just(retrieval));
+        when(chatClientMock.promptStream(anyString())).thenReturn(Flux.just(
+            new LlmStreamChunk("GP ", false),
+            new LlmStreamChunk("cards", false),
+            new LlmStreamChunk("", true)));
+        
+        // Execute and verify event order
+        StepVerifier.create(deepseekController.chatStream(request))
+            .assertNext(event -> {
+                assertEquals("sources", event.event());
+                List<Map<String, Object>> sources = (List<Map<String, Object>>) event.data().get("sources");
+                assertEquals(1, sources.size());
+                assertEquals("GP visit card.pdf", sources.get(0).get("source"));
+                assertEquals("doc-1", sources.get(0).get("id"));
+                assertTrue((Integer) event.data().get("contextTokens") > 0);
+                assertEquals(0, event.data().get("droppedChunks"));
+            })
+            .assertNext(event -> {
+                assertEquals("token", event.event());
+                assertEquals("GP ", event.data().get("text"));
+            })
+            .assertNext(event -> assertEquals("cards", event.data().get("text")))
+            .assertNext(event -> {
+                assertEquals("stats", event.event());
+                assertEquals(2, event.data().get("tokens"));
+                assertNotNull(event.data().get("timeToFirstTokenMs"));
+                Map<String, Double> timings = (Map<String, Double>) event.data().get("timings");
+                assertEquals(List.of("prompt", "llm-prefill", "llm-generate", "total"), List.copyOf(timings.keySet()));
+            })
+            .verifyComplete();
+        
+        // Verify the prompt contained the retrieved context
+        verify(chatClientMock).promptStream(argThat(prompt -> prompt.contains(context)));
+        
+        // Prompt assembly, first token and the whole generation are timed once each
+        for (String stage : List.of("prompt_assembly", "llm_first_token", "llm_total")) {
+            assertEquals(1, meterRegistry.get("slainte.pipeline.stage").tag("stage", stage).timer().count(), stage);
+        }
+        assertEquals(1.0, meterRegistry.get("slainte.chat.requests").tag("path", "rag").counter().count());
+        assertEquals(1, meterRegistry.get("slainte.llm.tokens.per.second").summary().count());
+    }
+    
+    @Test
+    public void testChatStreamWithoutRAG() {
+        // Prepare test data
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(false);
+        request.setMessages(List.of(new Message("user", "Hello")));
+        
+        when(chatClientMock.promptStream("Hello")).thenReturn(Flux.just(new LlmStreamChunk("Hi", false)));
+        
+        // Execute and verify
+        StepVerifier.create(deepseekController.chatStream(request))
+            .assertNext(event -> assertEquals(false, event.data().get("useRag")))
+            .assertNext(event -> assertEquals("Hi", event.data().get("text")))
+            .assertNext(event -> assertEquals("stats", event.event()))
+            .verifyComplete();
+        
+        verifyNoInteractions(knowledgeBaseServiceMock);
+    }
+    
+    @Test
+    public void testChatStreamEmitsErrorEvent() {
+        // Prepare test data
+        ChatRequest request = new ChatRequest();
+        request.setUseRag(false);
+        request.setMessages(List.of(new Message("user", "Hello")));
+        
+        when(chatClientMock.promptStream("Hello")).thenReturn(Flux.error(new RuntimeException("Ollama down")));
+        
+        // Execute and verify
+        StepVerifier.create(deepseekController.chatStream(request))
+            .assertNext(event -> assertEquals("sources", event.event()))
+            .assertNext(event -> {
+                assertEquals("error", event.event());
+                assertEquals("Ollama down", event.data().get("error"));
+            })
+            .verifyComplete();
     }
-}
\ No newline at end of file
+}
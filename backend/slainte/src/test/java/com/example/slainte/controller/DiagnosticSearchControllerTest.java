@@ -2,6 +2,8 @@ package com.example.slainte.controller;
 
 import com.example.slainte.service.EmbeddingService;
 import com.example.slainte.service.ChromaDBLowLevelService;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,15 +45,13 @@ public class DiagnosticSearchControllerTest {
         request.put("query", query);
         request.put("topK", "3");
         
-        List<Double> mockEmbedding = Arrays.asList(0.1, 0.2, 0.3, 0.4, 0.5);
-        Map<String, Object> rawResults = new HashMap<>();
-        rawResults.put("documents", Arrays.asList(Arrays.asList("Document 1", "Document 2")));
+        Embedding mockEmbedding = Embedding.of(0.1f, 0.2f, 0.3f, 0.4f, 0.5f);
+        RetrievalResult retrieval = new RetrievalResult(
+            null, Arrays.asList("Document 1", "Document 2"), null, null);
         
         // Configure mocks
         when(embeddingServiceMock.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBServiceMock.getRawResults(mockEmbedding, 3)).thenReturn(rawResults);
-        when(chromaDBServiceMock.queryDatabase(mockEmbedding, 3)).thenReturn("Text results");
-        when(chromaDBServiceMock.extractDocuments(rawResults)).thenReturn(Arrays.asList("Document 1", "Document 2"));
+        when(chromaDBServiceMock.query(mockEmbedding, 3)).thenReturn(retrieval);
         
         // Execute test
         ResponseEntity<Map<String, Object>> responseEntity = diagnosticSearchController.debugSearch(request);
@@ -64,14 +64,14 @@ public class DiagnosticSearchControllerTest {
         assertEquals(query, responseBody.get("query"));
         assertEquals(3, responseBody.get("topK"));
         assertEquals(mockEmbedding.size(), responseBody.get("embeddingSize"));
-        assertEquals("Text results", responseBody.get("textResults"));
-        assertEquals(rawResults, responseBody.get("rawResults"));
+        assertEquals(retrieval.toContextString(), responseBody.get("textResults"));
+        assertEquals(retrieval.toRawResults(), responseBody.get("rawResults"));
+        assertEquals(Arrays.asList("Document 1", "Document 2"), responseBody.get("documents"));
         
-        // Verify mock interactions
+        // Verify mock interactions - a single ChromaDB query serves every view
         verify(embeddingServiceMock).getEmbedding(query);
-        verify(chromaDBServiceMock).getRawResults(mockEmbedding, 3);
-        verify(chromaDBServiceMock).queryDatabase(mockEmbedding, 3);
-        verify(chromaDBServiceMock).extractDocuments(rawResults);
+        verify(chromaDBServiceMock, times(1)).query(mockEmbedding, 3);
+        verifyNoMoreInteractions(chromaDBServiceMock);
     }
     
     @Test
@@ -81,15 +81,13 @@ public class DiagnosticSearchControllerTest {
         Map<String, String> request = new HashMap<>();
         request.put("query", query);
         
-        List<Double> mockEmbedding = Arrays.asList(0.1, 0.2, 0.3, 0.4, 0.5);
-        Map<String, Object> rawResults = new HashMap<>();
-        rawResults.put("documents", Arrays.asList(Arrays.asList("Document 1", "Document 2")));
+        Embedding mockEmbedding = Embedding.of(0.1f, 0.2f, 0.3f, 0.4f, 0.5f);
+        RetrievalResult retrieval = new RetrievalResult(
+            null, Arrays.asList("Document 1", "Document 2"), null, null);
         
         // Configure mocks - should use default topK (5)
         when(embeddingServiceMock.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBServiceMock.getRawResults(mockEmbedding, 5)).thenReturn(rawResults);
-        when(chromaDBServiceMock.queryDatabase(mockEmbedding, 5)).thenReturn("Text results");
-        when(chromaDBServiceMock.extractDocuments(rawResults)).thenReturn(Arrays.asList("Document 1", "Document 2"));
+        when(chromaDBServiceMock.query(mockEmbedding, 5)).thenReturn(retrieval);
         
         // Execute test
         ResponseEntity<Map<String, Object>> responseEntity = diagnosticSearchController.debugSearch(request);
@@ -104,8 +102,7 @@ public class DiagnosticSearchControllerTest {
         
         // Verify mock interactions uses default topK
         verify(embeddingServiceMock).getEmbedding(query);
-        verify(chromaDBServiceMock).getRawResults(mockEmbedding, 5);
-        verify(chromaDBServiceMock).queryDatabase(mockEmbedding, 5);
+        verify(chromaDBServiceMock).query(mockEmbedding, 5);
     }
     
     @Test
@@ -137,15 +134,10 @@ public class DiagnosticSearchControllerTest {
     @Test
     public void testListDocuments() {
         // Prepare mock data
-        List<Double> genericEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            genericEmbedding.add(0.1);
-        }
+        Embedding genericEmbedding = Embedding.filled(768, 0.1f);
         
-        Map<String, Object> rawResults = new HashMap<>();
         List<List<String>> documents = new ArrayList<>();
         documents.add(Arrays.asList("Document 1", "Document 2", "Document 3"));
-        rawResults.put("documents", documents);
         
         List<List<Map<String, Object>>> metadatas = new ArrayList<>();
         List<Map<String, Object>> metaList = new ArrayList<>();
@@ -153,10 +145,11 @@ public class DiagnosticSearchControllerTest {
         metaList.add(Map.of("source", "source2"));
         metaList.add(Map.of("source", "source3"));
         metadatas.add(metaList);
-        rawResults.put("metadatas", metadatas);
+        
+        RetrievalResult retrieval = new RetrievalResult(null, documents.get(0), metaList, null);
         
         // Configure mock
-        when(chromaDBServiceMock.getRawResults(any(List.class), eq(20))).thenReturn(rawResults);
+        when(chromaDBServiceMock.query(any(Embedding.class), eq(20))).thenReturn(retrieval);
         
         // Execute test
         ResponseEntity<Map<String, Object>> responseEntity = diagnosticSearchController.listDocuments();
@@ -170,30 +163,25 @@ public class DiagnosticSearchControllerTest {
         assertEquals(metadatas, responseBody.get("metadatas"));
         
         // Verify mock interactions
-        verify(chromaDBServiceMock).getRawResults(any(List.class), eq(20));
+        verify(chromaDBServiceMock).query(any(Embedding.class), eq(20));
     }
     
     @Test
     public void testSearchByKeyword() {
         // Prepare test data
         String keyword = "health";
-        List<Double> mockEmbedding = Arrays.asList(0.1, 0.2, 0.3, 0.4, 0.5);
-        
-        Map<String, Object> rawResults = new HashMap<>();
-        List<List<String>> documents = new ArrayList<>();
-        documents.add(Arrays.asList("Health document 1", "Health document 2"));
-        rawResults.put("documents", documents);
+        Embedding mockEmbedding = Embedding.of(0.1f, 0.2f, 0.3f, 0.4f, 0.5f);
         
-        List<List<Map<String, Object>>> metadatas = new ArrayList<>();
         List<Map<String, Object>> metaList = new ArrayList<>();
         metaList.add(Map.of("source", "health_source1"));
         metaList.add(Map.of("source", "health_source2"));
-        metadatas.add(metaList);
-        rawResults.put("metadatas", metadatas);
+        
+        RetrievalResult retrieval = new RetrievalResult(
+            null, Arrays.asList("Health document 1", "Health document 2"), metaList, null);
         
         // Configure mocks
         when(embeddingServiceMock.getEmbedding(keyword)).thenReturn(mockEmbedding);
-        when(chromaDBServiceMock.getRawResults(mockEmbedding, 10)).thenReturn(rawResults);
+        when(chromaDBServiceMock.query(mockEmbedding, 10)).thenReturn(retrieval);
         
         // Execute test
         ResponseEntity<Map<String, Object>> responseEntity = diagnosticSearchController.searchByKeyword(keyword);
@@ -213,7 +201,7 @@ public class DiagnosticSearchControllerTest {
         
         // Verify mock interactions
         verify(embeddingServiceMock).getEmbedding(keyword);
-        verify(chromaDBServiceMock).getRawResults(mockEmbedding, 10);
+        verify(chromaDBServiceMock).query(mockEmbedding, 10);
     }
     
     @Test
@@ -0,0 +1,112 @@
+package com.example.slainte.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    public void testFindsExactMatchFirst() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100, 1L);
+        float[][] vectors = randomVectors(500, 7L);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        for (int node : new int[] {0, 123, 499}) {
+            Neighbors neighbors = index.search(vectors[node], 5, 50);
+
+            assertEquals(5, neighbors.size());
+            assertEquals(node, neighbors.node(0));
+            assertEquals(0.0f, neighbors.distance(0), 1e-6f);
+        }
+    }
+
+    @Test
+    public void testRecallAgainstBruteForce() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 200, 1L);
+        float[][] vectors = randomVectors(2_000, 11L);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        int k = 10;
+        int found = 0;
+        float[][] queries = randomVectors(50, 13L);
+        for (float[] query : queries) {
+            Set<Integer> expected = bruteForce(vectors, query, k);
+            Neighbors neighbors = index.search(query, k, 64);
+            for (int i = 0; i < neighbors.size(); i++) {
+                if (expected.contains(neighbors.node(i))) {
+                    found++;
+                }
+            }
+        }
+
+        double recall = (double) found / (queries.length * k);
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    public void testResultsAreSortedNearestFirst() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100, 1L);
+        for (float[] vector : randomVectors(300, 3L)) {
+            index.add(vector);
+        }
+
+        Neighbors neighbors = index.search(randomVectors(1, 5L)[0], 20, 40);
+
+        assertEquals(20, neighbors.size());
+        for (int i = 1; i < neighbors.size(); i++) {
+            assertTrue(neighbors.distance(i - 1) <= neighbors.distance(i));
+        }
+    }
+
+    @Test
+    public void testEmptyIndexAndSmallCorpus() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100, 1L);
+        float[] query = randomVectors(1, 5L)[0];
+
+        assertEquals(0, index.search(query, 5, 10).size());
+
+        index.add(query);
+        Neighbors neighbors = index.search(query, 5, 10);
+        assertEquals(1, neighbors.size());
+        assertEquals(0, neighbors.node(0));
+    }
+
+    @Test
+    public void testRejectsWrongDimension() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 100, 1L);
+
+        assertThrows(IllegalArgumentException.class, () -> index.add(new float[DIMENSION + 1]));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[3], 1, 10));
+    }
+
+    private Set<Integer> bruteForce(float[][] vectors, float[] query, int k) {
+        Integer[] order = new Integer[vectors.length];
+        float[] distances = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            order[i] = i;
+            distances[i] = VectorKernels.scalar().squaredL2(query, 0, vectors[i], 0, DIMENSION);
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> distances[i]));
+        return new HashSet<>(Arrays.asList(order).subList(0, k));
+    }
+
+    private float[][] randomVectors(int count, long seed) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
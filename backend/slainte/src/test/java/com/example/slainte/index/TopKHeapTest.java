@@ -0,0 +1,70 @@
+package com.example.slainte.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopKHeapTest {
+
+    @Test
+    public void testKeepsSmallestDistancesSorted() {
+        Random random = new Random(9L);
+        float[] distances = new float[1_000];
+        TopKHeap heap = new TopKHeap(10);
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = random.nextFloat();
+            heap.offer(i, distances[i]);
+        }
+
+        Neighbors neighbors = heap.drain();
+
+        float[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        assertEquals(10, neighbors.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(sorted[i], neighbors.distance(i));
+            assertEquals(sorted[i], distances[neighbors.node(i)]);
+        }
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    public void testThresholdIsInfiniteUntilFull() {
+        TopKHeap heap = new TopKHeap(2);
+        assertEquals(Float.POSITIVE_INFINITY, heap.threshold());
+
+        heap.offer(0, 3.0f);
+        assertEquals(Float.POSITIVE_INFINITY, heap.threshold());
+        heap.offer(1, 1.0f);
+        assertEquals(3.0f, heap.threshold());
+
+        // A worse candidate is ignored, a better one replaces the worst
+        heap.offer(2, 5.0f);
+        heap.offer(3, 2.0f);
+        assertEquals(2.0f, heap.threshold());
+
+        Neighbors neighbors = heap.drain();
+        assertEquals(1, neighbors.node(0));
+        assertEquals(3, neighbors.node(1));
+    }
+
+    @Test
+    public void testFewerCandidatesThanK() {
+        TopKHeap heap = new TopKHeap(5);
+        heap.offer(7, 0.5f);
+        heap.offer(8, 0.25f);
+
+        Neighbors neighbors = heap.drain();
+
+        assertEquals(2, neighbors.size());
+        assertEquals(8, neighbors.node(0));
+        assertEquals(7, neighbors.node(1));
+    }
+
+    @Test
+    public void testRejectsNonPositiveK() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKHeap(0));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.slainte.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorKernelsTest {
+
+    @Test
+    public void testSurefireEnablesVectorApi() {
+        // The build adds jdk.incubator.vector to the test JVM, so the SIMD kernel is chosen
+        assertTrue(VectorKernels.best().getName().startsWith("simd-"), VectorKernels.best().getName());
+        assertEquals("scalar", VectorKernels.scalar().getName());
+    }
+
+    @Test
+    public void testKernelsAgreeAcrossLengthsAndOffsets() {
+        Random random = new Random(5L);
+        float[] a = randomArray(random, 1_000);
+        float[] b = randomArray(random, 1_000);
+        VectorKernel simd = VectorKernels.best();
+        VectorKernel scalar = VectorKernels.scalar();
+
+        // Covers empty input, lengths shorter than a SIMD lane, tails and the 768-dimension rows
+        for (int length : new int[] {0, 1, 3, 7, 8, 17, 64, 100, 768}) {
+            for (int offset : new int[] {0, 5}) {
+                float expectedDot = naiveDot(a, offset, b, 2 * offset, length);
+                float expectedL2 = naiveL2(a, offset, b, 2 * offset, length);
+                float tolerance = 1e-3f * Math.max(1, length);
+
+                assertEquals(expectedDot, scalar.dot(a, offset, b, 2 * offset, length), tolerance);
+                assertEquals(expectedDot, simd.dot(a, offset, b, 2 * offset, length), tolerance);
+                assertEquals(expectedL2, scalar.squaredL2(a, offset, b, 2 * offset, length), tolerance);
+                assertEquals(expectedL2, simd.squaredL2(a, offset, b, 2 * offset, length), tolerance);
+            }
+        }
+    }
+
+    private float naiveDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return (float) sum;
+    }
+
+    private float naiveL2(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double d = a[aOffset + i] - b[bOffset + i];
+            sum += d * d;
+        }
+        return (float) sum;
+    }
+
+    private float[] randomArray(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.slainte.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorSegmentTest {
+
+    private static final int DIMENSION = 8;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = tempDir.resolve("segment.seg");
+        List<VectorSegment.Entry> entries = List.of(
+            new VectorSegment.Entry("chunk-0", axis(0), "{\"source\":\"gp_visit_card\"}", "GP visit cards are free"),
+            new VectorSegment.Entry("chunk-1", axis(1), null, "Síntomas - accented text survives"),
+            new VectorSegment.Entry("chunk-2", axis(2), "{}", null));
+
+        VectorSegment.write(path, DIMENSION, entries);
+        VectorSegment segment = VectorSegment.open(path, true);
+
+        assertEquals(DIMENSION, segment.dimension());
+        assertEquals(3, segment.size());
+        assertEquals("chunk-1", segment.id(1));
+        assertEquals("{\"source\":\"gp_visit_card\"}", segment.metadataJson(0));
+        assertEquals("{}", segment.metadataJson(1));
+        assertEquals("Síntomas - accented text survives", segment.document(1));
+        assertEquals("", segment.document(2));
+
+        float[] vector = new float[DIMENSION];
+        segment.copyVector(2, vector);
+        assertArrayEquals(axis(2), vector);
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() throws IOException {
+        Random random = new Random(3L);
+        List<VectorSegment.Entry> entries = new ArrayList<>();
+        float[][] vectors = new float[200][DIMENSION];
+        for (int i = 0; i < vectors.length; i++) {
+            for (int d = 0; d < DIMENSION; d++) {
+                vectors[i][d] = (float) random.nextGaussian();
+            }
+            entries.add(new VectorSegment.Entry("chunk-" + i, vectors[i], null, "Document " + i));
+        }
+        Path path = tempDir.resolve("segment.seg");
+        VectorSegment.write(path, DIMENSION, entries);
+        VectorSegment segment = VectorSegment.open(path, false);
+
+        float[] query = vectors[17].clone();
+        query[0] += 0.01f;
+        Neighbors neighbors = segment.search(query, 5);
+
+        assertEquals(5, neighbors.size());
+        assertEquals(17, neighbors.node(0));
+        for (int i = 1; i < neighbors.size(); i++) {
+            assertTrue(neighbors.distance(i - 1) <= neighbors.distance(i));
+        }
+        // Nothing outside the result is closer than the farthest returned neighbour
+        Set<Integer> returned = new HashSet<>();
+        for (int i = 0; i < neighbors.size(); i++) {
+            returned.add(neighbors.node(i));
+        }
+        for (int i = 0; i < vectors.length; i++) {
+            if (!returned.contains(i)) {
+                assertTrue(VectorKernels.scalar().squaredL2(query, 0, vectors[i], 0, DIMENSION) >= neighbors.distance(4));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptySegment() throws IOException {
+        Path path = tempDir.resolve("empty.seg");
+        VectorSegment.write(path, DIMENSION, List.of());
+
+        VectorSegment segment = VectorSegment.open(path, true);
+
+        assertEquals(0, segment.size());
+        assertEquals(0, segment.search(new float[DIMENSION], 5).size());
+    }
+
+    @Test
+    public void testRecordsTheSourceCount() throws IOException {
+        Path path = tempDir.resolve("segment.seg");
+        List<VectorSegment.Entry> entries = List.of(new VectorSegment.Entry("chunk-0", axis(0), null, "Text"));
+
+        VectorSegment.write(path, DIMENSION, entries);
+        assertEquals(1, VectorSegment.open(path, true).sourceCount());
+
+        // Records skipped while building still count towards the collection it was built from
+        VectorSegment.write(path, DIMENSION, entries, 3);
+        VectorSegment segment = VectorSegment.open(path, true);
+        assertEquals(1, segment.size());
+        assertEquals(3, segment.sourceCount());
+    }
+
+    @Test
+    public void testDetectsCorruptionWhenVerifying() throws IOException {
+        Path path = tempDir.resolve("segment.seg");
+        VectorSegment.write(path, DIMENSION, List.of(new VectorSegment.Entry("chunk-0", axis(0), null, "Text")));
+
+        // Flip one byte of the first vector
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), VectorSegment.HEADER_BYTES);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> VectorSegment.open(path, true));
+        assertTrue(error.getMessage().contains("Checksum mismatch"));
+        // Without verification the header alone is trusted
+        assertEquals(1, VectorSegment.open(path, false).size());
+    }
+
+    @Test
+    public void testRejectsUnknownVersionAndForeignFiles() throws IOException {
+        Path path = tempDir.resolve("segment.seg");
+        VectorSegment.write(path, DIMENSION, List.of(new VectorSegment.Entry("chunk-0", axis(0), null, "Text")));
+        ByteBuffer version = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(VectorSegment.VERSION + 1);
+        version.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(version, 4);
+        }
+        assertThrows(IOException.class, () -> VectorSegment.open(path, false));
+
+        Path foreign = tempDir.resolve("foreign.seg");
+        Files.write(foreign, new byte[128]);
+        assertThrows(IOException.class, () -> VectorSegment.open(foreign, false));
+    }
+
+    @Test
+    public void testRejectsWrongDimensionOnWrite() {
+        Path path = tempDir.resolve("segment.seg");
+        List<VectorSegment.Entry> entries = List.of(new VectorSegment.Entry("chunk-0", new float[3], null, "Text"));
+
+        assertThrows(IllegalArgumentException.class, () -> VectorSegment.write(path, DIMENSION, entries));
+        assertFalse(Files.exists(path));
+    }
+
+    private float[] axis(int index) {
+        float[] values = new float[DIMENSION];
+        values[index] = 1.0f;
+        return values;
+    }
+}
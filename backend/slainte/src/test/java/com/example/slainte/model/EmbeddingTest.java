@@ -0,0 +1,99 @@
+package com.example.slainte.model;
+
+import com.example.slainte.dto.EmbeddingResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testFingerprintIsContentBased() {
+        Embedding first = Embedding.of(0.1f, 0.2f, 0.3f, 0.4f, 0.5f);
+        Embedding second = Embedding.fromList(Arrays.asList(0.1, 0.2, 0.3, 0.4, 0.5));
+        Embedding different = Embedding.of(0.1f, 0.2f, 0.3f, 0.4f, 0.6f);
+
+        // Equal content gives equal fingerprints, hash codes and equality
+        assertEquals(first.fingerprint(), second.fingerprint());
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(32, first.fingerprint().length());
+
+        // A single changed component changes the fingerprint
+        assertNotEquals(first.fingerprint(), different.fingerprint());
+        assertNotEquals(first, different);
+    }
+
+    @Test
+    public void testOfCopiesInput() {
+        float[] values = {1.0f, 2.0f};
+        Embedding embedding = Embedding.of(values);
+        values[0] = 42.0f;
+
+        assertEquals(1.0f, embedding.get(0));
+    }
+
+    @Test
+    public void testResize() {
+        Embedding embedding = Embedding.of(0.5f, 0.25f);
+
+        Embedding padded = embedding.resize(4);
+        assertArrayEquals(new float[] {0.5f, 0.25f, 0.0f, 0.0f}, padded.values());
+
+        Embedding truncated = embedding.resize(1);
+        assertArrayEquals(new float[] {0.5f}, truncated.values());
+
+        // Same dimension returns the same instance without copying
+        assertSame(embedding, embedding.resize(2));
+    }
+
+    @Test
+    public void testSerializesAsCompactFloat32Array() throws Exception {
+        Embedding embedding = Embedding.of(0.1f, -0.25f, 3.0f);
+
+        String json = objectMapper.writeValueAsString(embedding);
+
+        // Shortest float32 representation, not the widened double (0.10000000149011612)
+        assertEquals("[0.1,-0.25,3.0]", json);
+    }
+
+    @Test
+    public void testDeserializesIntoFloatArray() throws Exception {
+        Embedding embedding = objectMapper.readValue("[0.1, 2, -0.5e-3]", Embedding.class);
+
+        assertEquals(3, embedding.size());
+        assertArrayEquals(new float[] {0.1f, 2.0f, -0.0005f}, embedding.values());
+    }
+
+    @Test
+    public void testRoundTripLargerThanDefaultDimension() throws Exception {
+        float[] values = new float[Embedding.DIMENSION * 2 + 3];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.001f;
+        }
+        Embedding embedding = Embedding.of(values);
+
+        Embedding roundTripped = objectMapper.readValue(objectMapper.writeValueAsString(embedding), Embedding.class);
+
+        assertEquals(embedding, roundTripped);
+        assertEquals(embedding.fingerprint(), roundTripped.fingerprint());
+    }
+
+    @Test
+    public void testEmbeddingResponseIgnoresUnknownFields() throws Exception {
+        EmbeddingResponse response = objectMapper.readValue(
+            "{\"model\":\"nomic-embed-text\",\"embedding\":[0.5,0.25]}", EmbeddingResponse.class);
+
+        assertEquals(Embedding.of(0.5f, 0.25f), response.getEmbedding());
+    }
+
+    @Test
+    public void testRejectsNonNumericComponents() {
+        assertThrows(Exception.class, () -> objectMapper.readValue("[0.1, \"x\"]", Embedding.class));
+    }
+}
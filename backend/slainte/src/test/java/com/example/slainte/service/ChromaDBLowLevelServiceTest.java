@@ -7,13 +7,27 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,10 +51,7 @@ public class ChromaDBLowLevelServiceTest {
         ChromaDBLowLevelService service = new ChromaDBLowLevelService();
         
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Prepare mock response data
         Map<String, Object> responseMap = new HashMap<>();
@@ -85,6 +96,87 @@ public class ChromaDBLowLevelServiceTest {
         assertTrue(results.get(0).contains("[Source: test_source]"));
     }
     
+    @Test
+    public void testDecodeQueryResponse() throws Exception {
+        // A ChromaDB query response for a single query embedding
+        String responseJson = "{\"ids\":[[\"doc-1\",\"doc-2\"]],"
+                + "\"documents\":[[\"First document\",\"Second document\"]],"
+                + "\"metadatas\":[[{\"source\":\"source_a\"},{\"source\":\"source_b\"}]],"
+                + "\"distances\":[[0.12,0.34]]}";
+        Map<String, Object> responseBody = objectMapper.readValue(responseJson, Map.class);
+        
+        // Execute the test
+        RetrievalResult result = ChromaQueryDecoder.decode(
+                new ByteArrayInputStream(responseJson.getBytes(StandardCharsets.UTF_8)));
+        
+        // Verify typed fields
+        assertFalse(result.hasError());
+        assertEquals(Arrays.asList("doc-1", "doc-2"), result.getIds());
+        assertEquals(Arrays.asList("First document", "Second document"), result.getDocuments());
+        assertEquals("source_b", result.getMetadatas().get(1).get("source"));
+        assertEquals(Arrays.asList(0.12, 0.34), result.getDistances());
+        
+        // Verify derived views
+        assertEquals("First document\n[Source: source_a]\n\n---\n\nSecond document\n[Source: source_b]",
+                result.toContextString());
+        assertEquals(responseBody, result.toRawResults());
+    }
+    
+    @Test
+    public void testDecodeQueryResponseWithoutDocuments() throws Exception {
+        // Execute the test
+        RetrievalResult result = ChromaQueryDecoder.decode(
+                new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+        
+        // Verify results
+        assertTrue(result.hasError());
+        assertEquals("No documents in response.", result.toContextString());
+        assertTrue(result.getDocuments().isEmpty());
+    }
+
+    @Test
+    public void testParseGetResponse() throws Exception {
+        // Create a test class instance without mocking
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService();
+
+        // A ChromaDB get response has flat lists, one entry per record
+        String responseJson = "{\"ids\":[\"doc-1\",\"doc-2\"],"
+                + "\"embeddings\":[[0.5,0.25],null],"
+                + "\"documents\":[\"First document\",\"Second document\"],"
+                + "\"metadatas\":[{\"source\":\"source_a\"},null]}";
+        Map<String, Object> responseBody = objectMapper.readValue(responseJson, Map.class);
+
+        // Execute the test
+        List<VectorRecord> records = service.parseGetResponse(responseBody);
+
+        // Verify every record is kept so paging by count stays aligned
+        assertEquals(2, records.size());
+        assertEquals("doc-1", records.get(0).getId());
+        assertEquals(Embedding.of(0.5f, 0.25f), records.get(0).getEmbedding());
+        assertEquals("source_a", records.get(0).getMetadata().get("source"));
+        assertTrue(records.get(1).getEmbedding().isEmpty());
+        assertEquals("Second document", records.get(1).getDocument());
+        assertTrue(records.get(1).getMetadata().isEmpty());
+    }
+
+    @Test
+    public void testFetchAllRecordsPagesUntilShortPage() throws Exception {
+        // Spy on a real instance so only the HTTP page fetch is stubbed
+        ChromaDBLowLevelService service = spy(new ChromaDBLowLevelService());
+        VectorRecord first = new VectorRecord("doc-1", Embedding.of(1.0f), "First", null);
+        VectorRecord second = new VectorRecord("doc-2", Embedding.of(2.0f), "Second", null);
+        VectorRecord third = new VectorRecord("doc-3", Embedding.of(3.0f), "Third", null);
+        doReturn(List.of(first, second)).when(service).fetchRecords(0, 2);
+        doReturn(List.of(third)).when(service).fetchRecords(2, 2);
+
+        // Execute the test
+        List<VectorRecord> records = service.fetchAllRecords(2);
+
+        // Verify results
+        assertEquals(List.of(first, second, third), records);
+        verify(service, times(2)).fetchRecords(anyInt(), eq(2));
+    }
+
     @Test
     public void testExtractDocuments() {
         // Create a test class instance without mocking
@@ -206,4 +298,152 @@ public class ChromaDBLowLevelServiceTest {
             return mockConnection;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueryAsyncParsesResponseWithoutBlockingConnection() {
+        String body = "{\"ids\":[[\"doc-1\"]],\"documents\":[[\"GP visit card details\"]],"
+            + "\"metadatas\":[[{\"source\":\"gp.pdf\"}]],\"distances\":[[0.12]]}";
+        List<Map<String, Object>> sent = new ArrayList<>();
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> {
+                sent.add(Map.of("url", request.url().toString()));
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(body)
+                    .build());
+            }));
+
+        RetrievalResult result = service.queryAsync(Embedding.filled(768, 0.1f), 3).block();
+
+        assertEquals(List.of("doc-1"), result.getIds());
+        assertEquals("GP visit card details", result.getDocuments().get(0));
+        assertEquals("gp.pdf", result.getMetadatas().get(0).get("source"));
+        assertEquals(0.12, result.getDistances().get(0), 1e-9);
+        assertEquals(1, sent.size());
+        assertTrue(sent.get(0).get("url").toString().endsWith("/query"));
+    }
+
+    @Test
+    public void testQueryAsyncReturnsErrorResultOnHttpError() {
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body("collection not found")
+                .build())));
+
+        RetrievalResult result = service.queryAsync(Embedding.filled(768, 0.1f), 3).block();
+
+        assertTrue(result.hasError());
+        assertEquals("Error from ChromaDB: collection not found", result.getError());
+    }
+
+    @Test
+    public void testBlockingQueryAndGetUseTheWebClient() throws Exception {
+        List<String> urls = new ArrayList<>();
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> {
+                String url = request.url().toString();
+                urls.add(url);
+                String body = url.endsWith("/get")
+                    ? "{\"ids\":[\"doc-1\"],\"embeddings\":[[0.5,0.25]],\"documents\":[\"First\"],\"metadatas\":[null]}"
+                    : "{\"ids\":[[\"doc-1\"]],\"documents\":[[\"First\"]],\"distances\":[[0.2]]}";
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(body)
+                    .build());
+            }));
+
+        RetrievalResult result = service.query(Embedding.filled(768, 0.1f), 1);
+        List<VectorRecord> records = service.fetchRecords(0, 10);
+
+        assertEquals(List.of("First"), result.getDocuments());
+        assertEquals(1, records.size());
+        assertEquals(Embedding.of(0.5f, 0.25f), records.get(0).getEmbedding());
+        assertEquals(2, urls.size());
+        assertTrue(urls.get(0).endsWith("/query"));
+        assertTrue(urls.get(1).endsWith("/get"));
+    }
+
+    @Test
+    public void testFetchRecordsThrowsOnConnectionFailure() {
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> Mono.error(new IllegalStateException("Connection refused"))));
+
+        IOException error = assertThrows(IOException.class, () -> service.fetchRecords(0, 10));
+        assertTrue(error.getMessage().contains("Connection refused"));
+    }
+
+    @Test
+    public void testQueryBodyFiltersOnSourcesWhenGiven() {
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService();
+        Embedding embedding = Embedding.filled(768, 0.1f);
+
+        assertFalse(service.createQueryBody(embedding, 5, Set.of()).containsKey("where"));
+        Map<String, Object> filtered = service.createQueryBody(embedding, 5, Set.of("gp.pdf"));
+        assertEquals(Map.of("source", Map.of("$in", List.of("gp.pdf"))), filtered.get("where"));
+        assertEquals(5, filtered.get("n_results"));
+    }
+
+    @Test
+    public void testQueryKeyDependsOnTheSetOfSourcesOnly() {
+        Embedding embedding = Embedding.filled(768, 0.1f);
+
+        assertEquals(ChromaDBLowLevelService.queryKey(embedding, 5, new LinkedHashSet<>(List.of("a.pdf", "b.pdf"))),
+            ChromaDBLowLevelService.queryKey(embedding, 5, new LinkedHashSet<>(List.of("b.pdf", "a.pdf"))));
+        assertNotEquals(ChromaDBLowLevelService.queryKey(embedding, 5, Set.of("a.pdf")),
+            ChromaDBLowLevelService.queryKey(embedding, 5, Set.of()));
+    }
+
+    @Test
+    public void testFetchSourcesCollectsDistinctSourceMetadata() throws Exception {
+        String page = "{\"ids\":[\"a_chunk_0\",\"a_chunk_1\",\"b_chunk_0\"],"
+            + "\"metadatas\":[{\"source\":\"a.pdf\"},{\"source\":\"a.pdf\"},{\"source\":\"b.pdf\"}]}";
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(page)
+                .build())));
+
+        // A short page ends the listing
+        assertEquals(Set.of("a.pdf", "b.pdf"), service.fetchSources(10));
+    }
+
+    @Test
+    public void testTypedResultsDoNotShareACacheWithFormattedResults() {
+        // ChromaDBService caches the formatted String under the same key, so a shared cache would mix the types
+        Set<String> formatted = new HashSet<>();
+        for (Method method : ChromaDBService.class.getDeclaredMethods()) {
+            Cacheable cacheable = method.getAnnotation(Cacheable.class);
+            if (cacheable != null) {
+                formatted.addAll(Arrays.asList(cacheable.value()));
+            }
+        }
+        int typedMethods = 0;
+        for (Method method : ChromaDBLowLevelService.class.getDeclaredMethods()) {
+            Cacheable cacheable = method.getAnnotation(Cacheable.class);
+            if (cacheable != null) {
+                typedMethods++;
+                assertEquals(List.of("chromaRetrievals"), Arrays.asList(cacheable.value()), method.getName());
+            }
+        }
+
+        assertTrue(formatted.contains("chromaResults"));
+        assertFalse(formatted.contains("chromaRetrievals"));
+        assertEquals(4, typedMethods);
+    }
+
+    @Test
+    public void testFetchCountReadsTheCollectionCount() throws Exception {
+        List<String> paths = new ArrayList<>();
+        ChromaDBLowLevelService service = new ChromaDBLowLevelService(WebClient.builder()
+            .exchangeFunction(request -> {
+                paths.add(request.method() + " " + request.url().getPath());
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("1234")
+                    .build());
+            }));
+
+        assertEquals(1234L, service.fetchCount());
+        assertEquals(List.of("GET /api/v1/collections/4b704b22-bbe9-4f7c-a8d2-9c5cb5e6cc1b/count"), paths);
+    }
+}
@@ -1,65 +1,65 @@
 package com.example.slainte.service;
 
+import com.example.slainte.model.Embedding;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
 public class ChromaDBServiceTest {
 
-    @Mock
-    private HttpClient httpClientMock;
-    
-    @Mock
-    private HttpResponse<String> httpResponseMock;
-    
     private ChromaDBService chromaDBService;
     private ObjectMapper objectMapper = new ObjectMapper();
     
+    // What the stubbed ChromaDB server answers, and how many requests reached it
+    private HttpStatus responseStatus;
+    private String responseBody;
+    private Exception connectionError;
+    private final AtomicInteger requests = new AtomicInteger();
+    
     @BeforeEach
     public void setup() throws Exception {
-        // Create the service instance
-        chromaDBService = new ChromaDBService();
-        
-        // Use reflection to replace the private httpClient with our mock
-        java.lang.reflect.Field httpClientField = ChromaDBService.class.getDeclaredField("httpClient");
-        httpClientField.setAccessible(true);
-        httpClientField.set(chromaDBService, httpClientMock);
-        
-        // Default setup for mock response
-        when(httpResponseMock.statusCode()).thenReturn(200);
-        
-        // Setup httpClientMock to return our mock response
-        when(httpClientMock.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-            .thenReturn(httpResponseMock);
+        responseStatus = HttpStatus.OK;
+        responseBody = "{}";
+        connectionError = null;
+        
+        // Create the service instance on a WebClient whose exchange is answered in memory
+        chromaDBService = new ChromaDBService(WebClient.builder()
+            .exchangeFunction(request -> {
+                requests.incrementAndGet();
+                if (connectionError != null) {
+                    return Mono.error(connectionError);
+                }
+                return Mono.just(ClientResponse.create(responseStatus)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(responseBody)
+                    .build());
+            }));
     }
     
     @Test
     public void testQueryDatabase_Success() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Prepare mock response data
         Map<String, Object> responseMap = new HashMap<>();
@@ -78,7 +78,7 @@ public class ChromaDBServiceTest {
         responseMap.put("metadatas", metadatas);
         
         // Configure the mock response
-        when(httpResponseMock.body()).thenReturn(objectMapper.writeValueAsString(responseMap));
+        responseBody = objectMapper.writeValueAsString(responseMap);
         
         // Execute the test
         String result = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -88,23 +88,20 @@ public class ChromaDBServiceTest {
         assertTrue(result.contains("Test document content"));
         assertTrue(result.contains("[Source: test_source]"));
         
-        // Verify that the HttpClient was called with appropriate parameters
-        verify(httpClientMock).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        // Verify that one request was sent to ChromaDB
+        assertEquals(1, requests.get());
     }
     
     @Test
     public void testQueryDatabase_EmptyResponse() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Prepare empty response
         Map<String, Object> responseMap = new HashMap<>();
         
         // Configure the mock response
-        when(httpResponseMock.body()).thenReturn(objectMapper.writeValueAsString(responseMap));
+        responseBody = objectMapper.writeValueAsString(responseMap);
         
         // Execute the test
         String result = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -116,10 +113,7 @@ public class ChromaDBServiceTest {
     @Test
     public void testQueryDatabase_EmptyDocuments() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Prepare response with empty documents
         Map<String, Object> responseMap = new HashMap<>();
@@ -128,7 +122,7 @@ public class ChromaDBServiceTest {
         responseMap.put("documents", documents);
         
         // Configure the mock response
-        when(httpResponseMock.body()).thenReturn(objectMapper.writeValueAsString(responseMap));
+        responseBody = objectMapper.writeValueAsString(responseMap);
         
         // Execute the test
         String result = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -140,14 +134,10 @@ public class ChromaDBServiceTest {
     @Test
     public void testQueryDatabase_Exception() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
-        // Configure the mock to throw an exception
-        when(httpClientMock.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
-            .thenThrow(new IOException("Connection refused"));
+        // Configure the connection to fail
+        connectionError = new IOException("Connection refused");
         
         // Execute the test
         String result = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -160,10 +150,7 @@ public class ChromaDBServiceTest {
     @Test
     public void testQueryDatabaseAsync_Success() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Prepare mock response data
         Map<String, Object> responseMap = new HashMap<>();
@@ -174,7 +161,7 @@ public class ChromaDBServiceTest {
         responseMap.put("documents", documents);
         
         // Configure the mock response
-        when(httpResponseMock.body()).thenReturn(objectMapper.writeValueAsString(responseMap));
+        responseBody = objectMapper.writeValueAsString(responseMap);
         
         // Execute the test
         CompletableFuture<String> futureResult = chromaDBService.queryDatabaseAsync(testEmbedding, 3);
@@ -210,14 +197,11 @@ public class ChromaDBServiceTest {
     @Test
     public void testQueryDatabase_ErrorResponse() throws Exception {
         // Prepare test data
-        List<Double> testEmbedding = new ArrayList<>();
-        for (int i = 0; i < 768; i++) {
-            testEmbedding.add(0.1);
-        }
+        Embedding testEmbedding = Embedding.filled(768, 0.1f);
         
         // Configure error response
-        when(httpResponseMock.statusCode()).thenReturn(500);
-        when(httpResponseMock.body()).thenReturn("{\"error\":\"Internal server error\"}");
+        responseStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+        responseBody = "{\"error\":\"Internal server error\"}";
         
         // Execute the test
         String result = chromaDBService.queryDatabase(testEmbedding, 3);
@@ -229,10 +213,7 @@ public class ChromaDBServiceTest {
     @Test
     public void testQueryDatabase_SmallEmbedding() throws Exception {
         // Prepare test data with smaller than required embedding size
-        List<Double> smallEmbedding = new ArrayList<>();
-        for (int i = 0; i < 500; i++) {
-            smallEmbedding.add(0.1);
-        }
+        Embedding smallEmbedding = Embedding.filled(500, 0.1f);
         
         // Prepare mock response data
         Map<String, Object> responseMap = new HashMap<>();
@@ -243,7 +224,7 @@ public class ChromaDBServiceTest {
         responseMap.put("documents", documents);
         
         // Configure the mock response
-        when(httpResponseMock.body()).thenReturn(objectMapper.writeValueAsString(responseMap));
+        responseBody = objectMapper.writeValueAsString(responseMap);
         
         // Execute the test - should pad the embedding
         String result = chromaDBService.queryDatabase(smallEmbedding, 3);
@@ -253,6 +234,6 @@ public class ChromaDBServiceTest {
         assertTrue(result.contains("Test document content"));
         
         // Verify HTTP call
-        verify(httpClientMock).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        assertEquals(1, requests.get());
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChromaQueryDecoderTest {
+
+    @Test
+    public void testKeepsNewlinesAndWhitespaceInDocuments() throws IOException {
+        String json = "{\"documents\":[[\"Line one\\n  indented line two\\n\"]]}";
+
+        RetrievalResult result = ChromaQueryDecoder.decode(stream(json));
+
+        assertEquals("Line one\n  indented line two\n", result.getDocuments().get(0));
+    }
+
+    @Test
+    public void testSkipsUnrequestedFieldsAndFurtherQueries() throws IOException {
+        String json = "{\"ids\":[[\"doc-1\"],[\"other-query\"]],"
+            + "\"embeddings\":[[[0.1,0.2],[0.3,0.4]]],"
+            + "\"documents\":[[\"GP visit card\"],[\"Other query document\"]],"
+            + "\"uris\":null,\"data\":null,"
+            + "\"metadatas\":[[{\"source\":\"gp.pdf\",\"page\":3,\"score\":0.5,\"public\":true,\"tags\":[\"gp\"]}]],"
+            + "\"distances\":[[0.25],[0.9]],"
+            + "\"included\":[\"documents\",\"metadatas\",\"distances\"]}";
+
+        RetrievalResult result = ChromaQueryDecoder.decode(stream(json));
+
+        assertEquals(List.of("doc-1"), result.getIds());
+        assertEquals(List.of("GP visit card"), result.getDocuments());
+        assertEquals(List.of(0.25), result.getDistances());
+        Map<String, Object> metadata = result.getMetadatas().get(0);
+        assertEquals("gp.pdf", metadata.get("source"));
+        assertEquals(3, metadata.get("page"));
+        assertEquals(0.5, metadata.get("score"));
+        assertEquals(Boolean.TRUE, metadata.get("public"));
+        assertEquals(List.of("gp"), metadata.get("tags"));
+    }
+
+    @Test
+    public void testNullAndMistypedElementsBecomeNull() throws IOException {
+        String json = "{\"ids\":[[\"doc-1\",\"doc-2\"]],"
+            + "\"documents\":[[null,{\"unexpected\":[1,2]}]],"
+            + "\"metadatas\":[[null,[\"not an object\"]]],"
+            + "\"distances\":[[1,\"far\"]]}";
+
+        RetrievalResult result = ChromaQueryDecoder.decode(stream(json));
+
+        assertEquals(Arrays.asList(null, null), result.getDocuments());
+        assertEquals(Arrays.asList(null, null), result.getMetadatas());
+        // Integer distances are read as doubles
+        assertEquals(Arrays.asList(1.0, null), result.getDistances());
+    }
+
+    @Test
+    public void testEmptyResultsAreNotAnError() throws IOException {
+        RetrievalResult result = ChromaQueryDecoder.decode(stream("{\"ids\":[[]],\"documents\":[[]]}"));
+
+        assertFalse(result.hasError());
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void testRejectsTruncatedAndNonObjectBodies() {
+        assertThrows(IOException.class,
+            () -> ChromaQueryDecoder.decode(stream("{\"documents\":[[\"cut off")));
+        assertThrows(IOException.class, () -> ChromaQueryDecoder.decode(stream("[]")));
+    }
+
+    private InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkMergerTest {
+
+    private final ChunkMerger merger = new ChunkMerger();
+
+    // A document cut the way add_documents.py cuts it: 30-character chunks overlapping by 10
+    private static final String DOCUMENT =
+        "Medical cards cover GP visits, prescriptions and hospital care. Apply online or by post.";
+
+    private static String chunk(int index) {
+        int start = index * 20;
+        return DOCUMENT.substring(start, Math.min(start + 30, DOCUMENT.length()));
+    }
+
+    private static Map<String, Object> metadata(String source, int chunkIndex) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("source", source);
+        metadata.put("chunk_index", chunkIndex);
+        return metadata;
+    }
+
+    @Test
+    public void testOverlappingNeighboursAreStitchedWithTheOverlapOnce() {
+        RetrievalResult retrieval = new RetrievalResult(
+            List.of("mc_chunk_2", "other_chunk_0", "mc_chunk_0", "mc_chunk_1"),
+            List.of(chunk(2), "Unrelated text about vaccines", chunk(0), chunk(1)),
+            List.of(metadata("mc.pdf", 2), metadata("other.pdf", 0), metadata("mc.pdf", 0), metadata("mc.pdf", 1)),
+            List.of(0.2, 0.3, 0.4, 0.1));
+
+        RetrievalResult merged = merger.merge(retrieval);
+
+        // The run sits where its nearest-listed chunk was, under the id and metadata of its first chunk
+        assertEquals(List.of(DOCUMENT.substring(0, 70), "Unrelated text about vaccines"), merged.getDocuments());
+        assertEquals(List.of("mc_chunk_0", "other_chunk_0"), merged.getIds());
+        assertEquals(0, merged.getMetadatas().get(0).get("chunk_index"));
+        // The smallest distance of its chunks
+        assertEquals(List.of(0.1, 0.3), merged.getDistances());
+    }
+
+    @Test
+    public void testChunksThatAreNotNeighboursStayApart() {
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b", "c"),
+            List.of(chunk(0), chunk(2), chunk(1)),
+            List.of(metadata("mc.pdf", 0), metadata("mc.pdf", 2), metadata("other.pdf", 1)),
+            List.of(0.1, 0.2, 0.3));
+
+        assertSame(retrieval, merger.merge(retrieval));
+    }
+
+    @Test
+    public void testNeighboursWithoutOverlapStayApart() {
+        // The first chunk was cut back to a sentence end, leaving a gap before the next
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b"),
+            List.of("Medical cards cover GP visits.", "Apply online or by post."),
+            List.of(metadata("mc.pdf", 0), metadata("mc.pdf", 1)), List.of(0.1, 0.2));
+
+        assertSame(retrieval, merger.merge(retrieval));
+    }
+
+    @Test
+    public void testHitsWithoutChunkMetadataAreKept() {
+        RetrievalResult withoutMetadata = new RetrievalResult(List.of("a", "b"), List.of(chunk(0), chunk(1)), null, null);
+        Map<String, Object> sourceOnly = Map.of("source", "mc.pdf");
+        RetrievalResult withoutIndex = new RetrievalResult(List.of("a", "b"), List.of(chunk(0), chunk(1)),
+            List.of(sourceOnly, sourceOnly), List.of(0.1, 0.2));
+        RetrievalResult error = RetrievalResult.error("Error: Connection refused");
+
+        assertSame(withoutMetadata, merger.merge(withoutMetadata));
+        assertSame(withoutIndex, merger.merge(withoutIndex));
+        assertSame(error, merger.merge(error));
+    }
+
+    @Test
+    public void testOverlapIsTheLongestMatchOfAtLeastTheMinimum() {
+        assertEquals(10, ChunkMerger.overlap("abcdefghij0123456789", "0123456789klm"));
+        // Too short to tell from chance
+        assertEquals(0, ChunkMerger.overlap("abcdefghij0123", "0123klm"));
+        assertEquals(0, ChunkMerger.overlap("abcdefghij", "klmnopqrst"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.PromptBudgetProperties;
+import com.example.slainte.model.RetrievalResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContextPackerTest {
+
+    private SimpleMeterRegistry registry;
+    private PromptBudgetProperties properties;
+    private ContextPacker packer;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        properties = new PromptBudgetProperties();
+        packer = new ContextPacker(properties, new TokenEstimator(properties, registry), new ChunkMerger(),
+            new PipelineMetrics(registry));
+    }
+
+    // A chunk of the given number of four-letter words, i.e. of that many estimated tokens
+    private static String chunk(int words) {
+        return String.join(" ", Collections.nCopies(words, "word"));
+    }
+
+    @Test
+    public void testEverythingIsKeptWithinTheBudget() {
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b"), List.of(chunk(10), chunk(20)),
+            List.of(Map.of("source", "a.pdf"), Map.of("source", "b.pdf")), List.of(0.1, 0.2));
+
+        ContextPacker.Packed packed = packer.pack(retrieval);
+
+        assertSame(retrieval, packed.getRetrieval());
+        assertEquals(0, packed.getDropped());
+        // Each chunk also pays for its separator and source line
+        assertTrue(packed.getTokens() > 30 && packed.getTokens() < 70, "tokens: " + packed.getTokens());
+        assertEquals(1, registry.get("slainte.prompt.context.tokens").summary().count());
+    }
+
+    @Test
+    public void testMostRelevantChunksAreKeptAndSmallerOnesFillTheRest() {
+        properties.setContextTokens(110);
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b", "c", "d"),
+            List.of(chunk(50), chunk(30), chunk(60), chunk(10)), null, List.of(0.1, 0.2, 0.3, 0.4));
+
+        ContextPacker.Packed packed = packer.pack(retrieval);
+
+        // c does not fit after a and b, but d still does
+        assertEquals(List.of("a", "b", "d"), packed.getRetrieval().getIds());
+        assertEquals(List.of(0.1, 0.2, 0.4), packed.getRetrieval().getDistances());
+        assertEquals(1, packed.getDropped());
+        assertTrue(packed.getTokens() <= 110);
+        assertEquals(1.0, registry.get("slainte.prompt.context.dropped").counter().count());
+    }
+
+    @Test
+    public void testChunksArePackedNearestFirst() {
+        properties.setContextTokens(40);
+        RetrievalResult retrieval = new RetrievalResult(List.of("far", "near"),
+            List.of(chunk(30), chunk(30)), null, List.of(0.8, 0.1));
+
+        assertEquals(List.of("near"), packer.pack(retrieval).getRetrieval().getIds());
+    }
+
+    @Test
+    public void testMostRelevantChunkIsKeptEvenOverBudget() {
+        properties.setContextTokens(5);
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b"), List.of(chunk(30), chunk(3)),
+            null, List.of(0.1, 0.2));
+
+        ContextPacker.Packed packed = packer.pack(retrieval);
+
+        assertEquals(List.of("a"), packed.getRetrieval().getIds());
+        assertEquals(1, packed.getDropped());
+    }
+
+    @Test
+    public void testDisabledPackingKeepsEveryChunk() {
+        properties.setEnabled(false);
+        properties.setContextTokens(5);
+        RetrievalResult retrieval = new RetrievalResult(List.of("a", "b"), List.of(chunk(30), chunk(30)),
+            null, List.of(0.1, 0.2));
+
+        ContextPacker.Packed packed = packer.pack(retrieval);
+
+        assertSame(retrieval, packed.getRetrieval());
+        assertTrue(packed.getTokens() > 60);
+    }
+
+    @Test
+    public void testErrorAndEmptyResultsAreReturnedAsTheyAre() {
+        RetrievalResult error = RetrievalResult.error("Error: Connection refused");
+        RetrievalResult empty = new RetrievalResult(null, null, null, null);
+
+        assertSame(error, packer.pack(error).getRetrieval());
+        assertSame(empty, packer.pack(empty).getRetrieval());
+        assertEquals(0, packer.pack(empty).getTokens());
+    }
+
+    @Test
+    public void testAdjacentChunksAreStitchedBeforePacking() {
+        String first = "Apply online for a GP visit card. The form asks for your PPS number";
+        String second = "asks for your PPS number and your income details.";
+        RetrievalResult retrieval = new RetrievalResult(List.of("gp_chunk_1", "gp_chunk_0"), List.of(second, first),
+            List.of(Map.of("source", "gp.pdf", "chunk_index", 1), Map.of("source", "gp.pdf", "chunk_index", 0)),
+            List.of(0.1, 0.2));
+
+        ContextPacker.Packed packed = packer.pack(retrieval);
+
+        assertEquals(List.of("Apply online for a GP visit card. The form asks for your PPS number and your income details."),
+            packed.getRetrieval().getDocuments());
+        assertEquals(1.0, registry.get("slainte.prompt.context.merged").counter().count());
+
+        properties.setMergeAdjacentChunks(false);
+        assertEquals(2, packer.pack(retrieval).getRetrieval().size());
+    }
+}
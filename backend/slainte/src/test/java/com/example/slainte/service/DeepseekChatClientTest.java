@@ -8,11 +8,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.example.slainte.config.PromptBudgetProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -86,6 +90,16 @@ public class DeepseekChatClientTest {
         }));
     }
     
+    @Test
+    public void testTemperatureIsSentAsAnOption() {
+        // Ollama ignores sampling parameters outside "options"
+        Map<String, Object> requestBody = deepseekChatClient.createRequestBody("prompt", true);
+
+        assertEquals(Map.of("temperature", 0.0), requestBody.get("options"));
+        assertFalse(requestBody.containsKey("temperature"));
+        assertEquals(true, requestBody.get("stream"));
+    }
+
     @Test
     public void testPromptWithInvalidResponse() {
         // Prepare test data
@@ -102,7 +116,7 @@ public class DeepseekChatClientTest {
         String result = deepseekChatClient.prompt(inputText);
         
         // Verify result
-        assertEquals("No response from AI.", result);
+        assertEquals(DeepseekChatClient.NO_RESPONSE, result);
     }
     
     @Test
@@ -122,6 +136,24 @@ public class DeepseekChatClientTest {
         assertTrue(result.contains("API connection error"));
     }
     
+    @Test
+    public void testPromptAsyncRecordsTokensPerSecond() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DeepseekChatClient client = new DeepseekChatClient(webClientBuilderMock,
+            new TokenEstimator(new PromptBudgetProperties(), registry), new PipelineMetrics(registry));
+        // 120 tokens generated in 4 seconds, reported in nanoseconds
+        ObjectNode responseNode = objectMapper.createObjectNode();
+        responseNode.put("response", "Here's information about health services");
+        responseNode.put("eval_count", 120);
+        responseNode.put("eval_duration", 4_000_000_000L);
+        when(responseSpecMock.bodyToMono(String.class)).thenReturn(Mono.just(responseNode.toString()));
+
+        client.promptAsync("Tell me about health services").block();
+
+        assertEquals(1, registry.get("slainte.llm.tokens.per.second").summary().count());
+        assertEquals(30.0, registry.get("slainte.llm.tokens.per.second").summary().totalAmount(), 1e-9);
+    }
+    
     @Test
     public void testPromptAsync() {
         // Prepare test data
@@ -144,13 +176,29 @@ public class DeepseekChatClientTest {
         verify(requestBodyUriSpecMock).bodyValue(argThat(req -> {
             if (req instanceof Map) {
                 Map<String, Object> requestMap = (Map<String, Object>) req;
-                return "deepseek-r1:7b".equals(requestMap.get("model")) &&
+                return "deepseek-r1:1.5b".equals(requestMap.get("model")) &&
                        requestMap.get("prompt").toString().contains(inputText);
             }
             return false;
         }));
     }
     
+    @Test
+    public void testPromptAsyncAddsOllamaDurationsToRequestTimings() {
+        ObjectNode responseNode = objectMapper.createObjectNode();
+        responseNode.put("response", "Answer");
+        responseNode.put("prompt_eval_duration", 120_000_000L);
+        responseNode.put("eval_duration", 2_500_000_000L);
+        when(responseSpecMock.bodyToMono(String.class)).thenReturn(Mono.just(responseNode.toString()));
+        
+        StageTimings timings = new StageTimings();
+        String result = deepseekChatClient.promptAsync("Hello").contextWrite(timings::putInto).block();
+        
+        assertEquals("Answer", result);
+        assertEquals(120.0, timings.toMillis().get(StageTimings.LLM_PREFILL));
+        assertEquals(2500.0, timings.toMillis().get(StageTimings.LLM_GENERATE));
+    }
+    
     @Test
     public void testPromptAsyncWithError() {
         // Prepare test data
@@ -177,7 +225,7 @@ public class DeepseekChatClientTest {
         
         // Access the private method using reflection
         java.lang.reflect.Method extractResponseMethod = 
-            DeepseekChatClient.class.getDeclaredMethod("extractResponse", String.class);
+            DeepseekChatClient.class.getDeclaredMethod("extractResponse", String.class, String.class, StageTimings.class);
         extractResponseMethod.setAccessible(true);
         
         // Prepare test data
@@ -186,7 +234,7 @@ public class DeepseekChatClientTest {
         String responseJson = responseNode.toString();
         
         // Execute test by invoking the private method
-        String result = (String) extractResponseMethod.invoke(client, responseJson);
+        String result = (String) extractResponseMethod.invoke(client, responseJson, null, null);
         
         // Verify result
         assertEquals("Extracted response text", result);
@@ -199,16 +247,60 @@ public class DeepseekChatClientTest {
         
         // Access the private method using reflection
         java.lang.reflect.Method extractResponseMethod = 
-            DeepseekChatClient.class.getDeclaredMethod("extractResponse", String.class);
+            DeepseekChatClient.class.getDeclaredMethod("extractResponse", String.class, String.class, StageTimings.class);
         extractResponseMethod.setAccessible(true);
         
         // Prepare invalid JSON
         String invalidJson = "{not valid json}";
         
         // Execute test by invoking the private method
-        String result = (String) extractResponseMethod.invoke(client, invalidJson);
+        String result = (String) extractResponseMethod.invoke(client, invalidJson, null, null);
         
         // Verify result
         assertTrue(result.contains("Error parsing AI response"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testPromptStreamEmitsChunksInOrder() {
+        // Prepare NDJSON lines as Ollama streams them, including a blank keep-alive line
+        Flux<String> lines = Flux.just(
+            "{\"response\":\"Hello\",\"done\":false}",
+            "",
+            "{\"response\":\" world\",\"done\":false}",
+            "{\"response\":\"\",\"done\":true,\"eval_count\":2,\"eval_duration\":4000000,"
+                + "\"prompt_eval_count\":10,\"prompt_eval_duration\":2000000}");
+        
+        when(responseSpecMock.bodyToFlux(String.class)).thenReturn(lines);
+        
+        // Execute and verify the chunks arrive one by one
+        StepVerifier.create(deepseekChatClient.promptStream("Tell me about health services"))
+            .assertNext(chunk -> assertEquals("Hello", chunk.getResponse()))
+            .assertNext(chunk -> assertEquals(" world", chunk.getResponse()))
+            .assertNext(chunk -> {
+                assertTrue(chunk.isDone());
+                assertEquals(2L, chunk.getEvalCount());
+                assertEquals(4000000L, chunk.getEvalDuration());
+                assertEquals(10L, chunk.getPromptEvalCount());
+            })
+            .verifyComplete();
+        
+        // Verify the request asked Ollama to stream
+        verify(requestBodyUriSpecMock).bodyValue(argThat(req -> {
+            if (req instanceof Map) {
+                Map<String, Object> requestMap = (Map<String, Object>) req;
+                return Boolean.TRUE.equals(requestMap.get("stream"));
+            }
+            return false;
+        }));
+    }
+    
+    @Test
+    public void testPromptStreamWithInvalidChunk() {
+        when(responseSpecMock.bodyToFlux(String.class)).thenReturn(Flux.just("{not valid json}"));
+        
+        // Execute and verify the stream fails instead of emitting garbage
+        StepVerifier.create(deepseekChatClient.promptStream("Tell me about health services"))
+            .expectErrorMatches(e -> e.getMessage().contains("Error parsing AI stream chunk"))
+            .verify();
+    }
+}
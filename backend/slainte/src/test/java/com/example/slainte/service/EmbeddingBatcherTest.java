@@ -0,0 +1,104 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.Embedding;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingBatcherTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    // Embeds each text as a one-element vector holding its length
+    private Mono<List<Embedding>> lengths(List<String> texts) {
+        batches.add(texts);
+        List<Embedding> embeddings = new ArrayList<>();
+        for (String text : texts) {
+            embeddings.add(Embedding.of(text.length()));
+        }
+        return Mono.just(embeddings);
+    }
+
+    @Test
+    public void testCoalescesCallsWithinWindow() throws Exception {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(this::lengths, 10, Duration.ofMillis(50));
+
+        CompletableFuture<Embedding> a = batcher.submit("a").toFuture();
+        CompletableFuture<Embedding> bb = batcher.submit("bb").toFuture();
+        CompletableFuture<Embedding> ccc = batcher.submit("ccc").toFuture();
+
+        assertEquals(Embedding.of(1f), a.get(5, TimeUnit.SECONDS));
+        assertEquals(Embedding.of(2f), bb.get(5, TimeUnit.SECONDS));
+        assertEquals(Embedding.of(3f), ccc.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("a", "bb", "ccc")), batches);
+    }
+
+    @Test
+    public void testFullBatchIsSentWithoutWaiting() throws Exception {
+        // The window is far longer than the test timeout, so only the size limit can send these
+        EmbeddingBatcher batcher = new EmbeddingBatcher(this::lengths, 2, Duration.ofMinutes(10));
+
+        CompletableFuture<Embedding> first = batcher.submit("one").toFuture();
+        CompletableFuture<Embedding> second = batcher.submit("three").toFuture();
+
+        assertEquals(Embedding.of(3f), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Embedding.of(5f), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testDuplicateTextsAreSentOnce() throws Exception {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(this::lengths, 10, Duration.ofMillis(20));
+
+        CompletableFuture<Embedding> first = batcher.submit("same").toFuture();
+        CompletableFuture<Embedding> second = batcher.submit("same").toFuture();
+
+        assertEquals(Embedding.of(4f), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Embedding.of(4f), second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("same")), batches);
+    }
+
+    @Test
+    public void testConcurrentCallersShareBatches() throws Exception {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(this::lengths, 16, Duration.ofMillis(20));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Embedding>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String text = "x".repeat(i + 1);
+                results.add(executor.submit(() -> batcher.submit(text).block(Duration.ofSeconds(5))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(Embedding.of(i + 1f), results.get(i).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int sent = batches.stream().mapToInt(List::size).sum();
+        assertEquals(64, sent);
+        assertTrue(batches.size() < 64, "expected batching, got " + batches.size() + " requests");
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 16));
+    }
+
+    @Test
+    public void testErrorsAndShortResponsesFailEveryCaller() {
+        EmbeddingBatcher failing = new EmbeddingBatcher(texts -> Mono.error(new RuntimeException("Ollama down")),
+                10, Duration.ofMillis(1));
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> failing.submit("text").block(Duration.ofSeconds(5)));
+        assertEquals("Ollama down", error.getMessage());
+
+        EmbeddingBatcher shortResponse = new EmbeddingBatcher(texts -> Mono.just(List.of(Embedding.of(1f))),
+                2, Duration.ofMinutes(10));
+        CompletableFuture<Embedding> first = shortResponse.submit("a").toFuture();
+        CompletableFuture<Embedding> second = shortResponse.submit("b").toFuture();
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+}
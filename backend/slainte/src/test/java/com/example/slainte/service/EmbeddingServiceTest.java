@@ -4,9 +4,22 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
+import com.example.slainte.config.AppConfig;
+import com.example.slainte.config.CacheProperties;
+import com.example.slainte.config.EmbeddingProperties;
+import com.example.slainte.dto.EmbeddingResponse;
+import com.example.slainte.dto.OllamaEmbedResponse;
+import com.example.slainte.model.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -51,15 +64,14 @@ public class EmbeddingServiceTest {
     @Test
     public void testGetEmbedding_Success() {
         // Setup mock response data
-        List<Double> expectedEmbedding = Arrays.asList(0.1, 0.2, 0.3);
-        Map<String, Object> responseMap = new HashMap<>();
-        responseMap.put("embedding", expectedEmbedding);
+        Embedding expectedEmbedding = Embedding.of(0.1f, 0.2f, 0.3f);
+        EmbeddingResponse embeddingResponse = new EmbeddingResponse(expectedEmbedding);
         
         // Setup response
-        when(responseSpec.bodyToMono(Map.class)).thenReturn(Mono.just(responseMap));
+        when(responseSpec.bodyToMono(EmbeddingResponse.class)).thenReturn(Mono.just(embeddingResponse));
 
         // Execute
-        List<Double> result = embeddingService.getEmbedding("test text");
+        Embedding result = embeddingService.getEmbedding("test text");
 
         // Verify
         assertNotNull(result);
@@ -73,11 +85,11 @@ public class EmbeddingServiceTest {
     @Test
     public void testGetEmbedding_EmptyResponse() {
         // Setup empty response
-        Map<String, Object> emptyResponse = new HashMap<>();
-        when(responseSpec.bodyToMono(Map.class)).thenReturn(Mono.just(emptyResponse));
+        EmbeddingResponse emptyResponse = new EmbeddingResponse();
+        when(responseSpec.bodyToMono(EmbeddingResponse.class)).thenReturn(Mono.just(emptyResponse));
 
         // Execute
-        List<Double> result = embeddingService.getEmbedding("test text");
+        Embedding result = embeddingService.getEmbedding("test text");
 
         // Verify
         assertNotNull(result);
@@ -87,11 +99,11 @@ public class EmbeddingServiceTest {
     @Test
     public void testGetEmbedding_Exception() {
         // Setup error response
-        when(responseSpec.bodyToMono(Map.class))
+        when(responseSpec.bodyToMono(EmbeddingResponse.class))
             .thenReturn(Mono.error(new RuntimeException("API error")));
 
         // Execute
-        List<Double> result = embeddingService.getEmbedding("test text");
+        Embedding result = embeddingService.getEmbedding("test text");
 
         // Verify
         assertNotNull(result);
@@ -101,32 +113,120 @@ public class EmbeddingServiceTest {
     @Test
     public void testGetEmbeddingAsync_Success() {
         // Setup mock response data
-        List<Double> expectedEmbedding = Arrays.asList(0.1, 0.2, 0.3);
-        Map<String, Object> responseMap = new HashMap<>();
-        responseMap.put("embedding", expectedEmbedding);
+        Embedding expectedEmbedding = Embedding.of(0.1f, 0.2f, 0.3f);
+        EmbeddingResponse embeddingResponse = new EmbeddingResponse(expectedEmbedding);
         
         // Setup response
-        when(responseSpec.bodyToMono(Map.class)).thenReturn(Mono.just(responseMap));
+        when(responseSpec.bodyToMono(EmbeddingResponse.class)).thenReturn(Mono.just(embeddingResponse));
 
         // Execute
-        List<Double> result = embeddingService.getEmbeddingAsync("test text").block();
+        Embedding result = embeddingService.getEmbeddingAsync("test text").block();
 
         // Verify
         assertNotNull(result);
         assertEquals(expectedEmbedding, result);
     }
 
+    @Test
+    public void testGetEmbeddingAsync_TimesTheEmbeddingCall() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingService timedService = new EmbeddingService(webClientBuilder, new EmbeddingProperties(), new PipelineMetrics(registry));
+        when(responseSpec.bodyToMono(EmbeddingResponse.class))
+            .thenReturn(Mono.just(new EmbeddingResponse(Embedding.of(0.1f, 0.2f, 0.3f))).delayElement(Duration.ofMillis(50)));
+        StageTimings timings = new StageTimings();
+
+        timedService.getEmbeddingAsync("test text").contextWrite(timings::putInto).block();
+
+        // The call is recorded where it is made, in the request's timings as well as the stage timer
+        assertEquals(1, registry.get("slainte.pipeline.stage").tag("stage", "embedding").timer().count());
+        assertTrue(timings.toMillis().get(StageTimings.EMBED) >= 50.0, timings.toServerTiming());
+    }
+
+    @Test
+    public void testFailedEmbeddingsAreNotCached() {
+        Embedding expectedEmbedding = Embedding.of(0.1f, 0.2f, 0.3f);
+        // A transient timeout, then the embedding
+        when(responseSpec.bodyToMono(EmbeddingResponse.class))
+            .thenReturn(Mono.error(new RuntimeException("Read timed out")))
+            .thenReturn(Mono.just(new EmbeddingResponse(expectedEmbedding)));
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(WebClient.Builder.class, () -> webClientBuilder);
+            context.register(CachingConfig.class);
+            context.refresh();
+            EmbeddingService cached = context.getBean(EmbeddingService.class);
+
+            assertTrue(cached.getEmbeddingAsync("test text").block().isEmpty());
+            assertEquals(expectedEmbedding, cached.getEmbeddingAsync("test text").block());
+            // The embedding that was computed is cached
+            assertEquals(expectedEmbedding, cached.getEmbeddingAsync("test text").block());
+        }
+        verify(webClientMock, times(2)).post();
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingConfig {
+        @Bean
+        CacheManager cacheManager() {
+            return AppConfig.createCacheManager(new CacheProperties(), Runnable::run);
+        }
+
+        @Bean
+        EmbeddingService embeddingService(WebClient.Builder webClientBuilder) {
+            return new EmbeddingService(webClientBuilder);
+        }
+    }
+
     @Test
     public void testGetEmbeddingAsync_Error() {
         // Setup error response
-        when(responseSpec.bodyToMono(Map.class))
+        when(responseSpec.bodyToMono(EmbeddingResponse.class))
             .thenReturn(Mono.error(new RuntimeException("API error")));
 
         // Execute
-        List<Double> result = embeddingService.getEmbeddingAsync("test text").block();
+        Embedding result = embeddingService.getEmbeddingAsync("test text").block();
 
         // Verify
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOllamaModeBatchesConcurrentCalls() {
+        EmbeddingProperties properties = new EmbeddingProperties();
+        properties.setMode("ollama");
+        properties.getBatch().setMaxWait(Duration.ofMillis(50));
+        Embedding first = Embedding.of(0.1f, 0.2f);
+        Embedding second = Embedding.of(0.3f, 0.4f);
+        when(responseSpec.bodyToMono(OllamaEmbedResponse.class))
+            .thenReturn(Mono.just(new OllamaEmbedResponse(List.of(first, second))));
+        EmbeddingService ollamaService = new EmbeddingService(webClientBuilder, properties);
+
+        // Both calls arrive within the batching window and share one /api/embed request
+        Mono<Embedding> firstResult = ollamaService.getEmbeddingAsync("first question");
+        Mono<Embedding> secondResult = ollamaService.getEmbeddingAsync("second question");
+        List<Embedding> results = Mono.zip(firstResult, secondResult, List::of).block();
+
+        assertEquals(List.of(first, second), results);
+        verify(webClientBuilder).baseUrl("http://localhost:11434/api/embed");
+        verify(webClientMock, times(1)).post();
+        verify(requestBodyUriSpec).bodyValue(Map.of(
+            "model", "nomic-embed-text", "input", List.of("first question", "second question")));
+    }
+
+    @Test
+    public void testSingleFlightKeyIgnoresCaseAndWhitespace() {
+        assertEquals("what is a gp visit card?", EmbeddingService.singleFlightKey("  What is a\tGP   visit card? "));
+        assertEquals(EmbeddingService.singleFlightKey("Medical card"), EmbeddingService.singleFlightKey("medical  card"));
+
+        // Only concurrent calls are collapsed - completed results are left to the embeddings cache
+        when(responseSpec.bodyToMono(EmbeddingResponse.class))
+            .thenReturn(Mono.just(new EmbeddingResponse(Embedding.of(0.1f))));
+        embeddingService.getEmbedding("Medical card");
+        embeddingService.getEmbedding("medical  card");
+
+        verify(webClientMock, times(2)).post();
+        assertEquals(0L, embeddingService.getSingleFlightStats().get("collapsed"));
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.index.VectorKernels;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ExactVectorStoreTest {
+
+    @Mock
+    private ChromaDBLowLevelService chromaDBService;
+
+    private VectorStoreProperties properties;
+    private List<VectorRecord> records;
+
+    @BeforeEach
+    public void setup() {
+        properties = new VectorStoreProperties();
+        Random random = new Random(21L);
+        records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            float[] values = new float[Embedding.DIMENSION];
+            for (int d = 0; d < values.length; d++) {
+                values[d] = (float) random.nextGaussian();
+            }
+            records.add(new VectorRecord("chunk-" + i, Embedding.of(values), "Document " + i,
+                Map.of("source", "source_" + i)));
+        }
+    }
+
+    @Test
+    public void testQueriesChromaUntilLoaded() {
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        Embedding query = records.get(0).getEmbedding();
+        RetrievalResult fromChroma = new RetrievalResult(
+            List.of("id"), List.of("From ChromaDB"), List.of(new HashMap<>()), List.of(0.1));
+        when(chromaDBService.query(query, 5)).thenReturn(fromChroma);
+
+        assertFalse(vectorStore.isLoaded());
+        assertSame(fromChroma, vectorStore.query(query, 5));
+    }
+
+    @Test
+    public void testL2MatchesBruteForce() {
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        vectorStore.load(records);
+        float[] query = records.get(42).getEmbedding().values();
+
+        RetrievalResult result = vectorStore.query(records.get(42).getEmbedding(), 5);
+
+        // Expected order from a direct squared L2 scan
+        Integer[] order = new Integer[records.size()];
+        double[] expected = new double[records.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            expected[i] = VectorKernels.scalar().squaredL2(query, 0,
+                records.get(i).getEmbedding().values(), 0, Embedding.DIMENSION);
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> expected[i]));
+
+        assertEquals(5, result.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("chunk-" + order[i], result.getIds().get(i));
+            assertEquals(expected[order[i]], result.getDistances().get(i), 1e-2);
+        }
+        assertEquals("Document 42", result.getDocuments().get(0));
+        assertEquals("source_42", result.getMetadatas().get(0).get("source"));
+        verify(chromaDBService, never()).query(any(), anyInt());
+    }
+
+    @Test
+    public void testCosineIgnoresVectorLength() {
+        properties.getExact().setMetric("cosine");
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        vectorStore.load(records);
+
+        // A scaled copy of a stored vector has cosine distance zero to it
+        float[] scaled = records.get(7).getEmbedding().values().clone();
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] *= 3.0f;
+        }
+        RetrievalResult result = vectorStore.query(Embedding.of(scaled), 3);
+
+        assertEquals("chunk-7", result.getIds().get(0));
+        assertEquals(0.0, result.getDistances().get(0), 1e-5);
+        assertTrue(result.getDistances().get(1) > 0.5);
+    }
+
+    @Test
+    public void testReloadSkipsWrongDimensionAndCapsTopK() throws Exception {
+        List<VectorRecord> loaded = new ArrayList<>(records.subList(0, 3));
+        loaded.add(new VectorRecord("bad", Embedding.of(1.0f), "Wrong dimension", null));
+        when(chromaDBService.fetchAllRecords(properties.getLoadBatchSize())).thenReturn(loaded);
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+
+        vectorStore.reload();
+
+        assertEquals(3, vectorStore.size());
+        assertEquals(3, vectorStore.query(records.get(0).getEmbedding(), 20).size());
+    }
+
+    @Test
+    public void testQueryRestrictedToSourcesOnlySearchesTheirRows() {
+        // Three chunks per document, so a source is a range of several rows
+        List<VectorRecord> chunked = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            VectorRecord record = records.get(i);
+            chunked.add(new VectorRecord(record.getId(), record.getEmbedding(), record.getDocument(),
+                Map.of("source", "source_" + (i % 100))));
+        }
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        vectorStore.load(chunked);
+        Set<String> sources = Set.of("source_7", "source_42");
+
+        RetrievalResult result = vectorStore.query(records.get(42).getEmbedding(), 10, sources);
+
+        // Only the six chunks of the two sources exist for this search, the query's own chunk nearest
+        assertEquals(6, result.size());
+        assertEquals("chunk-42", result.getIds().get(0));
+        for (Map<String, Object> metadata : result.getMetadatas()) {
+            assertTrue(sources.contains(metadata.get("source")));
+        }
+        // Matches the unrestricted search for the same chunk
+        assertEquals(vectorStore.query(records.get(42).getEmbedding(), 1).getIds(), result.getIds().subList(0, 1));
+    }
+
+    @Test
+    public void testQueryRestrictedToUnknownSourcesFindsNothing() {
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        vectorStore.load(records);
+
+        assertEquals(0, vectorStore.query(records.get(0).getEmbedding(), 5, Set.of("missing.pdf")).size());
+        assertEquals(5, vectorStore.queryAsync(records.get(0).getEmbedding(), 5, Set.of()).block().size());
+    }
+
+    @Test
+    public void testRestrictedQueryGoesToChromaUntilLoaded() {
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        Embedding query = records.get(0).getEmbedding();
+        RetrievalResult fromChroma = new RetrievalResult(
+            List.of("id"), List.of("From ChromaDB"), List.of(Map.of("source", "source_0")), List.of(0.1));
+        when(chromaDBService.queryAsync(query, 5, Set.of("source_0"))).thenReturn(Mono.just(fromChroma));
+
+        assertSame(fromChroma, vectorStore.queryAsync(query, 5, Set.of("source_0")).block());
+    }
+
+    @Test
+    public void testBlockingRestrictedQueryUsesTheBlockingChromaQueryUntilLoaded() {
+        ExactVectorStore vectorStore = new ExactVectorStore(chromaDBService, properties);
+        Embedding query = records.get(0).getEmbedding();
+        RetrievalResult fromChroma = new RetrievalResult(
+            List.of("id"), List.of("From ChromaDB"), List.of(Map.of("source", "source_0")), List.of(0.1));
+        when(chromaDBService.query(query, 5, Set.of("source_0"))).thenReturn(fromChroma);
+
+        assertSame(fromChroma, vectorStore.query(query, 5, Set.of("source_0")));
+        verify(chromaDBService, never()).queryAsync(any(), anyInt(), anySet());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.FallbackHedgeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FallbackPredictorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void testDoesNotHedgeWhileRetrievalsAreUsable() {
+        FallbackPredictor predictor = new FallbackPredictor(new FallbackHedgeProperties(), registry);
+        for (int i = 0; i < 100; i++) {
+            predictor.recordPrimary(false);
+        }
+
+        assertFalse(predictor.shouldHedge());
+        assertEquals(0.0, predictor.getInsufficientRate());
+    }
+
+    @Test
+    public void testSingleInsufficientRetrievalDoesNotStartHedging() {
+        FallbackPredictor predictor = new FallbackPredictor(new FallbackHedgeProperties(), registry);
+        predictor.recordPrimary(true);
+
+        assertFalse(predictor.shouldHedge());
+    }
+
+    @Test
+    public void testHedgesAfterRepeatedInsufficientRetrievalsAndStopsOnRecovery() {
+        FallbackPredictor predictor = new FallbackPredictor(new FallbackHedgeProperties(), registry);
+        for (int i = 0; i < 3; i++) {
+            predictor.recordPrimary(true);
+        }
+        assertTrue(predictor.shouldHedge());
+
+        for (int i = 0; i < 10; i++) {
+            predictor.recordPrimary(false);
+        }
+        assertFalse(predictor.shouldHedge());
+    }
+
+    @Test
+    public void testDisabledNeverHedges() {
+        FallbackHedgeProperties properties = new FallbackHedgeProperties();
+        properties.setEnabled(false);
+        FallbackPredictor predictor = new FallbackPredictor(properties, registry);
+        for (int i = 0; i < 20; i++) {
+            predictor.recordPrimary(true);
+        }
+
+        assertFalse(predictor.shouldHedge());
+    }
+
+    @Test
+    public void testRateIsPublishedAsGauge() {
+        FallbackPredictor predictor = new FallbackPredictor(new FallbackHedgeProperties(), registry);
+        predictor.recordPrimary(true);
+
+        assertEquals(0.1, registry.get("slainte.retrieval.insufficient.rate").gauge().value(), 1e-9);
+    }
+}
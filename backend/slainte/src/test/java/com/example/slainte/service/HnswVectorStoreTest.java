@@ -0,0 +1,93 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HnswVectorStoreTest {
+
+    @Mock
+    private ChromaDBLowLevelService chromaDBService;
+
+    private VectorStoreProperties properties;
+    private HnswVectorStore vectorStore;
+
+    @BeforeEach
+    public void setup() {
+        properties = new VectorStoreProperties();
+        properties.setLoadBatchSize(2);
+        vectorStore = new HnswVectorStore(chromaDBService, properties);
+    }
+
+    @Test
+    public void testQueriesChromaUntilLoaded() {
+        Embedding query = unitVector(0);
+        RetrievalResult fromChroma = new RetrievalResult(
+            List.of("id"), List.of("From ChromaDB"), List.of(new HashMap<>()), List.of(0.1));
+        when(chromaDBService.query(query, 5)).thenReturn(fromChroma);
+
+        assertFalse(vectorStore.isLoaded());
+        assertSame(fromChroma, vectorStore.query(query, 5));
+    }
+
+    @Test
+    public void testReloadIndexesWholeCollection() throws Exception {
+        when(chromaDBService.fetchAllRecords(2)).thenReturn(List.of(record(0), record(1), record(2)));
+
+        vectorStore.reload();
+
+        assertTrue(vectorStore.isLoaded());
+        assertEquals(3, vectorStore.size());
+    }
+
+    @Test
+    public void testQueryReturnsNearestRecordsFromIndex() {
+        List<VectorRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(record(i));
+        }
+        vectorStore.load(records);
+
+        RetrievalResult result = vectorStore.query(unitVector(3), 2);
+
+        assertFalse(result.hasError());
+        assertEquals(2, result.size());
+        assertEquals("chunk-3", result.getIds().get(0));
+        assertEquals("Document 3", result.getDocuments().get(0));
+        assertEquals("source_3", result.getMetadatas().get(0).get("source"));
+        assertEquals(0.0, result.getDistances().get(0), 1e-6);
+        verify(chromaDBService, never()).query(any(), anyInt());
+    }
+
+    @Test
+    public void testSkipsRecordsWithWrongDimension() {
+        vectorStore.load(List.of(
+            record(0),
+            new VectorRecord("bad", Embedding.empty(), "No embedding", null)));
+
+        assertEquals(1, vectorStore.size());
+    }
+
+    private VectorRecord record(int i) {
+        return new VectorRecord("chunk-" + i, unitVector(i), "Document " + i, Map.of("source", "source_" + i));
+    }
+
+    private Embedding unitVector(int axis) {
+        float[] values = new float[Embedding.DIMENSION];
+        values[axis] = 1.0f;
+        return Embedding.of(values);
+    }
+}
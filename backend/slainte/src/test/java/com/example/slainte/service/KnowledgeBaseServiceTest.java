@@ -1,12 +1,18 @@
 package com.example.slainte.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import com.example.slainte.config.RetrievalLogProperties;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
 import com.example.slainte.model.SearchResponse;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -27,30 +33,32 @@ public class KnowledgeBaseServiceTest {
     
     private KnowledgeBaseService knowledgeBaseService;
     
-    private List<Double> mockEmbedding;
+    private Embedding mockEmbedding;
     private String mockChromaResult;
-    private Map<String, Object> mockRawResults;
+    private RetrievalResult mockRetrieval;
 
     @BeforeEach
     public void setup() {
         // Manually create KnowledgeBaseService with mocked dependencies
-        knowledgeBaseService = new KnowledgeBaseService(embeddingService, chromaDBLowLevelService);
+        knowledgeBaseService = new KnowledgeBaseService(embeddingService, chromaDBLowLevelService,
+            new SimpleAsyncTaskExecutor("kb-search-"), new RetrievalEventLog(new RetrievalLogProperties()),
+            new PipelineMetrics(new SimpleMeterRegistry()));
         
         // Setup test data
-        mockEmbedding = new ArrayList<>();
-        for (int i = 0; i < 10; i++) {
-            mockEmbedding.add(0.1 * i);
+        float[] values = new float[10];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0.1f * i;
         }
+        mockEmbedding = Embedding.of(values);
         
         mockChromaResult = "Test document content from ChromaDB";
         
-        // Set up mock raw results
-        mockRawResults = new HashMap<>();
-        List<List<String>> documents = new ArrayList<>();
-        List<String> docList = new ArrayList<>();
-        docList.add("Test document content");
-        documents.add(docList);
-        mockRawResults.put("documents", documents);
+        // Set up mock typed retrieval result
+        mockRetrieval = new RetrievalResult(
+            Arrays.asList("id1"),
+            Arrays.asList(mockChromaResult),
+            Arrays.asList(new HashMap<>()),
+            Arrays.asList(0.25));
     }
 
     @Test
@@ -58,8 +66,7 @@ public class KnowledgeBaseServiceTest {
         // Setup
         String query = "test query";
         when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBLowLevelService.queryDatabase(mockEmbedding, 8)).thenReturn(mockChromaResult);
-        when(chromaDBLowLevelService.getRawResults(mockEmbedding, 8)).thenReturn(mockRawResults);
+        when(chromaDBLowLevelService.query(mockEmbedding, 20)).thenReturn(mockRetrieval);
 
         // Execute
         String result = knowledgeBaseService.search(query);
@@ -69,15 +76,35 @@ public class KnowledgeBaseServiceTest {
         assertEquals(mockChromaResult, knowledgeBaseService.getLastRetrievedContext());
         
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService).queryDatabase(mockEmbedding, 8);
-        verify(chromaDBLowLevelService).getRawResults(mockEmbedding, 8);
+        verify(chromaDBLowLevelService).query(mockEmbedding, 20);
+    }
+
+    @Test
+    public void testSearch_SingleChromaRoundTripPerSearch() {
+        // Setup
+        String query = "test query";
+        int searches = 50;
+        when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
+        when(chromaDBLowLevelService.query(mockEmbedding, 20)).thenReturn(mockRetrieval);
+
+        // Execute - every view of the results is read after each search
+        for (int i = 0; i < searches; i++) {
+            knowledgeBaseService.search(query);
+            knowledgeBaseService.getLastRawResults();
+            knowledgeBaseService.getLastContextInfo();
+        }
+
+        // Verify exactly one ChromaDB query per search, and no second round trip
+        verify(chromaDBLowLevelService, times(searches)).query(mockEmbedding, 20);
+        verify(chromaDBLowLevelService, never()).queryDatabase(any(), anyInt());
+        verify(chromaDBLowLevelService, never()).getRawResults(any(), anyInt());
     }
 
     @Test
     public void testSearch_EmbeddingFailure() {
         // Setup
         String query = "test query";
-        when(embeddingService.getEmbedding(query)).thenReturn(new ArrayList<>()); // Empty embedding
+        when(embeddingService.getEmbedding(query)).thenReturn(Embedding.empty()); // Empty embedding
         
         // Execute
         String result = knowledgeBaseService.search(query);
@@ -85,8 +112,7 @@ public class KnowledgeBaseServiceTest {
         // Verify
         assertTrue(result.startsWith("Error:"));
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService, never()).queryDatabase(any(), anyInt());
-        verify(chromaDBLowLevelService, never()).getRawResults(any(), anyInt());
+        verify(chromaDBLowLevelService, never()).query(any(), anyInt());
     }
 
     @Test
@@ -96,7 +122,7 @@ public class KnowledgeBaseServiceTest {
         String errorMessage = "ChromaDB connection failed";
         
         when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBLowLevelService.getRawResults(mockEmbedding, 8))
+        when(chromaDBLowLevelService.query(mockEmbedding, 20))
             .thenThrow(new RuntimeException(errorMessage));
 
         // Execute
@@ -105,8 +131,7 @@ public class KnowledgeBaseServiceTest {
         // Verify
         assertEquals("Error: " + errorMessage, result);
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService).getRawResults(mockEmbedding, 8);
-        verify(chromaDBLowLevelService, never()).queryDatabase(any(), anyInt());
+        verify(chromaDBLowLevelService).query(mockEmbedding, 20);
     }
 
     @Test
@@ -114,8 +139,7 @@ public class KnowledgeBaseServiceTest {
         // Setup
         String query = "test query";
         when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBLowLevelService.queryDatabase(mockEmbedding, 8)).thenReturn(mockChromaResult);
-        when(chromaDBLowLevelService.getRawResults(mockEmbedding, 8)).thenReturn(mockRawResults);
+        when(chromaDBLowLevelService.query(mockEmbedding, 8)).thenReturn(mockRetrieval);
 
         // Execute
         CompletableFuture<String> futureResult = knowledgeBaseService.searchParallel(query, 8);
@@ -125,15 +149,14 @@ public class KnowledgeBaseServiceTest {
         assertEquals(mockChromaResult, result);
         
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService).queryDatabase(mockEmbedding, 8);
-        verify(chromaDBLowLevelService).getRawResults(mockEmbedding, 8);
+        verify(chromaDBLowLevelService, times(1)).query(mockEmbedding, 8);
     }
 
     @Test
     public void testSearchParallel_EmbeddingFailure() throws ExecutionException, InterruptedException {
         // Setup
         String query = "test query";
-        when(embeddingService.getEmbedding(query)).thenReturn(new ArrayList<>()); // Empty embedding
+        when(embeddingService.getEmbedding(query)).thenReturn(Embedding.empty()); // Empty embedding
         
         // Execute
         CompletableFuture<String> futureResult = knowledgeBaseService.searchParallel(query);
@@ -142,41 +165,70 @@ public class KnowledgeBaseServiceTest {
         // Verify
         assertTrue(result.contains("Failed to generate embedding"));
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService, never()).queryDatabase(any(), anyInt());
-        verify(chromaDBLowLevelService, never()).getRawResults(any(), anyInt());
+        verify(chromaDBLowLevelService, never()).query(any(), anyInt());
     }
 
     @Test
     public void testGetLastContextInfo() {
-        // Setup - manually set the lastRetrievedContext using reflection
-        try {
-            java.lang.reflect.Field lastContextField = 
-                KnowledgeBaseService.class.getDeclaredField("lastRetrievedContext");
-            lastContextField.setAccessible(true);
-            lastContextField.set(knowledgeBaseService, "Test context information");
-            
-            Map<String, Object> rawResults = new HashMap<>();
-            List<List<String>> documents = new ArrayList<>();
-            documents.add(Arrays.asList("Document 1", "Document 2"));
-            rawResults.put("documents", documents);
-            
-            java.lang.reflect.Field rawResultsField = 
-                KnowledgeBaseService.class.getDeclaredField("lastRawResults");
-            rawResultsField.setAccessible(true);
-            rawResultsField.set(knowledgeBaseService, rawResults);
-        } catch (Exception e) {
-            fail("Test setup failed: " + e.getMessage());
-        }
+        // Setup - run a retrieval whose context is known
+        RetrievalResult lastResult = new RetrievalResult(
+            null, Arrays.asList("Test context", "information"), null, null);
+        when(embeddingService.getEmbedding("test query")).thenReturn(mockEmbedding);
+        when(chromaDBLowLevelService.query(mockEmbedding, 20)).thenReturn(lastResult);
+        knowledgeBaseService.retrieve("test query");
         
         // Execute
         Map<String, Object> contextInfo = knowledgeBaseService.getLastContextInfo();
         
         // Verify
         assertNotNull(contextInfo);
-        assertEquals("Test context information", contextInfo.get("context"));
-        assertEquals(23, contextInfo.get("contextLength"));
-        assertEquals("Test context information", contextInfo.get("preview"));
+        assertEquals("Test context\n\n---\n\ninformation", contextInfo.get("context"));
+        assertEquals(30, contextInfo.get("contextLength"));
+        assertEquals("Test context\n\n---\n\ninformation", contextInfo.get("preview"));
         assertEquals(2, contextInfo.get("documentCount"));
+        assertEquals("test query", contextInfo.get("query"));
+        assertEquals(1L, contextInfo.get("requestId"));
+    }
+    
+    @Test
+    public void testGetLastContextInfoBeforeAnyRetrieval() {
+        Map<String, Object> contextInfo = knowledgeBaseService.getLastContextInfo();
+        
+        assertEquals("", contextInfo.get("context"));
+        assertEquals(0, contextInfo.get("contextLength"));
+        assertFalse(contextInfo.containsKey("documentCount"));
+        assertEquals("", knowledgeBaseService.getLastRetrievedContext());
+    }
+    
+    @Test
+    public void testConcurrentRetrievalsAreEachKeptUnderTheirOwnRequestId() throws Exception {
+        int searches = 32;
+        for (int i = 0; i < searches; i++) {
+            Embedding embedding = Embedding.of(i);
+            when(embeddingService.getEmbedding("query " + i)).thenReturn(embedding);
+            when(chromaDBLowLevelService.query(embedding, 20)).thenReturn(new RetrievalResult(
+                null, List.of("Document for query " + i), null, null));
+        }
+        
+        // Execute - every search runs on its own thread
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < searches; i++) {
+            futures.add(knowledgeBaseService.searchParallel("query " + i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        
+        // Verify - no retrieval overwrote another one
+        List<Map<String, Object>> recent = knowledgeBaseService.getRecentContextInfo(searches);
+        assertEquals(searches, recent.size());
+        Set<Object> requestIds = new HashSet<>();
+        for (Map<String, Object> contextInfo : recent) {
+            requestIds.add(contextInfo.get("requestId"));
+            String query = (String) contextInfo.get("query");
+            assertEquals("Document for " + query, contextInfo.get("context"));
+            assertEquals(contextInfo, knowledgeBaseService.getContextInfo((Long) contextInfo.get("requestId")).orElseThrow());
+        }
+        assertEquals(searches, requestIds.size());
+        assertTrue(knowledgeBaseService.getContextInfo(searches + 1).isEmpty());
     }
     
     @Test
@@ -185,46 +237,118 @@ public class KnowledgeBaseServiceTest {
         String query = "test query";
         int topK = 3;
         
-        when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
-        when(chromaDBLowLevelService.getRawResults(mockEmbedding, topK)).thenReturn(mockRawResults);
-        when(chromaDBLowLevelService.queryDatabase(mockEmbedding, topK)).thenReturn(mockChromaResult);
-        
         List<String> documents = Arrays.asList("Document 1", "Document 2", "Document 3");
-        when(chromaDBLowLevelService.extractDocuments(mockRawResults)).thenReturn(documents);
+        RetrievalResult retrieval = new RetrievalResult(null, documents, null, null);
+        
+        when(embeddingService.getEmbedding(query)).thenReturn(mockEmbedding);
+        when(chromaDBLowLevelService.query(mockEmbedding, topK)).thenReturn(retrieval);
         
         // Execute
         SearchResponse response = knowledgeBaseService.getSearchResults(query, topK);
         
         // Verify
         assertNotNull(response);
+        assertEquals(documents, response.getDocuments());
         
         // Verify method calls
         verify(embeddingService).getEmbedding(query);
-        verify(chromaDBLowLevelService).getRawResults(mockEmbedding, topK);
-        verify(chromaDBLowLevelService).queryDatabase(mockEmbedding, topK);
-        verify(chromaDBLowLevelService).extractDocuments(mockRawResults);
+        verify(chromaDBLowLevelService).query(mockEmbedding, topK);
     }
     
     @Test
     public void testGetLastRawResults() {
-        // Setup using reflection
-        Map<String, Object> rawResults = new HashMap<>();
-        rawResults.put("testKey", "testValue");
-        
-        try {
-            java.lang.reflect.Field field = 
-                KnowledgeBaseService.class.getDeclaredField("lastRawResults");
-            field.setAccessible(true);
-            field.set(knowledgeBaseService, rawResults);
-        } catch (Exception e) {
-            fail("Test setup failed: " + e.getMessage());
-        }
+        // Setup - run a retrieval whose results are known
+        RetrievalResult lastResult = new RetrievalResult(
+            Arrays.asList("id1"), Arrays.asList("Document 1"), null, Arrays.asList(0.5));
+        when(embeddingService.getEmbedding("test query")).thenReturn(mockEmbedding);
+        when(chromaDBLowLevelService.query(mockEmbedding, 20)).thenReturn(lastResult);
+        knowledgeBaseService.retrieve("test query");
         
         // Execute
         Map<String, Object> results = knowledgeBaseService.getLastRawResults();
         
-        // Verify
+        // Verify - raw results keep the nested ChromaDB response shape
         assertNotNull(results);
-        assertEquals("testValue", results.get("testKey"));
+        assertEquals(List.of(List.of("Document 1")), results.get("documents"));
+        assertEquals(List.of(List.of("id1")), results.get("ids"));
+        assertEquals(List.of(List.of(0.5)), results.get("distances"));
+    }
+
+    @Test
+    public void testRetrieveAsync_ComposesEmbeddingAndVectorQuery() {
+        String query = "test query";
+        when(embeddingService.getEmbeddingAsync(query)).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 20)).thenReturn(Mono.just(mockRetrieval));
+
+        RetrievalResult result = knowledgeBaseService.retrieveAsync(query).block();
+
+        assertSame(mockRetrieval, result);
+        assertEquals(mockChromaResult, knowledgeBaseService.getLastRetrievedContext());
+        // The blocking paths are never used
+        verify(embeddingService, never()).getEmbedding(anyString());
+        verify(chromaDBLowLevelService, never()).query(any(), anyInt());
+    }
+
+    @Test
+    public void testRetrieveAsync_ErrorsBecomeErrorResults() {
+        when(embeddingService.getEmbeddingAsync("empty embedding")).thenReturn(Mono.just(Embedding.empty()));
+        when(embeddingService.getEmbeddingAsync("failing store")).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5)).thenReturn(Mono.error(new RuntimeException("Connection refused")));
+
+        assertEquals("Error: Failed to generate embedding.",
+            knowledgeBaseService.retrieveAsync("empty embedding", 20).block().getError());
+        assertEquals("Error: Connection refused",
+            knowledgeBaseService.retrieveAsync("failing store", 5).block().getError());
+        assertEquals("Error: Query cannot be empty.",
+            knowledgeBaseService.retrieveAsync(" ", 5).block().getError());
+    }
+
+    @Test
+    public void testRetrieveAsyncRestrictedToSources() {
+        Set<String> sources = Set.of("gp-visit-cards.pdf");
+        RetrievalResult routed = new RetrievalResult(null, Collections.nCopies(5, mockChromaResult), null, null);
+        when(embeddingService.getEmbeddingAsync("GP visit card")).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5, sources)).thenReturn(Mono.just(routed));
+
+        assertSame(routed, knowledgeBaseService.retrieveAsync("GP visit card", 5, sources).block());
+        verify(chromaDBLowLevelService, never()).queryAsync(mockEmbedding, 5);
+    }
+
+    @Test
+    public void testRetrieveAsyncKeepsAShortRoutedResult() {
+        Set<String> sources = Set.of("gp-visit-cards.pdf");
+        RetrievalResult routed = new RetrievalResult(null, List.of(mockChromaResult), null, null);
+        when(embeddingService.getEmbeddingAsync("GP visit card")).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5, sources)).thenReturn(Mono.just(routed));
+
+        // A topic with fewer chunks than asked for does not cost a second search
+        assertSame(routed, knowledgeBaseService.retrieveAsync("GP visit card", 5, sources).block());
+        verify(chromaDBLowLevelService, never()).queryAsync(mockEmbedding, 5);
+    }
+
+    @Test
+    public void testRetrieveAsyncWidensWhenSourcesFindNothing() {
+        Set<String> sources = Set.of("gp-visit-cards.pdf");
+        RetrievalResult routed = new RetrievalResult(null, List.of(), null, null);
+        RetrievalResult widened = new RetrievalResult(null, Collections.nCopies(5, mockChromaResult), null, null);
+        when(embeddingService.getEmbeddingAsync("GP visit card")).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5, sources)).thenReturn(Mono.just(routed));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5)).thenReturn(Mono.just(widened));
+
+        assertSame(widened, knowledgeBaseService.retrieveAsync("GP visit card", 5, sources).block());
+        // The query is embedded once for both searches
+        verify(embeddingService, times(1)).getEmbeddingAsync("GP visit card");
+    }
+
+    @Test
+    public void testRetrieveAsyncWidensWhenTheRoutedSearchFails() {
+        Set<String> sources = Set.of("gp-visit-cards.pdf");
+        RetrievalResult widened = new RetrievalResult(null, Collections.nCopies(5, mockChromaResult), null, null);
+        when(embeddingService.getEmbeddingAsync("GP visit card")).thenReturn(Mono.just(mockEmbedding));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5, sources))
+            .thenReturn(Mono.just(RetrievalResult.error("Error: ChromaDB returned 500")));
+        when(chromaDBLowLevelService.queryAsync(mockEmbedding, 5)).thenReturn(Mono.just(widened));
+
+        assertSame(widened, knowledgeBaseService.retrieveAsync("GP visit card", 5, sources).block());
     }
-}
\ No newline at end of file
+}
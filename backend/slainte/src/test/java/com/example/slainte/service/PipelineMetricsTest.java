@@ -0,0 +1,94 @@
+package com.example.slainte.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @Test
+    public void testEveryStageAndPathIsRegisteredUpFront() {
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            assertEquals(0, registry.get("slainte.pipeline.stage").tag("stage", stage.getTag()).timer().count());
+        }
+        for (PipelineMetrics.Path path : PipelineMetrics.Path.values()) {
+            assertEquals(0.0, registry.get("slainte.chat.requests").tag("path", path.getTag()).counter().count());
+        }
+        for (PipelineMetrics.HedgeOutcome outcome : PipelineMetrics.HedgeOutcome.values()) {
+            assertEquals(0.0, registry.get("slainte.retrieval.hedges").tag("used", outcome.getTag()).counter().count());
+        }
+    }
+
+    @Test
+    public void testBlockingStageIsTimedEvenWhenItThrows() {
+        assertEquals("done", metrics.time(PipelineMetrics.Stage.EMBEDDING, () -> "done"));
+        assertThrows(IllegalStateException.class, () -> metrics.time(PipelineMetrics.Stage.EMBEDDING, () -> {
+            throw new IllegalStateException("embedding failed");
+        }));
+
+        assertEquals(2, registry.get("slainte.pipeline.stage").tag("stage", "embedding").timer().count());
+    }
+
+    @Test
+    public void testAsyncStageIsTimedFromSubscription() {
+        Mono<String> query = metrics.time(PipelineMetrics.Stage.VECTOR_QUERY,
+            Mono.just("result").delayElement(Duration.ofMillis(50)));
+
+        // Nothing is recorded until the Mono is subscribed
+        assertEquals(0, registry.get("slainte.pipeline.stage").tag("stage", "vector_query").timer().count());
+        StepVerifier.create(query).expectNext("result").verifyComplete();
+
+        var timer = registry.get("slainte.pipeline.stage").tag("stage", "vector_query").timer();
+        assertEquals(1, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    @Test
+    public void testStagesAreAddedToTheRequestTimings() {
+        StageTimings timings = new StageTimings();
+        metrics.time(PipelineMetrics.Stage.EMBEDDING, Mono.just("embedding"))
+            .then(metrics.time(PipelineMetrics.Stage.VECTOR_QUERY, Mono.delay(Duration.ofMillis(20))))
+            .contextWrite(timings::putInto)
+            .block();
+        try (StageTimings.Scope scope = timings.bind()) {
+            metrics.time(PipelineMetrics.Stage.PROMPT_ASSEMBLY, () -> "prompt");
+        }
+        // Not bound any more, so only the meter sees this one
+        metrics.time(PipelineMetrics.Stage.FALLBACK_SEARCH, () -> "fallback");
+
+        Map<String, Double> millis = timings.toMillis();
+        assertEquals(List.of("embed", "chroma", "prompt"), List.copyOf(millis.keySet()));
+        assertTrue(millis.get("chroma") >= 20.0);
+        assertNull(StageTimings.current());
+    }
+
+    @Test
+    public void testTokensPerSecondIgnoresUnknownRates() {
+        metrics.recordTokensPerSecond(0);
+        metrics.recordTokensPerSecond(Double.NaN);
+        metrics.recordTokensPerSecond(35.5);
+
+        assertEquals(1, registry.get("slainte.llm.tokens.per.second").summary().count());
+        assertEquals(35.5, registry.get("slainte.llm.tokens.per.second").summary().totalAmount());
+    }
+
+    @Test
+    public void testRouteOutcomesAreCounted() {
+        metrics.count(PipelineMetrics.RouteOutcome.ROUTED);
+        metrics.count(PipelineMetrics.RouteOutcome.ROUTED);
+        metrics.count(PipelineMetrics.RouteOutcome.WIDENED);
+
+        assertEquals(2.0, registry.get("slainte.retrieval.routes").tag("outcome", "routed").counter().count());
+        assertEquals(1.0, registry.get("slainte.retrieval.routes").tag("outcome", "widened").counter().count());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.slainte.service;
+
+import com.example.slainte.model.RetrievalResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecentRetrievalsTest {
+
+    @Test
+    public void testLatestAndFindBeforeWrapping() {
+        RecentRetrievals retrievals = new RecentRetrievals(4);
+
+        assertTrue(retrievals.latest().isEmpty());
+        RecentRetrievals.Entry first = retrievals.record("first", result("A"));
+        RecentRetrievals.Entry second = retrievals.record("second", result("B"));
+
+        assertEquals(1, first.getRequestId());
+        assertEquals(2, second.getRequestId());
+        assertSame(second, retrievals.latest().orElseThrow());
+        assertSame(first, retrievals.find(1).orElseThrow());
+        assertTrue(retrievals.find(3).isEmpty());
+        assertTrue(retrievals.find(0).isEmpty());
+    }
+
+    @Test
+    public void testOldestEntriesAreOverwrittenOnceFull() {
+        RecentRetrievals retrievals = new RecentRetrievals(3);
+        for (int i = 1; i <= 5; i++) {
+            retrievals.record("query " + i, result("Document " + i));
+        }
+
+        List<RecentRetrievals.Entry> recent = retrievals.recent(10);
+        assertEquals(3, recent.size());
+        assertEquals(List.of(5L, 4L, 3L), recent.stream().map(RecentRetrievals.Entry::getRequestId).toList());
+        assertTrue(retrievals.find(2).isEmpty());
+        assertEquals("query 3", retrievals.find(3).orElseThrow().getQuery());
+        assertEquals(2, retrievals.recent(2).size());
+    }
+
+    @Test
+    public void testConcurrentWritersGetDistinctSlots() throws InterruptedException {
+        int threads = 8;
+        int perThread = 100;
+        RecentRetrievals retrievals = new RecentRetrievals(threads * perThread);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    retrievals.record("thread " + thread + " query " + i, result("Document"));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        List<RecentRetrievals.Entry> recent = retrievals.recent(threads * perThread);
+        assertEquals(threads * perThread, recent.size());
+        assertEquals(threads * perThread, retrievals.latest().orElseThrow().getRequestId());
+    }
+
+    @Test
+    public void testRejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RecentRetrievals(0));
+    }
+
+    private RetrievalResult result(String document) {
+        return new RetrievalResult(null, List.of(document), null, null);
+    }
+}
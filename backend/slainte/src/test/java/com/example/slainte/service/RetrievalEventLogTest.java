@@ -0,0 +1,127 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.RetrievalLogProperties;
+import com.example.slainte.model.RetrievalResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetrievalEventLogTest {
+
+    @Test
+    public void testNothingIsWrittenAtZeroSampleRate() throws InterruptedException {
+        RetrievalEventLog eventLog = new RetrievalEventLog(properties(0.0, 1_024));
+        for (int i = 0; i < 100; i++) {
+            eventLog.publish(entry(i + 1, result("Document " + i)));
+        }
+        eventLog.shutdown();
+
+        Map<String, Object> stats = eventLog.getStats();
+        assertEquals(100L, stats.get("published"));
+        assertEquals(100L, stats.get("sampledOut"));
+        assertEquals(0L, stats.get("written"));
+    }
+
+    @Test
+    public void testEverythingIsWrittenAtFullSampleRate() throws InterruptedException {
+        RetrievalEventLog eventLog = new RetrievalEventLog(properties(1.0, 1_024));
+        for (int i = 0; i < 100; i++) {
+            eventLog.publish(entry(i + 1, result("Document " + i)));
+        }
+        eventLog.shutdown();
+
+        Map<String, Object> stats = eventLog.getStats();
+        assertEquals(0L, stats.get("sampledOut"));
+        assertEquals(100L, stats.get("written"));
+    }
+
+    @Test
+    public void testFailedRetrievalsAreAlwaysWritten() throws InterruptedException {
+        RetrievalEventLog eventLog = new RetrievalEventLog(properties(0.0, 1_024));
+        eventLog.publish(entry(1, RetrievalResult.error("ChromaDB is down")));
+        eventLog.shutdown();
+
+        assertEquals(1L, eventLog.getStats().get("written"));
+        assertEquals(0L, eventLog.getStats().get("sampledOut"));
+    }
+
+    @Test
+    public void testDisabledLogIgnoresRetrievals() {
+        RetrievalLogProperties properties = properties(1.0, 1_024);
+        properties.setEnabled(false);
+        RetrievalEventLog eventLog = new RetrievalEventLog(properties);
+
+        eventLog.publish(entry(1, result("Document")));
+
+        assertEquals(0L, eventLog.getStats().get("published"));
+    }
+
+    @Test
+    public void testEventsBeyondTheQueueAreDroppedNotBlocked() throws InterruptedException {
+        RetrievalEventLog eventLog = new RetrievalEventLog(properties(1.0, 1));
+        for (int i = 0; i < 1_000; i++) {
+            eventLog.publish(entry(i + 1, result("Document " + i)));
+        }
+        eventLog.shutdown();
+
+        // Every event is either written or counted as dropped
+        Map<String, Object> stats = eventLog.getStats();
+        assertEquals(1_000L, (long) stats.get("written") + (long) stats.get("dropped"));
+    }
+
+    @Test
+    public void testFormatHasStatisticsOnOneLine() {
+        RetrievalResult result = new RetrievalResult(
+                List.of("a", "b"),
+                List.of("First paragraph here.\n\nSecond one.", "Three more words"),
+                List.of(Map.of("source", "hse.pdf"), Map.of("source", "hse.pdf")),
+                List.of(0.4, 0.1));
+
+        String line = RetrievalEventLog.format(entry(7, result), 2_000);
+
+        assertTrue(line.startsWith("retrieval requestId=7 "));
+        assertTrue(line.contains("query=\"what is \\\"flu\\\"?\""));
+        assertTrue(line.contains(" documents=2 characters=50 words=8 paragraphs=3"));
+        assertTrue(line.contains(" nearestDistance=0.1 farthestDistance=0.4"));
+        assertTrue(line.contains(" sources=[hse.pdf]"));
+        assertFalse(line.contains("\n"));
+        assertTrue(line.contains("\\n\\n"));
+    }
+
+    @Test
+    public void testFormatCapsThePayload() {
+        String document = "x".repeat(5_000);
+
+        String line = RetrievalEventLog.format(entry(1, result(document)), 100);
+
+        assertTrue(line.endsWith("...\""));
+        assertFalse(line.contains("x".repeat(101)));
+        assertTrue(line.contains(" characters=5000"));
+    }
+
+    @Test
+    public void testFormatOfFailedRetrieval() {
+        String line = RetrievalEventLog.format(entry(3, RetrievalResult.error("Error from ChromaDB: 500")), 2_000);
+
+        assertTrue(line.contains(" error=\"Error from ChromaDB: 500\""));
+        assertFalse(line.contains("documents="));
+    }
+
+    private static RetrievalLogProperties properties(double sampleRate, int queueCapacity) {
+        RetrievalLogProperties properties = new RetrievalLogProperties();
+        properties.setSampleRate(sampleRate);
+        properties.setQueueCapacity(queueCapacity);
+        return properties;
+    }
+
+    private static RecentRetrievals.Entry entry(long requestId, RetrievalResult result) {
+        return new RecentRetrievals.Entry(requestId, "what is \"flu\"?", result, Instant.now());
+    }
+
+    private static RetrievalResult result(String document) {
+        return new RetrievalResult(List.of("id"), List.of(document), List.of(Map.of()), List.of(0.2));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.VectorStoreProperties;
+import com.example.slainte.model.Embedding;
+import com.example.slainte.model.RetrievalResult;
+import com.example.slainte.model.VectorRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SegmentVectorStoreTest {
+
+    @Mock
+    private ChromaDBLowLevelService chromaDBService;
+
+    @TempDir
+    Path tempDir;
+
+    private VectorStoreProperties properties;
+
+    @BeforeEach
+    public void setup() {
+        properties = new VectorStoreProperties();
+        properties.getSegment().setPath(tempDir.resolve("health_assistant.seg").toString());
+    }
+
+    @Test
+    public void testQueriesChromaWhenNoSegmentExists() {
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+        vectorStore.openExisting();
+        Embedding query = unitVector(0);
+        RetrievalResult fromChroma = new RetrievalResult(
+            List.of("id"), List.of("From ChromaDB"), List.of(new HashMap<>()), List.of(0.1));
+        when(chromaDBService.query(query, 5)).thenReturn(fromChroma);
+
+        assertFalse(vectorStore.isLoaded());
+        assertSame(fromChroma, vectorStore.query(query, 5));
+    }
+
+    @Test
+    public void testBuildsSegmentFromChromaOnStartup() throws Exception {
+        when(chromaDBService.fetchAllRecords(properties.getLoadBatchSize()))
+            .thenReturn(List.of(record(0), record(1), record(2)));
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+
+        vectorStore.openExisting();
+        vectorStore.buildIfMissingOrStale();
+
+        assertTrue(vectorStore.isLoaded());
+        assertEquals(3, vectorStore.size());
+        assertTrue(Files.exists(Path.of(properties.getSegment().getPath())));
+    }
+
+    @Test
+    public void testExistingSegmentIsQueryableWithoutChroma() throws Exception {
+        List<VectorRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            records.add(record(i));
+        }
+        records.add(new VectorRecord("bad", Embedding.of(1.0f), "Wrong dimension", null));
+        new SegmentVectorStore(chromaDBService, properties).write(records);
+        when(chromaDBService.fetchCount()).thenReturn(11L);
+
+        // A fresh store maps the file on creation, as after a restart
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+        vectorStore.openExisting();
+        vectorStore.buildIfMissingOrStale();
+        RetrievalResult result = vectorStore.query(unitVector(3), 2);
+
+        assertEquals(10, vectorStore.size());
+        assertEquals(2, result.size());
+        assertEquals("chunk-3", result.getIds().get(0));
+        assertEquals("Document 3", result.getDocuments().get(0));
+        assertEquals("source_3", result.getMetadatas().get(0).get("source"));
+        assertEquals(0.0, result.getDistances().get(0), 1e-6);
+        verify(chromaDBService, never()).fetchAllRecords(anyInt());
+        verify(chromaDBService, never()).query(any(), anyInt());
+    }
+
+    @Test
+    public void testStaleSegmentIsRebuiltOnStartup() throws Exception {
+        new SegmentVectorStore(chromaDBService, properties).write(List.of(record(0), record(1)));
+        // Documents were added to the collection since the segment was built
+        when(chromaDBService.fetchCount()).thenReturn(3L);
+        when(chromaDBService.fetchAllRecords(properties.getLoadBatchSize()))
+            .thenReturn(List.of(record(0), record(1), record(2)));
+
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+        vectorStore.openExisting();
+        assertEquals(2, vectorStore.size());
+        vectorStore.buildIfMissingOrStale();
+
+        assertEquals(3, vectorStore.size());
+        assertEquals("chunk-2", vectorStore.query(unitVector(2), 1).getIds().get(0));
+    }
+
+    @Test
+    public void testSegmentIsKeptWhenChromaIsUnreachable() throws Exception {
+        new SegmentVectorStore(chromaDBService, properties).write(List.of(record(0), record(1)));
+        when(chromaDBService.fetchCount()).thenThrow(new IOException("Connection refused"));
+
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+        vectorStore.openExisting();
+        vectorStore.buildIfMissingOrStale();
+
+        assertEquals(2, vectorStore.size());
+        verify(chromaDBService, never()).fetchAllRecords(anyInt());
+    }
+
+    @Test
+    public void testReloadRebuildsTheSegment() throws Exception {
+        when(chromaDBService.fetchAllRecords(properties.getLoadBatchSize()))
+            .thenReturn(List.of(record(0)), List.of(record(0), record(1)));
+        SegmentVectorStore vectorStore = new SegmentVectorStore(chromaDBService, properties);
+        vectorStore.buildIfMissingOrStale();
+
+        vectorStore.reload();
+
+        assertEquals(2, vectorStore.size());
+    }
+
+    private VectorRecord record(int i) {
+        return new VectorRecord("chunk-" + i, unitVector(i), "Document " + i, Map.of("source", "source_" + i));
+    }
+
+    private Embedding unitVector(int axis) {
+        float[] values = new float[Embedding.DIMENSION];
+        values[axis] = 1.0f;
+        return Embedding.of(values);
+    }
+}
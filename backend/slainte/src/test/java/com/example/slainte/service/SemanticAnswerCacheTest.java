@@ -0,0 +1,212 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.SemanticCacheProperties;
+import com.example.slainte.model.Embedding;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SemanticAnswerCacheTest {
+
+    private static final String TEMPLATE = "hse-context-v1";
+
+    @Mock
+    private EmbeddingService embeddingServiceMock;
+
+    private SemanticCacheProperties properties;
+    private AtomicLong clock;
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @BeforeEach
+    public void setup() {
+        properties = new SemanticCacheProperties();
+        properties.setSimilarityThreshold(0.95);
+        clock = new AtomicLong();
+        semanticAnswerCache = new SemanticAnswerCache(embeddingServiceMock, properties, clock::get);
+    }
+
+    @Test
+    public void testReusesAnswerForSimilarQuery() {
+        // Two wordings of the same question with nearly parallel embeddings
+        when(embeddingServiceMock.getEmbedding("how do I get a GP visit card"))
+            .thenReturn(Embedding.of(1.0f, 0.0f, 0.1f));
+        when(embeddingServiceMock.getEmbedding("GP visit card application"))
+            .thenReturn(Embedding.of(0.98f, 0.02f, 0.12f));
+
+        assertTrue(semanticAnswerCache.lookup("how do I get a GP visit card", true, TEMPLATE).isEmpty());
+        semanticAnswerCache.store("how do I get a GP visit card", true, TEMPLATE, "Apply online at hse.ie");
+
+        Optional<String> answer = semanticAnswerCache.lookup("GP visit card application", true, TEMPLATE);
+
+        assertEquals(Optional.of("Apply online at hse.ie"), answer);
+        Map<String, Object> stats = semanticAnswerCache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.5, (Double) stats.get("hitRate"), 1e-9);
+        assertEquals(1, stats.get("entries"));
+    }
+
+    @Test
+    public void testDissimilarQueryMisses() {
+        when(embeddingServiceMock.getEmbedding("GP visit card")).thenReturn(Embedding.of(1.0f, 0.0f, 0.0f));
+        when(embeddingServiceMock.getEmbedding("covid vaccine")).thenReturn(Embedding.of(0.0f, 1.0f, 0.0f));
+
+        semanticAnswerCache.store("GP visit card", true, TEMPLATE, "GP answer");
+
+        assertTrue(semanticAnswerCache.lookup("covid vaccine", true, TEMPLATE).isEmpty());
+    }
+
+    @Test
+    public void testCosineIgnoresVectorMagnitude() {
+        when(embeddingServiceMock.getEmbedding("short")).thenReturn(Embedding.of(1.0f, 2.0f, 3.0f));
+        when(embeddingServiceMock.getEmbedding("long")).thenReturn(Embedding.of(10.0f, 20.0f, 30.0f));
+
+        semanticAnswerCache.store("short", true, TEMPLATE, "answer");
+
+        assertEquals(Optional.of("answer"), semanticAnswerCache.lookup("long", true, TEMPLATE));
+    }
+
+    @Test
+    public void testPartitionsByRagFlagAndTemplate() {
+        when(embeddingServiceMock.getEmbedding("medical card")).thenReturn(Embedding.of(0.5f, 0.5f));
+
+        semanticAnswerCache.store("medical card", true, TEMPLATE, "RAG answer");
+
+        assertTrue(semanticAnswerCache.lookup("medical card", false, TEMPLATE).isEmpty());
+        assertTrue(semanticAnswerCache.lookup("medical card", true, "hse-context-v2").isEmpty());
+        assertEquals(Optional.of("RAG answer"), semanticAnswerCache.lookup("medical card", true, TEMPLATE));
+    }
+
+    @Test
+    public void testErrorResponsesAreNotStored() {
+        semanticAnswerCache.store("medical card", true, TEMPLATE, "Error retrieving response: timeout");
+        semanticAnswerCache.store("medical card", true, TEMPLATE, DeepseekChatClient.NO_RESPONSE);
+
+        verifyNoInteractions(embeddingServiceMock);
+        assertEquals(0, semanticAnswerCache.getStats().get("entries"));
+    }
+
+    @Test
+    public void testMissingEmbeddingIsAMiss() {
+        when(embeddingServiceMock.getEmbedding("anything")).thenReturn(Embedding.empty());
+
+        semanticAnswerCache.store("anything", true, TEMPLATE, "answer");
+
+        assertTrue(semanticAnswerCache.lookup("anything", true, TEMPLATE).isEmpty());
+        assertEquals(0, semanticAnswerCache.getStats().get("entries"));
+    }
+
+    @Test
+    public void testExpiredAnswersAreIgnored() {
+        properties.setTtl(Duration.ofMinutes(10));
+        when(embeddingServiceMock.getEmbedding("hospital")).thenReturn(Embedding.of(0.3f, 0.7f));
+
+        semanticAnswerCache.store("hospital", true, TEMPLATE, "answer");
+        clock.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertTrue(semanticAnswerCache.lookup("hospital", true, TEMPLATE).isEmpty());
+    }
+
+    @Test
+    public void testOldestEntryIsReplacedWhenFull() {
+        properties.setMaxEntries(2);
+        when(embeddingServiceMock.getEmbedding("a")).thenReturn(Embedding.of(1.0f, 0.0f, 0.0f));
+        when(embeddingServiceMock.getEmbedding("b")).thenReturn(Embedding.of(0.0f, 1.0f, 0.0f));
+        when(embeddingServiceMock.getEmbedding("c")).thenReturn(Embedding.of(0.0f, 0.0f, 1.0f));
+
+        semanticAnswerCache.store("a", true, TEMPLATE, "A");
+        semanticAnswerCache.store("b", true, TEMPLATE, "B");
+        semanticAnswerCache.store("c", true, TEMPLATE, "C");
+
+        assertEquals(2, semanticAnswerCache.getStats().get("entries"));
+        assertTrue(semanticAnswerCache.lookup("a", true, TEMPLATE).isEmpty());
+        assertEquals(Optional.of("C"), semanticAnswerCache.lookup("c", true, TEMPLATE));
+    }
+
+    @Test
+    public void testStoringSameQueryReplacesAnswer() {
+        when(embeddingServiceMock.getEmbedding("a")).thenReturn(Embedding.of(1.0f, 0.0f));
+
+        semanticAnswerCache.store("a", true, TEMPLATE, "first");
+        semanticAnswerCache.store("a", true, TEMPLATE, "second");
+
+        assertEquals(1, semanticAnswerCache.getStats().get("entries"));
+        assertEquals(Optional.of("second"), semanticAnswerCache.lookup("a", true, TEMPLATE));
+    }
+
+    @Test
+    public void testFindsNearestAmongManyFullSizeEntries() {
+        Random random = new Random(42);
+        float[] target = null;
+        for (int i = 0; i < 500; i++) {
+            float[] values = new float[Embedding.DIMENSION];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = (float) random.nextGaussian();
+            }
+            if (i == 250) {
+                target = values;
+            }
+            when(embeddingServiceMock.getEmbedding("query " + i)).thenReturn(Embedding.of(values));
+            semanticAnswerCache.store("query " + i, true, TEMPLATE, "answer " + i);
+        }
+
+        // A slightly perturbed copy of one stored vector finds that entry
+        float[] perturbed = target.clone();
+        for (int j = 0; j < perturbed.length; j += 10) {
+            perturbed[j] += 0.05f;
+        }
+        when(embeddingServiceMock.getEmbedding("rephrased")).thenReturn(Embedding.of(perturbed));
+
+        assertEquals(Optional.of("answer 250"), semanticAnswerCache.lookup("rephrased", true, TEMPLATE));
+    }
+
+    @Test
+    public void testDisabledCacheDoesNothing() {
+        properties.setEnabled(false);
+
+        semanticAnswerCache.store("a", true, TEMPLATE, "answer");
+
+        assertTrue(semanticAnswerCache.lookup("a", true, TEMPLATE).isEmpty());
+        verifyNoInteractions(embeddingServiceMock);
+    }
+
+    @Test
+    public void testClearRemovesEntries() {
+        when(embeddingServiceMock.getEmbedding("a")).thenReturn(Embedding.of(1.0f, 0.0f));
+        semanticAnswerCache.store("a", true, TEMPLATE, "answer");
+
+        semanticAnswerCache.clear();
+
+        assertTrue(semanticAnswerCache.lookup("a", true, TEMPLATE).isEmpty());
+    }
+
+    @Test
+    public void testAsyncLookupAndStoreUseAsyncEmbeddings() {
+        when(embeddingServiceMock.getEmbeddingAsync("how do I get a GP visit card"))
+            .thenReturn(Mono.just(Embedding.of(1.0f, 0.0f, 0.1f)));
+        when(embeddingServiceMock.getEmbeddingAsync("GP visit card application"))
+            .thenReturn(Mono.just(Embedding.of(0.98f, 0.02f, 0.12f)));
+
+        assertNull(semanticAnswerCache.lookupAsync("how do I get a GP visit card", true, TEMPLATE).block());
+        semanticAnswerCache.storeAsync("how do I get a GP visit card", true, TEMPLATE, "Apply online at hse.ie").block();
+
+        assertEquals("Apply online at hse.ie",
+            semanticAnswerCache.lookupAsync("GP visit card application", true, TEMPLATE).block());
+        // Error answers are skipped before any embedding is requested
+        semanticAnswerCache.storeAsync("other", true, TEMPLATE, "Error retrieving response: timeout").block();
+        verify(embeddingServiceMock, never()).getEmbeddingAsync("other");
+        verify(embeddingServiceMock, never()).getEmbedding(anyString());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.slainte.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneComputation() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    computations.incrementAndGet();
+                    return "duplicate";
+                })));
+            }
+            // Followers register as collapsed before the leader is released
+            waitFor(() -> (Long) singleFlight.getStats().get("collapsed") == 7);
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        Map<String, Object> stats = singleFlight.getStats();
+        assertEquals(8L, stats.get("calls"));
+        assertEquals(1L, stats.get("executions"));
+        assertEquals(7L, stats.get("collapsed"));
+        assertEquals(0, stats.get("inFlight"));
+    }
+
+    @Test
+    public void testResultIsNotRetainedAfterCompletion() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test");
+        AtomicInteger computations = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("key", computations::incrementAndGet));
+        assertEquals(2, singleFlight.execute("key", computations::incrementAndGet));
+        assertEquals(0L, singleFlight.getStats().get("collapsed"));
+    }
+
+    @Test
+    public void testLeaderExceptionIsSharedWithFollowers() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("ChromaDB down");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "unused"));
+            waitFor(() -> (Long) singleFlight.getStats().get("collapsed") == 1);
+            release.countDown();
+
+            ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+            assertInstanceOf(IllegalStateException.class, followerError.getCause());
+            assertEquals("ChromaDB down", followerError.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        // A failed computation is not remembered
+        assertEquals("recovered", singleFlight.execute("key", () -> "recovered"));
+    }
+
+    @Test
+    public void testAsyncCallsShareOneSubscription() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger subscriptions = new AtomicInteger();
+        Sinks.One<String> response = Sinks.one();
+        Mono<String> source = response.asMono().doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> source).toFuture();
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> source).toFuture();
+        // A blocking caller joins the same in-flight computation
+        CompletableFuture<String> blocking = CompletableFuture.supplyAsync(
+            () -> singleFlight.execute("key", () -> "separate"));
+        waitFor(() -> (Long) singleFlight.getStats().get("collapsed") == 2);
+        response.tryEmitValue("embedding");
+
+        assertEquals("embedding", first.join());
+        assertEquals("embedding", second.join());
+        assertEquals("embedding", blocking.join());
+        assertEquals(1, subscriptions.get());
+        assertEquals(0, singleFlight.getStats().get("inFlight"));
+    }
+
+    @Test
+    public void testAsyncComputationIsCancelledWhenNoCallerWaits() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger cancellations = new AtomicInteger();
+        Mono<String> source = Mono.<String>never().doOnCancel(cancellations::incrementAndGet);
+
+        Disposable first = singleFlight.executeAsync("key", () -> source).subscribe();
+        Disposable second = singleFlight.executeAsync("key", () -> source).subscribe();
+
+        // The computation keeps running for the caller that still waits
+        first.dispose();
+        assertEquals(0, cancellations.get());
+        assertEquals(1, singleFlight.getStats().get("inFlight"));
+
+        second.dispose();
+        assertEquals(1, cancellations.get());
+        assertEquals(0, singleFlight.getStats().get("inFlight"));
+
+        // The next call starts a new computation
+        assertEquals("again", singleFlight.executeAsync("key", () -> Mono.just("again")).block(Duration.ofSeconds(5)));
+        assertEquals(2L, singleFlight.getStats().get("executions"));
+    }
+
+    @Test
+    public void testDifferentKeysRunIndependently() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+
+        String a = singleFlight.executeAsync("a", () -> Mono.just("A")).block(Duration.ofSeconds(5));
+        String b = singleFlight.executeAsync("b", () -> Mono.just("B")).block(Duration.ofSeconds(5));
+
+        assertEquals("A", a);
+        assertEquals("B", b);
+        assertEquals(2L, singleFlight.getStats().get("executions"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.slainte.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StageTimingsTest {
+
+    @Test
+    public void testServerTimingListsStagesInPipelineOrder() {
+        StageTimings timings = new StageTimings();
+        timings.add(StageTimings.LLM_GENERATE, 2_000_000_000L);
+        timings.add(StageTimings.EMBED, 12_340_000L);
+        timings.add(StageTimings.CHROMA, 40_060_000L);
+
+        assertEquals("embed;dur=12.3, chroma;dur=40.1, llm-generate;dur=2000.0", timings.toServerTiming());
+    }
+
+    @Test
+    public void testRepeatedStagesAreSummed() {
+        StageTimings timings = new StageTimings();
+        timings.add(StageTimings.EMBED, 5_000_000L);
+        timings.add(StageTimings.EMBED, 7_000_000L);
+        timings.add(StageTimings.EMBED, -1L);
+
+        assertEquals(Map.of(StageTimings.EMBED, 12.0), timings.toMillis());
+    }
+
+    @Test
+    public void testDescribedStages() {
+        StageTimings timings = new StageTimings();
+        timings.add(StageTimings.EMBED, 12_000_000L);
+        timings.add(StageTimings.FALLBACK, 30_000_000L);
+        timings.describe(StageTimings.FALLBACK, StageTimings.PARALLEL);
+
+        assertEquals("embed;dur=12.0, fallback;desc=\"parallel\";dur=30.0", timings.toServerTiming());
+        assertEquals(Map.of(StageTimings.EMBED, 12.0, StageTimings.FALLBACK, 30.0), timings.toMillis());
+    }
+
+    @Test
+    public void testRemovedTimingsAreNotAddedTo() {
+        StageTimings timings = new StageTimings();
+
+        StageTimings found = Mono.deferContextual(context -> Mono.justOrEmpty(StageTimings.from(context)))
+            .contextWrite(StageTimings::removeFrom)
+            .contextWrite(timings::putInto)
+            .block();
+
+        assertNull(found);
+    }
+
+    @Test
+    public void testEmptyTimings() {
+        StageTimings timings = new StageTimings();
+
+        assertEquals("", timings.toServerTiming());
+        assertTrue(timings.toMillis().isEmpty());
+    }
+
+    @Test
+    public void testReactorContextCarriesTheTimings() {
+        StageTimings timings = new StageTimings();
+
+        StageTimings found = Mono.deferContextual(context -> Mono.justOrEmpty(StageTimings.from(context)))
+            .contextWrite(timings::putInto)
+            .block();
+
+        assertSame(timings, found);
+        assertNull(StageTimings.from(Context.empty()));
+    }
+
+    @Test
+    public void testBindingIsScopedAndNested() {
+        StageTimings outer = new StageTimings();
+        StageTimings inner = new StageTimings();
+
+        try (StageTimings.Scope outerScope = outer.bind()) {
+            try (StageTimings.Scope innerScope = inner.bind()) {
+                assertSame(inner, StageTimings.current());
+            }
+            assertSame(outer, StageTimings.current());
+        }
+        assertNull(StageTimings.current());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.PromptBudgetProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenEstimatorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TokenEstimator estimator = new TokenEstimator(new PromptBudgetProperties(), registry);
+
+    @Test
+    public void testCountsWordPiecesDigitsAndSymbols() {
+        // Short words are one token each and absorb the space before them; longer ones are split
+        assertEquals(3, TokenEstimator.countPieces("GP visit cards"));
+        assertEquals(2, TokenEstimator.countPieces("hypertension"));
+        // Each digit and symbol is a token
+        assertEquals(5, TokenEstimator.countPieces("€100."));
+        // A run of line breaks is one token
+        assertEquals(2, TokenEstimator.countPieces("Hello\n\n\n"));
+        assertEquals(0, TokenEstimator.countPieces("   "));
+    }
+
+    @Test
+    public void testEstimateRoundsTheScaledCountUp() {
+        assertEquals(3, estimator.estimate("GP visit cards"));
+        assertEquals(0, estimator.estimate(""));
+    }
+
+    @Test
+    public void testCalibrationMovesTheScaleTowardsObservedCounts() {
+        String prompt = "Using ONLY the HSE information provided above, please answer the following query";
+        int pieces = TokenEstimator.countPieces(prompt);
+
+        for (int i = 0; i < 200; i++) {
+            estimator.calibrate(prompt, Math.round(pieces * 1.5));
+        }
+
+        assertEquals(1.5, estimator.getScale(), 0.05);
+        assertEquals(Math.ceil(pieces * estimator.getScale()), estimator.estimate(prompt));
+        assertEquals(estimator.getScale(), registry.get("slainte.prompt.token.scale").gauge().value());
+    }
+
+    @Test
+    public void testImplausibleCountsAreIgnored() {
+        String prompt = "System prompt and a long retrieved context that Ollama had cached already";
+
+        // Only the tokens after a cached prefix were evaluated
+        estimator.calibrate(prompt, 2);
+        estimator.calibrate(prompt, 0);
+        estimator.calibrate("", 10);
+
+        assertEquals(1.0, estimator.getScale());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.TopicProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopicDetectorTest {
+
+    private final TopicDetector detector = new TopicDetector(new TopicProperties());
+
+    @Test
+    public void testDetectsTopicsFromTheDictionary() {
+        assertEquals("GP Visit Card", detector.detect("Do I qualify for a GP visit card?"));
+        assertEquals("Medical Card", detector.detect("How do I renew my Medical Card"));
+        assertEquals("Emergency Services", detector.detect("Where is the nearest urgent care centre?"));
+        assertEquals("COVID-19", detector.detect("Coronavirus symptoms"));
+        assertEquals("Vaccines", detector.detect("When is the next vaccination clinic?"));
+        assertEquals("Services for Older People", detector.detect("Support for ELDERLY parents"));
+    }
+
+    @Test
+    public void testPhrasesMatchInsideWords() {
+        assertEquals("Children's Health", detector.detect("Free care for children under six"));
+        assertEquals("Hospitals", detector.detect("hospitals near me"));
+    }
+
+    @Test
+    public void testTopicListedFirstWinsWhereverItAppears() {
+        // "child" comes first in the query, but Hospitals is listed before Children's Health
+        assertEquals("Hospitals", detector.detect("My child needs to go to hospital"));
+        assertEquals("GP Visit Card", detector.detect("Is a medical card or a GP visit card better?"));
+    }
+
+    @Test
+    public void testKeywordTopicSkipsShortWordsAndStopwords() {
+        assertEquals("renew prescription inhaler", detector.detect("How do I renew the prescription for my inhaler"));
+        assertEquals(TopicDetector.DEFAULT_TOPIC, detector.detect("Tell me"));
+    }
+
+    @Test
+    public void testKeywordTopicStopsOnceLongEnough() {
+        assertEquals("physiotherapy appointments waiting",
+                detector.detect("physiotherapy appointments waiting lists explained"));
+    }
+
+    @Test
+    public void testDefaultTopicWhenNothingIsMeaningful() {
+        assertEquals(TopicDetector.DEFAULT_TOPIC, detector.detect("what is it?"));
+        assertEquals(TopicDetector.DEFAULT_TOPIC, detector.detect(""));
+        assertEquals(TopicDetector.DEFAULT_TOPIC, detector.detect("  \t "));
+    }
+
+    @Test
+    public void testStopwordsIgnoreCase() {
+        assertTrue(detector.isStopword("Information"));
+        assertTrue(detector.isStopword("WHERE"));
+        assertFalse(detector.isStopword("clinic"));
+    }
+
+    @Test
+    public void testOverlappingPhrasesAreAllFound() {
+        // The classic Aho-Corasick case: "she" and "he" end at the same position, "hers" overlaps both
+        TopicDetector overlapping = detector(List.of(
+                new TopicDetector.Topic("his", List.of("his")),
+                new TopicDetector.Topic("he", List.of("he")),
+                new TopicDetector.Topic("she", List.of("she")),
+                new TopicDetector.Topic("hers", List.of("hers"))));
+
+        assertEquals("he", overlapping.detect("ushers"));
+        assertEquals("his", overlapping.detect("ahishers"));
+        assertEquals("he", overlapping.detect("ashe"));
+    }
+
+    @Test
+    public void testNonAsciiPhrases() {
+        TopicDetector irish = detector(List.of(new TopicDetector.Topic("Sláinte", List.of("sláinte"))));
+
+        assertEquals("Sláinte", irish.detect("SLÁINTE agus táinte"));
+        assertEquals("slainte agus táinte", irish.detect("slainte agus táinte"));
+    }
+
+    @Test
+    public void testManyTopicsStillMatchByPriority() {
+        List<TopicDetector.Topic> topics = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            topics.add(new TopicDetector.Topic("Topic " + i, List.of("condition" + i + " ", "synonym" + i + " ")));
+        }
+        TopicDetector large = detector(topics);
+
+        assertEquals(500, large.getTopicCount());
+        assertEquals("Topic 42", large.detect("treatment for synonym420 and condition42 please"));
+        assertEquals("Topic 420", large.detect("treatment for synonym420 please"));
+    }
+
+    @Test
+    public void testMissingDictionaryFailsAtStartup() {
+        TopicProperties properties = new TopicProperties();
+        properties.setDictionary(new FileSystemResource("does-not-exist.json"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new TopicDetector(properties));
+        assertTrue(e.getMessage().contains("does-not-exist.json"));
+    }
+
+    private static TopicDetector detector(List<TopicDetector.Topic> topics) {
+        TopicDetector.Dictionary dictionary = new TopicDetector.Dictionary();
+        dictionary.setTopics(topics);
+        return new TopicDetector(dictionary);
+    }
+
+    @Test
+    public void testSourcePatternsOfTheShippedDictionary() {
+        Map<String, List<String>> patterns = detector.getSourcePatterns();
+
+        assertEquals(List.of("gp-visit-cards_", "medical-cards_"), patterns.get("GP Visit Card"));
+        assertTrue(patterns.containsKey("Medical Card"));
+        // Topics without sources are searched unrestricted
+        assertFalse(patterns.containsKey("Diabetes"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.slainte.service;
+
+import com.example.slainte.config.TopicProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TopicRouterTest {
+
+    private static final List<String> SOURCES = List.of(
+        "HSE_Services_gp-visit-cards_carers_______Carers_GP_visit_card.pdf",
+        "HSE_Services_gp-visit-cards_over-70s_______Over_70s_GP_visit_ca.pdf",
+        "HSE_Services_medical-cards_applying_apply_______Apply_for_a_medical_.pdf",
+        "HSE_Condition_Pages_Asthma.pdf",
+        "HSE_Condition_Pages_Diabetes.pdf",
+        "HSE_Condition_Pages_Type 2 diabetes.pdf",
+        "HSE_Condition_Pages_Angina.pdf",
+        "HSE_Condition_Pages_Back pain.pdf");
+
+    private final TopicDetector detector = new TopicDetector(new TopicProperties());
+    private final ChromaDBLowLevelService chromaDBService = mock(ChromaDBLowLevelService.class);
+
+    @Test
+    public void testTopicsAreRoutedToTheSourcesMatchingTheirPatterns() {
+        TopicRouter router = new TopicRouter(detector, chromaDBService, new TopicProperties());
+        router.load(SOURCES);
+
+        assertEquals(Set.of(SOURCES.get(0), SOURCES.get(1), SOURCES.get(2)), router.route("GP Visit Card"));
+        assertEquals(router.route("GP Visit Card"), router.route("Medical Card"));
+        assertEquals(2, router.getRouteCount());
+    }
+
+    @Test
+    public void testTopicsWithoutSourcesAreNotRouted() {
+        TopicRouter router = new TopicRouter(detector, chromaDBService, new TopicProperties());
+        router.load(SOURCES);
+
+        assertTrue(router.route("Diabetes").isEmpty());
+        // Keyword topics are never in the dictionary
+        assertTrue(router.route("renew prescription inhaler").isEmpty());
+    }
+
+    @Test
+    public void testTopicsCoveringMostOfTheCorpusAreNotRouted() {
+        TopicProperties properties = new TopicProperties();
+        properties.getRouting().setMaxFraction(0.25);
+        TopicRouter router = new TopicRouter(detector, chromaDBService, properties);
+        router.load(SOURCES);
+
+        // Three of eight sources is more than a quarter
+        assertTrue(router.route("GP Visit Card").isEmpty());
+        assertEquals(0, router.getRouteCount());
+    }
+
+    @Test
+    public void testSourcesAreListedOnStartupUnlessDisabled() throws IOException {
+        when(chromaDBService.fetchSources(1000)).thenReturn(new HashSet<>(SOURCES));
+        TopicRouter router = new TopicRouter(detector, chromaDBService, new TopicProperties());
+        router.loadOnStartup();
+        assertEquals(2, router.getRouteCount());
+
+        TopicProperties disabled = new TopicProperties();
+        disabled.getRouting().setEnabled(false);
+        TopicRouter disabledRouter = new TopicRouter(detector, chromaDBService, disabled);
+        disabledRouter.loadOnStartup();
+        assertEquals(0, disabledRouter.getRouteCount());
+        verify(chromaDBService, times(1)).fetchSources(anyInt());
+    }
+
+    @Test
+    public void testNothingIsRoutedWhenSourcesCannotBeListed() throws IOException {
+        when(chromaDBService.fetchSources(anyInt())).thenThrow(new IOException("Connection refused"));
+        TopicRouter router = new TopicRouter(detector, chromaDBService, new TopicProperties());
+
+        router.loadOnStartup();
+
+        assertTrue(router.route("GP Visit Card").isEmpty());
+        assertFalse(router.isLoaded());
+        // Not retried before the retry interval has passed
+        verify(chromaDBService, times(1)).fetchSources(anyInt());
+    }
+
+    @Test
+    public void testQueriesListTheSourcesAgainAfterAFailure() throws Exception {
+        when(chromaDBService.fetchSources(anyInt()))
+            .thenThrow(new IOException("Connection refused"))
+            .thenReturn(new HashSet<>(SOURCES));
+        TopicProperties properties = new TopicProperties();
+        properties.getRouting().setRetryInterval(Duration.ZERO);
+        TopicRouter router = new TopicRouter(detector, chromaDBService, properties);
+        router.loadOnStartup();
+        assertFalse(router.isLoaded());
+
+        // The first query after the interval lists the sources in the background
+        router.route("GP Visit Card");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!router.isLoaded() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(router.isLoaded());
+        assertEquals(Set.of(SOURCES.get(0), SOURCES.get(1), SOURCES.get(2)), router.route("GP Visit Card"));
+        verify(chromaDBService, times(2)).fetchSources(anyInt());
+    }
+}